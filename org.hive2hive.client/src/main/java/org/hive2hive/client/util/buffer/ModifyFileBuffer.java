@@ -49,9 +49,8 @@ public class ModifyFileBuffer extends BaseFileBuffer {
 				toDelete.add(file);
 			} else {
 				try {
-					// check for MD5 hashes, if equal, skip the file
-					byte[] fileHash = HashUtil.hash(file);
-					if (HashUtil.compare(fileHash, fileTaste.getMd5())) {
+					// check the hashes (with the algorithm of the file taste), if equal, skip the file
+					if (HashUtil.compare(file, fileTaste.getMd5(), fileTaste.getHashAlgorithm())) {
 						// hashes are equal, no need to upload it to the DHT
 						toDelete.add(file);
 					}
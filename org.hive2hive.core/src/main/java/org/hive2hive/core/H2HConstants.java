@@ -7,8 +7,11 @@ import net.tomp2p.dht.StorageMemory;
 import net.tomp2p.peers.Number160;
 
 import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
 import org.hive2hive.core.security.EncryptionUtil.AES_KEYLENGTH;
 import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.security.HashAlgorithm;
 
 public interface H2HConstants {
 
@@ -22,6 +25,11 @@ public interface H2HConstants {
 	public static final BigInteger DEFAULT_MAX_SIZE_OF_ALL_VERSIONS = DEFAULT_MAX_FILE_SIZE.multiply(BigInteger
 			.valueOf(DEFAULT_MAX_NUM_OF_VERSIONS));// max_size * max_num
 	public static final int DEFAULT_CHUNK_SIZE = MEGABYTES.intValue(); // 1 MB
+	public static final int DEFAULT_HASHING_PARALLELISM = Runtime.getRuntime().availableProcessors();
+	public static final int DEFAULT_CHUNK_UPLOAD_WINDOW = 8; // 8 chunks in flight
+	public static final HashAlgorithm DEFAULT_HASH_ALGORITHM = HashAlgorithm.MD5; // compatible with older versions
+	public static final ChunkingMode DEFAULT_CHUNKING_MODE = ChunkingMode.FIXED;
+	public static final DownloadMode DEFAULT_DOWNLOAD_MODE = DownloadMode.DHT;
 
 	// standard port for the Hive2Hive network
 	public static final int H2H_PORT = 4622;
@@ -37,6 +45,8 @@ public interface H2HConstants {
 
 	// the configuration file name (lying in the root directory of the node)
 	public static final String META_FILE_NAME = "h2h.conf";
+	public static final String FILE_STATE_MANIFEST_NAME = "h2h.manifest";
+	public static final String DOWNLOAD_JOURNAL_NAME = "h2h.downloads";
 
 	// the trash directory, where deleted files are moved
 	public static final File TRASH_DIRECTORY = new File(FileUtils.getTempDirectory(), "H2HTrash");
@@ -44,6 +54,21 @@ public interface H2HConstants {
 	// configurations for network messages
 	public static final int MAX_MESSAGE_SENDING = 5;
 	public static final int MAX_MESSAGE_SENDING_DIRECT = 3;
+	// maximum number of threads handling received messages of the same type
+	public static final int MESSAGE_HANDLER_THREADS = 8;
+	// maximum number of received messages of the same type waiting to be handled. Further messages are asked
+	// to be sent later
+	public static final int MESSAGE_HANDLER_QUEUE_SIZE = 256;
+	// delay before re-sending a message the receiver asked to send later
+	public static final long MESSAGE_ASK_LATER_DELAY_MS = 500;
+	// maximum number of threads sending messages to multiple peers in parallel
+	public static final int MESSAGE_SENDING_THREADS = 16;
+	// lifetime of a symmetric session key for direct messages between two peers
+	public static final long MESSAGE_SESSION_KEY_LIFETIME_MS = 10 * 60 * 1000;
+	// time after which the recorded failures and busy answers of a peer count only half
+	public static final long PEER_SCORE_HALF_LIFE_MS = 5 * 60 * 1000;
+	// the score of peers flagged as slow (e.g. mobile devices) is multiplied with this factor
+	public static final double SLOW_PEER_SCORE_FACTOR = 0.25;
 
 	// maximal numbers of versions kept in the DHT (see versionKey)
 	public static final int MAX_VERSIONS_HISTORY = 5;
@@ -54,6 +79,8 @@ public interface H2HConstants {
 	public static final String USER_LOCATIONS = "USER_LOCATIONS";
 	public static final String USER_PUBLIC_KEY = "USER_PUBLIC_KEY";
 	public static final String FILE_CHUNK = "FILE_CHUNK";
+	// DHT domain at the location of a deduplicated chunk, holding one content per referencing file
+	public static final String FILE_CHUNK_REFERENCE_DOMAIN = "FILE_CHUNK_REFERENCE";
 	public static final String META_FILE = "META_FILE";
 
 	// number of allowed tries to retry a put
@@ -66,6 +93,8 @@ public interface H2HConstants {
 	// maximum wait time until any network operation should be answered by the other peer (for each retry).
 	// This just serves as a fallback against infinite blocking when all other mechanisms fail.
 	public static final int AWAIT_NETWORK_OPERATION_MS = 60000;
+	// maximum number of pipelined network operations in flight when operating on many keys at once
+	public static final int DHT_BATCH_WINDOW = 32;
 	// maximum delay to wait until peers have time to answer until they get removed from the locations
 	public static final int CONTACT_PEERS_AWAIT_MS = 10000;
 	// Slow peers need to have more time since they may be dependent on buffered relaying
@@ -102,6 +131,16 @@ public interface H2HConstants {
 	// key length for symmetric part of hybrid encryption
 	public static final AES_KEYLENGTH KEYLENGTH_HYBRID_AES = AES_KEYLENGTH.BIT_256;
 
+	// key length for the symmetric chunk encryption (AES-GCM). This length is allowed by the default JCE policy
+	public static final AES_KEYLENGTH KEYLENGTH_CHUNK_AES = AES_KEYLENGTH.BIT_128;
+
+	// the pool of pre-generated RSA key pairs is refilled when it holds less than the low watermark...
+	public static final int KEY_PAIR_POOL_LOW_WATERMARK = 2;
+	// ...up to the high watermark (per key length)
+	public static final int KEY_PAIR_POOL_HIGH_WATERMARK = 8;
+	// number of background threads generating key pairs
+	public static final int KEY_PAIR_POOL_THREADS = 1;
+
 	/**
 	 * Replication
 	 */
@@ -130,8 +169,23 @@ public interface H2HConstants {
 	 */
 	// the number of concurrent downloads
 	public static final int CONCURRENT_DOWNLOADS = 25;
-	// the interval where a download fetches the locations of all users that possibly could have the file
+	// the time the locations of a user are cached for the direct downloads (refreshed ahead while in use)
 	public static final int DOWNLOAD_LOCATIONS_INTERVAL_S = 120;
 	// the maximum count the download of a chunk is retried
 	public static final int MAX_RETRIES_DOWNLOAD_SAME_CHUNK = 10;
+	// the number of outstanding chunk requests per peer of a direct download
+	public static final int DIRECT_DOWNLOAD_REQUESTS_PER_PEER = 4;
+	// the maximum number of consecutive chunks requested with a single message
+	public static final int DIRECT_DOWNLOAD_MAX_RANGE = 8;
+	// a hedged chunk request is repeated at the other source when it takes longer than this percentile of the
+	// previous requests
+	public static final double DOWNLOAD_HEDGE_PERCENTILE = 0.9;
+	// the delay before hedging as long as too few requests have been measured
+	public static final long DOWNLOAD_HEDGE_DEFAULT_DELAY_MS = 2000;
+	// the number of files that are kept open to serve chunks to other clients
+	public static final int CHUNK_READER_CACHE_SIZE = 16;
+	// suffix of files that are currently being downloaded (they're renamed when the download is complete)
+	public static final String PARTIAL_FILE_SUFFIX = ".h2hpartial";
+	// how often the state of the open downloads is persisted to resume them after a restart or crash
+	public static final long DOWNLOAD_JOURNAL_INTERVAL_MS = 10000;
 }
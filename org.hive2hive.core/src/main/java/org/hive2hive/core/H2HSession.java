@@ -3,6 +3,7 @@ package org.hive2hive.core;
 import java.io.File;
 import java.security.KeyPair;
 
+import org.hive2hive.core.file.FileChunkReaderCache;
 import org.hive2hive.core.file.IFileAgent;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.network.data.UserProfileManager;
@@ -18,6 +19,7 @@ public class H2HSession {
 	private final PublicKeyManager keyManager;
 	private final DownloadManager downloadManager;
 	private final IFileAgent fileAgent;
+	private final FileChunkReaderCache chunkReaders;
 
 	public H2HSession(SessionParameters params) {
 		this.profileManager = params.getProfileManager();
@@ -25,6 +27,7 @@ public class H2HSession {
 		this.keyManager = params.getKeyManager();
 		this.downloadManager = params.getDownloadManager();
 		this.fileAgent = params.getFileAgent();
+		this.chunkReaders = new FileChunkReaderCache(H2HConstants.CHUNK_READER_CACHE_SIZE);
 	}
 
 	public UserProfileManager getProfileManager() {
@@ -79,4 +82,13 @@ public class H2HSession {
 	public IFileAgent getFileAgent() {
 		return fileAgent;
 	}
+
+	/**
+	 * Returns the cache of open files used to serve chunks to other clients
+	 * 
+	 * @return the chunk reader cache
+	 */
+	public FileChunkReaderCache getChunkReaders() {
+		return chunkReaders;
+	}
 }
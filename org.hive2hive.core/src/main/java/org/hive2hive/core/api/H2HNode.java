@@ -1,5 +1,8 @@
 package org.hive2hive.core.api;
 
+import java.io.File;
+import java.io.IOException;
+
 import net.tomp2p.dht.PeerDHT;
 
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
@@ -8,6 +11,7 @@ import org.hive2hive.core.api.interfaces.IH2HNode;
 import org.hive2hive.core.api.interfaces.INetworkConfiguration;
 import org.hive2hive.core.api.interfaces.IUserManager;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.cache.ContentCache;
 import org.hive2hive.core.security.H2HDefaultEncryption;
 import org.hive2hive.core.security.IH2HEncryption;
 import org.hive2hive.core.serializer.FSTSerializer;
@@ -109,4 +113,11 @@ public class H2HNode implements IH2HNode {
 	public PeerDHT getPeer() {
 		return networkManager.getConnection().getPeer();
 	}
+
+	@Override
+	public ContentCache enableContentCache(File directory, long maxSize) throws IOException {
+		ContentCache cache = new ContentCache(directory, maxSize);
+		networkManager.getDataManager().setContentCache(cache);
+		return cache;
+	}
 }
@@ -4,10 +4,15 @@ import java.math.BigInteger;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.security.HashAlgorithm;
 
 /**
- * A file configuration such that the peers know how to handle file uploads, chunking and cleanups. This
- * configuration must be constant for all peers in the DHT.
+ * A file configuration such that the peers know how to handle file uploads, chunking and cleanups. The
+ * limits, the chunk size, the hash algorithm and the chunking mode must be constant for all peers in the DHT.
+ * The hashing parallelism, the chunk upload window and the download mode only tune the local peer and may
+ * differ among the peers.
  * 
  * @author Nico
  * 
@@ -18,17 +23,34 @@ public class FileConfiguration implements IFileConfiguration {
 	private final int maxNumOfVersions;
 	private final BigInteger maxSizeOfAllVersions;
 	private final int chunkSize;
+	private final int hashingParallelism;
+	private final int chunkUploadWindow;
+	private final HashAlgorithm hashAlgorithm;
+	private final ChunkingMode chunkingMode;
+	private final DownloadMode downloadMode;
 
-	private FileConfiguration(BigInteger maxFileSize, int maxNumOfVersions, BigInteger maxSizeAllVersions, int chunkSize) {
+	private FileConfiguration(BigInteger maxFileSize, int maxNumOfVersions, BigInteger maxSizeAllVersions,
+			int chunkSize, int hashingParallelism, int chunkUploadWindow, HashAlgorithm hashAlgorithm,
+			ChunkingMode chunkingMode, DownloadMode downloadMode) {
 		assert maxFileSize.signum() == 1;
 		assert maxNumOfVersions > 0;
 		assert maxSizeAllVersions.signum() == 1;
 		assert chunkSize > 0;
+		assert hashingParallelism > 0;
+		assert chunkUploadWindow > 0;
+		assert hashAlgorithm != null;
+		assert chunkingMode != null;
+		assert downloadMode != null;
 
 		this.maxFileSize = maxFileSize;
 		this.maxNumOfVersions = maxNumOfVersions;
 		this.maxSizeOfAllVersions = maxSizeAllVersions;
 		this.chunkSize = chunkSize;
+		this.hashingParallelism = hashingParallelism;
+		this.chunkUploadWindow = chunkUploadWindow;
+		this.hashAlgorithm = hashAlgorithm;
+		this.chunkingMode = chunkingMode;
+		this.downloadMode = downloadMode;
 	}
 
 	/**
@@ -38,7 +60,10 @@ public class FileConfiguration implements IFileConfiguration {
 	 */
 	public static IFileConfiguration createDefault() {
 		return new FileConfiguration(H2HConstants.DEFAULT_MAX_FILE_SIZE, H2HConstants.DEFAULT_MAX_NUM_OF_VERSIONS,
-				H2HConstants.DEFAULT_MAX_SIZE_OF_ALL_VERSIONS, H2HConstants.DEFAULT_CHUNK_SIZE);
+				H2HConstants.DEFAULT_MAX_SIZE_OF_ALL_VERSIONS, H2HConstants.DEFAULT_CHUNK_SIZE,
+				H2HConstants.DEFAULT_HASHING_PARALLELISM, H2HConstants.DEFAULT_CHUNK_UPLOAD_WINDOW,
+				H2HConstants.DEFAULT_HASH_ALGORITHM, H2HConstants.DEFAULT_CHUNKING_MODE,
+				H2HConstants.DEFAULT_DOWNLOAD_MODE);
 	}
 
 	/**
@@ -51,7 +76,30 @@ public class FileConfiguration implements IFileConfiguration {
 	 */
 	public static IFileConfiguration createCustom(BigInteger maxFileSize, int maxNumOfVersions,
 			BigInteger maxSizeAllVersions, int chunkSize) {
-		return new FileConfiguration(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize);
+		return createCustom(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize,
+				H2HConstants.DEFAULT_HASHING_PARALLELISM, H2HConstants.DEFAULT_CHUNK_UPLOAD_WINDOW,
+				H2HConstants.DEFAULT_HASH_ALGORITHM, H2HConstants.DEFAULT_CHUNKING_MODE,
+				H2HConstants.DEFAULT_DOWNLOAD_MODE);
+	}
+
+	/**
+	 * Create a file configuration with the given parameters
+	 * 
+	 * @param maxFileSize the maximum file size (in bytes)
+	 * @param maxNumOfVersions the allowed number of versions
+	 * @param maxSizeAllVersions the maximum file size when summing up all versions (in bytes)
+	 * @param chunkSize the size of a chunk (in bytes), the maximum size for content-defined chunks
+	 * @param hashingParallelism the maximum number of threads hashing the chunks of a file
+	 * @param chunkUploadWindow the maximum number of chunks of a file that are uploaded at the same time
+	 * @param hashAlgorithm the algorithm to hash the file content
+	 * @param chunkingMode how the files are split into chunks
+	 * @param downloadMode where the chunks of files in the DHT are downloaded from
+	 */
+	public static IFileConfiguration createCustom(BigInteger maxFileSize, int maxNumOfVersions,
+			BigInteger maxSizeAllVersions, int chunkSize, int hashingParallelism, int chunkUploadWindow,
+			HashAlgorithm hashAlgorithm, ChunkingMode chunkingMode, DownloadMode downloadMode) {
+		return new FileConfiguration(maxFileSize, maxNumOfVersions, maxSizeAllVersions, chunkSize, hashingParallelism,
+				chunkUploadWindow, hashAlgorithm, chunkingMode, downloadMode);
 	}
 
 	@Override
@@ -73,4 +121,29 @@ public class FileConfiguration implements IFileConfiguration {
 	public int getChunkSize() {
 		return chunkSize;
 	}
+
+	@Override
+	public int getHashingParallelism() {
+		return hashingParallelism;
+	}
+
+	@Override
+	public int getChunkUploadWindow() {
+		return chunkUploadWindow;
+	}
+
+	@Override
+	public HashAlgorithm getHashAlgorithm() {
+		return hashAlgorithm;
+	}
+
+	@Override
+	public ChunkingMode getChunkingMode() {
+		return chunkingMode;
+	}
+
+	@Override
+	public DownloadMode getDownloadMode() {
+		return downloadMode;
+	}
 }
@@ -2,6 +2,10 @@ package org.hive2hive.core.api.interfaces;
 
 import java.math.BigInteger;
 
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.security.HashAlgorithm;
+
 /**
  * The file configuration is essential for the performance of the system. Depending on the application, the
  * developer can adapt the parameters. Hive2Hive automatically changes its behavior for example while cleaning
@@ -53,4 +57,51 @@ public interface IFileConfiguration {
 	 */
 	int getChunkSize();
 
+	/**
+	 * The chunks of large files are hashed before the upload. This is expensive for very large files, thus
+	 * the chunks are hashed concurrently. This parameter limits the number of threads used for hashing a
+	 * single file. Set it to 1 to hash all chunks in the calling thread.
+	 * 
+	 * @return the maximum number of threads that hash the chunks of a file
+	 */
+	int getHashingParallelism();
+
+	/**
+	 * The chunks of a file are encrypted and put concurrently. This parameter limits the number of chunks
+	 * that are in flight at the same time. A larger window increases the upload throughput, but more chunks
+	 * are held in memory. Set it to 1 to upload one chunk after another.
+	 * 
+	 * @return the maximum number of chunks of a file that are uploaded at the same time
+	 */
+	int getChunkUploadWindow();
+
+	/**
+	 * The content of every file is hashed to detect modifications. The hash is stored in the user profile
+	 * together with its algorithm, thus peers with a different configuration can still compare it. MD5 is
+	 * compatible with older versions, a non-cryptographic algorithm is the fastest.<br>
+	 * Note that the hashes of the chunks (verified when downloading from other peers) are always MD5.
+	 * 
+	 * @return the algorithm to hash the file content
+	 */
+	HashAlgorithm getHashAlgorithm();
+
+	/**
+	 * Files stored in the DHT are split either into chunks of fixed size or into content-defined chunks. The
+	 * latter re-uses unchanged chunks of the previous versions when uploading a new version. The mode is
+	 * recorded in the meta data of every chunk, thus peers with a different configuration can still download
+	 * all versions.
+	 * 
+	 * @return the mode to split the files into chunks
+	 */
+	ChunkingMode getChunkingMode();
+
+	/**
+	 * The chunks of files stored in the DHT are downloaded from the DHT. In a hybrid mode, chunks can come
+	 * from the other clients of the users having access to the file as well, optionally hedging slow
+	 * requests. This parameter is local to the peer.
+	 * 
+	 * @return where the chunks are downloaded from
+	 */
+	DownloadMode getDownloadMode();
+
 }
@@ -1,8 +1,13 @@
 package org.hive2hive.core.api.interfaces;
 
+import java.io.File;
+import java.io.IOException;
+
 import net.tomp2p.dht.PeerDHT;
 import net.tomp2p.rpc.ObjectDataReply;
 
+import org.hive2hive.core.network.data.cache.ContentCache;
+
 /**
  * This interface represents the entry point of Hive2Hive and exposes the managers necessary for interaction.
  * 
@@ -86,4 +91,17 @@ public interface IH2HNode {
 	 *         returns null.
 	 */
 	PeerDHT getPeer();
+
+	/**
+	 * Enables a persistent cache of downloaded file chunks and meta files on the local disk. Repeated
+	 * downloads of the same content (e.g. restoring a version or retrying a download) are then served from the
+	 * cache instead of the network. The content is cached encrypted.
+	 * 
+	 * @param directory the directory to store the cache in. It must not lie within the root directory of a
+	 *            user.
+	 * @param maxSize the maximum size of the cache (in bytes). The least recently used entries are evicted.
+	 * @return the cache, which provides hit, miss and eviction metrics
+	 * @throws IOException if the cache directory cannot be created
+	 */
+	ContentCache enableContentCache(File directory, long maxSize) throws IOException;
 }
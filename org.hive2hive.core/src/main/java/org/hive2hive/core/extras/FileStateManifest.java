@@ -0,0 +1,303 @@
+package org.hive2hive.core.extras;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.file.FileChunkWriter;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.file.IFileAgent;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent state of all files below the root directory (size, modification time, file key and content
+ * hash). When scanning the root again, only files whose meta data changed are hashed, all others re-use the
+ * stored hash. Thus, the maps for the {@link FileSynchronizer} can be created without reading every file at
+ * each login:
+ *
+ * <pre>
+ * FileStateManifest before = FileStateManifest.read(fileAgent, serializer);
+ * FileStateManifest now = before.scan(root, algorithm, parallelism);
+ * FileSynchronizer synchronizer = new FileSynchronizer(root, userProfile, before, now);
+ * // ... synchronize and scan again before writing it at the logout
+ * now.write(fileAgent, serializer);
+ * </pre>
+ */
+@Extra
+public class FileStateManifest implements Serializable {
+
+	private static final long serialVersionUID = -2630137419425497232L;
+	private static final Logger logger = LoggerFactory.getLogger(FileStateManifest.class);
+
+	// files modified within this time before the scan may be modified again without changing the timestamp
+	private static final long TIMESTAMP_GRANULARITY_MS = 2000;
+
+	private final HashAlgorithm hashAlgorithm;
+	private final long scanTime;
+	// Map<file-path, file-state>
+	private final Map<String, FileState> states;
+
+	// statistics of the scan that created this manifest
+	private transient int hashedCount;
+	private transient int reusedCount;
+
+	/**
+	 * Creates an empty manifest, scanning it hashes all files
+	 *
+	 * @param hashAlgorithm the algorithm to hash the file content
+	 */
+	public FileStateManifest(HashAlgorithm hashAlgorithm) {
+		this(hashAlgorithm, 0, new HashMap<String, FileState>(0));
+	}
+
+	private FileStateManifest(HashAlgorithm hashAlgorithm, long scanTime, Map<String, FileState> states) {
+		this.hashAlgorithm = hashAlgorithm;
+		this.scanTime = scanTime;
+		this.states = states;
+	}
+
+	/**
+	 * Reads the manifest from the cache of the file agent
+	 *
+	 * @return the manifest of the last scan or an empty manifest if none has been written yet (never null)
+	 */
+	public static FileStateManifest read(IFileAgent fileAgent, IH2HSerialize serializer) {
+		try {
+			byte[] content = fileAgent.readCache(H2HConstants.FILE_STATE_MANIFEST_NAME);
+			if (content == null || content.length == 0) {
+				logger.warn("Not found the file state manifest. Create new one");
+				return new FileStateManifest(HashUtil.DEFAULT_ALGORITHM);
+			}
+			return (FileStateManifest) serializer.deserialize(content);
+		} catch (IOException | ClassNotFoundException e) {
+			logger.error("Cannot deserialize the file state manifest. Reason: {}", e.getMessage());
+			return new FileStateManifest(HashUtil.DEFAULT_ALGORITHM);
+		}
+	}
+
+	/**
+	 * Writes the manifest to the cache of the file agent
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public void write(IFileAgent fileAgent, IH2HSerialize serializer) throws IOException {
+		fileAgent.writeCache(H2HConstants.FILE_STATE_MANIFEST_NAME, serializer.serialize(this));
+	}
+
+	/**
+	 * Walks the root directory in parallel and creates a new manifest. A file is only hashed if it is not
+	 * in this manifest or if its size, modification time or file key (inode) changed. Files modified just
+	 * before the last scan are always hashed because their timestamp cannot be trusted.
+	 *
+	 * @param root the root folder
+	 * @param hashAlgorithm the algorithm to hash the file content. If it differs from the algorithm of this
+	 *            manifest, all files are hashed.
+	 * @param parallelism the number of threads walking and hashing
+	 * @return the manifest of the current state
+	 * @throws IOException if reading the attributes or hashing fails
+	 */
+	public FileStateManifest scan(File root, HashAlgorithm hashAlgorithm, int parallelism) throws IOException {
+		long start = System.currentTimeMillis();
+		Map<String, FileState> previous = hashAlgorithm == this.hashAlgorithm ? states : Collections
+				.<String, FileState> emptyMap();
+		ScanContext context = new ScanContext(root, hashAlgorithm, previous, scanTime - TIMESTAMP_GRANULARITY_MS);
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new DirectoryScan(context, root));
+		} finally {
+			pool.shutdown();
+		}
+
+		if (context.error.get() != null) {
+			throw context.error.get();
+		}
+
+		FileStateManifest manifest = new FileStateManifest(hashAlgorithm, start, new HashMap<String, FileState>(
+				context.states));
+		manifest.hashedCount = context.hashed.get();
+		manifest.reusedCount = context.reused.get();
+		logger.debug("Scanned {} files/folders in {} ms, {} hashed and {} re-used.", manifest.states.size(),
+				System.currentTimeMillis() - start, manifest.hashedCount, manifest.reusedCount);
+		return manifest;
+	}
+
+	/**
+	 * @return a map where the key is the relative file path to the root and the value is the hash. It equals
+	 *         the result of {@link FileSynchronizer#visitFiles(File, HashAlgorithm)}.
+	 */
+	public Map<String, byte[]> getHashes() {
+		Map<String, byte[]> hashes = new HashMap<String, byte[]>(states.size());
+		for (Map.Entry<String, FileState> entry : states.entrySet()) {
+			hashes.put(entry.getKey(), entry.getValue().getHash());
+		}
+		return hashes;
+	}
+
+	public FileState getState(String path) {
+		return states.get(path);
+	}
+
+	public HashAlgorithm getHashAlgorithm() {
+		return hashAlgorithm;
+	}
+
+	/**
+	 * @return the number of files that have been hashed when creating this manifest
+	 */
+	public int getHashedCount() {
+		return hashedCount;
+	}
+
+	/**
+	 * @return the number of files whose hash has been re-used when creating this manifest
+	 */
+	public int getReusedCount() {
+		return reusedCount;
+	}
+
+	/**
+	 * The state of a single file or folder at the time of the scan
+	 */
+	public static class FileState implements Serializable {
+
+		private static final long serialVersionUID = 5021381367733154791L;
+
+		private final long size;
+		private final long lastModified;
+		private final String fileKey;
+		private final byte[] hash;
+
+		public FileState(long size, long lastModified, String fileKey, byte[] hash) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+			this.hash = hash;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * @return the identifier of the file on the file system (e.g. the inode) or <code>null</code> if the
+		 *         file system does not provide it
+		 */
+		public String getFileKey() {
+			return fileKey;
+		}
+
+		public byte[] getHash() {
+			return hash;
+		}
+
+		private boolean hasSameAttributes(FileState other) {
+			return size == other.size && lastModified == other.lastModified
+					&& (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey));
+		}
+	}
+
+	/**
+	 * Shared by all tasks of a scan
+	 */
+	private static class ScanContext {
+
+		private final File root;
+		private final HashAlgorithm hashAlgorithm;
+		private final Map<String, FileState> previous;
+		private final long trustedUntil;
+
+		private final Map<String, FileState> states = new ConcurrentHashMap<String, FileState>();
+		private final AtomicInteger hashed = new AtomicInteger();
+		private final AtomicInteger reused = new AtomicInteger();
+		private final AtomicReference<IOException> error = new AtomicReference<IOException>();
+
+		public ScanContext(File root, HashAlgorithm hashAlgorithm, Map<String, FileState> previous, long trustedUntil) {
+			this.root = root;
+			this.hashAlgorithm = hashAlgorithm;
+			this.previous = previous;
+			this.trustedUntil = trustedUntil;
+		}
+	}
+
+	/**
+	 * Visits all children of a directory. Files are processed directly, sub-directories are forked.
+	 */
+	private static class DirectoryScan extends RecursiveAction {
+
+		private static final long serialVersionUID = 3409224106826394561L;
+
+		private final ScanContext context;
+		private final File directory;
+
+		public DirectoryScan(ScanContext context, File directory) {
+			this.context = context;
+			this.directory = directory;
+		}
+
+		@Override
+		protected void compute() {
+			File[] children = directory.listFiles();
+			if (children == null || context.error.get() != null) {
+				return;
+			}
+
+			List<DirectoryScan> subDirectories = new ArrayList<DirectoryScan>();
+			for (File child : children) {
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(child.toPath(), BasicFileAttributes.class);
+					String path = FileUtil.relativize(context.root, child).toString();
+					if (attributes.isDirectory()) {
+						// same hash as when visiting the folder
+						context.states.put(path + FileUtil.getFileSep(), new FileState(0, 0, null, new byte[0]));
+						subDirectories.add(new DirectoryScan(context, child));
+					} else if (!FileChunkWriter.isPartialFile(child)) {
+						// incomplete downloads are skipped, they appear as their destination when finished
+						context.states.put(path, createState(child, path, attributes));
+					}
+				} catch (IOException e) {
+					context.error.compareAndSet(null, e);
+					return;
+				}
+			}
+
+			invokeAll(subDirectories);
+		}
+
+		private FileState createState(File file, String path, BasicFileAttributes attributes) throws IOException {
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			String fileKey = attributes.fileKey() == null ? null : attributes.fileKey().toString();
+			FileState state = new FileState(attributes.size(), lastModified, fileKey, null);
+
+			FileState previous = context.previous.get(path);
+			if (previous != null && previous.hasSameAttributes(state) && lastModified < context.trustedUntil) {
+				context.reused.incrementAndGet();
+				return new FileState(state.size, lastModified, fileKey, previous.hash);
+			}
+
+			context.hashed.incrementAndGet();
+			return new FileState(state.size, lastModified, fileKey, HashUtil.hash(file, context.hashAlgorithm));
+		}
+	}
+}
@@ -12,11 +12,13 @@ import java.util.Map;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.hive2hive.core.file.FileChunkWriter;
 import org.hive2hive.core.file.FileUtil;
 import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.FolderIndex;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.core.security.HashUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +38,7 @@ public class FileSynchronizer {
 	private final File root;
 	private final UserProfile userProfile;
 	private final FolderIndex profileRootNode;
+	private final HashAlgorithm hashAlgorithm;
 
 	// Map<file-path, file-hash>
 	private final Map<String, byte[]> before;
@@ -52,10 +55,41 @@ public class FileSynchronizer {
 	 *            map.
 	 */
 	public FileSynchronizer(File rootDirectory, UserProfile userProfile, Map<String, byte[]> before, Map<String, byte[]> now) {
+		this(rootDirectory, userProfile, before, now, HashUtil.DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Uses the hashes of two manifests, thus the files do not need to be hashed again.
+	 * 
+	 * @param rootDirectory the root Hive2Hive directory
+	 * @param userProfile the current user profile
+	 * @param before the manifest written at the last logout
+	 * @param now the manifest of the current state, e.g. created by
+	 *            {@link FileStateManifest#scan(File, HashAlgorithm, int)} of the <code>before</code> manifest
+	 */
+	public FileSynchronizer(File rootDirectory, UserProfile userProfile, FileStateManifest before,
+			FileStateManifest now) {
+		this(rootDirectory, userProfile, before.getHashAlgorithm() == now.getHashAlgorithm() ? before.getHashes()
+				: new HashMap<String, byte[]>(0), now.getHashes(), now.getHashAlgorithm());
+	}
+
+	/**
+	 * @param rootDirectory the root Hive2Hive directory
+	 * @param userProfile the current user profile
+	 * @param before represents the file state at the last logout, hashed with the given algorithm
+	 * @param now represents the current file state, hashed with the given algorithm.
+	 *            {@link FileSynchronizer#visitFiles(File, HashAlgorithm)} can be used to generate both maps.
+	 * @param hashAlgorithm the algorithm the hashes in the maps were created with. Files in the user profile
+	 *            that have been hashed with another algorithm are never considered as equal nor as different
+	 *            to the local state, thus they are neither deleted nor overwritten.
+	 */
+	public FileSynchronizer(File rootDirectory, UserProfile userProfile, Map<String, byte[]> before,
+			Map<String, byte[]> now, HashAlgorithm hashAlgorithm) {
 		this.root = rootDirectory;
 		this.userProfile = userProfile;
 		this.before = before;
 		this.now = now;
+		this.hashAlgorithm = hashAlgorithm;
 		this.profileRootNode = userProfile.getRoot();
 	}
 
@@ -81,7 +115,7 @@ public class FileSynchronizer {
 					} else {
 						// check the MD5 value to not delete a modified file
 						FileIndex fileNode = (FileIndex) node;
-						if (HashUtil.compare(fileNode.getMD5(), before.get(path))) {
+						if (isSame(fileNode, before.get(path))) {
 							// file has not been modified remotely, delete it
 							logger.debug("File '{}' has been deleted locally during absence.", path);
 							deletedLocally.add(node);
@@ -205,7 +239,7 @@ public class FileSynchronizer {
 
 			// has been modified --> check if profile has same md5 as 'before'. If not, there are three
 			// different versions. Thus, the profile wins.
-			if (HashUtil.compare(fileNode.getMD5(), before.get(path)) && !HashUtil.compare(fileNode.getMD5(), now.get(path))) {
+			if (isSame(fileNode, before.get(path)) && isDifferent(fileNode, now.get(path))) {
 				logger.debug("File '{}' has been updated locally during absence.", path);
 				updatedLocally.add(file);
 			}
@@ -235,8 +269,7 @@ public class FileSynchronizer {
 			FileIndex fileIndex = (FileIndex) index;
 			String path = fileIndex.getFullPath();
 			if (before.containsKey(path) && now.containsKey(path)) {
-				if (!HashUtil.compare(fileIndex.getMD5(), now.get(path))
-						&& !HashUtil.compare(fileIndex.getMD5(), before.get(path))) {
+				if (isDifferent(fileIndex, now.get(path)) && isDifferent(fileIndex, before.get(path))) {
 					// different md5 hashes than 'before' and 'now'
 					logger.debug("File '{}' has been updated remotely during absence.", path);
 					updatedRemotely.add(fileIndex);
@@ -248,6 +281,20 @@ public class FileSynchronizer {
 		return updatedRemotely;
 	}
 
+	/**
+	 * @return <code>true</code> if the index has been hashed with the same algorithm and the hashes match
+	 */
+	private boolean isSame(FileIndex fileIndex, byte[] hash) {
+		return fileIndex.getHashAlgorithm() == hashAlgorithm && HashUtil.compare(fileIndex.getMD5(), hash);
+	}
+
+	/**
+	 * @return <code>true</code> if the index has been hashed with the same algorithm and the hashes differ
+	 */
+	private boolean isDifferent(FileIndex fileIndex, byte[] hash) {
+		return fileIndex.getHashAlgorithm() == hashAlgorithm && !HashUtil.compare(fileIndex.getMD5(), hash);
+	}
+
 	/**
 	 * Sorts a list of {@link FolderIndex} in pre-order style
 	 * 
@@ -286,6 +333,19 @@ public class FileSynchronizer {
 	 * @throws IOException if hashing fails
 	 */
 	public static Map<String, byte[]> visitFiles(File root) throws IOException {
+		return visitFiles(root, HashUtil.DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Visit all files recursively and calculate the hash of the file with the given algorithm. Folders are
+	 * also added to the result.
+	 * 
+	 * @param root the root folder
+	 * @param hashAlgorithm the algorithm to hash the file content
+	 * @return a map where the key is the relative file path to the root and the value is the hash
+	 * @throws IOException if hashing fails
+	 */
+	public static Map<String, byte[]> visitFiles(File root, HashAlgorithm hashAlgorithm) throws IOException {
 		Map<String, byte[]> digest = new HashMap<String, byte[]>();
 		Iterator<File> files = FileUtils.iterateFilesAndDirs(root, TrueFileFilter.TRUE, TrueFileFilter.TRUE);
 		while (files.hasNext()) {
@@ -293,9 +353,12 @@ public class FileSynchronizer {
 			if (file.equals(root)) {
 				// skip root folder
 				continue;
+			} else if (!file.isDirectory() && FileChunkWriter.isPartialFile(file)) {
+				// incomplete download, appears as its destination when finished
+				continue;
 			}
 			String path = FileUtil.relativize(root, file).toString();
-			byte[] hash = HashUtil.hash(file);
+			byte[] hash = HashUtil.hash(file, hashAlgorithm);
 			if (file.isDirectory()) {
 				digest.put(path + FileUtil.getFileSep(), hash);
 			} else {
@@ -0,0 +1,35 @@
+package org.hive2hive.core.file;
+
+/**
+ * How a file is split into chunks.
+ */
+public enum ChunkingMode {
+
+	/**
+	 * All chunks have the configured chunk size (except the last one). Inserting or removing data shifts all
+	 * subsequent chunks, thus a new version uploads the whole file again.
+	 */
+	FIXED,
+
+	/**
+	 * The chunk boundaries are determined by the content (see {@link ContentDefinedChunker}), the configured
+	 * chunk size is the maximum size. A local modification changes only few chunks, the others are re-used
+	 * from the previous versions when uploading a new version. Applies to files stored in the DHT only.
+	 */
+	CONTENT_DEFINED,
+
+	/**
+	 * Content-defined chunks which are shared among all files and versions within the same protection scope
+	 * (the own files or a shared folder). The chunks are identified and encrypted by their keyed content
+	 * hash, a chunk that exists already is only referenced. A chunk is removed when its last reference
+	 * disappears. Applies to files stored in the DHT only.
+	 */
+	DEDUPLICATED;
+
+	/**
+	 * @return <code>true</code> if the boundaries of the chunks depend on the content
+	 */
+	public boolean isContentDefined() {
+		return this != FIXED;
+	}
+}
@@ -0,0 +1,182 @@
+package org.hive2hive.core.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hive2hive.core.security.HashAlgorithm;
+
+/**
+ * Splits a file into chunks whose boundaries depend on the content only (like FastCDC). A rolling gear hash
+ * is calculated over the bytes and a chunk ends where the hash matches a mask. Thus, inserting or removing
+ * data changes only the chunks around the modification, the boundaries of all other chunks stay the same.<br>
+ * Chunks are never smaller than the minimum size (except the last one) and never larger than the maximum
+ * size. Below the average size a stricter mask is used than above (normalized chunking), which narrows the
+ * distribution of the chunk sizes.<br>
+ * The gear table is derived from a fixed seed, all clients must find the same boundaries to re-use chunks.
+ */
+public class ContentDefinedChunker {
+
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+	private static final long[] GEAR = createGearTable(0x4869766532486976L);
+
+	private final int minSize;
+	private final int averageSize;
+	private final int maxSize;
+	private final long maskSmall;
+	private final long maskLarge;
+
+	/**
+	 * Creates a chunker with an average chunk size of a quarter and a minimum size of a sixteenth of the
+	 * maximum size.
+	 *
+	 * @param maxSize the maximum size of a chunk (usually the configured chunk size)
+	 */
+	public ContentDefinedChunker(int maxSize) {
+		this(Math.max(1, maxSize / 16), Math.max(1, maxSize / 4), maxSize);
+	}
+
+	/**
+	 * @param minSize the minimum size of a chunk
+	 * @param averageSize the expected size of a chunk, rounded down to a power of two
+	 * @param maxSize the maximum size of a chunk
+	 */
+	public ContentDefinedChunker(int minSize, int averageSize, int maxSize) {
+		if (minSize <= 0 || minSize > averageSize || averageSize > maxSize) {
+			throw new IllegalArgumentException("Requires 0 < min <= average <= max chunk size");
+		}
+
+		this.minSize = minSize;
+		this.averageSize = averageSize;
+		this.maxSize = maxSize;
+
+		// the highest bits depend on the last 64 bytes
+		int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+		this.maskSmall = createMask(Math.min(63, bits + 2));
+		this.maskLarge = createMask(Math.max(1, bits - 2));
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getAverageSize() {
+		return averageSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Reads the whole file once and splits it into chunks. The content of every chunk is hashed on the fly.
+	 *
+	 * @param reader the opened file
+	 * @return the chunks in the order of the file. An empty file results in a single empty chunk.
+	 * @throws IOException if the file cannot be read
+	 */
+	public List<ChunkRange> split(FileChunkReader reader) throws IOException {
+		List<ChunkRange> chunks = new ArrayList<ChunkRange>();
+		MessageDigest digest;
+		try {
+			digest = HashAlgorithm.SHA_256.createDigest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Cannot hash the chunks.", e);
+		}
+
+		long fileSize = reader.getFileSize();
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(READ_BUFFER_SIZE, Math.max(1, fileSize)));
+		byte[] data = buffer.array();
+
+		long chunkStart = 0;
+		int length = 0;
+		long fingerprint = 0;
+		long position = 0;
+		while (position < fileSize) {
+			int read = reader.read(position, (int) Math.min(data.length, fileSize - position), buffer);
+			int sliceStart = 0;
+			for (int i = 0; i < read; i++) {
+				length++;
+				boolean boundary = length >= maxSize;
+				if (!boundary && length > minSize) {
+					fingerprint = (fingerprint << 1) + GEAR[data[i] & 0xff];
+					boundary = (fingerprint & (length < averageSize ? maskSmall : maskLarge)) == 0;
+				}
+
+				if (boundary) {
+					digest.update(data, sliceStart, i + 1 - sliceStart);
+					chunks.add(new ChunkRange(chunkStart, length, digest.digest()));
+					chunkStart += length;
+					sliceStart = i + 1;
+					length = 0;
+					fingerprint = 0;
+				}
+			}
+			digest.update(data, sliceStart, read - sliceStart);
+			position += read;
+		}
+
+		if (length > 0 || chunks.isEmpty()) {
+			// the rest of the file or the empty file
+			chunks.add(new ChunkRange(chunkStart, length, digest.digest()));
+		}
+		return chunks;
+	}
+
+	private static long createMask(int bits) {
+		return -1L << (64 - bits);
+	}
+
+	/**
+	 * Derives the table with SplitMix64, which is deterministic on all platforms
+	 */
+	private static long[] createGearTable(long seed) {
+		long[] table = new long[256];
+		long state = seed;
+		for (int i = 0; i < table.length; i++) {
+			state += 0x9E3779B97F4A7C15L;
+			long z = state;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			table[i] = z ^ (z >>> 31);
+		}
+		return table;
+	}
+
+	/**
+	 * A chunk found by the {@link ContentDefinedChunker}
+	 */
+	public static class ChunkRange {
+
+		private final long offset;
+		private final int length;
+		private final byte[] hash;
+
+		public ChunkRange(long offset, int length, byte[] hash) {
+			this.offset = offset;
+			this.length = length;
+			this.hash = hash;
+		}
+
+		/**
+		 * @return the position of the chunk in the file
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * @return the SHA-256 hash of the chunk content
+		 */
+		public byte[] getHash() {
+			return hash;
+		}
+	}
+}
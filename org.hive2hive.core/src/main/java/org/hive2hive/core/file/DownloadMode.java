@@ -0,0 +1,34 @@
+package org.hive2hive.core.file;
+
+/**
+ * Where the chunks of a file stored in the DHT are downloaded from. Large files are always downloaded from
+ * the other clients.
+ */
+public enum DownloadMode {
+
+	/**
+	 * All chunks are downloaded from the DHT.
+	 */
+	DHT,
+
+	/**
+	 * The chunks are downloaded from the DHT. Content-defined chunks that cannot be downloaded from the DHT
+	 * are requested from the clients of the users having access to the file.
+	 */
+	HYBRID,
+
+	/**
+	 * Like {@link #HYBRID}, and a chunk request that takes longer than most others (see
+	 * {@link org.hive2hive.core.H2HConstants#DOWNLOAD_HEDGE_PERCENTILE}) is hedged by requesting the chunk
+	 * from the other source as well. The first verified response wins. Lowers the latency of downloads at
+	 * the cost of additional requests.
+	 */
+	HEDGED;
+
+	/**
+	 * @return <code>true</code> if chunks may be requested from other clients
+	 */
+	public boolean isHybrid() {
+		return this != DHT;
+	}
+}
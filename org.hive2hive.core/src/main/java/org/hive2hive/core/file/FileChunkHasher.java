@@ -0,0 +1,93 @@
+package org.hive2hive.core.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hive2hive.core.security.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashes all chunks of a file. The chunks are split into contiguous ranges which are read and hashed
+ * concurrently over the same {@link FileChunkReader}. Every thread reuses a single direct buffer for all
+ * chunks of its range.
+ */
+public class FileChunkHasher {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileChunkHasher.class);
+
+	private FileChunkHasher() {
+		// only static methods
+	}
+
+	/**
+	 * Hashes all chunks of the file
+	 *
+	 * @param reader an open reader of the file
+	 * @param parallelism the maximum number of threads to use. If 1 (or smaller), the chunks are hashed in the
+	 *            calling thread.
+	 * @return the hashes, ordered by the chunk index
+	 * @throws IOException if the file cannot be read
+	 * @throws InterruptedException if the calling thread has been interrupted while waiting for the hashes
+	 */
+	public static byte[][] hashChunks(final FileChunkReader reader, int parallelism) throws IOException,
+			InterruptedException {
+		int chunks = reader.getNumberOfChunks();
+		final byte[][] hashes = new byte[chunks][];
+
+		int threads = Math.max(1, Math.min(parallelism, chunks));
+		if (threads == 1) {
+			hashRange(reader, hashes, 0, chunks);
+			return hashes;
+		}
+
+		logger.trace("Hashing {} chunks of file '{}' with {} threads", chunks, reader.getFile().getName(), threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>(threads);
+			for (int i = 0; i < threads; i++) {
+				// split into contiguous ranges such that each thread reads sequentially
+				final int from = (int) ((long) chunks * i / threads);
+				final int to = (int) ((long) chunks * (i + 1) / threads);
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws IOException {
+						hashRange(reader, hashes, from, to);
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Void> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException("Cannot hash the chunks", e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return hashes;
+	}
+
+	private static void hashRange(FileChunkReader reader, byte[][] hashes, int from, int to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(reader.getChunkSize());
+		for (int i = from; i < to; i++) {
+			reader.read(i, buffer);
+			hashes[i] = HashUtil.hash(buffer);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package org.hive2hive.core.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.hive2hive.core.model.Chunk;
+
+/**
+ * Reads the chunks of a single file over one open {@link FileChannel}. In contrast to
+ * {@link FileChunkUtil#getChunk(File, int, int, String)}, the file is opened only once for all chunks and the
+ * data is read with positional reads. Thus, the reader can be shared among multiple threads.<br>
+ * The reader must be closed when it's not used anymore.
+ */
+public class FileChunkReader implements Closeable {
+
+	private final File file;
+	private final int chunkSize;
+	private final FileChannel channel;
+
+	// to detect whether the file has been changed since opening
+	private final long lastModified;
+	private final long fileSize;
+
+	/**
+	 * Opens a file for reading chunks
+	 *
+	 * @param file the file to chunk
+	 * @param chunkSize the maximum size of a single chunk
+	 * @throws IOException if the file does not exist or cannot be opened
+	 */
+	public FileChunkReader(File file, int chunkSize) throws IOException {
+		if (file == null || !file.exists()) {
+			throw new IOException("File does not exist");
+		} else if (chunkSize <= 0) {
+			throw new IOException("Chunk size cannot be smaller or equal to 0");
+		}
+
+		this.file = file;
+		this.chunkSize = chunkSize;
+		this.lastModified = file.lastModified();
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.fileSize = channel.size();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the number of chunks of the file. If the file is empty, 1 is returned.
+	 * @throws IOException if the file size cannot be read
+	 */
+	public int getNumberOfChunks() throws IOException {
+		long size = channel.size();
+		if (size == 0) {
+			// special case
+			return 1;
+		}
+		return (int) ((size + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Returns the chunk at the given index. The data array is allocated with the exact size of the chunk and
+	 * filled directly from the channel, no intermediate buffers are used.
+	 *
+	 * @param chunkNumber the index of the chunk, starting at 0.
+	 * @param chunkId the id of the chunk which should be returned
+	 * @return the chunk or null if the index is beyond the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public Chunk getChunk(int chunkNumber, String chunkId) throws IOException {
+		int length = getChunkLength(chunkNumber);
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] data = new byte[length];
+		readFully(ByteBuffer.wrap(data), getOffset(chunkNumber));
+		return new Chunk(chunkId, data, chunkNumber);
+	}
+
+	/**
+	 * Reads the chunk at the given index into a buffer provided by the caller. This allows to re-use (direct)
+	 * buffers over many chunks. The buffer is cleared first and flipped after reading, thus it's ready to be
+	 * consumed.
+	 *
+	 * @param chunkNumber the index of the chunk, starting at 0.
+	 * @param target the buffer to read into. It needs a capacity of at least the chunk size.
+	 * @return the number of bytes read or -1 if the index is beyond the end of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	public int read(int chunkNumber, ByteBuffer target) throws IOException {
+		if (target.capacity() < chunkSize) {
+			throw new IllegalArgumentException("Buffer is smaller than the chunk size");
+		}
+
+		int length = getChunkLength(chunkNumber);
+		target.clear();
+		if (length < 0) {
+			target.flip();
+			return -1;
+		}
+
+		target.limit(length);
+		readFully(target, getOffset(chunkNumber));
+		target.flip();
+		return length;
+	}
+
+	/**
+	 * Reads an arbitrary range of the file into a buffer provided by the caller, e.g. a chunk with a content
+	 * defined boundary. The buffer is cleared first and flipped after reading.
+	 *
+	 * @param offset the position in the file
+	 * @param length the number of bytes to read
+	 * @param target the buffer to read into. It needs a capacity of at least the length.
+	 * @return the number of bytes read
+	 * @throws IOException if the file cannot be read or the range is beyond the end of the file
+	 */
+	public int read(long offset, int length, ByteBuffer target) throws IOException {
+		if (target.capacity() < length) {
+			throw new IllegalArgumentException("Buffer is smaller than the length to read");
+		}
+
+		target.clear();
+		target.limit(length);
+		readFully(target, offset);
+		target.flip();
+		return length;
+	}
+
+	/**
+	 * @return the size of the file when it has been opened
+	 */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * Maps the chunk at the given index into memory (read only). Reading the chunk data does not involve any
+	 * copy to the heap. Note that the mapping stays valid until the buffer is garbage collected, even when
+	 * this reader is closed.
+	 *
+	 * @param chunkNumber the index of the chunk, starting at 0.
+	 * @return the mapped chunk or null if the index is beyond the end of the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	public MappedByteBuffer map(int chunkNumber) throws IOException {
+		int length = getChunkLength(chunkNumber);
+		if (length < 0) {
+			return null;
+		}
+		return channel.map(MapMode.READ_ONLY, getOffset(chunkNumber), length);
+	}
+
+	/**
+	 * @return <code>true</code> if the file has been modified on disk since this reader has been opened
+	 */
+	public boolean isModified() {
+		return !file.exists() || file.lastModified() != lastModified || file.length() != fileSize;
+	}
+
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private long getOffset(int chunkNumber) {
+		return chunkSize * (long) chunkNumber;
+	}
+
+	/**
+	 * @return the length of the chunk or -1 if the chunk is not within the file
+	 */
+	private int getChunkLength(int chunkNumber) throws IOException {
+		if (chunkNumber < 0) {
+			throw new IOException("Chunk number cannot be smaller than 0");
+		}
+
+		long size = channel.size();
+		if (size == 0 && chunkNumber == 0) {
+			// special case: file exists but is empty.
+			return 0;
+		}
+
+		long offset = getOffset(chunkNumber);
+		if (offset >= size) {
+			return -1;
+		}
+		return (int) Math.min(chunkSize, size - offset);
+	}
+
+	private void readFully(ByteBuffer target, long position) throws IOException {
+		while (target.hasRemaining()) {
+			int read = channel.read(target, position);
+			if (read < 0) {
+				throw new IOException(String.format("Unexpected end of file '%s'", file.getName()));
+			}
+			position += read;
+		}
+	}
+}
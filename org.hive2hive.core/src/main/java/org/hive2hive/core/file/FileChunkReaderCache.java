@@ -0,0 +1,103 @@
+package org.hive2hive.core.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hive2hive.core.model.Chunk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bounded number of {@link FileChunkReader}s open such that serving multiple chunks of the same file
+ * (e.g. to other clients) does not open the file for every chunk again. The least recently used reader is
+ * closed when the capacity is exceeded. Readers of files that have been modified on disk are re-opened.
+ */
+public class FileChunkReaderCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileChunkReaderCache.class);
+
+	private final Map<File, FileChunkReader> readers;
+
+	public FileChunkReaderCache(final int capacity) {
+		// access ordered such that the eldest entry is the least recently used one
+		this.readers = new LinkedHashMap<File, FileChunkReader>(capacity, 0.75f, true) {
+
+			private static final long serialVersionUID = -2436165393390364545L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<File, FileChunkReader> eldest) {
+				if (size() > capacity) {
+					closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Reads a chunk of the given file over a cached reader.
+	 *
+	 * @see FileChunkReader#getChunk(int, String)
+	 */
+	public Chunk getChunk(File file, int chunkSize, int chunkNumber, String chunkId) throws IOException {
+		try {
+			return getReader(file, chunkSize).getChunk(chunkNumber, chunkId);
+		} catch (ClosedChannelException e) {
+			// the reader got evicted while reading, try once again with a new one
+			logger.trace("Reader of file '{}' has been closed concurrently. Retry.", file.getName());
+			return getReader(file, chunkSize).getChunk(chunkNumber, chunkId);
+		}
+	}
+
+	/**
+	 * Returns an open reader for the given file. The reader must not be closed by the caller.
+	 *
+	 * @param file the file to read the chunks from
+	 * @param chunkSize the size of the chunks
+	 * @return an open reader
+	 * @throws IOException if the file cannot be opened
+	 */
+	public synchronized FileChunkReader getReader(File file, int chunkSize) throws IOException {
+		FileChunkReader reader = readers.get(file);
+		if (reader != null && reader.isOpen() && reader.getChunkSize() == chunkSize && !reader.isModified()) {
+			return reader;
+		} else if (reader != null) {
+			readers.remove(file);
+			closeQuietly(reader);
+		}
+
+		reader = new FileChunkReader(file, chunkSize);
+		readers.put(file, reader);
+		return reader;
+	}
+
+	/**
+	 * Closes all open readers
+	 */
+	public void closeAll() {
+		List<FileChunkReader> toClose;
+		synchronized (this) {
+			toClose = new ArrayList<FileChunkReader>(readers.values());
+			readers.clear();
+		}
+
+		for (FileChunkReader reader : toClose) {
+			closeQuietly(reader);
+		}
+		logger.debug("Closed {} cached chunk readers", toClose.size());
+	}
+
+	private static void closeQuietly(FileChunkReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			logger.warn("Cannot close the chunk reader of file '{}'", reader.getFile(), e);
+		}
+	}
+}
@@ -2,7 +2,6 @@ package org.hive2hive.core.file;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.List;
 
 import org.apache.commons.io.FileUtils;
@@ -45,7 +44,8 @@ public class FileChunkUtil {
 	}
 
 	/**
-	 * Returns the chunk of a given file.
+	 * Returns the chunk of a given file. Note that the file is opened and closed for every call. When reading
+	 * multiple chunks of the same file, use a {@link FileChunkReader} instead.
 	 * 
 	 * @param file the file to chunk
 	 * @param chunkSize the maximum size of a single chunk. If the end of the file has been reached before,
@@ -57,56 +57,15 @@ public class FileChunkUtil {
 	 * @throws IOException if the file cannot be read
 	 */
 	public static Chunk getChunk(File file, int chunkSize, int chunkNumber, String chunkId) throws IOException {
-		if (file == null || !file.exists()) {
-			throw new IOException("File does not exist");
-		} else if (chunkSize <= 0) {
-			throw new IOException("Chunk size cannot be smaller or equal to 0");
-		} else if (chunkNumber < 0) {
+		if (chunkNumber < 0) {
 			throw new IOException("Chunk number cannot be smaller than 0");
 		}
 
-		if (FileUtil.getFileSize(file) == 0 && chunkNumber == 0) {
-			// special case: file exists but is empty.
-			// return an empty chunk
-			return new Chunk(chunkId, new byte[0], 0);
-		}
-
-		int read = 0;
-		long offset = chunkSize * (long) chunkNumber;
-		byte[] data = new byte[chunkSize];
-
-		// read the next chunk of the file considering the offset
-		RandomAccessFile rndAccessFile = new RandomAccessFile(file, "r");
-		rndAccessFile.seek(offset);
-		read = rndAccessFile.read(data);
-		rndAccessFile.close();
-
-		if (read > 0) {
-			// the byte-Array may contain many empty slots if last chunk. Truncate it
-			data = truncateData(data, read);
-			return new Chunk(chunkId, data, chunkNumber);
-		} else {
-			return null;
-		}
-	}
-
-	/**
-	 * Truncates a byte array
-	 * 
-	 * @param data
-	 * @param read
-	 * @return a shorter byte array
-	 */
-	private static byte[] truncateData(byte[] data, int numOfBytes) {
-		// shortcut
-		if (data.length == numOfBytes) {
-			return data;
-		} else {
-			byte[] truncated = new byte[numOfBytes];
-			for (int i = 0; i < truncated.length; i++) {
-				truncated[i] = data[i];
-			}
-			return truncated;
+		FileChunkReader reader = new FileChunkReader(file, chunkSize);
+		try {
+			return reader.getChunk(chunkNumber, chunkId);
+		} finally {
+			reader.close();
 		}
 	}
 
@@ -0,0 +1,162 @@
+package org.hive2hive.core.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the chunks of a file directly at their position into a partial file lying next to the destination.
+ * The chunks can be written in any order and by multiple threads. When all chunks are written, the partial
+ * file is moved to the destination with {@link #commit()}, thus the destination is never seen in an
+ * incomplete state.
+ */
+public class FileChunkWriter implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(FileChunkWriter.class);
+
+	private final File destination;
+	private final File partialFile;
+	private final FileChannel channel;
+
+	/**
+	 * Creates (or truncates) the partial file of the given destination
+	 *
+	 * @param destination the file where the chunks belong to
+	 * @throws IOException if the partial file cannot be created
+	 */
+	public FileChunkWriter(File destination) throws IOException {
+		this(destination, false);
+	}
+
+	/**
+	 * Opens the partial file of the given destination
+	 *
+	 * @param destination the file where the chunks belong to
+	 * @param resume <code>true</code> to keep the chunks written to an existing partial file (e.g. before a
+	 *            restart), <code>false</code> to truncate it
+	 * @throws IOException if the partial file cannot be created
+	 */
+	public FileChunkWriter(File destination, boolean resume) throws IOException {
+		this.destination = destination;
+		this.partialFile = getPartialFile(destination);
+
+		if (destination.getParentFile() != null) {
+			FileUtils.forceMkdir(destination.getParentFile());
+		}
+
+		if (resume) {
+			this.channel = FileChannel.open(partialFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		} else {
+			this.channel = FileChannel.open(partialFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+	}
+
+	/**
+	 * @param destination the destination of a download
+	 * @return the file where the data is written to while the download is in progress
+	 */
+	public static File getPartialFile(File destination) {
+		return new File(destination.getParentFile(), destination.getName() + H2HConstants.PARTIAL_FILE_SUFFIX);
+	}
+
+	/**
+	 * @param file any file
+	 * @return <code>true</code> if the file is an incomplete download
+	 */
+	public static boolean isPartialFile(File file) {
+		return file != null && file.getName().endsWith(H2HConstants.PARTIAL_FILE_SUFFIX);
+	}
+
+	public File getDestination() {
+		return destination;
+	}
+
+	public File getPartialFile() {
+		return partialFile;
+	}
+
+	/**
+	 * Writes the data at the given position of the file. This method can be called concurrently.
+	 *
+	 * @param position the offset in the file (in bytes)
+	 * @param data the data to write
+	 * @throws IOException if the data cannot be written
+	 */
+	public void write(long position, byte[] data) throws IOException {
+		if (position < 0) {
+			throw new IOException("Position cannot be smaller than 0");
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Forces the written chunks to the disk, thus they survive a crash
+	 *
+	 * @throws IOException if the data cannot be written
+	 */
+	public void flush() throws IOException {
+		channel.force(false);
+	}
+
+	/**
+	 * Closes the partial file and moves it to the destination. An existing destination is overwritten.
+	 *
+	 * @throws IOException if the partial file cannot be moved
+	 */
+	public void commit() throws IOException {
+		channel.force(false);
+		channel.close();
+
+		if (destination.exists()) {
+			logger.warn("Destination gets overwritten. destination = '{}'", destination);
+		}
+
+		try {
+			Files.move(partialFile.toPath(), destination.toPath(), StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			logger.debug("Atomic move is not supported, moving '{}' non-atomically", partialFile);
+			Files.move(partialFile.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Closes and deletes the partial file. The destination is left untouched.
+	 */
+	public void abort() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.warn("Cannot close the partial file '{}'", partialFile, e);
+		}
+
+		if (partialFile.exists() && !partialFile.delete()) {
+			logger.warn("Couldn't delete the partial file '{}'", partialFile);
+		}
+	}
+
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,31 @@
+package org.hive2hive.core.model;
+
+import org.hive2hive.core.TimeToLiveStore;
+
+/**
+ * Marks that a file references a deduplicated chunk. It is stored at the location of the chunk, one version
+ * per referencing file. The chunk is removed when no reference is left. The content does not reveal the file.
+ */
+public class ChunkReference extends BaseNetworkContent {
+
+	private static final long serialVersionUID = -7370297934046427163L;
+
+	private final long created;
+
+	public ChunkReference() {
+		this.created = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the time the reference has been added
+	 */
+	public long getCreated() {
+		return created;
+	}
+
+	@Override
+	public int getTimeToLive() {
+		// lives as long as the chunk itself
+		return TimeToLiveStore.getInstance().getChunk();
+	}
+}
@@ -0,0 +1,72 @@
+package org.hive2hive.core.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.hive2hive.core.TimeToLiveStore;
+
+/**
+ * A chunk which is encrypted with AES in Galois/Counter Mode. All chunks of a file version are encrypted with
+ * the same content key, which is stored (encrypted with the chunk key pair) in the {@link FileVersion}. The
+ * id and the index of the chunk are authenticated together with the data, thus a chunk cannot be swapped
+ * with another one. Content-defined chunks authenticate only the id, their position is stored in the
+ * {@link MetaChunk}.
+ */
+public class EncryptedChunk extends BaseNetworkContent {
+
+	private static final long serialVersionUID = -2418539209634417519L;
+
+	// the order of content-defined chunks, which may be at different positions in multiple versions
+	public static final int UNORDERED = -1;
+
+	private final String id;
+	private final int order;
+	private final byte[] nonce;
+	private final byte[] encryptedData;
+
+	/**
+	 * @param id the id of the chunk
+	 * @param order the index of the chunk within the file or {@link #UNORDERED}
+	 * @param nonce the nonce the chunk has been encrypted with
+	 * @param encryptedData the encrypted data including the authentication tag
+	 */
+	public EncryptedChunk(String id, int order, byte[] nonce, byte[] encryptedData) {
+		this.id = id;
+		this.order = order;
+		this.nonce = nonce;
+		this.encryptedData = encryptedData;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getOrder() {
+		return order;
+	}
+
+	public byte[] getNonce() {
+		return nonce;
+	}
+
+	public byte[] getEncryptedData() {
+		return encryptedData;
+	}
+
+	/**
+	 * @return the data which is authenticated together with the chunk data
+	 */
+	public byte[] getAssociatedData() {
+		return createAssociatedData(id, order);
+	}
+
+	public static byte[] createAssociatedData(String id, int order) {
+		byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(idBytes.length + 4).put(idBytes).putInt(order).array();
+	}
+
+	@Override
+	public int getTimeToLive() {
+		return TimeToLiveStore.getInstance().getChunk();
+	}
+}
@@ -5,6 +5,8 @@ import java.security.PublicKey;
 import java.util.Set;
 
 import org.hive2hive.core.model.versioned.MetaFileSmall;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.nustaq.serialization.annotations.Version;
 
 /**
  * An index stored in the user profile that represents a file in the directory
@@ -16,6 +18,9 @@ public class FileIndex extends Index {
 	private static final long serialVersionUID = -465877391037883409L;
 	private byte[] md5LatestVersion;
 	private byte[] metaFileHash;
+	// the algorithm of the content hash, null for indexes created before the algorithm could be chosen (MD5)
+	@Version(1)
+	private HashAlgorithm hashAlgorithm;
 
 	/**
 	 * Constructor for child nodes of type 'file'
@@ -25,9 +30,23 @@ public class FileIndex extends Index {
 	 * @param name
 	 */
 	public FileIndex(FolderIndex parent, KeyPair keyPair, String name, byte[] md5LatestVersion) {
+		this(parent, keyPair, name, md5LatestVersion, HashAlgorithm.MD5);
+	}
+
+	/**
+	 * Constructor for child nodes of type 'file'
+	 * 
+	 * @param parent
+	 * @param keyPair
+	 * @param name
+	 * @param hash the hash of the file content
+	 * @param hashAlgorithm the algorithm of the hash
+	 */
+	public FileIndex(FolderIndex parent, KeyPair keyPair, String name, byte[] hash, HashAlgorithm hashAlgorithm) {
 		super(keyPair, name, parent);
 		assert parent != null;
-		this.md5LatestVersion = md5LatestVersion;
+		this.md5LatestVersion = hash;
+		this.hashAlgorithm = hashAlgorithm;
 	}
 
 	/**
@@ -37,6 +56,7 @@ public class FileIndex extends Index {
 		super(fileIndex.fileKeys, fileIndex.name, fileIndex.parent);
 		this.md5LatestVersion = fileIndex.md5LatestVersion;
 		this.metaFileHash = fileIndex.metaFileHash;
+		this.hashAlgorithm = fileIndex.hashAlgorithm;
 	}
 
 	@Override
@@ -49,12 +69,28 @@ public class FileIndex extends Index {
 		return parent.canWrite();
 	}
 
+	/**
+	 * @return the hash of the content of the latest version. Despite the name, it's only MD5 if
+	 *         {@link #getHashAlgorithm()} says so.
+	 */
 	public byte[] getMD5() {
 		return md5LatestVersion;
 	}
 
 	public void setMD5(byte[] md5LatestVersion) {
-		this.md5LatestVersion = md5LatestVersion;
+		setHash(md5LatestVersion, HashAlgorithm.MD5);
+	}
+
+	/**
+	 * @return the algorithm of the content hash (see {@link #getMD5()})
+	 */
+	public HashAlgorithm getHashAlgorithm() {
+		return hashAlgorithm == null ? HashAlgorithm.MD5 : hashAlgorithm;
+	}
+
+	public void setHash(byte[] hash, HashAlgorithm hashAlgorithm) {
+		this.md5LatestVersion = hash;
+		this.hashAlgorithm = hashAlgorithm;
 	}
 
 	@Override
@@ -6,6 +6,9 @@ import java.text.DateFormat;
 import java.util.Date;
 import java.util.List;
 
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.nustaq.serialization.annotations.Version;
+
 /**
  * A version of a file in the DHT. A version contains several chunks (depending on the file size and the
  * settings).
@@ -21,15 +24,30 @@ public class FileVersion implements Serializable, IFileVersion {
 	private final long date; // date when it's created
 	private final List<MetaChunk> metaChunks; // the chunk id's to find the chunks
 
+	// the content key of all chunks, encrypted with the chunk key pair. Versions which have been uploaded
+	// before the content key has been introduced don't have it, their chunks are hybrid encrypted.
+	@Version(1)
+	private final HybridEncryptedContent contentKey;
+
 	public FileVersion(int index, long size, long date, List<MetaChunk> metaChunks) {
-		this(index, BigInteger.valueOf(size), date, metaChunks);
+		this(index, BigInteger.valueOf(size), date, metaChunks, null);
+	}
+
+	public FileVersion(int index, long size, long date, List<MetaChunk> metaChunks, HybridEncryptedContent contentKey) {
+		this(index, BigInteger.valueOf(size), date, metaChunks, contentKey);
 	}
 
 	public FileVersion(int index, BigInteger size, long date, List<MetaChunk> metaChunks) {
+		this(index, size, date, metaChunks, null);
+	}
+
+	public FileVersion(int index, BigInteger size, long date, List<MetaChunk> metaChunks,
+			HybridEncryptedContent contentKey) {
 		this.index = index;
 		this.size = size;
 		this.date = date;
 		this.metaChunks = metaChunks;
+		this.contentKey = contentKey;
 	}
 
 	/**
@@ -42,6 +60,16 @@ public class FileVersion implements Serializable, IFileVersion {
 		return metaChunks;
 	}
 
+	/**
+	 * Get the content key of the chunks, encrypted with the chunk key pair of the file (see
+	 * {@link org.hive2hive.core.security.ChunkEncryptionUtil}).
+	 * 
+	 * @return the encrypted content key or <code>null</code> if the chunks are hybrid encrypted
+	 */
+	public HybridEncryptedContent getContentKey() {
+		return contentKey;
+	}
+
 	@Override
 	public int getIndex() {
 		return index;
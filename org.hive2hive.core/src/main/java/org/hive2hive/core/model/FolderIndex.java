@@ -2,8 +2,12 @@ package org.hive2hive.core.model;
 
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import org.hive2hive.core.file.FileUtil;
@@ -24,6 +28,11 @@ public class FolderIndex extends Index {
 	private KeyPair protectionKeys = null;
 	private boolean isShared = false;
 
+	// secondary indexes which are not serialized but rebuilt lazily
+	private transient volatile Map<String, Index> childrenByName;
+	// only used at the root folder, contains all indexes of the tree
+	private transient volatile Map<PublicKey, Index> indexesByKey;
+
 	/**
 	 * Constructor for the root folder.
 	 * 
@@ -92,6 +101,14 @@ public class FolderIndex extends Index {
 		// only add once
 		if (getChildByName(child.getName()) == null) {
 			children.add(child);
+			if (child.getName() != null) {
+				getChildrenByName().put(toNameKey(child.getName()), child);
+			}
+
+			FolderIndex root = getRootFolder();
+			if (root.indexesByKey != null) {
+				root.registerKeys(child);
+			}
 		}
 	}
 
@@ -101,9 +118,35 @@ public class FolderIndex extends Index {
 	 * @param child
 	 */
 	public void removeChild(Index child) {
-		if (!children.remove(child)) {
+		Index removed = null;
+		if (children.remove(child)) {
+			removed = child;
+		} else {
 			// remove by name
-			children.remove(getChildByName(child.getName()));
+			Index byName = getChildByName(child.getName());
+			if (byName != null && children.remove(byName)) {
+				removed = byName;
+			}
+		}
+
+		if (removed == null) {
+			return;
+		}
+
+		Map<String, Index> names = childrenByName;
+		if (names != null) {
+			String nameKey = removed.getName() == null ? null : toNameKey(removed.getName());
+			if (nameKey != null && names.get(nameKey) == removed) {
+				names.remove(nameKey);
+			} else {
+				// the child may have been renamed in the meantime
+				childrenByName = null;
+			}
+		}
+
+		FolderIndex root = getRootFolder();
+		if (root.indexesByKey != null) {
+			root.unregisterKeys(removed);
 		}
 	}
 
@@ -116,15 +159,159 @@ public class FolderIndex extends Index {
 	public Index getChildByName(String name) {
 		if (name != null) {
 			String withoutSeparator = name.replace(FileUtil.getFileSep(), "");
+			return getChildrenByName().get(toNameKey(withoutSeparator));
+		}
+		return null;
+	}
+
+	/**
+	 * Finds an index in the tree below this folder (including this folder) by its public key. At the root, a
+	 * lookup table is used which is kept up to date by {@link #addChild(Index)} and {@link #removeChild(Index)}.
+	 * 
+	 * @param publicKey the public key of the file or folder
+	 * @return the index or <code>null</code> if none was found
+	 */
+	public Index getIndexByKey(PublicKey publicKey) {
+		if (!isRoot()) {
+			return findByKey(this, publicKey);
+		}
+
+		Index found = getIndexesByKey().get(publicKey);
+		if (found != null && !isAncestorOrSelf(found)) {
+			// the tree has been changed without notifying this folder, start over
+			indexesByKey = null;
+			found = getIndexesByKey().get(publicKey);
+		}
+		return found;
+	}
+
+	/**
+	 * Called when a child has been renamed
+	 */
+	void onChildRenamed() {
+		childrenByName = null;
+	}
+
+	/**
+	 * Called when a child has been moved below this folder
+	 */
+	void onChildMoved(Index child) {
+		if (children.contains(child)) {
+			FolderIndex root = getRootFolder();
+			if (root.indexesByKey != null) {
+				root.registerKeys(child);
+			}
+		}
+	}
+
+	private Map<String, Index> getChildrenByName() {
+		Map<String, Index> names = childrenByName;
+		if (names == null) {
+			names = new HashMap<String, Index>(Math.max(16, children.size() * 2));
 			for (Index child : children) {
-				if (child.getName().equalsIgnoreCase(withoutSeparator)) {
-					return child;
+				if (child.getName() != null) {
+					String nameKey = toNameKey(child.getName());
+					if (!names.containsKey(nameKey)) {
+						names.put(nameKey, child);
+					}
+				}
+			}
+			childrenByName = names;
+		}
+		return names;
+	}
+
+	private Map<PublicKey, Index> getIndexesByKey() {
+		Map<PublicKey, Index> keys = indexesByKey;
+		if (keys == null) {
+			keys = new HashMap<PublicKey, Index>();
+			putKeys(this, keys);
+			indexesByKey = keys;
+		}
+		return keys;
+	}
+
+	private void registerKeys(Index index) {
+		Map<PublicKey, Index> keys = indexesByKey;
+		keys.put(index.getFilePublicKey(), index);
+		for (Index child : getChildrenOf(index)) {
+			registerKeys(child);
+		}
+	}
+
+	private void unregisterKeys(Index index) {
+		Map<PublicKey, Index> keys = indexesByKey;
+		if (keys.get(index.getFilePublicKey()) == index) {
+			keys.remove(index.getFilePublicKey());
+		}
+
+		for (Index child : getChildrenOf(index)) {
+			unregisterKeys(child);
+		}
+	}
+
+	/**
+	 * Returns the children of a folder. A new folder is added to its parent by the constructor of
+	 * {@link Index}, before its own children are initialized.
+	 */
+	private static Set<Index> getChildrenOf(Index index) {
+		if (!index.isFolder() || ((FolderIndex) index).children == null) {
+			return Collections.emptySet();
+		}
+		return ((FolderIndex) index).children;
+	}
+
+	private static void putKeys(Index index, Map<PublicKey, Index> keys) {
+		if (!keys.containsKey(index.getFilePublicKey())) {
+			keys.put(index.getFilePublicKey(), index);
+		}
+
+		if (index.isFolder()) {
+			for (Index child : ((FolderIndex) index).getChildren()) {
+				putKeys(child, keys);
+			}
+		}
+	}
+
+	private static Index findByKey(Index current, PublicKey publicKey) {
+		if (current.getFilePublicKey().equals(publicKey)) {
+			return current;
+		}
+
+		if (current.isFolder()) {
+			for (Index child : ((FolderIndex) current).getChildren()) {
+				Index found = findByKey(child, publicKey);
+				if (found != null) {
+					return found;
 				}
 			}
 		}
 		return null;
 	}
 
+	private boolean isAncestorOrSelf(Index index) {
+		Index current = index;
+		while (current != null) {
+			if (current == this) {
+				return true;
+			}
+			current = current.getParent();
+		}
+		return false;
+	}
+
+	private FolderIndex getRootFolder() {
+		FolderIndex current = this;
+		while (current.parent != null) {
+			current = current.parent;
+		}
+		return current;
+	}
+
+	private static String toNameKey(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
 	/**
 	 * Indicate that this node is shared
 	 * 
@@ -74,6 +74,9 @@ public abstract class Index implements Comparable<Index>, Serializable {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		if (parent != null) {
+			parent.onChildRenamed();
+		}
 	}
 
 	/**
@@ -86,6 +89,7 @@ public abstract class Index implements Comparable<Index>, Serializable {
 			throw new IllegalArgumentException("Parent can't be null.");
 		}
 		this.parent = parent;
+		parent.onChildMoved(this);
 	}
 
 	public void decoupleFromParent() {
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.Arrays;
 
 import org.hive2hive.core.security.HashUtil;
+import org.nustaq.serialization.annotations.Version;
 
 /**
  * Holds meta data of a chunk in the DHT
@@ -18,10 +19,50 @@ public class MetaChunk implements Serializable {
 	private final byte[] chunkHash;
 	private final int index;
 
+	// only set for content-defined chunks, which can be shared among the versions of a file
+	@Version(1)
+	private final long offset;
+	@Version(1)
+	private final int length;
+	@Version(1)
+	private final byte[] contentHash;
+	// only set for deduplicated chunks, which are encrypted with their own key
+	@Version(1)
+	private final byte[] chunkKey;
+
 	public MetaChunk(String chunkId, byte[] chunkHash, int index) {
+		this(chunkId, chunkHash, index, 0, 0, null);
+	}
+
+	/**
+	 * Creates the meta data of a content-defined chunk
+	 * 
+	 * @param chunkId the id of the chunk
+	 * @param chunkHash the hash of the chunk in the DHT
+	 * @param index the index of the chunk within the file version
+	 * @param offset the position of the chunk in the file
+	 * @param length the length of the chunk
+	 * @param contentHash the hash of the (plain) chunk content, used to find the chunk in other versions
+	 */
+	public MetaChunk(String chunkId, byte[] chunkHash, int index, long offset, int length, byte[] contentHash) {
+		this(chunkId, chunkHash, index, offset, length, contentHash, null);
+	}
+
+	/**
+	 * Creates the meta data of a deduplicated chunk
+	 * 
+	 * @param chunkKey the encoded key the chunk is encrypted with
+	 * @see #MetaChunk(String, byte[], int, long, int, byte[])
+	 */
+	public MetaChunk(String chunkId, byte[] chunkHash, int index, long offset, int length, byte[] contentHash,
+			byte[] chunkKey) {
 		this.chunkId = chunkId;
 		this.chunkHash = chunkHash;
 		this.index = index;
+		this.offset = offset;
+		this.length = length;
+		this.contentHash = contentHash;
+		this.chunkKey = chunkKey;
 	}
 
 	/**
@@ -53,6 +94,64 @@ public class MetaChunk implements Serializable {
 		return index;
 	}
 
+	/**
+	 * @return <code>true</code> if the chunk has a content-defined boundary. Then, the offset and length are
+	 *         known and the chunk may be referenced by multiple versions.
+	 */
+	public boolean isContentDefined() {
+		return contentHash != null;
+	}
+
+	/**
+	 * The position of a content-defined chunk in the file. Chunks with fixed size are at the position
+	 * <code>index * chunkSize</code>.
+	 * 
+	 * @return the offset
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return the length of a content-defined chunk
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the hash of the content of a content-defined chunk or <code>null</code>
+	 */
+	public byte[] getContentHash() {
+		return contentHash;
+	}
+
+	/**
+	 * @return <code>true</code> if the chunk may be referenced by other files. Then, the chunk is encrypted
+	 *         with its own key instead of the content key of the version.
+	 */
+	public boolean isDeduplicated() {
+		return chunkKey != null;
+	}
+
+	/**
+	 * @return the encoded key of a deduplicated chunk or <code>null</code>
+	 */
+	public byte[] getChunkKey() {
+		return chunkKey;
+	}
+
+	/**
+	 * Re-uses this content-defined chunk at another position of a new version
+	 * 
+	 * @param newIndex the index within the new version
+	 * @param newOffset the position in the new version
+	 * @return the meta data of the same chunk in the new version
+	 */
+	public MetaChunk reuse(int newIndex, long newOffset) {
+		return new MetaChunk(chunkId, chunkHash, newIndex, newOffset, length, contentHash, chunkKey);
+	}
+
 	@Override
 	public int hashCode() {
 		return Arrays.hashCode(chunkHash);
@@ -65,26 +65,7 @@ public class UserProfile extends BaseVersionedNetworkContent {
 	}
 
 	public Index getFileById(PublicKey fileId) {
-		return findById(root, fileId);
-	}
-
-	private Index findById(Index current, PublicKey fileId) {
-		if (current.getFilePublicKey().equals(fileId)) {
-			return current;
-		}
-
-		Index found = null;
-		if (current instanceof FolderIndex) {
-			FolderIndex folder = (FolderIndex) current;
-			for (Index child : folder.getChildren()) {
-				found = findById(child, fileId);
-				if (found != null) {
-					return found;
-				}
-			}
-		}
-
-		return found;
+		return root.getIndexByKey(fileId);
 	}
 
 	public Index getFileByPath(File file, File root) {
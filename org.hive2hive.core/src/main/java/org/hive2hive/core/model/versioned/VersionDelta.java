@@ -0,0 +1,69 @@
+package org.hive2hive.core.model.versioned;
+
+import java.util.Arrays;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * The difference of a version to a {@link VersionSnapshot}. The delta is always created against the
+ * snapshot (not against the previous version), thus a version can be restored from the snapshot and a
+ * single delta. Older clients, which do not know the deltas, cannot read such versions.
+ */
+public class VersionDelta extends BaseVersionedNetworkContent {
+
+	private static final long serialVersionUID = 2880371585366312717L;
+
+	/**
+	 * The format of the deltas and snapshots this client writes and is able to read
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private final int formatVersion;
+	private final Number160 snapshotKey;
+	private final int sequenceNumber;
+	private final byte[] delta;
+	private final int timeToLive;
+
+	/**
+	 * @param snapshotKey the version key of the {@link VersionSnapshot} the delta is based on
+	 * @param sequenceNumber the number of deltas created against the same snapshot so far
+	 * @param delta the encoded delta
+	 * @param timeToLive the time to live of the content
+	 */
+	public VersionDelta(Number160 snapshotKey, int sequenceNumber, byte[] delta, int timeToLive) {
+		this.formatVersion = FORMAT_VERSION;
+		this.snapshotKey = snapshotKey;
+		this.sequenceNumber = sequenceNumber;
+		this.delta = delta;
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * @return the {@link #FORMAT_VERSION} of the client that created the delta
+	 */
+	public int getFormatVersion() {
+		return formatVersion;
+	}
+
+	public Number160 getSnapshotKey() {
+		return snapshotKey;
+	}
+
+	public int getSequenceNumber() {
+		return sequenceNumber;
+	}
+
+	public byte[] getDelta() {
+		return delta;
+	}
+
+	@Override
+	public int getTimeToLive() {
+		return timeToLive;
+	}
+
+	@Override
+	protected int getContentHash() {
+		return snapshotKey.hashCode() + 21 * Arrays.hashCode(delta);
+	}
+}
@@ -0,0 +1,65 @@
+package org.hive2hive.core.model.versioned;
+
+import java.util.Arrays;
+
+import net.tomp2p.peers.Number160;
+
+/**
+ * A full, serialized version of a versioned content. Deltas ({@link VersionDelta}) are created against a
+ * snapshot, thus the snapshot does not need to be re-encrypted and put at every modification. A snapshot
+ * knows the snapshot it replaced, such that any client can remove the replaced one as soon as no stored
+ * version refers to it anymore.
+ */
+public class VersionSnapshot extends BaseVersionedNetworkContent {
+
+	private static final long serialVersionUID = -5301512863452931167L;
+
+	private final int formatVersion;
+	private final byte[] serialized;
+	private final int timeToLive;
+	private final Number160 replacedKey;
+	private final long replacedUntil;
+
+	/**
+	 * @param serialized the serialized content
+	 * @param timeToLive the time to live of the content
+	 * @param replacedKey the version key of the replaced snapshot or <code>null</code> if there is none
+	 * @param replacedUntil the version counter from which on no stored version refers to the replaced snapshot
+	 */
+	public VersionSnapshot(byte[] serialized, int timeToLive, Number160 replacedKey, long replacedUntil) {
+		this.formatVersion = VersionDelta.FORMAT_VERSION;
+		this.serialized = serialized;
+		this.timeToLive = timeToLive;
+		this.replacedKey = replacedKey;
+		this.replacedUntil = replacedUntil;
+	}
+
+	/**
+	 * @return the {@link VersionDelta#FORMAT_VERSION} of the client that created the snapshot
+	 */
+	public int getFormatVersion() {
+		return formatVersion;
+	}
+
+	public byte[] getSerialized() {
+		return serialized;
+	}
+
+	public Number160 getReplacedKey() {
+		return replacedKey;
+	}
+
+	public long getReplacedUntil() {
+		return replacedUntil;
+	}
+
+	@Override
+	public int getTimeToLive() {
+		return timeToLive;
+	}
+
+	@Override
+	protected int getContentHash() {
+		return Arrays.hashCode(serialized);
+	}
+}
@@ -25,7 +25,7 @@ import net.tomp2p.replication.SlowReplicationFilter;
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.INetworkConfiguration;
 import org.hive2hive.core.network.messages.MessageReplyHandler;
-import org.hive2hive.core.security.H2HSignatureFactory;
+import org.hive2hive.core.security.IH2HEncryption;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,10 +41,12 @@ public class Connection implements IPeerHolder {
 	private static final Logger logger = LoggerFactory.getLogger(Connection.class);
 
 	private final MessageReplyHandler messageReplyHandler;
+	private final IH2HEncryption encryption;
 	private PeerDHT peerDHT;
 
 	public Connection(NetworkManager networkManager, IH2HSerialize serializer) {
 		this.messageReplyHandler = new MessageReplyHandler(networkManager, serializer);
+		this.encryption = networkManager.getEncryption();
 	}
 
 	/**
@@ -108,10 +110,10 @@ public class Connection implements IPeerHolder {
 		int bindPort = port < 0 ? NetworkUtils.searchFreePort() : port;
 
 		ChannelClientConfiguration clientConfig = PeerBuilder.createDefaultChannelClientConfiguration();
-		clientConfig.signatureFactory(new H2HSignatureFactory());
+		clientConfig.signatureFactory(encryption.createSignatureFactory());
 
 		ChannelServerConfiguration serverConfig = PeerBuilder.createDefaultChannelServerConfiguration();
-		serverConfig.signatureFactory(new H2HSignatureFactory());
+		serverConfig.signatureFactory(encryption.createSignatureFactory());
 		serverConfig.ports(new Ports(bindPort, bindPort));
 
 		// listen on any interfaces (see https://github.com/Hive2Hive/Hive2Hive/issues/117)
@@ -276,6 +278,8 @@ public class Connection implements IPeerHolder {
 			peerDHT.peer().announceShutdown().start().awaitUninterruptibly(H2HConstants.DISCONNECT_TIMEOUT_MS);
 			// shutdown the peer, giving a certain timeout
 			isDisconnected = peerDHT.shutdown().awaitUninterruptibly(H2HConstants.DISCONNECT_TIMEOUT_MS);
+			// stop handling the received messages, the threads are started again with the next message
+			messageReplyHandler.getExecutor().shutdown();
 
 			if (isDisconnected) {
 				logger.debug("Peer successfully disconnected.");
@@ -73,10 +73,12 @@ public class NetworkManager {
 			if (session.getDownloadManager() != null) {
 				session.getDownloadManager().stopBackgroundProcesses();
 			}
+			session.getChunkReaders().closeAll();
 		}
 
 		eventBus.shutdown();
 		logger.debug("Eventbus stopped");
+		messageManager.shutdown();
 
 		return connection.disconnect();
 	}
@@ -103,6 +105,8 @@ public class NetworkManager {
 	 */
 	public void setSession(H2HSession session) {
 		this.session = session;
+		// the session keys of direct messages belong to the key pair of the previous user
+		messageManager.getSessionKeyStore().clear();
 	}
 
 	/**
@@ -3,6 +3,9 @@ package org.hive2hive.core.network.data;
 import java.io.IOException;
 import java.security.KeyPair;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NavigableMap;
 
 import net.tomp2p.dht.FutureDigest;
@@ -10,6 +13,8 @@ import net.tomp2p.dht.FutureGet;
 import net.tomp2p.dht.FuturePut;
 import net.tomp2p.dht.FutureRemove;
 import net.tomp2p.dht.PeerDHT;
+import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.storage.Data;
@@ -17,6 +22,8 @@ import net.tomp2p.storage.Data;
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.network.IPeerHolder;
+import org.hive2hive.core.network.data.cache.ContentCache;
+import org.hive2hive.core.network.data.futures.FutureBatch;
 import org.hive2hive.core.network.data.futures.FutureChangeProtectionListener;
 import org.hive2hive.core.network.data.futures.FutureDigestListener;
 import org.hive2hive.core.network.data.futures.FutureGetListener;
@@ -30,6 +37,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Puts, gets and removes content in the DHT. All operations are available asynchronously (returning a
+ * {@link FutureDone} which is completed after verification and possible retries) and blocking. The blocking
+ * methods are thin wrappers that await the asynchronous ones. Operations on many independent keys can be
+ * batched (e.g. {@link #getAll(Collection)}), which pipelines the single requests and returns per-key results.
+ * If a {@link ContentCache} is set, file chunks and meta files are read from the local cache when possible.
+ * 
  * @author Seppi
  */
 public class DataManager {
@@ -46,6 +59,7 @@ public class DataManager {
 	private final IPeerHolder peerHolder;
 	private final IH2HEncryption encryption;
 	private final H2HSlowPeerFilter slowPeerFilter = new H2HSlowPeerFilter();
+	private volatile ContentCache contentCache;
 
 	public DataManager(IPeerHolder peerHolder, IH2HSerialize serializer, IH2HEncryption encryption) {
 		this.peerHolder = peerHolder;
@@ -61,19 +75,38 @@ public class DataManager {
 		return serializer;
 	}
 
+	/**
+	 * Sets the local cache for file chunks and meta files
+	 * 
+	 * @param contentCache the cache or <code>null</code> to disable caching
+	 */
+	public void setContentCache(ContentCache contentCache) {
+		this.contentCache = contentCache;
+	}
+
+	public ContentCache getContentCache() {
+		return contentCache;
+	}
+
 	private PeerDHT getPeer() {
 		return peerHolder.getPeer();
 	}
 
 	public boolean changeProtectionKey(IParameters parameters) {
+		Boolean success = await(changeProtectionKeyAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS
+				* H2HConstants.PUT_RETRIES, parameters);
+		return success != null && success;
+	}
+
+	public FutureDone<Boolean> changeProtectionKeyAsync(IParameters parameters) {
 		FuturePut putFuture = changeProtectionKeyUnblocked(parameters);
 		if (putFuture == null) {
-			return false;
+			return new FutureDone<Boolean>().done(false);
 		}
 
 		FutureChangeProtectionListener listener = new FutureChangeProtectionListener(parameters);
 		putFuture.addListener(listener);
-		return listener.await();
+		return listener.getFuture();
 	}
 
 	public FuturePut changeProtectionKeyUnblocked(IParameters parameters) {
@@ -94,14 +127,26 @@ public class DataManager {
 	}
 
 	public H2HPutStatus put(IParameters parameters) {
+		return await(putAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.PUT_RETRIES,
+				parameters);
+	}
+
+	/**
+	 * Puts the content asynchronously. The returned future is completed when the put is verified, including
+	 * the confirmation and possible retries.
+	 * 
+	 * @param parameters the parameters of the put
+	 * @return the future which is completed with the final status of the put
+	 */
+	public FutureDone<H2HPutStatus> putAsync(IParameters parameters) {
 		FuturePut putFuture = putUnblocked(parameters);
 		if (putFuture == null) {
-			return H2HPutStatus.FAILED;
+			return new FutureDone<H2HPutStatus>().done(H2HPutStatus.FAILED);
 		}
 
 		FuturePutListener listener = new FuturePutListener(parameters, this);
 		putFuture.addListener(listener);
-		return listener.await();
+		return listener.getFuture();
 	}
 
 	public H2HPutStatus putUserProfileTask(String userId, Number160 contentKey, BaseNetworkContent content,
@@ -109,14 +154,7 @@ public class DataManager {
 		IParameters parameters = new Parameters().setLocationKey(userId).setContentKey(contentKey)
 				.setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN).setNetworkContent(content)
 				.setProtectionKeys(protectionKey).setTTL(content.getTimeToLive());
-		FuturePut putFuture = putUnblocked(parameters);
-		if (putFuture == null) {
-			return H2HPutStatus.FAILED;
-		}
-
-		FuturePutListener listener = new FuturePutListener(parameters, this);
-		putFuture.addListener(listener);
-		return listener.await();
+		return put(parameters);
 	}
 
 	public FuturePut putUnblocked(IParameters parameters) {
@@ -170,28 +208,133 @@ public class DataManager {
 	}
 
 	public BaseNetworkContent get(IParameters parameters) {
-		FutureGet futureGet = getUnblocked(parameters);
-		FutureGetListener listener = new FutureGetListener(parameters, serializer);
-		futureGet.addListener(listener);
-		return listener.awaitAndGet();
+		return await(getAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	/**
+	 * Gets the newest content asynchronously
+	 * 
+	 * @param parameters the parameters of the get
+	 * @return the future which is completed with the content or <code>null</code> if it doesn't exist
+	 */
+	public FutureDone<BaseNetworkContent> getAsync(IParameters parameters) {
+		ContentCache cache = contentCache;
+		if (cache != null) {
+			if (isContent(parameters, H2HConstants.FILE_CHUNK)) {
+				String cacheKey = chunkCacheKey(parameters);
+				BaseNetworkContent cached = getCached(cache, cacheKey);
+				if (cached != null) {
+					return new FutureDone<BaseNetworkContent>().done(cached);
+				}
+				return listenGet(getUnblocked(parameters), parameters, cache, cacheKey);
+			} else if (isContent(parameters, H2HConstants.META_FILE)) {
+				return getLatestCachedAsync(cache, parameters);
+			}
+		}
+		return listenGet(getUnblocked(parameters), parameters);
+	}
+
+	/**
+	 * Finds out the newest version with a digest (which is small) and reads it from the cache. If the version
+	 * is not cached, it is downloaded.
+	 */
+	private FutureDone<BaseNetworkContent> getLatestCachedAsync(final ContentCache cache, final IParameters parameters) {
+		final FutureDone<BaseNetworkContent> futureResult = new FutureDone<BaseNetworkContent>();
+		getDigestLatestAsync(parameters).addListener(
+				new BaseFutureAdapter<FutureDone<NavigableMap<Number640, Collection<Number160>>>>() {
+					@Override
+					public void operationComplete(FutureDone<NavigableMap<Number640, Collection<Number160>>> future)
+							throws Exception {
+						NavigableMap<Number640, Collection<Number160>> digest = future.object();
+						if (digest != null && !digest.isEmpty()) {
+							BaseNetworkContent cached = getCached(cache, ContentCache.key(digest.lastKey()));
+							if (cached != null) {
+								futureResult.done(cached);
+								return;
+							}
+						}
+
+						listenGet(getUnblocked(parameters), parameters, cache, null).addListener(
+								new BaseFutureAdapter<FutureDone<BaseNetworkContent>>() {
+									@Override
+									public void operationComplete(FutureDone<BaseNetworkContent> future) throws Exception {
+										futureResult.done(future.object());
+									}
+								});
+					}
+				});
+		return futureResult;
+	}
+
+	private BaseNetworkContent getCached(ContentCache cache, String cacheKey) {
+		byte[] cached = cache.get(cacheKey);
+		if (cached != null) {
+			try {
+				return (BaseNetworkContent) serializer.deserialize(cached);
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				logger.warn("Cannot deserialize the cached entry '{}'.", cacheKey, e);
+				cache.remove(cacheKey);
+			}
+		}
+		return null;
+	}
+
+	private void uncacheChunk(IParameters parameters) {
+		ContentCache cache = contentCache;
+		if (cache != null && isContent(parameters, H2HConstants.FILE_CHUNK)) {
+			cache.remove(chunkCacheKey(parameters));
+		}
+	}
+
+	private static String chunkCacheKey(IParameters parameters) {
+		// chunks are never modified, thus the version does not matter
+		return ContentCache.key(new Number640(parameters.getLKey(), parameters.getDKey(), parameters.getCKey(),
+				Number160.ZERO));
+	}
+
+	private static boolean isContent(IParameters parameters, String contentKey) {
+		return contentKey.equals(parameters.getContentKey());
 	}
 
 	public BaseNetworkContent getVersion(IParameters parameters) {
-		FutureGet futureGet = getVersionUnblocked(parameters);
-		FutureGetListener listener = new FutureGetListener(parameters, serializer);
-		futureGet.addListener(listener);
-		return listener.awaitAndGet();
+		return await(getVersionAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	public FutureDone<BaseNetworkContent> getVersionAsync(IParameters parameters) {
+		ContentCache cache = contentCache;
+		if (cache != null && isContent(parameters, H2HConstants.META_FILE)) {
+			String cacheKey = ContentCache.key(parameters.getKey());
+			BaseNetworkContent cached = getCached(cache, cacheKey);
+			if (cached != null) {
+				return new FutureDone<BaseNetworkContent>().done(cached);
+			}
+			return listenGet(getVersionUnblocked(parameters), parameters, cache, cacheKey);
+		}
+		return listenGet(getVersionUnblocked(parameters), parameters);
 	}
 
 	public BaseNetworkContent getUserProfileTask(String userId) {
 		IParameters parameters = new Parameters().setLocationKey(userId).setDomainKey(H2HConstants.USER_PROFILE_TASK_DOMAIN);
+		return await(getUserProfileTaskAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	private FutureDone<BaseNetworkContent> getUserProfileTaskAsync(IParameters parameters) {
 		FutureGet futureGet = getPeer().get(parameters.getLKey())
 				.from(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.ZERO, Number160.ZERO))
 				.to(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.MAX_VALUE, Number160.MAX_VALUE))
 				.ascending().returnNr(1).addPostRoutingFilter(slowPeerFilter).start();
-		FutureGetListener listener = new FutureGetListener(parameters, serializer);
+		return listenGet(futureGet, parameters);
+	}
+
+	private FutureDone<BaseNetworkContent> listenGet(FutureGet futureGet, IParameters parameters) {
+		return listenGet(futureGet, parameters, null, null);
+	}
+
+	private FutureDone<BaseNetworkContent> listenGet(FutureGet futureGet, IParameters parameters, ContentCache cache,
+			String cacheKey) {
+		FutureGetListener listener = new FutureGetListener(parameters, serializer, cache, cacheKey);
 		futureGet.addListener(listener);
-		return listener.awaitAndGet();
+		return listener.getFuture();
 	}
 
 	public FutureGet getUnblocked(IParameters parameters) {
@@ -215,17 +358,40 @@ public class DataManager {
 	}
 
 	public boolean remove(IParameters parameters) {
+		return awaitRemove(removeAsync(parameters), parameters);
+	}
+
+	/**
+	 * Removes all versions of the content asynchronously. The returned future is completed when the remove is
+	 * verified, including possible retries.
+	 * 
+	 * @param parameters the parameters of the remove
+	 * @return the future which is completed with <code>true</code> if the remove was successful
+	 */
+	public FutureDone<Boolean> removeAsync(IParameters parameters) {
+		uncacheChunk(parameters);
 		FutureRemove futureRemove = removeUnblocked(parameters);
 		FutureRemoveListener listener = new FutureRemoveListener(parameters, false, this);
 		futureRemove.addListener(listener);
-		return listener.await();
+		return listener.getFuture();
 	}
 
 	public boolean removeVersion(IParameters parameters) {
+		return awaitRemove(removeVersionAsync(parameters), parameters);
+	}
+
+	/**
+	 * Removes a single version of the content asynchronously
+	 * 
+	 * @param parameters the parameters of the remove
+	 * @return the future which is completed with <code>true</code> if the remove was successful
+	 */
+	public FutureDone<Boolean> removeVersionAsync(IParameters parameters) {
+		uncacheChunk(parameters);
 		FutureRemove futureRemove = removeVersionUnblocked(parameters);
 		FutureRemoveListener listener = new FutureRemoveListener(parameters, true, this);
 		futureRemove.addListener(listener);
-		return listener.await();
+		return listener.getFuture();
 	}
 
 	public boolean removeUserProfileTask(String userId, Number160 contentKey, KeyPair protectionKey) {
@@ -234,7 +400,13 @@ public class DataManager {
 		FutureRemove futureRemove = removeUnblocked(parameters);
 		FutureRemoveListener listener = new FutureRemoveListener(parameters, true, this);
 		futureRemove.addListener(listener);
-		return listener.await();
+		return awaitRemove(listener.getFuture(), parameters);
+	}
+
+	private boolean awaitRemove(FutureDone<Boolean> future, IParameters parameters) {
+		Boolean success = await(future, H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.REMOVE_RETRIES,
+				parameters);
+		return success != null && success;
 	}
 
 	public FutureRemove removeUnblocked(IParameters parameters) {
@@ -253,10 +425,14 @@ public class DataManager {
 	}
 
 	public NavigableMap<Number640, Collection<Number160>> getDigestLatest(IParameters parameters) {
+		return await(getDigestLatestAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	public FutureDone<NavigableMap<Number640, Collection<Number160>>> getDigestLatestAsync(IParameters parameters) {
 		FutureDigest futureDigest = getDigestLatestUnblocked(parameters);
 		FutureDigestListener listener = new FutureDigestListener(parameters);
 		futureDigest.addListener(listener);
-		return listener.awaitAndGet();
+		return listener.getFuture();
 	}
 
 	public FutureDigest getDigestLatestUnblocked(IParameters parameters) {
@@ -275,4 +451,201 @@ public class DataManager {
 				.fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
 
 	}
+
+	/**
+	 * Gets the newest content of all given keys. The gets are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every get
+	 * @return the content per parameters, <code>null</code> if it doesn't exist or the get failed
+	 */
+	public Map<IParameters, BaseNetworkContent> getAll(Collection<IParameters> parameters) {
+		return awaitBatch(getAllAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	public FutureDone<Map<IParameters, BaseNetworkContent>> getAllAsync(Collection<IParameters> parameters) {
+		return new FutureBatch<BaseNetworkContent>(parameters, H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<BaseNetworkContent> start(IParameters single) {
+				return getAsync(single);
+			}
+		}.start();
+	}
+
+	/**
+	 * Puts all given contents. The puts are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every put
+	 * @return the status per parameters
+	 */
+	public Map<IParameters, H2HPutStatus> putAll(Collection<IParameters> parameters) {
+		Map<IParameters, H2HPutStatus> results = awaitBatch(putAllAsync(parameters),
+				H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.PUT_RETRIES, parameters);
+		for (Entry<IParameters, H2HPutStatus> entry : results.entrySet()) {
+			if (entry.getValue() == null) {
+				entry.setValue(H2HPutStatus.FAILED);
+			}
+		}
+		return results;
+	}
+
+	public FutureDone<Map<IParameters, H2HPutStatus>> putAllAsync(Collection<IParameters> parameters) {
+		return new FutureBatch<H2HPutStatus>(parameters, H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<H2HPutStatus> start(IParameters single) {
+				return putAsync(single);
+			}
+		}.start();
+	}
+
+	/**
+	 * Removes all versions of all given contents. The removals are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every remove
+	 * @return per parameters whether the remove was successful
+	 */
+	public Map<IParameters, Boolean> removeAll(Collection<IParameters> parameters) {
+		return awaitBatchSuccess(removeAllAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS
+				* H2HConstants.REMOVE_RETRIES, parameters);
+	}
+
+	public FutureDone<Map<IParameters, Boolean>> removeAllAsync(Collection<IParameters> parameters) {
+		return new FutureBatch<Boolean>(parameters, H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<Boolean> start(IParameters single) {
+				return removeAsync(single);
+			}
+		}.start();
+	}
+
+	/**
+	 * Gets the digest of the latest version of all given keys. The gets are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every digest
+	 * @return the digest per parameters (empty if the content does not exist), <code>null</code> if the get
+	 *         failed
+	 */
+	public Map<IParameters, NavigableMap<Number640, Collection<Number160>>> getDigestLatestAll(
+			Collection<IParameters> parameters) {
+		return awaitBatch(getDigestLatestAllAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	public FutureDone<Map<IParameters, NavigableMap<Number640, Collection<Number160>>>> getDigestLatestAllAsync(
+			Collection<IParameters> parameters) {
+		return new FutureBatch<NavigableMap<Number640, Collection<Number160>>>(parameters,
+				H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<NavigableMap<Number640, Collection<Number160>>> start(IParameters single) {
+				return getDigestLatestAsync(single);
+			}
+		}.start();
+	}
+
+	/**
+	 * Gets the digest of any content in the domain of all given locations (at most one entry each), which
+	 * tells whether the domain is empty. The gets are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every digest, the content key is ignored
+	 * @return the digest per parameters (empty if the domain is empty), <code>null</code> if the get failed
+	 */
+	public Map<IParameters, NavigableMap<Number640, Collection<Number160>>> getDigestDomainAll(
+			Collection<IParameters> parameters) {
+		return awaitBatch(getDigestDomainAllAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS, parameters);
+	}
+
+	public FutureDone<Map<IParameters, NavigableMap<Number640, Collection<Number160>>>> getDigestDomainAllAsync(
+			Collection<IParameters> parameters) {
+		return new FutureBatch<NavigableMap<Number640, Collection<Number160>>>(parameters,
+				H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<NavigableMap<Number640, Collection<Number160>>> start(IParameters single) {
+				FutureDigestListener listener = new FutureDigestListener(single);
+				getDigestDomainUnblocked(single).addListener(listener);
+				return listener.getFuture();
+			}
+		}.start();
+	}
+
+	public FutureDigest getDigestDomainUnblocked(IParameters parameters) {
+		logger.debug("Get digest (domain). {}", parameters.toString());
+		return getPeer().digest(parameters.getLKey())
+				.from(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.ZERO, Number160.ZERO))
+				.to(new Number640(parameters.getLKey(), parameters.getDKey(), Number160.MAX_VALUE, Number160.MAX_VALUE))
+				.returnNr(1).fastGet(false).addPostRoutingFilter(slowPeerFilter).start();
+	}
+
+	/**
+	 * Changes the protection keys of all given contents. The changes are pipelined, see {@link FutureBatch}.
+	 * 
+	 * @param parameters the parameters of every change
+	 * @return per parameters whether the protection keys have been changed
+	 */
+	public Map<IParameters, Boolean> changeProtectionKeys(Collection<IParameters> parameters) {
+		return awaitBatchSuccess(changeProtectionKeysAsync(parameters), H2HConstants.AWAIT_NETWORK_OPERATION_MS
+				* H2HConstants.PUT_RETRIES, parameters);
+	}
+
+	public FutureDone<Map<IParameters, Boolean>> changeProtectionKeysAsync(Collection<IParameters> parameters) {
+		return new FutureBatch<Boolean>(parameters, H2HConstants.DHT_BATCH_WINDOW) {
+			@Override
+			protected FutureDone<Boolean> start(IParameters single) {
+				return changeProtectionKeyAsync(single);
+			}
+		}.start();
+	}
+
+	private static Map<IParameters, Boolean> awaitBatchSuccess(FutureDone<Map<IParameters, Boolean>> future,
+			long timeoutMs, Collection<IParameters> parameters) {
+		Map<IParameters, Boolean> results = awaitBatch(future, timeoutMs, parameters);
+		for (Entry<IParameters, Boolean> entry : results.entrySet()) {
+			if (entry.getValue() == null) {
+				entry.setValue(false);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Waits (blocking) until all operations of the batch are done. The timeout of a single operation is
+	 * multiplied with the number of rounds the batch needs at most.
+	 * 
+	 * @return a modifiable copy of the results, containing <code>null</code> for every operation that did not
+	 *         finish in time
+	 */
+	private static <T> Map<IParameters, T> awaitBatch(FutureDone<Map<IParameters, T>> future, long timeoutMs,
+			Collection<IParameters> parameters) {
+		long rounds = Math.max(1, (parameters.size() + H2HConstants.DHT_BATCH_WINDOW - 1)
+				/ H2HConstants.DHT_BATCH_WINDOW);
+		long batchTimeoutMs = timeoutMs * rounds;
+		try {
+			if (!future.await(batchTimeoutMs)) {
+				logger.warn("Batch of {} network operations did not finish within {} ms.", parameters.size(),
+						batchTimeoutMs);
+			}
+		} catch (InterruptedException e) {
+			logger.error("Could not wait until the batch of {} network operations has finished.", parameters.size(), e);
+		}
+
+		Map<IParameters, T> results = new LinkedHashMap<IParameters, T>(parameters.size());
+		Map<IParameters, T> completed = future.object();
+		for (IParameters single : parameters) {
+			results.put(single, completed == null ? null : completed.get(single));
+		}
+		return results;
+	}
+
+	/**
+	 * Waits (blocking) until the future is done or the timeout expired.
+	 * 
+	 * @return the result of the future or <code>null</code> if it's not done in time
+	 */
+	private static <T> T await(FutureDone<T> future, long timeoutMs, IParameters parameters) {
+		try {
+			if (!future.await(timeoutMs)) {
+				logger.warn("Network operation did not finish within {} ms. '{}'", timeoutMs, parameters.toString());
+			}
+		} catch (InterruptedException e) {
+			logger.error("Could not wait until the network operation has finished. '{}'", parameters.toString(), e);
+		}
+		return future.object();
+	}
 }
@@ -12,6 +12,7 @@ class PutQueueEntry extends QueueEntry {
 	private final String pid;
 	private final AtomicBoolean readyToPut = new AtomicBoolean(false);
 	private final AtomicBoolean abort = new AtomicBoolean(false);
+	private final CountDownLatch readyWaiter = new CountDownLatch(1);
 	private final CountDownLatch putWaiter = new CountDownLatch(1);
 
 	private PutFailedException putFailedException;
@@ -30,6 +31,22 @@ class PutQueueEntry extends QueueEntry {
 
 	public void readyToPut() {
 		readyToPut.set(true);
+		readyWaiter.countDown();
+	}
+
+	/**
+	 * Waits (blocking) until the modification is done or aborted
+	 * 
+	 * @param timeoutMs the maximum time to wait
+	 * @return <code>true</code> if the modification is done and ready to put
+	 */
+	public boolean awaitReadyToPut(long timeoutMs) {
+		try {
+			readyWaiter.await(timeoutMs, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			// treated like a timeout
+		}
+		return isReadyToPut() && !isAborted();
 	}
 
 	public boolean isAborted() {
@@ -38,6 +55,7 @@ class PutQueueEntry extends QueueEntry {
 
 	public void abort() {
 		abort.set(true);
+		readyWaiter.countDown();
 	}
 
 	public void notifyPut() {
@@ -1,6 +1,9 @@
 package org.hive2hive.core.network.data;
 
+import java.io.IOException;
 import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -17,12 +20,15 @@ import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.vdht.AESEncryptedVersionManager;
 import org.hive2hive.core.security.PasswordUtil;
 import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Manages the user profile resource. Each process waiting for get / put is added to a queue and delivered in
- * order.
+ * order. Modifications that are queued at the same time are applied to the same profile version and put
+ * together. Every modification works on its own copy, thus an aborted modification does not end up in the
+ * network.
  * 
  * @author Nico
  * @author Seppi
@@ -31,24 +37,28 @@ public class UserProfileManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(UserProfileManager.class);
 	private static final long MAX_MODIFICATION_TIME = 1000;
+	private static final int MAX_COALESCED_MODIFICATIONS = 100;
+	// the modifications are served one after another, the ones that did not get their turn within this time
+	// are put with the next version, long before they stop waiting for the profile
+	private static final long MAX_COALESCING_TIME = H2HConstants.AWAIT_NETWORK_OPERATION_MS / 4;
 	private static final long FAILOVER_TIMEOUT = 5 * 60 * 1000;
 	private static final int FORK_LIMIT = 2;
 
 	private final AESEncryptedVersionManager<UserProfile> versionManager;
 	private final UserCredentials credentials;
+	private final IH2HSerialize serializer;
 
 	private final Object queueWaiter = new Object();
 	private final Queue<QueueEntry> readOnlyQueue = new ConcurrentLinkedQueue<QueueEntry>();
 	private final Queue<PutQueueEntry> modifyQueue = new ConcurrentLinkedQueue<PutQueueEntry>();
 	private final AtomicBoolean running = new AtomicBoolean(false);
 
-	private volatile PutQueueEntry modifying;
-
 	private KeyPair protectionKeys = null;
 	private Thread workerThread;
 
 	public UserProfileManager(DataManager dataManager, UserCredentials credentials) {
 		this.credentials = credentials;
+		this.serializer = dataManager.getSerializer();
 
 		SecretKey passwordKey = PasswordUtil.generateAESKeyFromPassword(credentials.getPassword(), credentials.getPin(),
 				H2HConstants.KEYLENGTH_USER_PROFILE);
@@ -113,7 +123,9 @@ public class UserProfileManager {
 
 	/**
 	 * Gets the user profile and allows to modify it. The call blocks until
-	 * {@link IUserProfileModification#modifyUserProfile(UserProfile)} is called or an exception is thrown.
+	 * {@link IUserProfileModification#modifyUserProfile(UserProfile)} is called and the modified profile has
+	 * been put or an exception is thrown. Modifications of multiple processes may be put together within the
+	 * same version.
 	 * 
 	 * @param pid the process identifier
 	 * @param modifier the implementation where the modification is done
@@ -122,58 +134,56 @@ public class UserProfileManager {
 	 */
 	public void modifyUserProfile(String pid, IUserProfileModification modifier) throws GetFailedException,
 			PutFailedException, AbortModifyException {
-		PutQueueEntry entry = new PutQueueEntry(pid);
-		modifyQueue.add(entry);
+		int forkCounter = 0;
+		int forkWaitTime = new Random().nextInt(1000) + 500;
+		while (true) {
+			PutQueueEntry entry = new PutQueueEntry(pid);
+			modifyQueue.add(entry);
 
-		synchronized (queueWaiter) {
-			queueWaiter.notify();
-		}
+			synchronized (queueWaiter) {
+				queueWaiter.notify();
+			}
 
-		UserProfile profile;
-		try {
-			profile = entry.getUserProfile();
-			if (profile == null) {
-				throw new GetFailedException("User Profile not found");
+			UserProfile profile;
+			try {
+				profile = entry.getUserProfile();
+				if (profile == null) {
+					throw new GetFailedException("User Profile not found");
+				}
+			} catch (GetFailedException e) {
+				// just stop the modification if an error occurs.
+				entry.abort();
+				throw e;
 			}
-		} catch (GetFailedException e) {
-			// just stop the modification if an error occurs.
-			if (modifying != null && modifying.getPid().equals(pid)) {
-				modifying.abort();
+
+			try {
+				// user starts modifying it
+				modifier.modifyUserProfile(profile);
+			} catch (AbortModifyException | RuntimeException e) {
+				// let the worker continue immediately
+				entry.abort();
+				throw e;
 			}
-			throw e;
-		}
 
-		boolean retryPut = true;
-		int forkCounter = 0;
-		int forkWaitTime = new Random().nextInt(1000) + 500;
-		while (retryPut) {
-			// user starts modifying it
-			modifier.modifyUserProfile(profile);
+			if (protectionKeys == null) {
+				protectionKeys = profile.getProtectionKeys();
+			}
 
 			try {
-				// put the updated user profile
-				if (protectionKeys == null) {
-					protectionKeys = profile.getProtectionKeys();
-				}
+				// put the updated user profile (together with other modifications)
+				entry.readyToPut();
+				entry.waitForPut();
 
-				if (modifying != null && modifying.getPid().equals(pid)) {
-					modifying.setUserProfile(profile);
-					modifying.readyToPut();
-					modifying.waitForPut();
-
-					// successfully put the user profile
-					retryPut = false;
-				} else {
-					throw new PutFailedException("Not allowed to put anymore");
-				}
+				// successfully put the user profile
+				return;
 			} catch (VersionForkAfterPutException e) {
 				if (forkCounter++ > FORK_LIMIT) {
 					logger.warn("Ignoring fork after {} rejects and retries.", forkCounter);
-					retryPut = false;
+					return;
 				} else {
 					logger.warn("Version fork after put detected. Rejecting and retrying put.");
 
-					// exponential back off waiting and retry to update the user profile
+					// exponential back off waiting and retry to update the latest user profile
 					try {
 						Thread.sleep(forkWaitTime);
 					} catch (InterruptedException e1) {
@@ -185,6 +195,14 @@ public class UserProfileManager {
 		}
 	}
 
+	/**
+	 * Serves the queued requests. The worker sleeps until a request is queued. All modifications queued in the
+	 * meantime are coalesced: they are applied one after another to the same fetched profile version which is
+	 * then put once. Each process gets a copy of the profile modified so far. The copy is only kept when the
+	 * process finishes its modification in time. A process that did not finish in time may still change its
+	 * copy, thus the copies cannot be shared. The coalescing stops after {@link #MAX_COALESCING_TIME}, such
+	 * that the waits for the slow processes do not add up.
+	 */
 	private class QueueWorker implements Runnable {
 
 		@Override
@@ -195,8 +213,11 @@ public class UserProfileManager {
 				if (modifyQueue.isEmpty() && readOnlyQueue.isEmpty()) {
 					synchronized (queueWaiter) {
 						try {
-							// timeout to prevent queues to live forever because of invalid shutdown
-							queueWaiter.wait(FAILOVER_TIMEOUT);
+							// check again, a request could have been queued in the meantime
+							if (modifyQueue.isEmpty() && readOnlyQueue.isEmpty()) {
+								// timeout to prevent queues to live forever because of invalid shutdown
+								queueWaiter.wait(FAILOVER_TIMEOUT);
+							}
 						} catch (InterruptedException e) {
 							// interrupted, go to next iteration, probably the thread was stopped
 							continue;
@@ -207,12 +228,7 @@ public class UserProfileManager {
 					try {
 						logger.trace("Loading latest version of user profile.");
 						UserProfile userProfile = versionManager.get();
-
-						logger.trace("Notifying {} processes that newest profile is ready.", readOnlyQueue.size());
-						while (!readOnlyQueue.isEmpty()) {
-							QueueEntry readOnly = readOnlyQueue.poll();
-							readOnly.setUserProfile(userProfile);
-						}
+						notifyReadOnly(userProfile);
 					} catch (GetFailedException e) {
 						logger.warn("Notifying {} processes that getting latest user profile version failed. reason = '{}'",
 								readOnlyQueue.size(), e.getMessage());
@@ -222,62 +238,93 @@ public class UserProfileManager {
 						}
 					}
 				} else {
-					// a process wants to modify
-					modifying = modifyQueue.poll();
+					modify();
+				}
+			}
 
-					logger.trace("Process {} is waiting to make profile modifications.", modifying.getPid());
+			logger.debug("Queue worker stopped. user id = '{}'", credentials.getUserId());
+		}
 
-					UserProfile userProfile;
-					try {
-						logger.trace("Loading latest version of user profile for process {} to modify.", modifying.getPid());
-						userProfile = versionManager.get();
-						modifying.setUserProfile(userProfile);
-					} catch (GetFailedException e) {
-						modifying.setGetError(e);
-						continue;
-					}
+		private void modify() {
+			UserProfile userProfile;
+			try {
+				logger.trace("Loading latest version of user profile for {} process(es) to modify.", modifyQueue.size());
+				userProfile = versionManager.get();
+			} catch (GetFailedException e) {
+				// fail all modifications queued so far
+				PutQueueEntry entry;
+				while ((entry = modifyQueue.poll()) != null) {
+					entry.setGetError(e);
+				}
+				return;
+			}
 
-					int counter = 0;
-					long sleepTime = MAX_MODIFICATION_TIME / 10;
-					while (counter < 10 && !modifying.isReadyToPut() && !modifying.isAborted()) {
-						try {
-							Thread.sleep(sleepTime);
-						} catch (InterruptedException e) {
-							// ignore
-						} finally {
-							counter++;
-						}
-					}
+			// hand a copy of the profile to every queued process, one after another
+			List<PutQueueEntry> modified = new ArrayList<PutQueueEntry>();
+			PutQueueEntry entry;
+			int counter = 0;
+			long deadline = System.currentTimeMillis() + MAX_COALESCING_TIME;
+			while (counter++ < MAX_COALESCED_MODIFICATIONS && System.currentTimeMillis() < deadline
+					&& (entry = modifyQueue.poll()) != null) {
+				logger.trace("Process {} is waiting to make profile modifications.", entry.getPid());
+				UserProfile copy;
+				try {
+					copy = copy(userProfile);
+				} catch (IOException | ClassNotFoundException e) {
+					logger.error("Cannot copy the user profile for process {}.", entry.getPid(), e);
+					entry.setGetError(new GetFailedException("Cannot copy the user profile: " + e.getMessage()));
+					continue;
+				}
+				entry.setUserProfile(copy);
+
+				if (entry.awaitReadyToPut(MAX_MODIFICATION_TIME)) {
+					// the next process continues with this modification
+					userProfile = copy;
+					modified.add(entry);
+				} else if (!entry.isAborted()) {
+					logger.warn("Process {} never finished doing modifications. Abort the put request.", entry.getPid());
+					entry.abort();
+					entry.setPutError(new PutFailedException(String.format(
+							"Too long modification. Only %s ms are allowed.", MAX_MODIFICATION_TIME)));
+					entry.notifyPut();
+				}
+			}
 
-					if (modifying.isReadyToPut()) {
-						logger.trace("Process {} made modifcations and uploads them now.", modifying.getPid());
-						try {
-							// put updated user profile version into network
-							versionManager.put(userProfile, protectionKeys);
-							modifying.notifyPut();
-
-							// notify all read only processes with newest version
-							while (!readOnlyQueue.isEmpty()) {
-								QueueEntry readOnly = readOnlyQueue.poll();
-								readOnly.setUserProfile(userProfile);
-							}
-						} catch (PutFailedException e) {
-							modifying.setPutError(e);
-							modifying.notifyPut();
-						}
-					} else if (!modifying.isAborted()) {
-						logger.warn("Process {} never finished doing modifications. Abort the put request.",
-								modifying.getPid());
-						modifying.abort();
-						modifying.setPutError(new PutFailedException(String.format(
-								"Too long modification. Only %s ms are allowed.", MAX_MODIFICATION_TIME)));
-						modifying.notifyPut();
-					}
+			if (modified.isEmpty()) {
+				return;
+			}
+
+			logger.trace("{} process(es) made modifications. Uploading them now.", modified.size());
+			try {
+				// put updated user profile version into network
+				versionManager.put(userProfile, protectionKeys);
+				for (PutQueueEntry done : modified) {
+					done.notifyPut();
+				}
+
+				// notify all read only processes with newest version
+				notifyReadOnly(userProfile);
+			} catch (PutFailedException e) {
+				for (PutQueueEntry failed : modified) {
+					failed.setPutError(e);
+					failed.notifyPut();
 				}
 			}
+		}
 
-			logger.debug("Queue worker stopped. user id = '{}'", credentials.getUserId());
+		/**
+		 * Copies the profile such that a modification can be discarded without affecting the original
+		 */
+		private UserProfile copy(UserProfile userProfile) throws IOException, ClassNotFoundException {
+			return (UserProfile) serializer.deserialize(serializer.serialize(userProfile));
 		}
 
+		private void notifyReadOnly(UserProfile userProfile) {
+			logger.trace("Notifying {} processes that newest profile is ready.", readOnlyQueue.size());
+			while (!readOnlyQueue.isEmpty()) {
+				QueueEntry readOnly = readOnlyQueue.poll();
+				readOnly.setUserProfile(userProfile);
+			}
+		}
 	}
 }
@@ -0,0 +1,256 @@
+package org.hive2hive.core.network.data.cache;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.tomp2p.peers.Number640;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent, size-bounded cache of (encrypted) network content on the local disk. Every entry is stored in
+ * its own file in the cache directory. When the cache exceeds its maximum size, the least recently used
+ * entries are evicted. The cache survives a restart: the directory is scanned when the cache is created and
+ * the access order is restored from the modification dates of the files.<br>
+ * Only immutable content must be cached (e.g. a chunk or a specific version of a meta file), since entries are
+ * never validated against the network.
+ */
+public class ContentCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(ContentCache.class);
+
+	private static final String SUFFIX = ".cache";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File directory;
+	private final long maxSize;
+
+	// the size of every entry, in access order (least recently used first). Guarded by this
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+	private long size = 0;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Creates a cache or opens an existing one
+	 *
+	 * @param directory the directory to store the entries in. It should not be used for anything else.
+	 * @param maxSize the maximum number of bytes of all entries
+	 * @throws IOException if the directory cannot be created
+	 */
+	public ContentCache(File directory, long maxSize) throws IOException {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("The cache size must be positive.");
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the cache directory " + directory.getAbsolutePath());
+		}
+
+		this.directory = directory;
+		this.maxSize = maxSize;
+		load();
+	}
+
+	/**
+	 * Creates the cache key of the content stored at the given DHT key
+	 *
+	 * @param key the full key of the content, including the version key
+	 * @return the key to use for the cache
+	 */
+	public static String key(Number640 key) {
+		return String.format("%s_%s_%s_%s", key.locationKey(), key.domainKey(), key.contentKey(), key.versionKey());
+	}
+
+	/**
+	 * Reads an entry from the cache
+	 *
+	 * @param key the key of the entry
+	 * @return the cached data or <code>null</code> if the entry is not cached
+	 */
+	public byte[] get(String key) {
+		synchronized (this) {
+			// marks the entry as recently used
+			if (entries.get(key) == null) {
+				misses.incrementAndGet();
+				return null;
+			}
+		}
+
+		File file = getFile(key);
+		try {
+			byte[] data = Files.readAllBytes(file.toPath());
+			file.setLastModified(System.currentTimeMillis());
+			hits.incrementAndGet();
+			return data;
+		} catch (IOException e) {
+			// evicted in the meantime or deleted externally
+			logger.debug("Cannot read the cached entry '{}'.", key, e);
+			remove(key);
+			misses.incrementAndGet();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores an entry in the cache. An existing entry with the same key is replaced. If the cache exceeds its
+	 * maximum size, the least recently used entries are evicted.
+	 *
+	 * @param key the key of the entry. It must be usable as file name (see {@link #key(Number640)}).
+	 * @param data the data to cache
+	 */
+	public void put(String key, byte[] data) {
+		if (data.length > maxSize) {
+			logger.debug("Entry '{}' of {} bytes is larger than the cache.", key, data.length);
+			return;
+		}
+
+		File file = getFile(key);
+		File temp = new File(directory, key + TEMP_SUFFIX + Thread.currentThread().getId());
+		try {
+			// write first to a temporary file such that no partial entry is ever read
+			Files.write(temp.toPath(), data);
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			logger.warn("Cannot write the entry '{}' to the cache.", key, e);
+			temp.delete();
+			return;
+		}
+
+		synchronized (this) {
+			Long previous = entries.put(key, (long) data.length);
+			size += data.length - (previous == null ? 0 : previous);
+			evict();
+		}
+	}
+
+	/**
+	 * Removes an entry from the cache (if present)
+	 *
+	 * @param key the key of the entry
+	 */
+	public synchronized void remove(String key) {
+		Long removed = entries.remove(key);
+		if (removed != null) {
+			size -= removed;
+			getFile(key).delete();
+		}
+	}
+
+	/**
+	 * Removes all entries from the cache
+	 */
+	public synchronized void clear() {
+		for (String key : entries.keySet()) {
+			getFile(key).delete();
+		}
+		entries.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return the number of reads that have been answered by the cache
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of reads of entries that have not been cached
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of entries that have been evicted because the cache was full
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return the number of cached entries
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @return the number of bytes of all cached entries
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	private File getFile(String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	private void evict() {
+		Iterator<Entry<String, Long>> iterator = entries.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			Entry<String, Long> eldest = iterator.next();
+			iterator.remove();
+			size -= eldest.getValue();
+			getFile(eldest.getKey()).delete();
+			evictions.incrementAndGet();
+			logger.trace("Evicted entry '{}' from the cache.", eldest.getKey());
+		}
+	}
+
+	private synchronized void load() {
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.isFile();
+			}
+		});
+		if (files == null) {
+			return;
+		}
+
+		// the least recently used first
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File file1, File file2) {
+				return Long.compare(file1.lastModified(), file2.lastModified());
+			}
+		});
+
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(SUFFIX)) {
+				entries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+				size += file.length();
+			} else if (name.contains(TEMP_SUFFIX)) {
+				// left over from an interrupted write
+				file.delete();
+			}
+		}
+
+		evict();
+		logger.debug("Loaded {} cached entries ({} bytes) from '{}'.", entries.size(), size, directory);
+	}
+}
@@ -8,21 +8,24 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.events.EventBus;
 import org.hive2hive.core.events.framework.interfaces.IFileEventGenerator;
-import org.hive2hive.core.file.FileChunkUtil;
+import org.hive2hive.core.file.FileChunkWriter;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.serializer.IH2HSerialize;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * A file being downloaded. The task can be persisted with {@link #snapshot(IH2HSerialize)} together with the
+ * chunks already written to the partial file, and resumed after a restart (see {@link DownloadJournal}).
+ */
 public abstract class BaseDownloadTask implements Serializable, IFileEventGenerator {
 
 	private static final long serialVersionUID = 1580305288943800375L;
@@ -30,14 +33,23 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 
 	private final List<MetaChunk> metaChunks;
 	private final File destination;
-	private final File tempFolder;
-	private final PublicKeyManager keyManager;
-	protected final EventBus eventBus;
-
-	private final File[] downloadedChunks;
+	// not persisted, provided again when restoring the task
+	private transient PublicKeyManager keyManager;
+	protected transient EventBus eventBus;
+
+	// the verified chunks that have been written to the partial file
+	private final boolean[] downloadedChunks;
+	// writes the chunks at their position into the partial file, opened with the first chunk
+	private transient FileChunkWriter writer;
+	// whether the partial file contains chunks written before a restart
+	private transient boolean resumed;
+	// the size of all chunks except the last one, known as soon as such a chunk is downloaded
+	private long chunkSize = -1;
+	// the last chunk, in case it arrives before the chunk size is known
+	private byte[] pendingLastChunk;
 	// when the download has finished
-	private final CountDownLatch finishedLatch;
-	private final Set<IDownloadListener> listeners;
+	private transient CountDownLatch finishedLatch;
+	private transient Set<IDownloadListener> listeners;
 
 	private final AtomicBoolean aborted;
 	private String reason;
@@ -51,18 +63,8 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 		this.aborted = new AtomicBoolean(false);
 		this.eventBus = eventBus;
 
-		// init array as null
-		this.downloadedChunks = new File[metaChunks.size()];
-		for (int i = 0; i < downloadedChunks.length; i++) {
-			downloadedChunks[i] = null;
-		}
-
-		// create the download folder
-		String folderName = destination.getName() + "-" + UUID.randomUUID().toString();
-		tempFolder = new File(FileUtils.getTempDirectory(), folderName);
-		if (!tempFolder.mkdirs()) {
-			logger.warn("Cannot create temporary download folder {}", tempFolder.getAbsolutePath());
-		}
+		// init array as not downloaded
+		this.downloadedChunks = new boolean[metaChunks.size()];
 	}
 
 	/**
@@ -73,7 +75,7 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 	public List<MetaChunk> getOpenChunks() {
 		List<MetaChunk> openChunks = new ArrayList<MetaChunk>();
 		for (MetaChunk metaChunk : metaChunks) {
-			if (downloadedChunks[metaChunk.getIndex()] == null || !downloadedChunks[metaChunk.getIndex()].exists()) {
+			if (!downloadedChunks[metaChunk.getIndex()]) {
 				openChunks.add(metaChunk);
 			}
 		}
@@ -91,10 +93,6 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 
 	public abstract boolean isDirectDownload();
 
-	public File getTempDirectory() {
-		return tempFolder;
-	}
-
 	public void abortDownload(String reason) {
 		if (aborted.get()) {
 			// already aborted
@@ -106,6 +104,9 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 		logger.error("Download of file {} aborted. Reason: {}", getDestinationName(), reason);
 		this.reason = reason;
 
+		// remove the incomplete file
+		abortWriter();
+
 		// notify listeners
 		for (IDownloadListener listener : listeners) {
 			listener.downloadFailed(this, reason);
@@ -121,7 +122,7 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 
 	private boolean isDone() {
 		for (int i = 0; i < downloadedChunks.length; i++) {
-			if (downloadedChunks[i] == null) {
+			if (!downloadedChunks[i]) {
 				return false;
 			}
 		}
@@ -130,48 +131,175 @@ public abstract class BaseDownloadTask implements Serializable, IFileEventGenera
 	}
 
 	/**
-	 * Mark the given chunk as downloaded
+	 * Writes the chunk data at its position into the partial file and marks the given chunk as downloaded.
+	 * When all chunks are downloaded, the partial file is moved to the destination.
 	 * 
 	 * @param chunkIndex the index of the chunk (unique number)
-	 * @param filePart the file holding the content of the chunk
+	 * @param data the (verified) content of the chunk
 	 */
-	public synchronized void markDownloaded(int chunkIndex, File filePart) {
-		logger.debug("Successfully downloaded chunk {} of file {}", chunkIndex, getDestinationName());
-		downloadedChunks[chunkIndex] = filePart;
-
+	public void markDownloaded(int chunkIndex, byte[] data) {
 		if (isAborted()) {
 			// no need for further processing
 			return;
-		} else if (finishedLatch.getCount() == 0) {
-			// already done with the download
+		}
+
+		try {
+			writeChunk(chunkIndex, data);
+		} catch (IOException e) {
+			abortDownload(String.format("Cannot write chunk %s to the file. Reason: %s.", chunkIndex, e.getMessage()));
 			return;
 		}
 
-		int openChunkNumber = getOpenChunks().size();
-		if (openChunkNumber > 0) {
-			logger.debug("{} chunks of file {} are still downloading.", openChunkNumber, getDestinationName());
-		} else {
-			logger.debug("All parts of file {} are downloaded, reassembling them...", getDestinationName());
-			try {
-				// reassembly
-				List<File> fileParts = Arrays.asList(downloadedChunks);
-				FileChunkUtil.reassembly(fileParts, destination);
-				logger.debug("File {} has successfully been reassembled", getDestinationName());
-
-				// notify listeners
-				for (IDownloadListener listener : listeners) {
-					listener.downloadFinished(this);
+		synchronized (this) {
+			logger.debug("Successfully downloaded chunk {} of file {}", chunkIndex, getDestinationName());
+			downloadedChunks[chunkIndex] = true;
+
+			if (isAborted()) {
+				// no need for further processing
+				return;
+			} else if (finishedLatch.getCount() == 0) {
+				// already done with the download
+				return;
+			}
+
+			int openChunkNumber = getOpenChunks().size();
+			if (openChunkNumber > 0) {
+				logger.debug("{} chunks of file {} are still downloading.", openChunkNumber, getDestinationName());
+			} else {
+				logger.debug("All parts of file {} are downloaded, moving it to the destination...", getDestinationName());
+				try {
+					getWriter().commit();
+					logger.debug("File {} has successfully been written", getDestinationName());
+
+					// notify listeners
+					for (IDownloadListener listener : listeners) {
+						listener.downloadFinished(this);
+					}
+
+					// release the lock
+					finishedLatch.countDown();
+				} catch (IOException e) {
+					abortDownload(String.format("Cannot move the downloaded file to its destination. Reason: %s.",
+							e.getMessage()));
 				}
+			}
+		}
+	}
 
-				// delete the temporary download folder
-				if (!tempFolder.delete()) {
-					logger.warn("Couldn't delete temporary download folder '{}'.", tempFolder);
+	/**
+	 * Writes the chunk at its offset. Content-defined chunks know their offset. Otherwise, since all chunks
+	 * except the last one have the same size, the offset can be calculated as soon as one of them is known. If
+	 * the last chunk arrives first, it's kept in memory until then.
+	 */
+	private void writeChunk(int chunkIndex, byte[] data) throws IOException {
+		MetaChunk metaChunk = getMetaChunk(chunkIndex);
+		if (metaChunk != null && metaChunk.isContentDefined()) {
+			getWriter().write(metaChunk.getOffset(), data);
+			return;
+		}
+
+		FileChunkWriter chunkWriter;
+		long position;
+		byte[] lastChunk = null;
+		long lastChunkPosition = 0;
+
+		synchronized (this) {
+			chunkWriter = getWriter();
+			int lastIndex = downloadedChunks.length - 1;
+			if (chunkIndex < lastIndex) {
+				chunkSize = data.length;
+				position = chunkIndex * chunkSize;
+				if (pendingLastChunk != null) {
+					lastChunk = pendingLastChunk;
+					lastChunkPosition = lastIndex * chunkSize;
+					pendingLastChunk = null;
 				}
+			} else if (lastIndex == 0) {
+				// single chunk
+				position = 0;
+			} else if (chunkSize >= 0) {
+				position = lastIndex * chunkSize;
+			} else {
+				logger.trace("Keep last chunk of file {} until the chunk size is known", getDestinationName());
+				pendingLastChunk = data;
+				return;
+			}
+		}
+
+		chunkWriter.write(position, data);
+		if (lastChunk != null) {
+			chunkWriter.write(lastChunkPosition, lastChunk);
+		}
+	}
+
+	private MetaChunk getMetaChunk(int chunkIndex) {
+		// the meta chunks are usually ordered by their index
+		if (chunkIndex < metaChunks.size() && metaChunks.get(chunkIndex).getIndex() == chunkIndex) {
+			return metaChunks.get(chunkIndex);
+		}
+
+		for (MetaChunk metaChunk : metaChunks) {
+			if (metaChunk.getIndex() == chunkIndex) {
+				return metaChunk;
+			}
+		}
+		return null;
+	}
+
+	private synchronized FileChunkWriter getWriter() throws IOException {
+		if (writer == null) {
+			writer = new FileChunkWriter(destination, resumed);
+			logger.trace("Writing the chunks of file {} to {}", getDestinationName(), writer.getPartialFile());
+		}
+		return writer;
+	}
+
+	private synchronized void abortWriter() {
+		if (writer != null) {
+			writer.abort();
+		}
+		pendingLastChunk = null;
+	}
 
-				// release the lock
-				finishedLatch.countDown();
-			} catch (IOException e) {
-				abortDownload(String.format("Cannot reassembly the file parts. Reason: %s.", reason + e.getMessage()));
+	/**
+	 * Flushes the partial file and serializes the task, including which chunks have been written. Thus the
+	 * persisted state never claims a chunk that is not on the disk.
+	 *
+	 * @param serializer the serializer
+	 * @return the serialized task or <code>null</code> if the download has already finished or failed
+	 * @throws IOException if the partial file cannot be flushed or the task cannot be serialized
+	 */
+	public synchronized byte[] snapshot(IH2HSerialize serializer) throws IOException {
+		if (isAborted() || finishedLatch.getCount() == 0) {
+			return null;
+		}
+
+		if (writer != null && writer.isOpen()) {
+			writer.flush();
+		}
+		return serializer.serialize(this);
+	}
+
+	/**
+	 * Prepares a deserialized task to be resumed. The chunks written to the partial file are kept. If the
+	 * partial file is gone, all chunks are downloaded again.
+	 *
+	 * @param eventBus the event bus of the current connection
+	 * @param keyManager the key manager of the current session
+	 */
+	public synchronized void restore(EventBus eventBus, PublicKeyManager keyManager) {
+		this.eventBus = eventBus;
+		this.keyManager = keyManager;
+		this.finishedLatch = new CountDownLatch(1);
+		this.listeners = new HashSet<IDownloadListener>();
+		this.resumed = true;
+
+		if (!FileChunkWriter.getPartialFile(destination).exists()) {
+			logger.warn("Partial file of {} not found, downloading all chunks again", getDestinationName());
+			Arrays.fill(downloadedChunks, false);
+			// the last chunk may be kept in memory until the chunk size is known
+			if (pendingLastChunk != null) {
+				downloadedChunks[downloadedChunks.length - 1] = true;
 			}
 		}
 	}
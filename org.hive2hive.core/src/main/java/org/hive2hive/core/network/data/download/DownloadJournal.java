@@ -0,0 +1,101 @@
+package org.hive2hive.core.network.data.download;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.file.FileChunkWriter;
+import org.hive2hive.core.file.IFileAgent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.security.IH2HEncryption;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the open downloads through the cache of the {@link IFileAgent}, thus they survive a restart or a
+ * crash. Every task is stored with the chunks that have been verified and flushed to its partial file (see
+ * {@link FileChunkWriter#getPartialFile(java.io.File)}), thus a resumed download only fetches the missing
+ * chunks.<br>
+ * The tasks contain the keys to decrypt the chunks, thus the journal is encrypted with the key pair of the
+ * user.
+ */
+public class DownloadJournal {
+
+	private static final Logger logger = LoggerFactory.getLogger(DownloadJournal.class);
+
+	private DownloadJournal() {
+		// only static methods
+	}
+
+	/**
+	 * Writes the state of the given downloads. Finished and failed downloads are left out.
+	 *
+	 * @param userKeys the key pair of the user, the journal is encrypted with its public key
+	 * @throws IOException if encrypting or writing fails
+	 */
+	public static void write(IFileAgent fileAgent, IH2HSerialize serializer, IH2HEncryption encryption,
+			KeyPair userKeys, Collection<BaseDownloadTask> tasks) throws IOException {
+		// every task is serialized on its own while its state is locked
+		ArrayList<byte[]> entries = new ArrayList<byte[]>(tasks.size());
+		for (BaseDownloadTask task : tasks) {
+			byte[] entry = task.snapshot(serializer);
+			if (entry != null) {
+				entries.add(entry);
+			}
+		}
+
+		HybridEncryptedContent encrypted;
+		try {
+			encrypted = encryption.encryptHybrid(serializer.serialize(entries), userKeys.getPublic());
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot encrypt the journal", e);
+		}
+		fileAgent.writeCache(H2HConstants.DOWNLOAD_JOURNAL_NAME, serializer.serialize(encrypted));
+		logger.trace("Persisted the state of {} download(s)", entries.size());
+	}
+
+	/**
+	 * Reads the downloads persisted with
+	 * {@link #write(IFileAgent, IH2HSerialize, IH2HEncryption, KeyPair, Collection)}. The tasks need to be
+	 * restored with the current event bus and key manager before they are resumed.
+	 *
+	 * @param userKeys the key pair of the user, the journal is decrypted with its private key
+	 * @return the persisted downloads or an empty list if there are none or they cannot be decrypted (never
+	 *         null)
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<BaseDownloadTask> read(IFileAgent fileAgent, IH2HSerialize serializer,
+			IH2HEncryption encryption, KeyPair userKeys) {
+		List<BaseDownloadTask> tasks = new ArrayList<BaseDownloadTask>();
+		List<byte[]> entries;
+		try {
+			byte[] content = fileAgent.readCache(H2HConstants.DOWNLOAD_JOURNAL_NAME);
+			if (content == null || content.length == 0) {
+				logger.debug("No persisted downloads found");
+				return tasks;
+			}
+			HybridEncryptedContent encrypted = (HybridEncryptedContent) serializer.deserialize(content);
+			byte[] decrypted = encryption.decryptHybridRaw(encrypted, userKeys.getPrivate());
+			entries = (List<byte[]>) serializer.deserialize(decrypted);
+		} catch (IOException | ClassNotFoundException | ClassCastException | GeneralSecurityException e) {
+			// e.g. written by another user
+			logger.warn("Cannot read the persisted downloads. Reason: {}", e.getMessage());
+			return tasks;
+		}
+
+		for (byte[] entry : entries) {
+			try {
+				tasks.add((BaseDownloadTask) serializer.deserialize(entry));
+			} catch (IOException | ClassNotFoundException | ClassCastException e) {
+				// skip it, the other downloads can still be resumed
+				logger.warn("Cannot deserialize a persisted download. Reason: {}", e.getMessage());
+			}
+		}
+		return tasks;
+	}
+}
@@ -1,28 +1,48 @@
 package org.hive2hive.core.network.data.download;
 
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.file.IFileAgent;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.messages.MessageManager;
 import org.hive2hive.core.processes.files.download.dht.DownloadChunkRunnableDHT;
 import org.hive2hive.core.processes.files.download.dht.DownloadTaskDHT;
-import org.hive2hive.core.processes.files.download.direct.DownloadChunkRunnableDirect;
+import org.hive2hive.core.processes.files.download.direct.DirectDownloadScheduler;
 import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
+import org.hive2hive.core.processes.files.download.hybrid.DownloadTaskHybrid;
+import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A download manager handling downloads. Downloading chunks happens concurrently. It is possible to download
  * multiple files at a time. The number of concurrent downloads is configurable over the
- * {@link H2HConstants#CONCURRENT_DOWNLOADS} field. <br>
- * Downloaded chunks are stored in a temporary folder and assembled when all chunks are downloaded.
+ * {@link H2HConstants#CONCURRENT_DOWNLOADS} field. The schedulers of the direct downloads block while waiting
+ * for locations and responses, thus they run in their own threads.<br>
+ * Downloaded chunks are written at their position into a partial file next to the destination, which is
+ * renamed when all chunks are downloaded.<br>
+ * The open downloads are persisted every {@link H2HConstants#DOWNLOAD_JOURNAL_INTERVAL_MS} and when stopping
+ * (see {@link DownloadJournal}). They are resumed with {@link #startBackgroundProcess(IFileAgent)} after the
+ * next login, fetching only the chunks that are not in the partial file yet.
  * 
  * @author Nico
  * 
@@ -34,15 +54,37 @@ public class DownloadManager {
 	private final NetworkManager networkManager;
 	private final IFileConfiguration fileConfig;
 	private final Set<BaseDownloadTask> openTasks;
+	// the locations of the users, shared by all direct downloads
+	private final LocationsCache locationsCache;
+	private final Runnable journalWriter;
 
-	private ExecutorService executor;
+	private ScheduledExecutorService executor;
+	// runs the direct download schedulers, one thread per download
+	private ExecutorService schedulerExecutor;
+	// writes the journal periodically, null while the downloads are stopped
+	private ScheduledFuture<?> journalTask;
+	// where the open downloads are persisted, known after the login
+	private volatile IFileAgent fileAgent;
+	private volatile IH2HSerialize serializer;
+	// the journal is encrypted with the keys of the logged in user
+	private volatile KeyPair userKeys;
+	// whether the last written journal contained no downloads
+	private boolean journalEmpty = false;
 
 	public DownloadManager(NetworkManager networkManager, IFileConfiguration fileConfig) {
 		this.networkManager = networkManager;
 		this.fileConfig = fileConfig;
 		this.openTasks = Collections.newSetFromMap(new ConcurrentHashMap<BaseDownloadTask, Boolean>());
-		// start executor
-		this.executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
+		this.locationsCache = new LocationsCache(networkManager);
+		this.journalWriter = new Runnable() {
+			@Override
+			public void run() {
+				writeJournal();
+			}
+		};
+		// start executors
+		this.executor = Executors.newScheduledThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
+		this.schedulerExecutor = Executors.newCachedThreadPool();
 	}
 
 	/**
@@ -65,13 +107,17 @@ public class DownloadManager {
 		if (task.isDirectDownload()) {
 			// first get the locations of all users having access to this file
 			DownloadTaskDirect directTask = (DownloadTaskDirect) task;
-			directTask.startFetchLocations(networkManager.getDataManager());
+			locationsCache.subscribe(directTask);
 
-			// then download all chunks in separate threads
-			for (MetaChunk chunk : task.getOpenChunks()) {
-				DownloadChunkRunnableDirect runnable = new DownloadChunkRunnableDirect(directTask, chunk,
-						networkManager.getMessageManager(), fileConfig);
-				executor.submit(runnable);
+			// then download the chunks from all peers having the file (and the DHT)
+			MessageManager messageManager = networkManager.getMessageManager();
+			if (task instanceof DownloadTaskHybrid) {
+				schedulerExecutor.submit(new DirectDownloadScheduler((DownloadTaskHybrid) task, messageManager,
+						messageManager.getPeerScoreBoard(), fileConfig, networkManager.getDataManager(),
+						networkManager.getEncryption()));
+			} else {
+				schedulerExecutor.submit(new DirectDownloadScheduler(directTask, messageManager,
+						messageManager.getPeerScoreBoard(), fileConfig));
 			}
 		} else {
 			// submit each chunk as a separate thread
@@ -84,20 +130,108 @@ public class DownloadManager {
 	}
 
 	/**
-	 * Stop the downloads
+	 * @return where the chunks of files stored in the DHT are downloaded from
+	 */
+	public DownloadMode getDownloadMode() {
+		return fileConfig.getDownloadMode();
+	}
+
+	/**
+	 * Stop the downloads and persist their state
 	 */
-	public void stopBackgroundProcesses() {
+	public synchronized void stopBackgroundProcesses() {
+		if (journalTask != null) {
+			journalTask.cancel(false);
+			journalTask = null;
+		}
 		executor.shutdownNow();
+		schedulerExecutor.shutdownNow();
+		locationsCache.stop();
+		writeJournal();
 		logger.debug("All downloads stopped");
 	}
 
 	/**
-	 * Start / continue the downloads
+	 * Start / continue the downloads. The downloads persisted with the given file agent (e.g. before a restart)
+	 * are resumed as well.
+	 * 
+	 * @param fileAgent the file agent of the logged in user
+	 */
+	public synchronized void startBackgroundProcess(IFileAgent fileAgent) throws NoPeerConnectionException {
+		this.fileAgent = fileAgent;
+		this.serializer = networkManager.getDataManager().getSerializer();
+
+		if (executor.isShutdown()) {
+			executor = Executors.newScheduledThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
+			schedulerExecutor = Executors.newCachedThreadPool();
+			for (BaseDownloadTask task : openTasks) {
+				schedule(task);
+			}
+		}
+
+		H2HSession session;
+		try {
+			session = networkManager.getSession();
+		} catch (NoSessionException e) {
+			logger.warn("Cannot persist and resume the downloads without a session.");
+			return;
+		}
+
+		this.userKeys = session.getKeyPair();
+		resumePersistedTasks(session);
+		if (journalTask == null) {
+			// a repeated start must not add another periodic writer
+			journalTask = executor.scheduleWithFixedDelay(journalWriter, H2HConstants.DOWNLOAD_JOURNAL_INTERVAL_MS,
+					H2HConstants.DOWNLOAD_JOURNAL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Submits the persisted downloads that are not open yet
 	 */
-	public void startBackgroundProcess() throws NoPeerConnectionException {
-		executor = Executors.newFixedThreadPool(H2HConstants.CONCURRENT_DOWNLOADS);
+	private void resumePersistedTasks(H2HSession session) throws NoPeerConnectionException {
+		Set<File> openDestinations = new HashSet<File>();
 		for (BaseDownloadTask task : openTasks) {
-			schedule(task);
+			openDestinations.add(task.getDestination());
+		}
+
+		for (BaseDownloadTask task : DownloadJournal.read(fileAgent, serializer, networkManager.getEncryption(),
+				userKeys)) {
+			if (openDestinations.add(task.getDestination())) {
+				task.restore(networkManager.getEventBus(), session.getKeyManager());
+				if (task.isDirectDownload()) {
+					((DownloadTaskDirect) task).setOwnAddress(networkManager.getConnection().getPeer().peerAddress());
+				}
+
+				logger.info("Resuming the download of {} with {} open chunks", task.getDestinationName(), task
+						.getOpenChunks().size());
+				submit(task);
+			}
+		}
+	}
+
+	/**
+	 * Persists the state of the open downloads
+	 */
+	private void writeJournal() {
+		IFileAgent agent = fileAgent;
+		KeyPair keys = userKeys;
+		if (agent == null || keys == null) {
+			// not logged in yet
+			return;
+		}
+
+		synchronized (journalWriter) {
+			if (journalEmpty && openTasks.isEmpty()) {
+				return;
+			}
+
+			try {
+				DownloadJournal.write(agent, serializer, networkManager.getEncryption(), keys, openTasks);
+				journalEmpty = openTasks.isEmpty();
+			} catch (IOException e) {
+				logger.warn("Cannot persist the state of the open downloads. Reason: {}", e.getMessage());
+			}
 		}
 	}
 
@@ -110,6 +244,7 @@ public class DownloadManager {
 		public void downloadFinished(BaseDownloadTask task) {
 			// remove it from the task list
 			openTasks.remove(task);
+			unsubscribe(task);
 			logger.debug("Task for downloading '{}' finished.", task.getDestinationName());
 		}
 
@@ -117,8 +252,22 @@ public class DownloadManager {
 		public void downloadFailed(BaseDownloadTask task, String reason) {
 			// remove it from the task anyway
 			openTasks.remove(task);
+			unsubscribe(task);
 			logger.debug("Task for downloading '{}' failed.", task.getDestinationName());
 		}
 
+		private void unsubscribe(BaseDownloadTask task) {
+			if (task.isDirectDownload()) {
+				locationsCache.unsubscribe((DownloadTaskDirect) task);
+			}
+
+			// remove the task from the journal soon. Not in this thread, the task is still locked
+			try {
+				executor.execute(journalWriter);
+			} catch (RejectedExecutionException e) {
+				// stopped, the journal has been written
+			}
+		}
+
 	}
 }
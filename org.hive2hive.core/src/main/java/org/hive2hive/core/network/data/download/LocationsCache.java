@@ -0,0 +1,287 @@
+package org.hive2hive.core.network.data.download;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the locations of the users for all direct downloads of a node. A download subscribes with the users
+ * having access to the file and gets the locations pushed as soon as they are available or updated. The
+ * locations of a user are fetched once for all subscribed downloads, concurrent requests for the same user
+ * are merged into a single fetch and the locations of multiple users are fetched with a single batch.<br>
+ * The locations are valid for {@link H2HConstants#DOWNLOAD_LOCATIONS_INTERVAL_S}. Subscribed users are
+ * refreshed ahead, before they expire, by a single background thread. Users nobody subscribed anymore are
+ * evicted when they expire.<br>
+ * A failed fetch keeps the previous locations of the user. The subscribed users are fetched again with an
+ * exponential backoff, a new subscription fetches them immediately.
+ */
+public class LocationsCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocationsCache.class);
+
+	// the locations are refreshed when this fraction of the time to live has passed
+	private static final double REFRESH_AHEAD_RATIO = 0.75;
+	// how often the cache checks for locations to refresh or evict
+	private static final long MAINTENANCE_INTERVAL_MS = 5000;
+	// the delay before fetching the locations again after the first failure, doubled with each failure
+	private static final long RETRY_DELAY_MS = MAINTENANCE_INTERVAL_MS;
+
+	private final NetworkManager networkManager;
+	private final long timeToLiveMs;
+
+	// all state below is guarded by this
+	private final Map<String, CachedLocations> cache;
+	private final Set<DownloadTaskDirect> subscribers;
+	private ScheduledExecutorService executor;
+
+	public LocationsCache(NetworkManager networkManager) {
+		this(networkManager, TimeUnit.SECONDS.toMillis(H2HConstants.DOWNLOAD_LOCATIONS_INTERVAL_S));
+	}
+
+	public LocationsCache(NetworkManager networkManager, long timeToLiveMs) {
+		this.networkManager = networkManager;
+		this.timeToLiveMs = timeToLiveMs;
+		this.cache = new HashMap<String, CachedLocations>();
+		this.subscribers = new HashSet<DownloadTaskDirect>();
+	}
+
+	/**
+	 * Registers a download for the locations of its users. Cached locations are provided immediately, the
+	 * missing or expired ones are fetched in the background.
+	 */
+	public synchronized void subscribe(DownloadTaskDirect task) {
+		if (executor == null) {
+			executor = Executors.newSingleThreadScheduledExecutor();
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					maintain();
+				}
+			}, MAINTENANCE_INTERVAL_MS, MAINTENANCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			logger.debug("Started refreshing the cached locations each {} ms", MAINTENANCE_INTERVAL_MS);
+		}
+
+		subscribers.add(task);
+		long now = System.currentTimeMillis();
+		boolean cached = false;
+		List<String> toFetch = new ArrayList<String>();
+		for (String userId : task.getUsers()) {
+			CachedLocations entry = cache.get(userId);
+			if (entry != null && entry.fetchedAt > 0) {
+				cached = true;
+			}
+			if (entry == null || now - entry.fetchedAt >= timeToLiveMs) {
+				toFetch.add(userId);
+			}
+		}
+
+		if (cached) {
+			provide(task);
+		}
+		fetch(toFetch);
+	}
+
+	/**
+	 * The download does not need the locations anymore
+	 */
+	public synchronized void unsubscribe(DownloadTaskDirect task) {
+		subscribers.remove(task);
+	}
+
+	/**
+	 * Stops refreshing the locations. The subscriptions are removed, the cached locations are kept.
+	 */
+	public synchronized void stop() {
+		subscribers.clear();
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+			logger.debug("Stopped refreshing the cached locations");
+		}
+		for (CachedLocations entry : cache.values()) {
+			entry.fetching = false;
+		}
+	}
+
+	/**
+	 * Refreshes the subscribed users ahead of their expiration and evicts the unused ones
+	 */
+	private synchronized void maintain() {
+		Set<String> subscribed = new HashSet<String>();
+		for (DownloadTaskDirect task : subscribers) {
+			subscribed.addAll(task.getUsers());
+		}
+
+		long now = System.currentTimeMillis();
+		List<String> toRefresh = new ArrayList<String>();
+		Iterator<Entry<String, CachedLocations>> iterator = cache.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Entry<String, CachedLocations> entry = iterator.next();
+			long age = now - entry.getValue().fetchedAt;
+			if (subscribed.contains(entry.getKey())) {
+				if (age >= timeToLiveMs * REFRESH_AHEAD_RATIO && now >= entry.getValue().retryAt) {
+					toRefresh.add(entry.getKey());
+				}
+			} else if (age >= timeToLiveMs && !entry.getValue().fetching) {
+				iterator.remove();
+			}
+		}
+		fetch(toRefresh);
+	}
+
+	/**
+	 * Fetches the locations of the given users in the background, except the ones already being fetched
+	 */
+	private void fetch(Collection<String> userIds) {
+		if (executor == null) {
+			// stopped in the meantime
+			return;
+		}
+
+		final List<String> toFetch = new ArrayList<String>();
+		for (String userId : userIds) {
+			CachedLocations entry = cache.get(userId);
+			if (entry == null) {
+				entry = new CachedLocations();
+				cache.put(userId, entry);
+			}
+			if (!entry.fetching) {
+				entry.fetching = true;
+				toFetch.add(userId);
+			}
+		}
+
+		if (!toFetch.isEmpty()) {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					fetchNow(toFetch);
+				}
+			});
+		}
+	}
+
+	private void fetchNow(List<String> userIds) {
+		logger.debug("Fetching the locations of {} user(s)", userIds.size());
+		Map<String, Locations> fetched;
+		try {
+			fetched = getLocations(userIds);
+		} catch (NoPeerConnectionException e) {
+			logger.warn("Cannot fetch the locations without a connection.");
+			fetched = Collections.emptyMap();
+		}
+
+		synchronized (this) {
+			long now = System.currentTimeMillis();
+			Set<String> succeeded = new HashSet<String>();
+			for (String userId : userIds) {
+				CachedLocations entry = cache.get(userId);
+				if (entry == null) {
+					continue;
+				}
+				entry.fetching = false;
+
+				Locations locations = fetched.get(userId);
+				if (locations == null) {
+					// keep the previous locations, they are probably still better than none
+					long delay = Math.min(timeToLiveMs, RETRY_DELAY_MS << Math.min(entry.failures, 16));
+					entry.failures++;
+					entry.retryAt = now + delay;
+					logger.warn("Cannot fetch the locations of user '{}', retrying in {} ms", userId, delay);
+				} else {
+					entry.failures = 0;
+					entry.retryAt = 0;
+					entry.fetchedAt = now;
+					entry.locations = locations;
+					succeeded.add(userId);
+				}
+			}
+
+			// the downloads waiting for failed users only keep waiting
+			for (DownloadTaskDirect task : subscribers) {
+				if (!Collections.disjoint(task.getUsers(), succeeded)) {
+					provide(task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the locations of all given users at once
+	 * 
+	 * @return the locations by user id, without the users whose locations could not be fetched
+	 * @throws NoPeerConnectionException if the peer is not connected
+	 */
+	protected Map<String, Locations> getLocations(List<String> userIds) throws NoPeerConnectionException {
+		List<IParameters> parameters = new ArrayList<IParameters>(userIds.size());
+		for (String userId : userIds) {
+			parameters.add(new Parameters().setLocationKey(userId).setContentKey(H2HConstants.USER_LOCATIONS));
+		}
+
+		Map<String, Locations> fetched = new HashMap<String, Locations>();
+		for (Entry<IParameters, BaseNetworkContent> result : networkManager.getDataManager().getAll(parameters)
+				.entrySet()) {
+			if (result.getValue() != null) {
+				fetched.put(result.getKey().getLocationKey(), (Locations) result.getValue());
+			}
+		}
+		return fetched;
+	}
+
+	/**
+	 * Pushes the cached locations of all users of the download
+	 */
+	private void provide(DownloadTaskDirect task) {
+		Set<Locations> locations = new HashSet<Locations>();
+		for (String userId : task.getUsers()) {
+			CachedLocations entry = cache.get(userId);
+			if (entry != null && entry.locations != null) {
+				locations.add(entry.locations);
+			}
+		}
+
+		if (logger.isDebugEnabled()) {
+			int numPeerAddresses = 0;
+			for (Locations location : locations) {
+				numPeerAddresses += location.getPeerAddresses().size();
+			}
+			logger.debug("Got {} candidate location(s) with {} peer address(es) to download {}", locations.size(),
+					numPeerAddresses, task.getDestinationName());
+		}
+		task.provideLocations(locations);
+	}
+
+	private static class CachedLocations {
+
+		// null if the locations have never been fetched successfully
+		private Locations locations;
+		// 0 if never fetched
+		private long fetchedAt = 0;
+		private boolean fetching = false;
+		// the failed fetches since the last successful one
+		private int failures = 0;
+		// the earliest time to fetch again after a failure
+		private long retryAt = 0;
+	}
+}
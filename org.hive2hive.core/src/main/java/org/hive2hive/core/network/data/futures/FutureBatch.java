@@ -0,0 +1,143 @@
+package org.hive2hive.core.network.data.futures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
+
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the same asynchronous network operation for many parameters. The operations are pipelined: at most
+ * <code>window</code> operations are in flight at the same time and the next one is started as soon as any
+ * of them completes. The returned future is completed with the result of every single operation, ordered
+ * like the given parameters. A failed operation results in the same value as the single operation returns on
+ * failure (e.g. <code>null</code> for a get).
+ *
+ * @param <T> the result type of a single operation
+ */
+public abstract class FutureBatch<T> {
+
+	private static final Logger logger = LoggerFactory.getLogger(FutureBatch.class);
+
+	private final List<IParameters> parameters;
+	private final int window;
+
+	// the results of the completed operations
+	private final Map<IParameters, T> results;
+	private final AtomicInteger remaining;
+	// guarantees that only one thread starts new operations, all others just hand over their free slot
+	private final AtomicInteger startRequests = new AtomicInteger();
+	private final FutureDone<Map<IParameters, T>> futureResults = new FutureDone<Map<IParameters, T>>();
+
+	// guarded by this
+	private int nextIndex = 0;
+	private int freeSlots;
+
+	public FutureBatch(Collection<IParameters> parameters, int window) {
+		this.parameters = new ArrayList<IParameters>(parameters);
+		this.window = Math.max(1, window);
+		this.results = new IdentityHashMap<IParameters, T>(this.parameters.size());
+		this.remaining = new AtomicInteger(this.parameters.size());
+	}
+
+	/**
+	 * Starts the single operation for the given parameters
+	 *
+	 * @param parameters the parameters of one single operation
+	 * @return the future which is completed with the result of the single operation
+	 */
+	protected abstract FutureDone<T> start(IParameters parameters);
+
+	/**
+	 * Starts the operations. Must be called only once.
+	 *
+	 * @return the future which is completed when all operations are completed
+	 */
+	public FutureDone<Map<IParameters, T>> start() {
+		if (parameters.isEmpty()) {
+			return futureResults.done(Collections.<IParameters, T> emptyMap());
+		}
+
+		logger.debug("Starting {} operations with a window of {}.", parameters.size(), window);
+		synchronized (this) {
+			freeSlots = window;
+		}
+		startNext();
+		return futureResults;
+	}
+
+	private void startNext() {
+		if (startRequests.getAndIncrement() != 0) {
+			// another thread is already starting operations and will consider this request
+			return;
+		}
+
+		// a loop instead of a recursion, thus operations completing immediately don't grow the stack
+		do {
+			while (true) {
+				IParameters next;
+				synchronized (this) {
+					if (freeSlots == 0 || nextIndex == parameters.size()) {
+						break;
+					}
+					freeSlots--;
+					next = parameters.get(nextIndex++);
+				}
+				startSingle(next);
+			}
+		} while (startRequests.decrementAndGet() != 0);
+	}
+
+	private void startSingle(final IParameters single) {
+		FutureDone<T> future;
+		try {
+			future = start(single);
+		} catch (RuntimeException e) {
+			logger.error("Could not start the operation. '{}'", single.toString(), e);
+			complete(single, null);
+			return;
+		}
+
+		future.addListener(new BaseFutureAdapter<FutureDone<T>>() {
+			@Override
+			public void operationComplete(FutureDone<T> future) throws Exception {
+				complete(single, future.isSuccess() ? future.object() : null);
+			}
+		});
+	}
+
+	private void complete(IParameters single, T result) {
+		synchronized (results) {
+			results.put(single, result);
+		}
+
+		if (remaining.decrementAndGet() == 0) {
+			futureResults.done(collectResults());
+		} else {
+			synchronized (this) {
+				freeSlots++;
+			}
+			startNext();
+		}
+	}
+
+	private Map<IParameters, T> collectResults() {
+		Map<IParameters, T> ordered = new LinkedHashMap<IParameters, T>(parameters.size());
+		synchronized (results) {
+			for (IParameters single : parameters) {
+				ordered.put(single, results.get(single));
+			}
+		}
+		return Collections.unmodifiableMap(ordered);
+	}
+}
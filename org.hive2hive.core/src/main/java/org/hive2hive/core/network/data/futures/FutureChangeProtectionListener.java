@@ -1,18 +1,15 @@
 package org.hive2hive.core.network.data.futures;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-
 import net.tomp2p.dht.FuturePut;
 import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
 
-import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Simple blocking listener to change the protection key. In contrast to the {@link FuturePutListener} this
+ * Simple listener to change the protection key. In contrast to the {@link FuturePutListener} this
  * listener does not re-try at failure but instantly return a fail.
  * 
  * @author Nico, Seppi
@@ -22,41 +19,29 @@ public class FutureChangeProtectionListener extends BaseFutureAdapter<FuturePut>
 	private static final Logger logger = LoggerFactory.getLogger(FutureChangeProtectionListener.class);
 
 	private final IParameters parameters;
-	private final CountDownLatch latch;
-
-	private boolean success = false;
+	// completed with true if the change was successful, else false
+	private final FutureDone<Boolean> futureResult;
 
 	public FutureChangeProtectionListener(IParameters parameters) {
 		this.parameters = parameters;
-		this.latch = new CountDownLatch(1);
+		this.futureResult = new FutureDone<Boolean>();
 	}
 
 	/**
-	 * Wait (blocking) until the change of the protection key is done
-	 * 
-	 * @return true if successful, false if not successful
+	 * @return the future which is completed when the change of the protection key is done
 	 */
-	public boolean await() {
-		try {
-			latch.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.PUT_RETRIES, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			logger.error("Could not wait until the protection key change has finished. Reason = '{}'. '{}'", e.getMessage(),
-					parameters.toString());
-		}
-
-		return success;
+	public FutureDone<Boolean> getFuture() {
+		return futureResult;
 	}
 
 	@Override
 	public void operationComplete(FuturePut future) throws Exception {
 		if (future.isFailed()) {
 			logger.warn("Change was not successful. Reason = '{}'. '{}'", future.failedReason(), parameters.toString());
-			success = false;
-			latch.countDown();
+			futureResult.done(false);
 		} else {
 			logger.trace("Change of protection key successful. '{}'", parameters.toString());
-			success = true;
-			latch.countDown();
+			futureResult.done(true);
 		}
 	}
 
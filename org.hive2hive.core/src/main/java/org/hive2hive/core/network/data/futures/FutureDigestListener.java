@@ -2,22 +2,20 @@ package org.hive2hive.core.network.data.futures;
 
 import java.util.Collection;
 import java.util.NavigableMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.dht.FutureDigest;
 import net.tomp2p.futures.BaseFutureListener;
+import net.tomp2p.futures.FutureDone;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.peers.Number640;
 
-import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A future listener for a get digest. It can be blocked until the result is here. Then, it returns the
- * desired content or <code>null</code> if the get fails or the content doesn't exist.
+ * A future listener for a get digest. It completes a {@link FutureDone} with the desired content or
+ * <code>null</code> if the get fails or the content doesn't exist.
  * 
  * @author Seppi
  */
@@ -26,34 +24,25 @@ public class FutureDigestListener implements BaseFutureListener<FutureDigest> {
 	private static final Logger logger = LoggerFactory.getLogger(FutureDigestListener.class);
 
 	private final IParameters parameters;
-	private final CountDownLatch latch;
-
-	// the result when it came back
-	private NavigableMap<Number640, Collection<Number160>> result = null;
+	// completed with the result when it came back
+	private final FutureDone<NavigableMap<Number640, Collection<Number160>>> futureResult;
 
 	public FutureDigestListener(IParameters parameters) {
 		this.parameters = parameters;
-		this.latch = new CountDownLatch(1);
+		this.futureResult = new FutureDone<NavigableMap<Number640, Collection<Number160>>>();
 	}
 
 	/**
-	 * Waits (blocking) until the operation is done
-	 * 
-	 * @return returns the content from the DHT
+	 * @return the future which is completed with the digest from the DHT
 	 */
-	public NavigableMap<Number640, Collection<Number160>> awaitAndGet() {
-		try {
-			latch.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			logger.error("Latch to wait for the get was interrupted.");
-		}
-
-		return result;
+	public FutureDone<NavigableMap<Number640, Collection<Number160>>> getFuture() {
+		return futureResult;
 	}
 
 	@Override
 	public void operationComplete(FutureDigest future) throws Exception {
-		if (future.isFailed()) {
+		NavigableMap<Number640, Collection<Number160>> result = null;
+		if (future == null || future.isFailed()) {
 			logger.error("Could not get digest. {}", parameters.toString());
 		} else {
 			result = future.digest().keyDigest();
@@ -63,7 +52,7 @@ public class FutureDigestListener implements BaseFutureListener<FutureDigest> {
 				logger.debug("Got digest. {}", parameters.toString());
 			}
 		}
-		latch.countDown();
+		futureResult.done(result);
 	}
 
 	@Override
@@ -1,21 +1,24 @@
 package org.hive2hive.core.network.data.futures;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.Map.Entry;
 
 import net.tomp2p.dht.FutureGet;
 import net.tomp2p.futures.BaseFutureListener;
+import net.tomp2p.futures.FutureDone;
+import net.tomp2p.peers.Number640;
+import net.tomp2p.storage.Data;
 
-import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.network.data.cache.ContentCache;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A future listener for a get. It can be blocked until the result is here. Then, it returns the desired
- * content or <code>null</code> if the get fails or the content doesn't exist.
+ * A future listener for a get. It completes a {@link FutureDone} with the desired content or
+ * <code>null</code> if the get fails or the content doesn't exist. If a {@link ContentCache} is given, the
+ * received content is stored in it.
  *
  * @author Seppi, Nico
  */
@@ -25,49 +28,71 @@ public class FutureGetListener implements BaseFutureListener<FutureGet> {
 
 	private final IParameters parameters;
 	private final IH2HSerialize serializer;
-	private final CountDownLatch latch;
-
-	// the result when it came back
-	private BaseNetworkContent result = null;
+	private final ContentCache cache;
+	private final String cacheKey;
+	// completed with the result when it came back
+	private final FutureDone<BaseNetworkContent> futureResult;
 
 	public FutureGetListener(IParameters parameters, IH2HSerialize serializer) {
+		this(parameters, serializer, null, null);
+	}
+
+	/**
+	 * @param cache the cache to store the received content in
+	 * @param cacheKey the key to store the content at. If <code>null</code>, the key is derived from the full key
+	 *            (including the version) of the received content.
+	 */
+	public FutureGetListener(IParameters parameters, IH2HSerialize serializer, ContentCache cache, String cacheKey) {
 		this.parameters = parameters;
 		this.serializer = serializer;
-		this.latch = new CountDownLatch(1);
+		this.cache = cache;
+		this.cacheKey = cacheKey;
+		this.futureResult = new FutureDone<BaseNetworkContent>();
 	}
 
 	/**
-	 * Waits (blocking) until the operation is done
-	 *
-	 * @return returns the content from the DHT
+	 * @return the future which is completed with the content from the DHT
 	 */
-	public BaseNetworkContent awaitAndGet() {
-		try {
-			latch.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			logger.error("Latch to wait for the get was interrupted.");
-		}
-		return result;
+	public FutureDone<BaseNetworkContent> getFuture() {
+		return futureResult;
 	}
 
 	@Override
 	public void operationComplete(FutureGet future) throws Exception {
+		BaseNetworkContent result;
 		if (future == null || future.isFailed() || future.isEmpty() || future.data() == null) {
 			result = null;
 			logger.debug("Got null. '{}'", parameters.toString());
 		} else {
-			// set the result
+			// deserialize the result
 			byte[] buffer = future.data().toBytes();
 			if (buffer != null && buffer.length > 0) {
 				result = (BaseNetworkContent) serializer.deserialize(buffer);
 				logger.debug("Got result = '{}'. '{}'", result.getClass().getSimpleName(), parameters.toString());
+				if (cache != null) {
+					cacheResult(future, buffer);
+				}
 			} else {
 				result = null;
 				logger.debug("Got null. '{}'", parameters.toString());
 			}
 		}
-		// release the lock
-		latch.countDown();
+		futureResult.done(result);
+	}
+
+	private void cacheResult(FutureGet future, byte[] buffer) {
+		if (cacheKey != null) {
+			cache.put(cacheKey, buffer);
+			return;
+		}
+
+		// find the version of the received data
+		for (Entry<Number640, Data> entry : future.dataMap().entrySet()) {
+			if (entry.getValue() == future.data()) {
+				cache.put(ContentCache.key(entry.getKey()), buffer);
+				return;
+			}
+		}
 	}
 
 	@Override
@@ -3,13 +3,12 @@ package org.hive2hive.core.network.data.futures;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.dht.FuturePut;
 import net.tomp2p.dht.FutureRemove;
 import net.tomp2p.dht.StorageLayer.PutStatus;
 import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
 import net.tomp2p.peers.Number640;
 import net.tomp2p.peers.PeerAddress;
 
@@ -23,7 +22,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * A put future adapter for verifying a put of a {@link BaseNetworkContent} object. Provides failure handling
- * and a blocking wait.</br></br>
+ * and completes a {@link FutureDone} with the final status.</br></br>
  * 
  * <b>Failure Handling</b></br>
  * Putting can fail when the future object failed, when the future object contains wrong data or the
@@ -40,32 +39,23 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 
 	private final IParameters parameters;
 	private final DataManager dataManager;
-	private final CountDownLatch latch;
+	// completed when the put (including all retries) is done
+	private final FutureDone<H2HPutStatus> futureStatus;
 
 	// used to count put retries
 	private int putTries = 0;
-	// used as return value
-	private H2HPutStatus status;
 
 	public FuturePutListener(IParameters parameters, DataManager dataManager) {
 		this.parameters = parameters;
 		this.dataManager = dataManager;
-		this.latch = new CountDownLatch(1);
+		this.futureStatus = new FutureDone<H2HPutStatus>();
 	}
 
 	/**
-	 * Wait (blocking) until the put is done
-	 * 
-	 * @return true if successful, false if not successful
+	 * @return the future which is completed with the final status of the put
 	 */
-	public H2HPutStatus await() {
-		try {
-			latch.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.PUT_RETRIES, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			logger.error("Could not wait until put has finished.", e);
-		}
-
-		return status;
+	public FutureDone<H2HPutStatus> getFuture() {
+		return futureStatus;
 	}
 
 	@Override
@@ -171,8 +161,7 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 
 							// check if majority of the contacted nodes responded with ok
 							if ((double) fail.size() < ((double) future.rawResult().size()) / 2.0) {
-								status = H2HPutStatus.OK;
-								latch.countDown();
+								futureStatus.done(H2HPutStatus.OK);
 							} else {
 								logger.warn("{} of {} contacted nodes failed. {}", fail.size(), future.rawResult().size(),
 										parameters.toString());
@@ -192,14 +181,12 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 								dataManager.confirmUnblocked(parameters).addListener(this);
 							} else {
 								logger.error("Could not confirm put after {} tries. {}", confirmTries, parameters.toString());
-								status = H2HPutStatus.FAILED;
-								latch.countDown();
+								futureStatus.done(H2HPutStatus.FAILED);
 							}
 						}
 					});
 				} else {
-					status = H2HPutStatus.OK;
-					latch.countDown();
+					futureStatus.done(H2HPutStatus.OK);
 				}
 			} else {
 				logger.warn("Version fork after put detected. Rejecting put.");
@@ -210,8 +197,7 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 						if (future.isFailed()) {
 							logger.warn("Could not delete the prepared put. '{}'", parameters.toString());
 						}
-						status = H2HPutStatus.VERSION_FORK;
-						latch.countDown();
+						futureStatus.done(H2HPutStatus.VERSION_FORK);
 					}
 				});
 			}
@@ -248,8 +234,7 @@ public class FuturePutListener extends BaseFutureAdapter<FuturePut> {
 					if (future.isFailed()) {
 						logger.warn("Could not delete the newly put content. '{}'", parameters.toString());
 					}
-					status = H2HPutStatus.FAILED;
-					latch.countDown();
+					futureStatus.done(H2HPutStatus.FAILED);
 				}
 			});
 		}
@@ -1,11 +1,9 @@
 package org.hive2hive.core.network.data.futures;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-
 import net.tomp2p.dht.FutureDigest;
 import net.tomp2p.dht.FutureRemove;
 import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
 import net.tomp2p.peers.Number640;
 
 import org.hive2hive.core.H2HConstants;
@@ -31,29 +29,21 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 	private final IParameters parameters;
 	private final boolean versionRemove;
 	private final DataManager dataManager;
-	private final CountDownLatch latch;
-	private boolean success = false;
+	// completed with true if the remove has been verified, else false
+	private final FutureDone<Boolean> futureResult;
 
 	public FutureRemoveListener(IParameters parameters, boolean versionRemove, DataManager dataManager) {
 		this.parameters = parameters;
 		this.versionRemove = versionRemove;
 		this.dataManager = dataManager;
-		this.latch = new CountDownLatch(1);
+		this.futureResult = new FutureDone<Boolean>();
 	}
 
 	/**
-	 * Wait (blocking) until the remove is done
-	 * 
-	 * @return true if successful, false if not successful
+	 * @return the future which is completed when the remove (including all retries) is done
 	 */
-	public boolean await() {
-		try {
-			latch.await(H2HConstants.AWAIT_NETWORK_OPERATION_MS * H2HConstants.REMOVE_RETRIES, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			logger.error("Could not wait until put has finished.", e);
-		}
-
-		return success;
+	public FutureDone<Boolean> getFuture() {
+		return futureResult;
 	}
 
 	@Override
@@ -73,16 +63,14 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 						retryRemove();
 					} else {
 						logger.trace("Verification for remove completed. '{}'", parameters.toString());
-						success = true;
-						latch.countDown();
+						futureResult.done(true);
 					}
 				} else {
 					if (!future.digest().keyDigest().isEmpty()) {
 						retryRemove();
 					} else {
 						logger.trace("Verification for remove completed. '{}'", parameters.toString());
-						success = true;
-						latch.countDown();
+						futureResult.done(true);
 					}
 				}
 			}
@@ -103,8 +91,7 @@ public class FutureRemoveListener extends BaseFutureAdapter<FutureRemove> {
 		} else {
 			logger.error("Remove verification failed. Data is not null after {} tries. '{}'", removeTries - 1,
 					parameters.toString());
-			success = false;
-			latch.countDown();
+			futureResult.done(false);
 		}
 	}
 }
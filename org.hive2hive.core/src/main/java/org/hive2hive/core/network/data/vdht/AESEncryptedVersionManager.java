@@ -8,6 +8,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 import javax.crypto.SecretKey;
 
@@ -19,8 +20,11 @@ import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.exceptions.VersionForkAfterPutException;
+import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
 import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.VersionDelta;
+import org.hive2hive.core.model.versioned.VersionSnapshot;
 import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
 import org.hive2hive.core.network.data.parameters.IParameters;
@@ -33,12 +37,28 @@ public class AESEncryptedVersionManager<T extends BaseVersionedNetworkContent> e
 
 	private static final Logger logger = LoggerFactory.getLogger(AESEncryptedVersionManager.class);
 
+	// contents smaller than this are always put completely
+	private static final int MIN_SNAPSHOT_SIZE = 64 * 1024;
+	// a new snapshot is put when the delta exceeds this fraction of the full content
+	private static final double MAX_DELTA_RATIO = 0.25;
+	// a new snapshot is put at the latest after this number of deltas
+	private static final int MAX_DELTAS_PER_SNAPSHOT = 100;
+	private static final String SNAPSHOT_SUFFIX = "_SNAPSHOT";
+
 	private final IH2HEncryption encryption;
 	private final SecretKey encryptionKey;
 
 	// additional cache for encrypted data
 	private Cache<EncryptedNetworkContent> encryptedContentCache = new Cache<EncryptedNetworkContent>();
 
+	// the serialized snapshot the deltas are created against
+	private Number160 snapshotKey;
+	private byte[] snapshot;
+	private int deltaCounter = 0;
+	// replaced snapshots, by the version counter from which on no stored delta points to them anymore. Every
+	// snapshot refers to the one it replaced, thus the ones replaced before a restart are known after loading it
+	private final NavigableMap<Long, Number160> retiredSnapshots = new TreeMap<Long, Number160>();
+
 	public AESEncryptedVersionManager(DataManager dataManager, SecretKey encryptionKey, String locationKey, String contentKey) {
 		this(dataManager, dataManager.getEncryption(), encryptionKey, locationKey, contentKey);
 	}
@@ -156,7 +176,7 @@ public class AESEncryptedVersionManager<T extends BaseVersionedNetworkContent> e
 						try {
 							logger.trace("Decrypting with 256-bit AES key.");
 							EncryptedNetworkContent encrypted = encryptedContentCache.lastEntry().getValue();
-							T decrypted = (T) encryption.decryptAES((EncryptedNetworkContent) encrypted, encryptionKey);
+							T decrypted = decrypt(encrypted);
 							decrypted.setVersionKey(encrypted.getVersionKey());
 							decrypted.setBasedOnKey(encrypted.getBasedOnKey());
 
@@ -164,6 +184,8 @@ public class AESEncryptedVersionManager<T extends BaseVersionedNetworkContent> e
 							contentCache.put(encrypted.getVersionKey(), decrypted);
 
 							return decrypted;
+						} catch (GetFailedException e) {
+							throw e;
 						} catch (GeneralSecurityException e) {
 							logger.error("Cannot decrypt the version.");
 							throw new GetFailedException("Cannot decrypt the version.");
@@ -179,13 +201,15 @@ public class AESEncryptedVersionManager<T extends BaseVersionedNetworkContent> e
 	}
 
 	/**
-	 * Encrypts the modified user profile and puts it (blocking).
+	 * Encrypts the modified user profile and puts it (blocking). Large contents are put as a delta to the
+	 * current snapshot, see {@link VersionDelta}.
 	 * 
 	 * @throws PutFailedException
 	 */
 	public void put(T networkContent, KeyPair protectionKeys) throws PutFailedException {
 		try {
-			EncryptedNetworkContent encrypted = encryption.encryptAES(networkContent, encryptionKey);
+			EncryptedNetworkContent encrypted = encryption.encryptAES(createVersion(networkContent, protectionKeys),
+					encryptionKey);
 			encrypted.setBasedOnKey(networkContent.getBasedOnKey());
 			encrypted.setVersionKey(networkContent.getVersionKey());
 			encrypted.generateVersionKey();
@@ -213,10 +237,163 @@ public class AESEncryptedVersionManager<T extends BaseVersionedNetworkContent> e
 				contentCache.put(parameters.getVersionKey(), networkContent);
 				// cache encrypted network content
 				encryptedContentCache.put(parameters.getVersionKey(), encrypted);
+				removeRetiredSnapshots(encrypted.getVersionKey().timestamp(), protectionKeys);
 			}
 		} catch (GeneralSecurityException | IOException e) {
 			logger.error("Cannot encrypt the user profile. reason = '{}'", e.getMessage());
 			throw new PutFailedException(String.format("Cannot encrypt the user profile. reason = '%s'", e.getMessage()));
 		}
 	}
+
+	/**
+	 * Decrypts a version. If it is a delta, it is folded onto its snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	private T decrypt(EncryptedNetworkContent encrypted) throws GetFailedException, GeneralSecurityException,
+			IOException, ClassNotFoundException {
+		BaseNetworkContent content = encryption.decryptAES(encrypted, encryptionKey);
+		if (!(content instanceof VersionDelta)) {
+			// a full version, the next delta needs a new snapshot
+			snapshot = null;
+			snapshotKey = null;
+			return (T) content;
+		}
+
+		VersionDelta delta = (VersionDelta) content;
+		checkFormat(delta.getFormatVersion());
+		byte[] serialized = BinaryDelta.apply(getSnapshot(delta.getSnapshotKey()), delta.getDelta());
+		// continue creating deltas against the same snapshot
+		deltaCounter = delta.getSequenceNumber();
+		return (T) dataManager.getSerializer().deserialize(serialized);
+	}
+
+	private byte[] getSnapshot(Number160 key) throws GetFailedException, GeneralSecurityException, IOException,
+			ClassNotFoundException {
+		if (key.equals(snapshotKey) && snapshot != null) {
+			return snapshot;
+		}
+
+		logger.debug("Loading snapshot {}. {}", key, parameters.toString());
+		IParameters snapshotParameters = new Parameters().setLocationKey(parameters.getLocationKey())
+				.setContentKey(parameters.getContentKey() + SNAPSHOT_SUFFIX).setVersionKey(key);
+		BaseNetworkContent content = dataManager.getVersion(snapshotParameters);
+		if (!(content instanceof EncryptedNetworkContent)) {
+			throw new GetFailedException("Snapshot of the version not found.");
+		}
+
+		VersionSnapshot loaded = (VersionSnapshot) encryption.decryptAES((EncryptedNetworkContent) content,
+				encryptionKey);
+		checkFormat(loaded.getFormatVersion());
+		if (loaded.getReplacedKey() != null) {
+			retiredSnapshots.put(loaded.getReplacedUntil(), loaded.getReplacedKey());
+		}
+		snapshotKey = key;
+		snapshot = loaded.getSerialized();
+		return snapshot;
+	}
+
+	private void checkFormat(int formatVersion) throws GetFailedException {
+		if (formatVersion > VersionDelta.FORMAT_VERSION) {
+			throw new GetFailedException(String.format(
+					"The version has been put in format %s, only format %s is supported. Please update.",
+					formatVersion, VersionDelta.FORMAT_VERSION));
+		}
+	}
+
+	/**
+	 * Creates the content which is actually put as the next version. Small contents are put completely. Large
+	 * contents are put as a delta to the snapshot. A new snapshot is put if there is none yet or the delta
+	 * grows too large.
+	 */
+	private BaseNetworkContent createVersion(T networkContent, KeyPair protectionKeys) throws IOException,
+			GeneralSecurityException, PutFailedException {
+		byte[] serialized = dataManager.getSerializer().serialize(networkContent);
+		if (serialized.length < MIN_SNAPSHOT_SIZE) {
+			// not worth the additional snapshot
+			snapshot = null;
+			snapshotKey = null;
+			return networkContent;
+		}
+
+		byte[] delta = null;
+		if (snapshot != null && deltaCounter < MAX_DELTAS_PER_SNAPSHOT) {
+			delta = BinaryDelta.create(snapshot, serialized);
+			if (delta.length > serialized.length * MAX_DELTA_RATIO) {
+				logger.debug("Delta has grown to {} bytes. Compacting. {}", delta.length, parameters.toString());
+				delta = null;
+			}
+		}
+
+		if (delta == null) {
+			Number160 replacedKey = snapshotKey;
+			// the versions up to the current one still point to the old snapshot. They are removed from the DHT
+			// when the history grows beyond MAX_VERSIONS_HISTORY
+			long replacedUntil = networkContent.getVersionKey().timestamp() + H2HConstants.MAX_VERSIONS_HISTORY;
+			putSnapshot(serialized, networkContent.getTimeToLive(), protectionKeys, replacedKey, replacedUntil);
+			if (replacedKey != null) {
+				retiredSnapshots.put(replacedUntil, replacedKey);
+			}
+			delta = BinaryDelta.create(snapshot, serialized);
+		}
+
+		deltaCounter++;
+		logger.debug("Putting delta #{} of {} bytes instead of {} bytes. {}", deltaCounter, delta.length,
+				serialized.length, parameters.toString());
+		return new VersionDelta(snapshotKey, deltaCounter, delta, networkContent.getTimeToLive());
+	}
+
+	/**
+	 * Puts a new snapshot. Like the versions, the snapshots get increasing version keys because the DHT only
+	 * keeps the {@link H2HConstants#MAX_VERSIONS_HISTORY} latest ones (by the timestamp of the version key).
+	 */
+	private void putSnapshot(byte[] serialized, int timeToLive, KeyPair protectionKeys, Number160 replacedKey,
+			long replacedUntil) throws IOException, GeneralSecurityException, PutFailedException {
+		// continue after the latest snapshot, it may have been put by another client
+		long counter = 0;
+		NavigableMap<Number640, Collection<Number160>> digest = dataManager.getDigestLatest(new Parameters()
+				.setLocationKey(parameters.getLocationKey()).setContentKey(parameters.getContentKey() + SNAPSHOT_SUFFIX));
+		if (digest != null && digest.lastEntry() != null) {
+			counter = digest.lastEntry().getKey().versionKey().timestamp() + 1;
+		}
+		if (snapshotKey != null) {
+			counter = Math.max(counter, snapshotKey.timestamp() + 1);
+		}
+		Number160 key = new Number160(counter, new Number160(random).number96());
+
+		VersionSnapshot versionSnapshot = new VersionSnapshot(serialized, timeToLive, replacedKey, replacedUntil);
+		EncryptedNetworkContent encrypted = encryption.encryptAES(versionSnapshot, encryptionKey);
+		encrypted.setVersionKey(key);
+
+		IParameters snapshotParameters = new Parameters().setLocationKey(parameters.getLocationKey())
+				.setContentKey(parameters.getContentKey() + SNAPSHOT_SUFFIX).setVersionKey(key)
+				.setNetworkContent(encrypted).setProtectionKeys(protectionKeys).setTTL(timeToLive);
+
+		logger.debug("Putting new snapshot of {} bytes. {}", serialized.length, parameters.toString());
+		if (!dataManager.put(snapshotParameters).equals(H2HPutStatus.OK)) {
+			throw new PutFailedException("Put of the snapshot failed.");
+		}
+
+		snapshotKey = key;
+		snapshot = serialized;
+		deltaCounter = 0;
+	}
+
+	/**
+	 * Removes the replaced snapshots which are not referenced by any stored version anymore.
+	 * 
+	 * @param versionCounter the counter (timestamp of the version key) of the latest version
+	 */
+	private void removeRetiredSnapshots(long versionCounter, KeyPair protectionKeys) {
+		Map<Long, Number160> removable = retiredSnapshots.headMap(versionCounter, true);
+		for (Number160 key : removable.values()) {
+			IParameters snapshotParameters = new Parameters().setLocationKey(parameters.getLocationKey())
+					.setContentKey(parameters.getContentKey() + SNAPSHOT_SUFFIX).setVersionKey(key)
+					.setProtectionKeys(protectionKeys);
+			if (!dataManager.removeVersion(snapshotParameters)) {
+				// e.g. another client removed it already
+				logger.debug("Cannot remove the replaced snapshot {}. {}", key, parameters.toString());
+			}
+		}
+		removable.clear();
+	}
 }
@@ -0,0 +1,214 @@
+package org.hive2hive.core.network.data.vdht;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates and applies binary deltas between two byte arrays (e.g. two serialized versions of the same
+ * object). The base is split into blocks which are found in the target with a rolling hash (similar to
+ * rsync), thus inserted or removed bytes do not break the matching of the remaining data. A delta consists of
+ * instructions to copy a range of the base or to insert literal bytes.
+ */
+public final class BinaryDelta {
+
+	private static final int BLOCK_SIZE = 64;
+	private static final int PRIME = 31;
+
+	private static final byte COPY = 0;
+	private static final byte INSERT = 1;
+
+	private BinaryDelta() {
+		// only static methods
+	}
+
+	/**
+	 * Creates the delta that transforms the base into the target
+	 *
+	 * @param base the old version
+	 * @param target the new version
+	 * @return the encoded delta
+	 */
+	public static byte[] create(byte[] base, byte[] target) {
+		try {
+			return create(base, target, new DeltaWriter(target));
+		} catch (IOException e) {
+			// cannot happen when writing into a byte array
+			throw new IllegalStateException("Cannot write the delta", e);
+		}
+	}
+
+	private static byte[] create(byte[] base, byte[] target, DeltaWriter writer) throws IOException {
+		Map<Integer, Integer> blocks = indexBlocks(base);
+		int power = power();
+
+		int position = 0;
+		int hash = 0;
+		boolean hashValid = false;
+		while (position + BLOCK_SIZE <= target.length) {
+			if (!hashValid) {
+				hash = hash(target, position);
+				hashValid = true;
+			}
+
+			Integer offset = blocks.get(hash);
+			if (offset != null && equals(base, offset, target, position, BLOCK_SIZE)) {
+				// extend the match as far as possible
+				int length = BLOCK_SIZE;
+				while (offset + length < base.length && position + length < target.length
+						&& base[offset + length] == target[position + length]) {
+					length++;
+				}
+
+				writer.copy(position, offset, length);
+				position += length;
+				hashValid = false;
+			} else {
+				if (position + BLOCK_SIZE < target.length) {
+					// roll the hash one byte further
+					hash = (hash - (target[position] & 0xFF) * power) * PRIME + (target[position + BLOCK_SIZE] & 0xFF);
+				}
+				position++;
+			}
+		}
+
+		return writer.finish();
+	}
+
+	/**
+	 * Applies the delta to the base
+	 *
+	 * @param base the old version the delta has been created with
+	 * @param delta the encoded delta
+	 * @return the new version
+	 * @throws IOException if the delta is malformed or does not belong to the base
+	 */
+	public static byte[] apply(byte[] base, byte[] delta) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(delta));
+		byte[] target = new byte[in.readInt()];
+
+		int position = 0;
+		while (position < target.length) {
+			byte type = in.readByte();
+			int length;
+			if (type == COPY) {
+				int offset = in.readInt();
+				length = in.readInt();
+				if (offset < 0 || length < 0 || offset + length > base.length || position + length > target.length) {
+					throw new IOException("Delta does not match the base");
+				}
+				System.arraycopy(base, offset, target, position, length);
+			} else if (type == INSERT) {
+				length = in.readInt();
+				if (length < 0 || position + length > target.length) {
+					throw new IOException("Delta is malformed");
+				}
+				in.readFully(target, position, length);
+			} else {
+				throw new IOException("Unknown delta instruction " + type);
+			}
+			position += length;
+		}
+
+		return target;
+	}
+
+	private static Map<Integer, Integer> indexBlocks(byte[] base) {
+		Map<Integer, Integer> blocks = new HashMap<Integer, Integer>(Math.max(16, base.length / BLOCK_SIZE * 2));
+		for (int offset = 0; offset + BLOCK_SIZE <= base.length; offset += BLOCK_SIZE) {
+			Integer hash = hash(base, offset);
+			if (!blocks.containsKey(hash)) {
+				blocks.put(hash, offset);
+			}
+		}
+		return blocks;
+	}
+
+	private static int hash(byte[] data, int offset) {
+		int hash = 0;
+		for (int i = offset; i < offset + BLOCK_SIZE; i++) {
+			hash = hash * PRIME + (data[i] & 0xFF);
+		}
+		return hash;
+	}
+
+	private static int power() {
+		int power = 1;
+		for (int i = 0; i < BLOCK_SIZE - 1; i++) {
+			power *= PRIME;
+		}
+		return power;
+	}
+
+	private static boolean equals(byte[] a, int offsetA, byte[] b, int offsetB, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[offsetA + i] != b[offsetB + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the instructions. Literal bytes are collected until the next copy and adjacent copies are merged.
+	 */
+	private static class DeltaWriter {
+
+		private final byte[] target;
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		// start of the literal bytes not written yet
+		private int literalStart = 0;
+		// the pending copy instruction
+		private int copyOffset = -1;
+		private int copyLength = 0;
+
+		public DeltaWriter(byte[] target) throws IOException {
+			this.target = target;
+			out.writeInt(target.length);
+		}
+
+		public void copy(int position, int offset, int length) throws IOException {
+			if (literalStart == position && copyOffset >= 0 && copyOffset + copyLength == offset) {
+				// continues the previous copy
+				copyLength += length;
+			} else {
+				flushCopy();
+				flushLiteral(position);
+				copyOffset = offset;
+				copyLength = length;
+			}
+			literalStart = position + length;
+		}
+
+		public byte[] finish() throws IOException {
+			flushCopy();
+			flushLiteral(target.length);
+			return bytes.toByteArray();
+		}
+
+		private void flushCopy() throws IOException {
+			if (copyOffset >= 0) {
+				out.writeByte(COPY);
+				out.writeInt(copyOffset);
+				out.writeInt(copyLength);
+				copyOffset = -1;
+				copyLength = 0;
+			}
+		}
+
+		private void flushLiteral(int end) throws IOException {
+			if (end > literalStart) {
+				out.writeByte(INSERT);
+				out.writeInt(end - literalStart);
+				out.write(target, literalStart, end - literalStart);
+				literalStart = end;
+			}
+		}
+	}
+}
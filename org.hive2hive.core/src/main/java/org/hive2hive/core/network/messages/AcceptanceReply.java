@@ -20,6 +20,8 @@ public enum AcceptanceReply {
 	FAILURE_DECRYPTION,
 	/** When signature is wrong */
 	FAILURE_SIGNATURE,
+	/** When the session key of the message is unknown or expired. The message should be re-sent without it. */
+	FAILURE_SESSION,
 	/** When the deserialization failed */
 	FAILURE_DESERIALIZATION,
 	/**
@@ -33,5 +35,7 @@ public enum AcceptanceReply {
 	 */
 	FUTURE_FAILURE,
 	/** Generic message to indicate that the message was sent to the wrong target. */
-	WRONG_TARGET
+	WRONG_TARGET,
+	/** The target is currently too busy to handle the message. It should be re-sent later. */
+	ASK_LATER
 }
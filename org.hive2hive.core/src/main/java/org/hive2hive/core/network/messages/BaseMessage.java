@@ -52,6 +52,9 @@ public abstract class BaseMessage implements Runnable, Serializable {
 
 	private transient int routedSendingCounter = 0;
 
+	// a new session key for direct messages, sent within the signed message
+	private SessionKeyStore.Offer sessionOffer;
+
 	/**
 	 * Constructor for an asynchronous message.
 	 * 
@@ -150,6 +153,25 @@ public abstract class BaseMessage implements Runnable, Serializable {
 		this.senderPublicKey = senderPublicKey;
 	}
 
+	/**
+	 * Getter
+	 * 
+	 * @return the session key offered to the receiver or <code>null</code>
+	 */
+	public SessionKeyStore.Offer getSessionOffer() {
+		return sessionOffer;
+	}
+
+	/**
+	 * Setter
+	 * 
+	 * @param sessionOffer
+	 *            the session key offered to the receiver (see {@link SessionKeyStore})
+	 */
+	public void setSessionOffer(SessionKeyStore.Offer sessionOffer) {
+		this.sessionOffer = sessionOffer;
+	}
+
 	/**
 	 * Setter
 	 * 
@@ -209,6 +231,8 @@ public abstract class BaseMessage implements Runnable, Serializable {
 			case FAILURE:
 			case FUTURE_FAILURE:
 			case FAILURE_DESERIALIZATION:
+			case FAILURE_SESSION:
+			case ASK_LATER:
 				if (SendingBehavior.SEND_MAX_ALLOWED_TIMES == sendingBehavior) {
 					if (routedSendingCounter < H2HConstants.MAX_MESSAGE_SENDING) {
 						return true;
@@ -1,6 +1,7 @@
 package org.hive2hive.core.network.messages;
 
 import java.security.PublicKey;
+import java.util.concurrent.Future;
 
 import net.tomp2p.futures.FutureDirect;
 import net.tomp2p.futures.FutureResponse;
@@ -43,4 +44,17 @@ public interface IMessageManager {
 	 */
 	boolean sendDirect(BaseDirectMessage message, PublicKey targetPublicKey);
 
+	/**
+	 * Send a message directly to a node like {@link #sendDirect(BaseDirectMessage, PublicKey)}, but without
+	 * blocking the caller. The messages are sent by a bounded number of threads, which allows to contact many
+	 * nodes in parallel.
+	 * 
+	 * @param message
+	 *            a direct message to send
+	 * @param targetPublicKey
+	 *            the public key of the receivers node to encrypt the message
+	 * @return the future which is completed with the result of {@link #sendDirect(BaseDirectMessage, PublicKey)}
+	 */
+	Future<Boolean> sendDirectAsync(BaseDirectMessage message, PublicKey targetPublicKey);
+
 }
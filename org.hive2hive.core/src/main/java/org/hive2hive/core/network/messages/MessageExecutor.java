@@ -0,0 +1,226 @@
+package org.hive2hive.core.network.messages;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles the received messages with a bounded number of threads. Every message type has its own thread pool
+ * and queue, thus a burst of one message type (e.g. chunk requests) cannot starve the others (e.g. responses
+ * a handler is waiting for). If the queue of a message type is full, the message is rejected and the sender
+ * gets an {@link AcceptanceReply#ASK_LATER}.<br>
+ * The executor counts the handled and rejected messages and measures the handling latency (from the
+ * submission until the handler finished).
+ */
+public class MessageExecutor {
+
+	private static final Logger logger = LoggerFactory.getLogger(MessageExecutor.class);
+
+	// idle threads are stopped after this time
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private final int threadsPerType;
+	private final int queueSizePerType;
+	private final Map<Class<?>, TypeExecutor> executors = new ConcurrentHashMap<Class<?>, TypeExecutor>();
+
+	private final AtomicLong handled = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * @param threadsPerType the maximum number of threads handling messages of the same type concurrently
+	 * @param queueSizePerType the maximum number of messages of the same type waiting to be handled
+	 */
+	public MessageExecutor(int threadsPerType, int queueSizePerType) {
+		if (threadsPerType < 1 || queueSizePerType < 1) {
+			throw new IllegalArgumentException("At least one thread and one queue slot is required.");
+		}
+		this.threadsPerType = threadsPerType;
+		this.queueSizePerType = queueSizePerType;
+	}
+
+	/**
+	 * Handles the message asynchronously
+	 *
+	 * @param message the accepted message
+	 * @return <code>true</code> if the message will be handled, <code>false</code> if the executor is
+	 *         saturated with messages of this type
+	 */
+	public boolean execute(BaseMessage message) {
+		return execute(message.getClass(), message);
+	}
+
+	/**
+	 * Executes a task on behalf of a message type (e.g. the verification before the message can be handled)
+	 *
+	 * @param messageType the type of the message the task belongs to
+	 * @param task the task to execute
+	 * @return <code>true</code> if the task will be executed, <code>false</code> if the executor is saturated
+	 *         with tasks of this message type
+	 */
+	public boolean execute(Class<?> messageType, Runnable task) {
+		try {
+			getExecutor(messageType).execute(new MeasuredTask(task));
+			return true;
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			logger.warn("Too many '{}' messages to handle. Queue depth = {}.", messageType.getSimpleName(),
+					getQueueDepth(messageType));
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of messages waiting to be handled (over all types)
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (TypeExecutor executor : executors.values()) {
+			depth += executor.getQueue().size();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return the number of messages of the given type waiting to be handled
+	 */
+	public int getQueueDepth(Class<?> messageType) {
+		TypeExecutor executor = executors.get(messageType);
+		return executor == null ? 0 : executor.getQueue().size();
+	}
+
+	/**
+	 * @return the number of messages that are currently handled (over all types)
+	 */
+	public int getActiveCount() {
+		int active = 0;
+		for (TypeExecutor executor : executors.values()) {
+			active += executor.getActiveCount();
+		}
+		return active;
+	}
+
+	/**
+	 * @return the number of messages (and tasks) that have been handled
+	 */
+	public long getHandledCount() {
+		return handled.get();
+	}
+
+	/**
+	 * @return the number of messages (and tasks) that have been rejected because the executor was saturated
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return the average time from the submission of a message until it has been handled (in milliseconds)
+	 */
+	public double getAverageLatencyMs() {
+		long count = handled.get();
+		if (count == 0) {
+			return 0;
+		}
+		return totalLatencyNanos.get() / (double) count / 1000000.0;
+	}
+
+	/**
+	 * @return the longest time from the submission of a message until it has been handled (in milliseconds)
+	 */
+	public double getMaxLatencyMs() {
+		return maxLatencyNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * Stops all threads. Messages waiting in the queues are not handled anymore. New threads are started when
+	 * the next message arrives.
+	 */
+	public void shutdown() {
+		synchronized (executors) {
+			for (TypeExecutor executor : executors.values()) {
+				executor.shutdownNow();
+			}
+			executors.clear();
+		}
+	}
+
+	private TypeExecutor getExecutor(Class<?> messageType) {
+		TypeExecutor executor = executors.get(messageType);
+		if (executor == null) {
+			synchronized (executors) {
+				executor = executors.get(messageType);
+				if (executor == null) {
+					executor = new TypeExecutor(messageType);
+					executors.put(messageType, executor);
+				}
+			}
+		}
+		return executor;
+	}
+
+	private void recordLatency(long latencyNanos) {
+		handled.incrementAndGet();
+		totalLatencyNanos.addAndGet(latencyNanos);
+
+		long max = maxLatencyNanos.get();
+		while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos)) {
+			max = maxLatencyNanos.get();
+		}
+	}
+
+	/**
+	 * The thread pool for a single message type. The threads are only started when needed.
+	 */
+	private class TypeExecutor extends ThreadPoolExecutor {
+
+		public TypeExecutor(final Class<?> messageType) {
+			super(threadsPerType, threadsPerType, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(queueSizePerType), new ThreadFactory() {
+
+						private final AtomicInteger counter = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, String.format("H2H %s handler %s",
+									messageType.getSimpleName(), counter.incrementAndGet()));
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			allowCoreThreadTimeOut(true);
+		}
+	}
+
+	private class MeasuredTask implements Runnable {
+
+		private final Runnable task;
+		private final long submitted;
+
+		public MeasuredTask(Runnable task) {
+			this.task = task;
+			this.submitted = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				logger.error("Handling the message failed.", e);
+			} finally {
+				recordLatency(System.nanoTime() - submitted);
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package org.hive2hive.core.network.messages;
 import io.netty.buffer.Unpooled;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
@@ -11,6 +12,11 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.dht.FutureSend;
 import net.tomp2p.futures.FutureDirect;
@@ -18,6 +24,7 @@ import net.tomp2p.message.Buffer;
 import net.tomp2p.p2p.RequestP2PConfiguration;
 import net.tomp2p.peers.Number160;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
@@ -44,11 +51,21 @@ public final class MessageManager implements IMessageManager {
 	private final NetworkManager networkManager;
 	private final Map<String, Set<IResponseCallBackHandler>> callBackHandlers;
 	private final IH2HSerialize serializer;
+	// sends messages to multiple peers in parallel, re-created after a shutdown
+	private ThreadPoolExecutor sendingExecutor;
+	// symmetric keys for direct messages
+	private final SessionKeyStore sessionKeyStore;
+	// how well other peers served this peer
+	private final PeerScoreBoard peerScoreBoard;
+	private volatile boolean sessionKeysEnabled = true;
 
 	public MessageManager(NetworkManager networkManager, IH2HSerialize serializer) {
 		this.networkManager = networkManager;
 		this.serializer = serializer;
 		this.callBackHandlers = new HashMap<>();
+		this.sendingExecutor = createSendingExecutor();
+		this.sessionKeyStore = new SessionKeyStore();
+		this.peerScoreBoard = new PeerScoreBoard();
 	}
 
 	@Override
@@ -63,6 +80,8 @@ public final class MessageManager implements IMessageManager {
 		// prepare message
 		prepareMessage(message);
 		message.increaseRoutedSendingCounter();
+		// sessions are only established between directly connected peers
+		message.setSessionOffer(null);
 
 		// encrypt the message with the given public key
 		HybridEncryptedContent encryptedMessage = signAndEncryptMessage(message, targetPublicKey);
@@ -111,8 +130,8 @@ public final class MessageManager implements IMessageManager {
 		prepareMessage(message);
 		message.increaseDirectSendingCounter();
 
-		// encrypt the message with the given public key
-		HybridEncryptedContent encryptedMessage = signAndEncryptMessage(message, targetPublicKey);
+		// encrypt the message with the session key or the given public key
+		Serializable encryptedMessage = encryptDirectMessage(message, targetPublicKey);
 		if (encryptedMessage == null) {
 			return false;
 		}
@@ -145,6 +164,63 @@ public final class MessageManager implements IMessageManager {
 		return success;
 	}
 
+	@Override
+	public Future<Boolean> sendDirectAsync(final BaseDirectMessage message, final PublicKey targetPublicKey) {
+		return getSendingExecutor().submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return sendDirect(message, targetPublicKey);
+			}
+		});
+	}
+
+	/**
+	 * Stops sending the messages which are sent asynchronously. Called when the peer disconnects.
+	 */
+	public synchronized void shutdown() {
+		sendingExecutor.shutdownNow();
+		// the address of this peer may change with the next connection
+		sessionKeyStore.clear();
+		logger.debug("Message sending stopped");
+	}
+
+	private synchronized ThreadPoolExecutor getSendingExecutor() {
+		if (sendingExecutor.isShutdown()) {
+			// connected again
+			sendingExecutor = createSendingExecutor();
+		}
+		return sendingExecutor;
+	}
+
+	private static ThreadPoolExecutor createSendingExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(H2HConstants.MESSAGE_SENDING_THREADS,
+				H2HConstants.MESSAGE_SENDING_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * @return the symmetric session keys used for direct messages
+	 */
+	public SessionKeyStore getSessionKeyStore() {
+		return sessionKeyStore;
+	}
+
+	/**
+	 * @return the scores of the peers this peer communicated with
+	 */
+	public PeerScoreBoard getPeerScoreBoard() {
+		return peerScoreBoard;
+	}
+
+	/**
+	 * Enables or disables the symmetric session keys for direct messages. If disabled, every direct message is
+	 * hybrid encrypted and signed.
+	 */
+	public void setSessionKeysEnabled(boolean sessionKeysEnabled) {
+		this.sessionKeysEnabled = sessionKeysEnabled;
+	}
+
 	/**
 	 * Gets and removes a message callback handler
 	 * 
@@ -195,6 +271,47 @@ public final class MessageManager implements IMessageManager {
 		}
 	}
 
+	/**
+	 * Encrypts a direct message with the session key of the target peer. If there is no session yet, the
+	 * message is hybrid encrypted and signed and offers a new session key to the target.
+	 */
+	private Serializable encryptDirectMessage(BaseDirectMessage message, PublicKey targetPublicKey) {
+		if (!sessionKeysEnabled) {
+			message.setSessionOffer(null);
+			return signAndEncryptMessage(message, targetPublicKey);
+		}
+
+		H2HSession userSession;
+		try {
+			userSession = networkManager.getSession();
+		} catch (NoSessionException e) {
+			logger.error("No logged in user / no session. The message will not be sent.", e);
+			return null;
+		}
+
+		PublicKey ownPublicKey = userSession.getKeyPair().getPublic();
+		String securityProvider = networkManager.getEncryption().getSecurityProvider();
+		SessionKeyStore.OutgoingSession session = sessionKeyStore.getSession(message.getTargetAddress(),
+				targetPublicKey, ownPublicKey);
+		if (session == null) {
+			message.setSessionOffer(sessionKeyStore.createOffer(message.getTargetAddress(), targetPublicKey,
+					ownPublicKey, securityProvider));
+			return signAndEncryptMessage(message, targetPublicKey);
+		}
+
+		message.setSessionOffer(null);
+		try {
+			byte[] messageBytes = serializer.serialize(message);
+			byte[] nonce = EncryptionUtil.generateGCMNonce();
+			byte[] encrypted = EncryptionUtil.encryptAESGCM(messageBytes, session.getKey(), nonce, session.getId()
+					.getBytes(), securityProvider);
+			return new SessionEncryptedContent(userSession.getUserId(), session.getId(), nonce, encrypted);
+		} catch (GeneralSecurityException | IOException e) {
+			logger.error("An exception occured while encrypting the message. The message will not be sent.", e);
+			return null;
+		}
+	}
+
 	private HybridEncryptedContent signAndEncryptMessage(BaseMessage message, PublicKey targetPublicKey) {
 		H2HSession session;
 		try {
@@ -5,6 +5,7 @@ import net.tomp2p.message.Buffer;
 import net.tomp2p.peers.PeerAddress;
 import net.tomp2p.rpc.ObjectDataReply;
 import net.tomp2p.rpc.RawDataReply;
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
@@ -19,6 +20,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.PublicKey;
@@ -27,10 +29,14 @@ import java.security.SignatureException;
 /**
  * This is the general message handler of each node. It checks if received
  * message is ok (depends on message e.g. routed to correct node). If accepted
- * the message gets independently handled in a own thread. As soon as the
- * handler thread has started the reply handler gives immediately response to
+ * the message gets independently handled by the {@link MessageExecutor}. As
+ * soon as the message is queued the reply handler gives immediately response to
  * the sender node. This design allows a quick and non-blocking message
- * handling.
+ * handling. If the executor is saturated, the sender is asked to send the
+ * message later.<br>
+ * Direct messages can also be encrypted with a symmetric session key (see
+ * {@link SessionKeyStore}), which has been offered in an earlier, signed
+ * message of the same user.
  *
  * @author Nendor
  * @author Seppi
@@ -43,11 +49,28 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 
 	private final NetworkManager networkManager;
 	private final IH2HSerialize serializer;
+	private final MessageExecutor executor;
 
 	public MessageReplyHandler(NetworkManager networkManager, IH2HSerialize serializer)
+	{
+		this(networkManager, serializer, new MessageExecutor(H2HConstants.MESSAGE_HANDLER_THREADS,
+				H2HConstants.MESSAGE_HANDLER_QUEUE_SIZE));
+	}
+
+	public MessageReplyHandler(NetworkManager networkManager, IH2HSerialize serializer,
+			MessageExecutor executor)
 	{
 		this.networkManager = networkManager;
 		this.serializer = serializer;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return the executor handling the received messages (e.g. to read its metrics)
+	 */
+	public MessageExecutor getExecutor()
+	{
+		return executor;
 	}
 
 	@Override
@@ -90,7 +113,11 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 	@Override
 	public Object reply(PeerAddress sender, Object request)
 	{
-		if (!(request instanceof HybridEncryptedContent))
+		if (request instanceof SessionEncryptedContent)
+		{
+			return replySessionEncrypted((SessionEncryptedContent) request);
+		}
+		else if (!(request instanceof HybridEncryptedContent))
 		{
 			logger.error("Received unknown object {}", request);
 			return null;
@@ -164,39 +191,16 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 					return AcceptanceReply.FAILURE_SIGNATURE;
 				}
 
-				// give a network manager reference to work (verify, handle)
-				try
-				{
-					receivedMessage.setNetworkManager(networkManager);
-				}
-				catch(NoPeerConnectionException e)
-				{
-					logger.error("Cannot process the message because the peer is not connected.", e);
-					return AcceptanceReply.FAILURE;
-				}
-
-				// check if message gets accepted
-				AcceptanceReply reply = receivedMessage.accept();
-				if (AcceptanceReply.OK == reply)
-				{
-					// handle message in own thread
-					logger.debug("Received and accepted the message. Node ID = '{}'.",
-							networkManager.getNodeId());
-					new Thread(receivedMessage).start();
-				}
-				else
-				{
-					logger.warn(
-							"Received but denied a message. Acceptance reply = '{}', Node ID = '{}'.",
-							reply, networkManager.getNodeId());
-				}
-
-				return reply;
+				registerSessionOffer(receivedMessage, senderId, session);
+				return acceptAndExecute(receivedMessage);
 			}
 			else
 			{
-				new Thread(new VerifyMessage(senderId, decryptedMessage, signature, receivedMessage))
-						.start();
+				if (!executor.execute(receivedMessage.getClass(),
+						new VerifyMessage(senderId, decryptedMessage, signature, receivedMessage)))
+				{
+					return AcceptanceReply.ASK_LATER;
+				}
 				return AcceptanceReply.OK_PROVISIONAL;
 			}
 		}
@@ -207,6 +211,133 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 		}
 	}
 
+	/**
+	 * Decrypts a direct message with the session key the sender offered before. The authentication tag of the
+	 * encryption proves that the message has been sent by the user who offered the key.
+	 */
+	private AcceptanceReply replySessionEncrypted(SessionEncryptedContent encryptedMessage)
+	{
+		SessionKeyStore.IncomingSession incoming;
+		try
+		{
+			KeyPair keys = networkManager.getSession().getKeyPair();
+			incoming = networkManager.getMessageManager().getSessionKeyStore()
+					.getIncoming(encryptedMessage.getSessionId(), keys.getPublic());
+		}
+		catch(NoSessionException | NoPeerConnectionException e)
+		{
+			logger.warn("Currently no user is logged in! Keys for decryption needed. Node ID = '{}'.",
+					networkManager.getNodeId());
+			return AcceptanceReply.FAILURE;
+		}
+
+		if (incoming == null)
+		{
+			logger.debug("Unknown or expired session key. Node ID = '{}'.", networkManager.getNodeId());
+			return AcceptanceReply.FAILURE_SESSION;
+		}
+		else if (!incoming.getSenderId().equals(encryptedMessage.getUserId()))
+		{
+			logger.warn("Session key of user '{}' used by user '{}'. Node ID = '{}'.", incoming.getSenderId(),
+					encryptedMessage.getUserId(), networkManager.getNodeId());
+			return AcceptanceReply.FAILURE_SESSION;
+		}
+
+		byte[] decryptedMessage;
+		try
+		{
+			decryptedMessage = EncryptionUtil.decryptAESGCM(encryptedMessage.getEncryptedData(),
+					incoming.getKey(), encryptedMessage.getNonce(), encryptedMessage.getSessionId().getBytes(),
+					networkManager.getEncryption().getSecurityProvider());
+		}
+		catch(GeneralSecurityException e)
+		{
+			logger.warn("Decryption of message with session key failed.", e);
+			return AcceptanceReply.FAILURE_SESSION;
+		}
+
+		Object message;
+		try
+		{
+			message = serializer.deserialize(decryptedMessage);
+		}
+		catch(IOException | ClassNotFoundException e)
+		{
+			logger.error("Message could not be deserialized.", e);
+			return AcceptanceReply.FAILURE_DESERIALIZATION;
+		}
+
+		if (!(message instanceof BaseMessage))
+		{
+			logger.error("Received unknown object.");
+			return AcceptanceReply.FAILURE;
+		}
+
+		return acceptAndExecute((BaseMessage) message);
+	}
+
+	/**
+	 * Checks if the message gets accepted and hands it over to the executor
+	 */
+	private AcceptanceReply acceptAndExecute(BaseMessage receivedMessage)
+	{
+		// give a network manager reference to work (verify, handle)
+		try
+		{
+			receivedMessage.setNetworkManager(networkManager);
+		}
+		catch(NoPeerConnectionException e)
+		{
+			logger.error("Cannot process the message because the peer is not connected.", e);
+			return AcceptanceReply.FAILURE;
+		}
+
+		// check if message gets accepted
+		AcceptanceReply reply = receivedMessage.accept();
+		if (AcceptanceReply.OK == reply)
+		{
+			// handle message in own thread
+			if (!executor.execute(receivedMessage))
+			{
+				return AcceptanceReply.ASK_LATER;
+			}
+			logger.debug("Received and accepted the message. Node ID = '{}'.", networkManager.getNodeId());
+		}
+		else
+		{
+			logger.warn("Received but denied a message. Acceptance reply = '{}', Node ID = '{}'.", reply,
+					networkManager.getNodeId());
+		}
+
+		return reply;
+	}
+
+	/**
+	 * Registers the session key offered in a message. Must only be called after the signature of the message
+	 * has been verified.
+	 */
+	private void registerSessionOffer(BaseMessage message, String senderId, H2HSession session)
+	{
+		if (message.getSessionOffer() == null)
+		{
+			return;
+		}
+
+		try
+		{
+			if (!networkManager.getMessageManager().getSessionKeyStore()
+					.register(message.getSessionOffer(), senderId, session.getKeyPair().getPublic()))
+			{
+				logger.warn("User '{}' offered a session id that is used by another user. Node ID = '{}'.",
+						senderId, networkManager.getNodeId());
+			}
+		}
+		catch(NoPeerConnectionException e)
+		{
+			logger.warn("Cannot register the session key because the peer is not connected.");
+		}
+	}
+
 	private boolean verifySignature(String senderId, byte[] decryptedMessage, byte[] signature)
 	{
 		try
@@ -260,6 +391,15 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 				return;
 			}
 
+			try
+			{
+				registerSessionOffer(message, senderId, networkManager.getSession());
+			}
+			catch(NoSessionException e)
+			{
+				logger.warn("Cannot register the session key because no user is logged in.");
+			}
+
 			// give a network manager reference to work (verify, handle)
 			try
 			{
@@ -275,10 +415,10 @@ public class MessageReplyHandler implements RawDataReply, ObjectDataReply
 			AcceptanceReply reply = message.accept();
 			if (AcceptanceReply.OK == reply)
 			{
-				// handle message in own thread
+				// already running in a handler thread of this message type
 				logger.debug("Received and accepted the message. Node ID = '{}'.",
 						networkManager.getNodeId());
-				new Thread(message).start();
+				message.run();
 			}
 			else
 			{
@@ -0,0 +1,206 @@
+package org.hive2hive.core.network.messages;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+
+/**
+ * Remembers how well other peers served this peer: the round trip time of direct messages, the throughput
+ * of direct downloads and how often a peer failed or was busy ({@link AcceptanceReply#ASK_LATER}). The
+ * failures and busy answers decay with a half-life of {@link H2HConstants#PEER_SCORE_HALF_LIFE_MS}, thus a
+ * peer recovers from a bad period. Peers flagged as slow ({@link PeerAddress#isSlow()}) are penalized by
+ * {@link H2HConstants#SLOW_PEER_SCORE_FACTOR}.
+ */
+public class PeerScoreBoard {
+
+	// the weight of the latest measurement when averaging the round trip time and the throughput
+	private static final double MEASUREMENT_WEIGHT = 0.3;
+	// a busy answer counts less than a failure
+	private static final double ASK_LATER_WEIGHT = 0.5;
+	// number of recent failures after which a peer is considered unreliable
+	private static final double UNRELIABLE_FAILURES = 3;
+	// the delay before re-sending to a busy peer grows up to this factor
+	private static final int MAX_DELAY_FACTOR = 8;
+	// the scores are cleaned up when exceeding this number of peers
+	private static final int MAX_PEERS = 1024;
+
+	private final Map<PeerAddress, Score> scores = new ConcurrentHashMap<PeerAddress, Score>();
+
+	/**
+	 * Records the time until a direct message has been accepted by the peer
+	 */
+	public void recordRoundTrip(PeerAddress peer, long durationMs) {
+		getOrCreate(peer).recordRoundTrip(Math.max(1, durationMs));
+	}
+
+	/**
+	 * Records the bytes received from the peer and the time it took to get them
+	 */
+	public void recordTransfer(PeerAddress peer, long bytes, long durationMs) {
+		if (bytes > 0) {
+			getOrCreate(peer).recordThroughput((double) bytes / Math.max(1, durationMs));
+		}
+	}
+
+	/**
+	 * Records that the peer was alive but too busy to handle a request
+	 */
+	public void recordAskLater(PeerAddress peer) {
+		getOrCreate(peer).recordAskLater();
+	}
+
+	/**
+	 * Records that the peer could not be reached, declined or sent invalid data
+	 */
+	public void recordFailure(PeerAddress peer) {
+		getOrCreate(peer).recordFailure();
+	}
+
+	/**
+	 * @return whether the throughput of the peer has been measured
+	 */
+	public boolean isKnown(PeerAddress peer) {
+		Score score = scores.get(peer);
+		return score != null && score.throughput > 0;
+	}
+
+	/**
+	 * Estimates the throughput of a peer, reduced by its recent failures and busy answers
+	 *
+	 * @param peer the peer to rate
+	 * @param unknownThroughput the throughput to assume if it has not been measured yet (bytes per ms)
+	 * @return the score, higher is better
+	 */
+	public double getScore(PeerAddress peer, double unknownThroughput) {
+		Score score = scores.get(peer);
+		double value = unknownThroughput;
+		if (score != null) {
+			if (score.throughput > 0) {
+				value = score.throughput;
+			}
+			long now = System.currentTimeMillis();
+			value /= 1 + score.getFailures(now) + ASK_LATER_WEIGHT * score.getAskLater(now);
+		}
+
+		if (peer.isSlow()) {
+			value *= H2HConstants.SLOW_PEER_SCORE_FACTOR;
+		}
+		return value;
+	}
+
+	/**
+	 * @return the average round trip time to the peer in milliseconds or -1 if not known
+	 */
+	public double getRoundTripTime(PeerAddress peer) {
+		Score score = scores.get(peer);
+		return score == null || score.roundTrip <= 0 ? -1 : score.roundTrip;
+	}
+
+	/**
+	 * @return whether the peer failed repeatedly in the recent past
+	 */
+	public boolean isUnreliable(PeerAddress peer) {
+		Score score = scores.get(peer);
+		return score != null && score.getFailures(System.currentTimeMillis()) >= UNRELIABLE_FAILURES;
+	}
+
+	/**
+	 * Calculates the delay before contacting a busy peer again, which grows with its busy answers
+	 *
+	 * @param peer the busy peer
+	 * @param baseDelayMs the delay if the peer has not been busy recently
+	 * @return the delay in milliseconds
+	 */
+	public long getAskLaterDelay(PeerAddress peer, long baseDelayMs) {
+		Score score = scores.get(peer);
+		if (score == null) {
+			return baseDelayMs;
+		}
+		double factor = Math.min(MAX_DELAY_FACTOR, Math.max(1, score.getAskLater(System.currentTimeMillis())));
+		return (long) (baseDelayMs * factor);
+	}
+
+	private Score getOrCreate(PeerAddress peer) {
+		Score score = scores.get(peer);
+		if (score == null) {
+			if (scores.size() >= MAX_PEERS) {
+				removeStale();
+			}
+			score = new Score();
+			scores.put(peer, score);
+		}
+		return score;
+	}
+
+	/**
+	 * Removes the peers that have not been rated for a long time
+	 */
+	private void removeStale() {
+		long expiry = System.currentTimeMillis() - 10 * H2HConstants.PEER_SCORE_HALF_LIFE_MS;
+		Iterator<Score> iterator = scores.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().updated < expiry) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private static class Score {
+
+		// in milliseconds, 0 if not measured
+		private volatile double roundTrip = 0;
+		// in bytes per millisecond, 0 if not measured
+		private volatile double throughput = 0;
+		// decayed counters, valid at the time of the last update
+		private double failures = 0;
+		private double askLater = 0;
+		private volatile long updated = System.currentTimeMillis();
+
+		public synchronized void recordRoundTrip(double sample) {
+			decay(System.currentTimeMillis());
+			roundTrip = average(roundTrip, sample);
+		}
+
+		public synchronized void recordThroughput(double sample) {
+			decay(System.currentTimeMillis());
+			throughput = average(throughput, sample);
+		}
+
+		public synchronized void recordFailure() {
+			decay(System.currentTimeMillis());
+			failures++;
+		}
+
+		public synchronized void recordAskLater() {
+			decay(System.currentTimeMillis());
+			askLater++;
+		}
+
+		public synchronized double getFailures(long now) {
+			return failures * getDecayFactor(now);
+		}
+
+		public synchronized double getAskLater(long now) {
+			return askLater * getDecayFactor(now);
+		}
+
+		private void decay(long now) {
+			double factor = getDecayFactor(now);
+			failures *= factor;
+			askLater *= factor;
+			updated = now;
+		}
+
+		private double getDecayFactor(long now) {
+			return Math.pow(0.5, (double) Math.max(0, now - updated) / H2HConstants.PEER_SCORE_HALF_LIFE_MS);
+		}
+
+		private static double average(double current, double sample) {
+			return current <= 0 ? sample : (1 - MEASUREMENT_WEIGHT) * current + MEASUREMENT_WEIGHT * sample;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.hive2hive.core.network.messages;
+
+import java.io.Serializable;
+
+/**
+ * A message encrypted with the AES-GCM key of a session between two peers (see {@link SessionKeyStore}). The
+ * authentication tag of the encryption replaces the signature.
+ */
+public final class SessionEncryptedContent implements Serializable {
+
+	private static final long serialVersionUID = 5182640347613525702L;
+
+	// the user id of the sender, must match the user who offered the session
+	private final String userId;
+	private final String sessionId;
+	private final byte[] nonce;
+	private final byte[] encryptedData;
+
+	public SessionEncryptedContent(String userId, String sessionId, byte[] nonce, byte[] encryptedData) {
+		this.userId = userId;
+		this.sessionId = sessionId;
+		this.nonce = nonce;
+		this.encryptedData = encryptedData;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public byte[] getNonce() {
+		return nonce;
+	}
+
+	public byte[] getEncryptedData() {
+		return encryptedData;
+	}
+}
@@ -0,0 +1,222 @@
+package org.hive2hive.core.network.messages;
+
+import java.io.Serializable;
+import java.security.PublicKey;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.EncryptionUtil.AES_KEYLENGTH;
+
+/**
+ * Holds the symmetric session keys of direct messages between two peers. The handshake is part of a regular
+ * (hybrid encrypted and signed) message: the sender attaches an {@link Offer} containing a fresh AES key.
+ * After the receiver verified the signature, it registers the key for the sending user. As soon as the
+ * sender got the confirmation that the message has been accepted, it encrypts further messages to the same
+ * peer with AES-GCM only, which saves the RSA encryption and signature. Until then, the offer is attached
+ * to every message to the peer. An outgoing session is bound to the key pairs of the sender and the receiver.
+ * The sessions expire after {@link H2HConstants#MESSAGE_SESSION_KEY_LIFETIME_MS}.
+ */
+public class SessionKeyStore {
+
+	// the receiver keeps the keys a bit longer, such that messages in flight can still be decrypted
+	private static final long RECEIVER_GRACE_MS = 60000;
+
+	private final Map<PeerAddress, OutgoingSession> outgoing = new ConcurrentHashMap<PeerAddress, OutgoingSession>();
+	private final Map<String, IncomingSession> incoming = new ConcurrentHashMap<String, IncomingSession>();
+
+	/**
+	 * Returns the established session to a peer
+	 *
+	 * @param target the address of the receiving peer
+	 * @param receiverKey the public key the messages to the receiver are encrypted with
+	 * @param senderKey the public key of the sender (the messages are signed with)
+	 * @return the session or <code>null</code> if none has been established (yet)
+	 */
+	public OutgoingSession getSession(PeerAddress target, PublicKey receiverKey, PublicKey senderKey) {
+		OutgoingSession session = outgoing.get(target);
+		if (session == null || !session.confirmed || !session.isValid(receiverKey, senderKey)) {
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * Creates a new session to a peer, which is used as soon as it is confirmed. If an offer to the peer is
+	 * still pending (e.g. the message containing it has been rejected or accepted provisionally), the same
+	 * offer is returned again.
+	 *
+	 * @param target the address of the receiving peer
+	 * @param receiverKey the public key the messages to the receiver are encrypted with
+	 * @param senderKey the public key of the sender (the messages are signed with)
+	 * @param securityProvider the security provider to generate the key with
+	 * @return the offer to attach to the next message or <code>null</code> if no key could be generated
+	 */
+	public Offer createOffer(PeerAddress target, PublicKey receiverKey, PublicKey senderKey, String securityProvider) {
+		OutgoingSession pending = outgoing.get(target);
+		if (pending != null && !pending.confirmed && pending.isValid(receiverKey, senderKey)) {
+			return new Offer(pending.id, pending.key.getEncoded());
+		}
+
+		SecretKey key = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128, securityProvider);
+		if (key == null) {
+			return null;
+		}
+		OutgoingSession session = new OutgoingSession(UUID.randomUUID().toString(), key, receiverKey, senderKey,
+				System.currentTimeMillis() + H2HConstants.MESSAGE_SESSION_KEY_LIFETIME_MS);
+		outgoing.put(target, session);
+		return new Offer(session.id, key.getEncoded());
+	}
+
+	/**
+	 * Confirms that the receiver accepted a message containing the offer
+	 */
+	public void confirm(PeerAddress target, Offer offer) {
+		OutgoingSession session = outgoing.get(target);
+		if (session != null && session.id.equals(offer.sessionId)) {
+			session.confirmed = true;
+		}
+	}
+
+	/**
+	 * Forgets the session to a peer, e.g. because the receiver does not know it (anymore)
+	 */
+	public void invalidate(PeerAddress target) {
+		outgoing.remove(target);
+	}
+
+	/**
+	 * Registers the offer of a sender. Must only be called after the signature of the message containing the
+	 * offer has been verified. A session id that is already in use by another sender cannot be taken over.
+	 *
+	 * @param offer the offer of the sender
+	 * @param senderId the user id of the sender
+	 * @param ownKey the public key of the receiver (the sender encrypted the offer with)
+	 * @return <code>true</code> if the offer has been registered, <code>false</code> if another sender uses
+	 *         the same session id
+	 */
+	public synchronized boolean register(Offer offer, String senderId, PublicKey ownKey) {
+		long now = System.currentTimeMillis();
+		for (Iterator<IncomingSession> iterator = incoming.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().expiresAt < now) {
+				iterator.remove();
+			}
+		}
+
+		IncomingSession existing = incoming.get(offer.sessionId);
+		if (existing != null && !existing.senderId.equals(senderId)) {
+			return false;
+		}
+
+		SecretKey key = new SecretKeySpec(offer.key, "AES");
+		incoming.put(offer.sessionId, new IncomingSession(key, senderId, ownKey, now
+				+ H2HConstants.MESSAGE_SESSION_KEY_LIFETIME_MS + RECEIVER_GRACE_MS));
+		return true;
+	}
+
+	/**
+	 * Returns the session of a sender
+	 *
+	 * @param sessionId the id of the session
+	 * @param ownKey the public key of the receiver
+	 * @return the session or <code>null</code> if it is unknown, expired or has been established with another
+	 *         key pair
+	 */
+	public IncomingSession getIncoming(String sessionId, PublicKey ownKey) {
+		IncomingSession session = incoming.get(sessionId);
+		if (session == null || session.expiresAt < System.currentTimeMillis() || !session.ownKey.equals(ownKey)) {
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * Forgets all sessions, e.g. when the user logs out
+	 */
+	public void clear() {
+		outgoing.clear();
+		incoming.clear();
+	}
+
+	/**
+	 * The key exchange, which is sent within a signed and hybrid encrypted message
+	 */
+	public static class Offer implements Serializable {
+
+		private static final long serialVersionUID = -2301562395472163815L;
+
+		private final String sessionId;
+		private final byte[] key;
+
+		public Offer(String sessionId, byte[] key) {
+			this.sessionId = sessionId;
+			this.key = key;
+		}
+
+		public String getSessionId() {
+			return sessionId;
+		}
+	}
+
+	public static class OutgoingSession {
+
+		private final String id;
+		private final SecretKey key;
+		private final PublicKey receiverKey;
+		private final PublicKey senderKey;
+		private final long expiresAt;
+		private volatile boolean confirmed = false;
+
+		private OutgoingSession(String id, SecretKey key, PublicKey receiverKey, PublicKey senderKey, long expiresAt) {
+			this.id = id;
+			this.key = key;
+			this.receiverKey = receiverKey;
+			this.senderKey = senderKey;
+			this.expiresAt = expiresAt;
+		}
+
+		private boolean isValid(PublicKey receiverKey, PublicKey senderKey) {
+			return expiresAt > System.currentTimeMillis() && this.receiverKey.equals(receiverKey)
+					&& this.senderKey.equals(senderKey);
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public SecretKey getKey() {
+			return key;
+		}
+	}
+
+	public static class IncomingSession {
+
+		private final SecretKey key;
+		private final String senderId;
+		private final PublicKey ownKey;
+		private final long expiresAt;
+
+		private IncomingSession(SecretKey key, String senderId, PublicKey ownKey, long expiresAt) {
+			this.key = key;
+			this.senderId = senderId;
+			this.ownKey = ownKey;
+			this.expiresAt = expiresAt;
+		}
+
+		public SecretKey getKey() {
+			return key;
+		}
+
+		public String getSenderId() {
+			return senderId;
+		}
+	}
+}
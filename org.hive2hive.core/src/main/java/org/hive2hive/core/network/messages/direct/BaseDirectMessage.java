@@ -133,6 +133,13 @@ public abstract class BaseDirectMessage extends BaseMessage {
 				return canResendDirect();
 			case FUTURE_FAILURE:
 				return canResendDirect();
+			case ASK_LATER:
+				logger.debug("Target is busy, re-sending later. Peer address = '{}'.", getTargetAddress());
+				return canResendDirect();
+			case FAILURE_SESSION:
+				logger.debug("Target does not know the session key, re-sending without it. Peer address = '{}'.",
+						getTargetAddress());
+				return canResendDirect();
 			case FAILURE_DECRYPTION:
 				logger.warn("Message not accepted by the target. Decryption on target node failed. Peer address = '{}'.",
 						getTargetAddress());
@@ -6,11 +6,13 @@ import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.futures.BaseFutureAdapter;
 import net.tomp2p.futures.FutureDirect;
+import net.tomp2p.peers.PeerAddress;
 
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.network.messages.AcceptanceReply;
 import org.hive2hive.core.network.messages.BaseMessage;
 import org.hive2hive.core.network.messages.MessageManager;
+import org.hive2hive.core.network.messages.PeerScoreBoard;
 import org.hive2hive.core.network.messages.direct.BaseDirectMessage;
 import org.hive2hive.core.serializer.IH2HSerialize;
 import org.hive2hive.core.serializer.SerializerUtil;
@@ -45,7 +47,10 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 	private final MessageManager messageManager;
 	private final CountDownLatch latch;
 	private final IH2HSerialize serializer;
+	private final long sentAt;
 	private DeliveryState state;
+	// whether the receiver asked to re-send the message later
+	private boolean askedLater;
 
 	private enum DeliveryState {
 		SUCCESS,
@@ -71,6 +76,7 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 		this.messageManager = messageManager;
 		this.serializer = serializer;
 		this.latch = new CountDownLatch(1);
+		this.sentAt = System.currentTimeMillis();
 	}
 
 	/**
@@ -100,6 +106,9 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 				return false;
 			case RESEND_DIRECT:
 				// resend direct is recommended
+				if (askedLater) {
+					waitBeforeResend();
+				}
 				return messageManager.sendDirect(message, receiverPublicKey);
 			case RESEND_ROUTED:
 				// resend (this time routed) is recommended
@@ -114,12 +123,27 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 	@Override
 	public void operationComplete(FutureDirect future) throws Exception {
 		AcceptanceReply reply = extractAcceptanceReply(future);
+		askedLater = reply == AcceptanceReply.ASK_LATER;
+		recordScore(reply);
+		if (reply == AcceptanceReply.OK && message.getSessionOffer() != null) {
+			// the receiver verified the signature and registered the session key
+			messageManager.getSessionKeyStore().confirm(message.getTargetAddress(), message.getSessionOffer());
+		} else if (reply == AcceptanceReply.FAILURE_SESSION) {
+			messageManager.getSessionKeyStore().invalidate(message.getTargetAddress());
+		}
+
 		if (reply == AcceptanceReply.OK || reply == AcceptanceReply.OK_PROVISIONAL) {
 			// notify the listener about the success of sending the message
 			state = DeliveryState.SUCCESS;
 		} else {
 			// check if a direct re-send is necessary / wished
 			boolean directResending = message.handleSendingFailure(reply);
+			if (directResending && !askedLater
+					&& messageManager.getPeerScoreBoard().isUnreliable(message.getTargetAddress())) {
+				logger.warn("Peer failed repeatedly, not re-sending directly. Target address = '{}'.",
+						message.getTargetAddress());
+				directResending = false;
+			}
 			if (directResending) {
 				// re-send directly the message
 				state = DeliveryState.RESEND_DIRECT;
@@ -141,6 +165,44 @@ public class FutureDirectListener extends BaseFutureAdapter<FutureDirect> {
 		latch.countDown();
 	}
 
+	/**
+	 * Updates the score of the receiver with the outcome of the sending attempt
+	 */
+	private void recordScore(AcceptanceReply reply) {
+		PeerScoreBoard scores = messageManager.getPeerScoreBoard();
+		PeerAddress target = message.getTargetAddress();
+		switch (reply) {
+			case OK:
+			case OK_PROVISIONAL:
+				scores.recordRoundTrip(target, System.currentTimeMillis() - sentAt);
+				break;
+			case ASK_LATER:
+				scores.recordAskLater(target);
+				break;
+			case FAILURE:
+			case FUTURE_FAILURE:
+			case WRONG_TARGET:
+				scores.recordFailure(target);
+				break;
+			default:
+				// not caused by the receiver being slow or unreachable
+				break;
+		}
+	}
+
+	/**
+	 * The receiver was too busy to handle the message, give it some time before re-sending. The more often
+	 * it was busy recently, the longer the delay.
+	 */
+	private void waitBeforeResend() {
+		try {
+			Thread.sleep(messageManager.getPeerScoreBoard().getAskLaterDelay(message.getTargetAddress(),
+					H2HConstants.MESSAGE_ASK_LATER_DELAY_MS));
+		} catch (InterruptedException e) {
+			logger.warn("Could not wait before re-sending the message.");
+		}
+	}
+
 	/**
 	 * Check if the given future contains any useful results and log if something went wrong while sending.
 	 * Generate an acceptance reply.
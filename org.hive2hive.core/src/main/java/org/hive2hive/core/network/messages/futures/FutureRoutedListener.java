@@ -45,6 +45,8 @@ public class FutureRoutedListener extends BaseFutureAdapter<FutureSend> {
 	private final CountDownLatch latch;
 	private final IH2HSerialize serializer;
 	private DeliveryState state;
+	// whether the receiver asked to re-send the message later
+	private boolean askedLater;
 
 	private enum DeliveryState {
 		SUCCESS,
@@ -95,6 +97,9 @@ public class FutureRoutedListener extends BaseFutureAdapter<FutureSend> {
 				return false;
 			case RESEND:
 				// resend is recommended
+				if (askedLater) {
+					waitBeforeResend();
+				}
 				return messageManager.send(message, receiverPublicKey);
 			default:
 				// invalid state
@@ -106,6 +111,7 @@ public class FutureRoutedListener extends BaseFutureAdapter<FutureSend> {
 	@Override
 	public void operationComplete(FutureSend future) throws Exception {
 		AcceptanceReply reply = extractAcceptanceReply(future);
+		askedLater = reply == AcceptanceReply.ASK_LATER;
 		if (reply == AcceptanceReply.OK || reply == AcceptanceReply.OK_PROVISIONAL) {
 			// notify the listener about the success of sending the message
 			state = DeliveryState.SUCCESS;
@@ -127,6 +133,17 @@ public class FutureRoutedListener extends BaseFutureAdapter<FutureSend> {
 		}
 	}
 
+	/**
+	 * The receiver was too busy to handle the message, give it some time before re-sending
+	 */
+	private void waitBeforeResend() {
+		try {
+			Thread.sleep(H2HConstants.MESSAGE_ASK_LATER_DELAY_MS);
+		} catch (InterruptedException e) {
+			logger.warn("Could not wait before re-sending the message.");
+		}
+	}
+
 	/**
 	 * Check if the given future contains any useful results and log if something went wrong while sending.
 	 * Generate an acceptance reply.
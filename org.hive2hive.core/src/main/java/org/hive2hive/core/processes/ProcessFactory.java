@@ -52,6 +52,7 @@ import org.hive2hive.core.processes.files.update.PrepareUpdateNotificationStep;
 import org.hive2hive.core.processes.files.update.UpdateMD5inUserProfileStep;
 import org.hive2hive.core.processes.login.ContactOtherClientsStep;
 import org.hive2hive.core.processes.login.GetLocationsStep;
+import org.hive2hive.core.processes.login.ResumeDownloadsStep;
 import org.hive2hive.core.processes.login.SessionCreationStep;
 import org.hive2hive.core.processes.login.SessionParameters;
 import org.hive2hive.core.processes.logout.DeleteSessionStep;
@@ -149,6 +150,7 @@ public final class ProcessFactory {
 		process.add(new GetLocationsStep(context, networkManager));
 		process.add(new ContactOtherClientsStep(context, networkManager));
 		process.add(new org.hive2hive.core.processes.login.PutLocationsStep(context, networkManager));
+		process.add(new ResumeDownloadsStep(networkManager));
 
 		process.setName("Login Process");
 		return process;
@@ -192,7 +194,8 @@ public final class ProcessFactory {
 		// run the session process concurrently with all other steps
 		SyncProcess parentProcess = new SyncProcess();
 		parentProcess.add(new AsyncComponent<>(sessionProcess));
-		parentProcess.add(new AsyncComponent<>(new StopDownloadsStep(session.getDownloadManager())));
+		parentProcess.add(new AsyncComponent<>(new StopDownloadsStep(session.getDownloadManager(), session
+				.getFileAgent())));
 		parentProcess.add(new AsyncComponent<>(new StopUserQueueWorkerStep(session.getProfileManager())));
 		parentProcess.add(new AsyncComponent<>(new WritePersistentStep(session.getFileAgent(), session.getKeyManager(),
 				networkManager.getDataManager().getSerializer())));
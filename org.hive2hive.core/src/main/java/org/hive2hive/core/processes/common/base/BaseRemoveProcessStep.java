@@ -28,7 +28,7 @@ public abstract class BaseRemoveProcessStep extends ProcessStep<Void> {
 	// TODO this class needs to be refactored
 	// TODO this class is only rollbacking the last execution, however there are steps that execute remove()
 	// multiple times. Make sure, that a single step only calls remove() once. Otherwise, create multiple
-	// steps! (e.g. DeleteSingleChunkStep)
+	// steps! (e.g. DeleteMetaFileStep)
 
 	private static final Logger logger = LoggerFactory.getLogger(BaseRemoveProcessStep.class);
 
@@ -6,11 +6,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import javax.crypto.SecretKey;
+
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.FileChunkReader;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.processes.context.interfaces.INotifyContext;
 import org.hive2hive.core.processes.context.interfaces.IUploadContext;
 import org.hive2hive.core.processes.files.add.AddNotificationMessageFactory;
@@ -40,6 +44,9 @@ public class AddFileProcessContext implements IUploadContext, INotifyContext {
 	private Index index;
 	private Set<String> usersToNotify;
 	private AddNotificationMessageFactory messageFactory;
+	private FileChunkReader chunkReader;
+	private SecretKey chunkContentKey;
+	private HybridEncryptedContent encryptedChunkContentKey;
 
 	public AddFileProcessContext(File file, H2HSession session, IFileConfiguration fileConfiguration,
 			IH2HEncryption encryption) {
@@ -113,6 +120,36 @@ public class AddFileProcessContext implements IUploadContext, INotifyContext {
 		this.metaFileProtectionKeys = metaFileProtectionKeys;
 	}
 
+	@Override
+	public void provideChunkReader(FileChunkReader chunkReader) {
+		this.chunkReader = chunkReader;
+	}
+
+	@Override
+	public FileChunkReader consumeChunkReader() {
+		return chunkReader;
+	}
+
+	@Override
+	public void provideChunkContentKey(SecretKey contentKey) {
+		this.chunkContentKey = contentKey;
+	}
+
+	@Override
+	public SecretKey consumeChunkContentKey() {
+		return chunkContentKey;
+	}
+
+	@Override
+	public void provideEncryptedChunkContentKey(HybridEncryptedContent encryptedContentKey) {
+		this.encryptedChunkContentKey = encryptedContentKey;
+	}
+
+	@Override
+	public HybridEncryptedContent consumeEncryptedChunkContentKey() {
+		return encryptedChunkContentKey;
+	}
+
 	@Override
 	public List<MetaChunk> getMetaChunks() {
 		return metaChunks;
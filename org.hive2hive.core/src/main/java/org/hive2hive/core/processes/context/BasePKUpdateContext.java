@@ -29,6 +29,13 @@ public abstract class BasePKUpdateContext {
 
 	public abstract String getLocationKey();
 
+	/**
+	 * @return the domain key or <code>null</code> if the content is stored in the default domain
+	 */
+	public String getDomainKey() {
+		return null;
+	}
+
 	public abstract String getContentKey();
 	
 	public abstract Number160 getVersionKey();
@@ -0,0 +1,59 @@
+package org.hive2hive.core.processes.context;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+
+import net.tomp2p.peers.Number160;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.TimeToLiveStore;
+import org.hive2hive.core.processes.files.ChunkReferenceCounter;
+
+/**
+ * Provides the required context to update the reference of a file to a deduplicated chunk (see
+ * {@link ChunkReferenceCounter}).
+ */
+public class ChunkReferencePKUpdateContext extends BasePKUpdateContext {
+
+	private final String chunkId;
+	private final PublicKey fileKey;
+
+	public ChunkReferencePKUpdateContext(KeyPair oldProtectionKeys, KeyPair newProtectionKeys, String chunkId,
+			PublicKey fileKey) {
+		super(oldProtectionKeys, newProtectionKeys);
+		this.chunkId = chunkId;
+		this.fileKey = fileKey;
+	}
+
+	@Override
+	public String getLocationKey() {
+		return chunkId;
+	}
+
+	@Override
+	public String getDomainKey() {
+		return H2HConstants.FILE_CHUNK_REFERENCE_DOMAIN;
+	}
+
+	@Override
+	public String getContentKey() {
+		return ChunkReferenceCounter.getReferenceKey(fileKey);
+	}
+
+	@Override
+	public int getTTL() {
+		return TimeToLiveStore.getInstance().getChunk();
+	}
+
+	@Override
+	public byte[] getHash() {
+		// the references are not signed
+		return null;
+	}
+
+	@Override
+	public Number160 getVersionKey() {
+		return H2HConstants.TOMP2P_DEFAULT_KEY;
+	}
+
+}
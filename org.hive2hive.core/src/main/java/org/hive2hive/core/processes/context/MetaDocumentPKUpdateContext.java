@@ -74,6 +74,10 @@ public class MetaDocumentPKUpdateContext extends BasePKUpdateContext implements
 		return fileIndex.getName();
 	}
 
+	public PublicKey getFileKey() {
+		return fileKey;
+	}
+
 	@Override
 	public KeyPair consumeMetaFileEncryptionKeys() {
 		return fileIndex.getFileKeys();
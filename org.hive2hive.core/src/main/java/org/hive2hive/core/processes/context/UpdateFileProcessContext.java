@@ -6,8 +6,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import javax.crypto.SecretKey;
+
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.FileChunkReader;
 import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
@@ -40,6 +43,9 @@ public class UpdateFileProcessContext implements IUploadContext, IGetFileKeysCon
 	private Set<String> users;
 	private UpdateNotificationMessageFactory messageFactory;
 	private List<MetaChunk> chunksToDelete;
+	private FileChunkReader chunkReader;
+	private SecretKey chunkContentKey;
+	private HybridEncryptedContent encryptedChunkContentKey;
 
 	public UpdateFileProcessContext(File file, H2HSession session, IFileConfiguration fileConfiguration,
 			IH2HEncryption encryption) {
@@ -140,6 +146,36 @@ public class UpdateFileProcessContext implements IUploadContext, IGetFileKeysCon
 		return largeFile;
 	}
 
+	@Override
+	public void provideChunkReader(FileChunkReader chunkReader) {
+		this.chunkReader = chunkReader;
+	}
+
+	@Override
+	public FileChunkReader consumeChunkReader() {
+		return chunkReader;
+	}
+
+	@Override
+	public void provideChunkContentKey(SecretKey contentKey) {
+		this.chunkContentKey = contentKey;
+	}
+
+	@Override
+	public SecretKey consumeChunkContentKey() {
+		return chunkContentKey;
+	}
+
+	@Override
+	public void provideEncryptedChunkContentKey(HybridEncryptedContent encryptedContentKey) {
+		this.encryptedChunkContentKey = encryptedContentKey;
+	}
+
+	@Override
+	public HybridEncryptedContent consumeEncryptedChunkContentKey() {
+		return encryptedChunkContentKey;
+	}
+
 	@Override
 	public List<MetaChunk> getMetaChunks() {
 		return metaChunks;
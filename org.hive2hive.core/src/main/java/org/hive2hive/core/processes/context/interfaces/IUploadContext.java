@@ -5,10 +5,14 @@ import java.security.KeyPair;
 import java.util.List;
 import java.util.Set;
 
+import javax.crypto.SecretKey;
+
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.FileChunkReader;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.security.IH2HEncryption;
 
 public interface IUploadContext {
@@ -37,7 +41,7 @@ public interface IUploadContext {
 
 	public void provideMetaFileHash(byte[] hash);
 
-	// ------ PutSingleChunkStep, CleanupChunksStep ------
+	// ------ PutChunksStep, CleanupChunksStep ------
 
 	public KeyPair consumeChunkProtectionKeys();
 
@@ -61,20 +65,36 @@ public interface IUploadContext {
 
 	public boolean isLargeFile();
 
-	// ------ CreateMetaFileStep, PutSingleChunkStep, InitializeChunksStep ------
+	// ------ CreateMetaFileStep, PutChunksStep, InitializeChunksStep ------
 
 	public KeyPair consumeChunkEncryptionKeys();
 
-	// ------ PutSingleChunkStep, CreateMetaFileStep, CreateNewVersionStep, InitializeChunksStep ------
+	// ------ InitializeChunksStep, PutChunksStep ------
+
+	public void provideChunkReader(FileChunkReader chunkReader);
+
+	public FileChunkReader consumeChunkReader();
+
+	public void provideChunkContentKey(SecretKey contentKey);
+
+	public SecretKey consumeChunkContentKey();
+
+	// ------ InitializeChunksStep, CreateMetaFileStep, CreateNewVersionStep ------
+
+	public void provideEncryptedChunkContentKey(HybridEncryptedContent encryptedContentKey);
+
+	public HybridEncryptedContent consumeEncryptedChunkContentKey();
+
+	// ------ PutChunksStep, CreateMetaFileStep, CreateNewVersionStep, InitializeChunksStep ------
 
 	public List<MetaChunk> getMetaChunks();
 
-	// ------ ValidateFileSizeStep, InitializeChunksStep, PutSingleChunkStep, CreateNewVersionStep ------
+	// ------ ValidateFileSizeStep, InitializeChunksStep, PutChunksStep, CreateNewVersionStep ------
 
 	public IFileConfiguration consumeFileConfiguration();
 
 	// ------ CreateFileKeysStep, PrepareAddNotificationStep, InitializeChunksStep, PutMetaFileStep,
-	// PutSingleChunkStep ------
+	// PutChunksStep ------
 
 	public IH2HEncryption getEncryption();
 }
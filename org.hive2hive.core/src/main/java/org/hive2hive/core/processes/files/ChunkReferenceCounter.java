@@ -0,0 +1,158 @@
+package org.hive2hive.core.processes.files;
+
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Set;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.Number640;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.ChunkReference;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.security.H2HDefaultEncryption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counts the references of deduplicated chunks. Every file referencing a chunk puts a {@link ChunkReference}
+ * into a separate domain at the location of the chunk, the content key is derived from the file key. Thus,
+ * the references of multiple files never overwrite each other (and are not limited by the version history)
+ * and the chunk is referenced as long as the domain is not empty.<br>
+ * A file adds its reference before checking whether the chunk exists, and a chunk is removed only after the
+ * last reference has been removed. The operations of a call are pipelined with the batches of the
+ * {@link DataManager}.
+ */
+public class ChunkReferenceCounter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ChunkReferenceCounter.class);
+
+	private final DataManager dataManager;
+	private final KeyPair protectionKeys;
+	private final Number160 referenceKey;
+
+	/**
+	 * @param dataManager the data manager
+	 * @param protectionKeys the chunk protection keys, which protect the chunks and their references
+	 * @param fileKey the public key of the file (the id of the meta file)
+	 */
+	public ChunkReferenceCounter(DataManager dataManager, KeyPair protectionKeys, PublicKey fileKey) {
+		this.dataManager = dataManager;
+		this.protectionKeys = protectionKeys;
+		this.referenceKey = Number160.createHash(getReferenceKey(fileKey));
+	}
+
+	/**
+	 * @param fileKey the public key of the file
+	 * @return the content key of the references of the file (in the
+	 *         {@link H2HConstants#FILE_CHUNK_REFERENCE_DOMAIN} domain)
+	 */
+	public static String getReferenceKey(PublicKey fileKey) {
+		return H2HDefaultEncryption.key2String(fileKey);
+	}
+
+	/**
+	 * Adds the reference of the file to the given chunks
+	 *
+	 * @param chunkIds the ids of the chunks
+	 * @return the ids of the chunks that could not be referenced
+	 */
+	public Set<String> addReferences(Collection<String> chunkIds) {
+		List<IParameters> parameters = new ArrayList<IParameters>(chunkIds.size());
+		for (String chunkId : chunkIds) {
+			ChunkReference reference = new ChunkReference();
+			parameters.add(createReferenceParameters(chunkId).setNetworkContent(reference).setTTL(
+					reference.getTimeToLive()));
+		}
+
+		Set<String> failed = new HashSet<String>();
+		for (Entry<IParameters, H2HPutStatus> result : dataManager.putAll(parameters).entrySet()) {
+			if (result.getValue() != H2HPutStatus.OK) {
+				logger.warn("Could not add the reference to chunk. '{}'", result.getKey().toString());
+				failed.add(result.getKey().getLocationKey());
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * @param chunkIds the ids of the chunks
+	 * @return the ids of the chunks that are stored in the DHT
+	 */
+	public Set<String> findExisting(Collection<String> chunkIds) {
+		List<IParameters> parameters = new ArrayList<IParameters>(chunkIds.size());
+		for (String chunkId : chunkIds) {
+			parameters.add(new Parameters().setLocationKey(chunkId).setContentKey(H2HConstants.FILE_CHUNK));
+		}
+
+		Set<String> existing = new HashSet<String>();
+		for (Entry<IParameters, NavigableMap<Number640, Collection<Number160>>> digest : dataManager
+				.getDigestLatestAll(parameters).entrySet()) {
+			if (digest.getValue() != null && !digest.getValue().isEmpty()) {
+				existing.add(digest.getKey().getLocationKey());
+			}
+		}
+		return existing;
+	}
+
+	/**
+	 * Removes the reference of the file from the given chunks. Afterwards, the chunks without any reference
+	 * are removed. A chunk whose references cannot be read is kept.
+	 *
+	 * @param chunkIds the ids of the chunks the file does not reference anymore
+	 * @return the number of chunks whose reference or content could not be removed
+	 */
+	public int release(Collection<String> chunkIds) {
+		List<IParameters> references = new ArrayList<IParameters>(chunkIds.size());
+		for (String chunkId : chunkIds) {
+			references.add(createReferenceParameters(chunkId));
+		}
+
+		int failed = 0;
+		List<IParameters> released = new ArrayList<IParameters>(references.size());
+		for (Entry<IParameters, Boolean> result : dataManager.removeAll(references).entrySet()) {
+			if (result.getValue()) {
+				released.add(result.getKey());
+			} else {
+				logger.warn("Could not remove the reference to chunk. '{}'", result.getKey().toString());
+				failed++;
+			}
+		}
+
+		// remove the chunks nobody references anymore
+		List<IParameters> unreferenced = new ArrayList<IParameters>();
+		Map<IParameters, NavigableMap<Number640, Collection<Number160>>> digests = dataManager
+				.getDigestDomainAll(released);
+		for (Entry<IParameters, NavigableMap<Number640, Collection<Number160>>> digest : digests.entrySet()) {
+			if (digest.getValue() != null && digest.getValue().isEmpty()) {
+				unreferenced.add(new Parameters().setLocationKey(digest.getKey().getLocationKey())
+						.setContentKey(H2HConstants.FILE_CHUNK).setProtectionKeys(protectionKeys));
+			}
+		}
+
+		logger.debug("Released {} chunks, {} of them are not referenced anymore.", released.size(),
+				unreferenced.size());
+		for (Entry<IParameters, Boolean> result : dataManager.removeAll(unreferenced).entrySet()) {
+			if (!result.getValue()) {
+				logger.warn("Could not remove chunk. '{}'", result.getKey().toString());
+				failed++;
+			}
+		}
+		return failed;
+	}
+
+	private Parameters createReferenceParameters(String chunkId) {
+		return new Parameters().setLocationKey(chunkId).setDomainKey(H2HConstants.FILE_CHUNK_REFERENCE_DOMAIN)
+				.setContentKey(referenceKey).setProtectionKeys(protectionKeys);
+	}
+}
@@ -0,0 +1,95 @@
+package org.hive2hive.core.processes.files;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.BaseVersionedNetworkContent;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.context.interfaces.IGetMetaFileContext;
+import org.hive2hive.core.security.H2HDefaultEncryption;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Gets multiple {@link BaseMetaFile}s from the DHT with a single batch and decrypts them. Behaves like a
+ * {@link GetMetaFileStep} for every context.
+ */
+public class GetMetaFilesStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(GetMetaFilesStep.class);
+
+	private final List<? extends IGetMetaFileContext> contexts;
+	private final DataManager dataManager;
+
+	public GetMetaFilesStep(List<? extends IGetMetaFileContext> contexts, DataManager dataManager) {
+		this.setName(getClass().getName());
+		this.contexts = contexts;
+		this.dataManager = dataManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		List<IParameters> parameters = new ArrayList<IParameters>(contexts.size());
+		for (IGetMetaFileContext context : contexts) {
+			KeyPair keyPair = context.consumeMetaFileEncryptionKeys();
+			parameters.add(new Parameters().setLocationKey(H2HDefaultEncryption.key2String(keyPair.getPublic()))
+					.setContentKey(H2HConstants.META_FILE));
+		}
+
+		Map<IParameters, BaseNetworkContent> results = dataManager.getAll(parameters);
+		setRequiresRollback(true);
+
+		for (int i = 0; i < contexts.size(); i++) {
+			IGetMetaFileContext context = contexts.get(i);
+			BaseVersionedNetworkContent loadedContent = (BaseVersionedNetworkContent) results.get(parameters.get(i));
+			if (loadedContent == null) {
+				logger.warn("Meta file not found. '{}'", parameters.get(i).toString());
+				throw new ProcessExecutionException(this, "Meta file not found.");
+			}
+
+			HybridEncryptedContent encryptedContent = (HybridEncryptedContent) loadedContent;
+
+			// decrypt meta document
+			BaseNetworkContent decryptedContent = null;
+			try {
+				decryptedContent = dataManager.getEncryption().decryptHybrid(encryptedContent,
+						context.consumeMetaFileEncryptionKeys().getPrivate());
+			} catch (GeneralSecurityException | IllegalStateException | ClassNotFoundException | IOException ex) {
+				throw new ProcessExecutionException(this, ex, "Meta file could not be decrypted.");
+			}
+
+			BaseMetaFile metaFile = (BaseMetaFile) decryptedContent;
+			metaFile.setBasedOnKey(loadedContent.getBasedOnKey());
+			metaFile.setVersionKey(loadedContent.getVersionKey());
+
+			context.provideMetaFile(metaFile);
+			context.provideEncryptedMetaFile(encryptedContent);
+		}
+
+		logger.debug("Got and decrypted {} meta files.", contexts.size());
+		return null;
+	}
+
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException {
+		for (IGetMetaFileContext context : contexts) {
+			context.provideMetaFile(null);
+			context.provideEncryptedMetaFile(null);
+		}
+		setRequiresRollback(false);
+		return null;
+	}
+}
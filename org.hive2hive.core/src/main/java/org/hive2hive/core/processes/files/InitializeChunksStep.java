@@ -2,26 +2,43 @@ package org.hive2hive.core.processes.files;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
+import javax.crypto.SecretKey;
+
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
-import org.hive2hive.core.file.FileChunkUtil;
-import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.ContentDefinedChunker;
+import org.hive2hive.core.file.ContentDefinedChunker.ChunkRange;
+import org.hive2hive.core.file.FileChunkHasher;
+import org.hive2hive.core.file.FileChunkReader;
+import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.BaseMetaFile;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.processes.context.interfaces.IUploadContext;
-import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.security.ChunkEncryptionUtil;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
-import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Initializes all {@link PutSingleChunkStep} for the file to upload.
+ * Initializes the {@link PutChunksStep} for the file to upload.
  * 
  * @author Nico, Seppi
  */
@@ -32,6 +49,10 @@ public class InitializeChunksStep extends ProcessStep<Void> {
 	private final IUploadContext context;
 	private final DataManager dataManager;
 
+	// the references to deduplicated chunks added by this upload, used for the rollback
+	private ChunkReferenceCounter referenceCounter;
+	private Set<String> addedReferences = Collections.emptySet();
+
 	public InitializeChunksStep(IUploadContext context, DataManager dataManager) {
 		this.setName(getClass().getName());
 		this.context = context;
@@ -54,7 +75,7 @@ public class InitializeChunksStep extends ProcessStep<Void> {
 		return null;
 	}
 
-	private void initSmallFile(File file) {
+	private void initSmallFile(File file) throws ProcessExecutionException {
 		if (context.consumeChunkEncryptionKeys() == null) {
 			logger.trace("Create chunk keys for the file '{}'.", file.getName());
 			// create and provide chunk keys
@@ -62,42 +83,262 @@ public class InitializeChunksStep extends ProcessStep<Void> {
 			context.provideChunkEncryptionKeys(chunkKeys);
 		}
 
-		// create put chunks steps
 		IFileConfiguration config = context.consumeFileConfiguration();
-		int chunks = FileChunkUtil.getNumberOfChunks(file, config.getChunkSize());
-		logger.trace("{} chunks to upload for file '{}'.", chunks, file.getName());
-		IProcessComponent<Void> prev = this;
-		for (int i = 0; i < chunks; i++) {
-			String chunkId = UUID.randomUUID().toString();
-			PutSingleChunkStep putChunkStep = new PutSingleChunkStep(context, i, chunkId, dataManager);
+		ChunkingMode chunkingMode = config.getChunkingMode();
+
+		// all chunks of this version are encrypted with the same content key, which is encrypted only once.
+		// Content-defined chunks keep the key of the previous versions to re-use their chunks. Deduplicated
+		// chunks have their own key.
+		Map<ByteBuffer, MetaChunk> existingChunks = new HashMap<ByteBuffer, MetaChunk>();
+		if (chunkingMode == ChunkingMode.CONTENT_DEFINED) {
+			existingChunks = reusePreviousContentKey();
+		}
+		if (context.consumeChunkContentKey() == null) {
+			provideNewContentKey();
+		}
+
+		// open the file once for all chunks, the put chunks step closes it again
+		FileChunkReader reader;
+		try {
+			reader = new FileChunkReader(file, config.getChunkSize());
+		} catch (IOException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot read the file.");
+		}
+		context.provideChunkReader(reader);
+		setRequiresRollback(true);
+
+		// create the step putting all chunks, insert it just after this step
+		PutChunksStep putChunksStep;
+		try {
+			if (chunkingMode == ChunkingMode.DEDUPLICATED) {
+				putChunksStep = initDeduplicatedChunks(file, reader);
+			} else if (chunkingMode == ChunkingMode.CONTENT_DEFINED) {
+				putChunksStep = initContentDefinedChunks(file, reader, existingChunks);
+			} else {
+				int chunks = reader.getNumberOfChunks();
+				logger.trace("{} chunks to upload for file '{}'.", chunks, file.getName());
+				putChunksStep = new PutChunksStep(context, chunks, dataManager);
+			}
+		} catch (IOException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot read the file.");
+		}
+		getParent().insertAfter(putChunksStep, this);
+	}
+
+	private void provideNewContentKey() throws ProcessExecutionException {
+		String securityProvider = context.getEncryption().getSecurityProvider();
+		SecretKey contentKey = ChunkEncryptionUtil.generateContentKey(securityProvider);
+		try {
+			context.provideEncryptedChunkContentKey(ChunkEncryptionUtil.wrapContentKey(contentKey, context
+					.consumeChunkEncryptionKeys().getPublic(), context.getEncryption()));
+		} catch (GeneralSecurityException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot encrypt the content key of the chunks.");
+		}
+		context.provideChunkContentKey(contentKey);
+	}
+
+	/**
+	 * Provides the content key of the latest version (if there is one), thus the new version can reference
+	 * the chunks of the previous versions.
+	 * 
+	 * @return the content-defined chunks of all versions encrypted with that key, by their content hash
+	 */
+	private Map<ByteBuffer, MetaChunk> reusePreviousContentKey() {
+		Map<ByteBuffer, MetaChunk> existingChunks = new HashMap<ByteBuffer, MetaChunk>();
+		BaseMetaFile metaFile = context.consumeMetaFile();
+		if (!(metaFile instanceof MetaFileSmall) || ((MetaFileSmall) metaFile).getVersions().isEmpty()) {
+			// new file
+			return existingChunks;
+		}
+
+		List<FileVersion> versions = ((MetaFileSmall) metaFile).getVersions();
+		HybridEncryptedContent encryptedKey = versions.get(versions.size() - 1).getContentKey();
+		if (encryptedKey == null) {
+			// chunks of older clients, not content-defined
+			return existingChunks;
+		}
+
+		try {
+			SecretKey contentKey = ChunkEncryptionUtil.unwrapContentKey(encryptedKey, context
+					.consumeChunkEncryptionKeys().getPrivate(), context.getEncryption());
+			context.provideChunkContentKey(contentKey);
+			context.provideEncryptedChunkContentKey(encryptedKey);
+		} catch (GeneralSecurityException | IOException | ClassNotFoundException ex) {
+			logger.warn("Cannot decrypt the content key of the previous version. All chunks are uploaded.", ex);
+			return existingChunks;
+		}
+
+		for (FileVersion version : versions) {
+			if (!isSameKey(encryptedKey, version.getContentKey())) {
+				continue;
+			}
+			for (MetaChunk metaChunk : version.getMetaChunks()) {
+				if (metaChunk.isContentDefined()) {
+					existingChunks.put(ByteBuffer.wrap(metaChunk.getContentHash()), metaChunk);
+				}
+			}
+		}
+		return existingChunks;
+	}
+
+	private PutChunksStep initContentDefinedChunks(File file, FileChunkReader reader,
+			Map<ByteBuffer, MetaChunk> existingChunks) throws IOException {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(reader.getChunkSize());
+		List<ChunkRange> ranges = chunker.split(reader);
+
+		// chunks with the same content are not uploaded again
+		Map<Integer, MetaChunk> reusedChunks = new HashMap<Integer, MetaChunk>();
+		long reusedBytes = 0;
+		for (int i = 0; i < ranges.size(); i++) {
+			ChunkRange range = ranges.get(i);
+			MetaChunk existing = existingChunks.get(ByteBuffer.wrap(range.getHash()));
+			if (existing != null && existing.getLength() == range.getLength()) {
+				reusedChunks.put(i, existing.reuse(i, range.getOffset()));
+				reusedBytes += range.getLength();
+			}
+		}
 
-			// insert just after this step
-			getParent().insertAfter(putChunkStep, prev);
-			prev = putChunkStep;
+		logger.debug("File '{}': {} of {} content-defined chunks ({} of {} bytes) are re-used.", file.getName(),
+				reusedChunks.size(), ranges.size(), reusedBytes, reader.getFileSize());
+		return new PutChunksStep(context, ranges, reusedChunks, dataManager);
+	}
+
+	private PutChunksStep initDeduplicatedChunks(File file, FileChunkReader reader) throws IOException,
+			ProcessExecutionException {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(reader.getChunkSize());
+		List<ChunkRange> ranges = chunker.split(reader);
+
+		// the chunks are identified by their content hash, keyed with the secret of the protection scope
+		SecretKey secret;
+		String[] chunkIds = new String[ranges.size()];
+		try {
+			secret = ChunkEncryptionUtil.createDeduplicationSecret(context.consumeChunkProtectionKeys());
+			for (int i = 0; i < ranges.size(); i++) {
+				chunkIds[i] = ChunkEncryptionUtil.deriveChunkId(secret, ranges.get(i).getHash());
+			}
+		} catch (GeneralSecurityException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot derive the ids of the deduplicated chunks.");
 		}
+
+		// the chunks of the previous versions are referenced by this file already
+		Map<String, MetaChunk> referencedChunks = new HashMap<String, MetaChunk>();
+		BaseMetaFile metaFile = context.consumeMetaFile();
+		if (metaFile instanceof MetaFileSmall) {
+			for (FileVersion version : ((MetaFileSmall) metaFile).getVersions()) {
+				for (MetaChunk metaChunk : version.getMetaChunks()) {
+					if (metaChunk.isDeduplicated()) {
+						referencedChunks.put(metaChunk.getChunkId(), metaChunk);
+					}
+				}
+			}
+		}
+
+		Set<String> newReferences = new LinkedHashSet<String>();
+		for (String chunkId : chunkIds) {
+			if (!referencedChunks.containsKey(chunkId)) {
+				newReferences.add(chunkId);
+			}
+		}
+
+		// reference the chunks before checking whether they exist, thus no other file removes them meanwhile
+		referenceCounter = new ChunkReferenceCounter(dataManager, context.consumeChunkProtectionKeys(), context
+				.consumeMetaFileEncryptionKeys().getPublic());
+		addedReferences = newReferences;
+		if (!referenceCounter.addReferences(newReferences).isEmpty()) {
+			throw new ProcessExecutionException(this, "Cannot reference the deduplicated chunks.");
+		}
+		Set<String> existing = referenceCounter.findExisting(newReferences);
+
+		// chunks that exist already (in any file of the scope) are not uploaded again
+		Map<Integer, MetaChunk> reusedChunks = new HashMap<Integer, MetaChunk>();
+		Set<String> uploading = new LinkedHashSet<String>();
+		long reusedBytes = 0;
+		try {
+			for (int i = 0; i < ranges.size(); i++) {
+				ChunkRange range = ranges.get(i);
+				MetaChunk reused = referencedChunks.get(chunkIds[i]);
+				if (reused != null) {
+					reused = reused.reuse(i, range.getOffset());
+				} else if (existing.contains(chunkIds[i]) || !uploading.add(chunkIds[i])) {
+					// exists or is uploaded at another position of this file
+					byte[] chunkKey = ChunkEncryptionUtil.deriveChunkKey(secret, range.getHash()).getEncoded();
+					reused = new MetaChunk(chunkIds[i], null, i, range.getOffset(), range.getLength(),
+							range.getHash(), chunkKey);
+				}
+
+				if (reused != null) {
+					reusedChunks.put(i, reused);
+					reusedBytes += range.getLength();
+				}
+			}
+		} catch (GeneralSecurityException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot derive the keys of the deduplicated chunks.");
+		}
+
+		logger.debug("File '{}': {} of {} deduplicated chunks ({} of {} bytes) exist already.", file.getName(),
+				reusedChunks.size(), ranges.size(), reusedBytes, reader.getFileSize());
+		return new PutChunksStep(context, ranges, reusedChunks, secret, dataManager);
+	}
+
+	private static boolean isSameKey(HybridEncryptedContent key, HybridEncryptedContent other) {
+		return other != null && Arrays.equals(key.getEncryptedParameters(), other.getEncryptedParameters())
+				&& Arrays.equals(key.getEncryptedData(), other.getEncryptedData());
 	}
 
 	private void initLargeFile(File file) throws ProcessExecutionException {
 		// init the large file chunks
 		IFileConfiguration config = context.consumeFileConfiguration();
-		int chunks = FileChunkUtil.getNumberOfChunks(file, config.getChunkSize());
-		logger.trace("{} chunks for large file '{}'.", Integer.toString(chunks), file.getName());
 
-		// TODO Hashing is slow --> do this in multiple threads to speedup the initialization.
+		// hash all chunks (concurrently) and add the meta information to the context. The file is opened once
+		// for all chunks.
+		FileChunkReader reader = null;
+		try {
+			reader = new FileChunkReader(file, config.getChunkSize());
+			logger.trace("{} chunks for large file '{}'.", Integer.toString(reader.getNumberOfChunks()), file.getName());
+
+			byte[][] hashes = FileChunkHasher.hashChunks(reader, config.getHashingParallelism());
+			for (int i = 0; i < hashes.length; i++) {
+				String chunkId = UUID.randomUUID().toString();
+				context.getMetaChunks().add(new MetaChunk(chunkId, hashes[i], i));
+			}
+		} catch (IOException ex) {
+			throw new ProcessExecutionException(this, ex, "Cannot read the large file.");
+		} catch (InterruptedException ex) {
+			throw new ProcessExecutionException(this, ex, "Interrupted while hashing the large file.");
+		} finally {
+			closeReader(reader);
+		}
+	}
 
-		// process chunk for chunk, hash it and add the meta information to the context
-		for (int i = 0; i < chunks; i++) {
-			String chunkId = UUID.randomUUID().toString();
-			Chunk chunk;
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException {
+		// in case the put chunk steps did not run until the end
+		closeReader(context.consumeChunkReader());
+		context.provideChunkReader(null);
+		context.provideChunkContentKey(null);
+		context.provideEncryptedChunkContentKey(null);
 
-			try {
-				chunk = FileChunkUtil.getChunk(file, config.getChunkSize(), i, chunkId);
-			} catch (IOException ex) {
-				throw new ProcessExecutionException(this, ex, "Cannot read the large file.");
+		// removes the uploaded chunks as well if no other file references them
+		if (referenceCounter != null && !addedReferences.isEmpty()) {
+			int failed = referenceCounter.release(addedReferences);
+			if (failed > 0) {
+				logger.warn("Rollback of {} deduplicated chunk references failed.", failed);
 			}
+			addedReferences = Collections.emptySet();
+		}
+		setRequiresRollback(false);
+		return null;
+	}
+
+	private static void closeReader(FileChunkReader reader) {
+		if (reader == null) {
+			return;
+		}
 
-			byte[] md5Hash = HashUtil.hash(chunk.getData());
-			context.getMetaChunks().add(new MetaChunk(chunkId, md5Hash, i));
+		try {
+			reader.close();
+		} catch (IOException e) {
+			logger.warn("Cannot close the file '{}'.", reader.getFile().getName(), e);
 		}
 	}
 }
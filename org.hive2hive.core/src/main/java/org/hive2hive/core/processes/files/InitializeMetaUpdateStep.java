@@ -1,5 +1,7 @@
 package org.hive2hive.core.processes.files;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
@@ -13,8 +15,6 @@ import org.hive2hive.core.processes.context.interfaces.IInitializeMetaUpdateCont
 import org.hive2hive.core.processes.share.pkupdate.ChangeProtectionKeysStep;
 import org.hive2hive.core.processes.share.pkupdate.InitializeChunkUpdateStep;
 import org.hive2hive.processframework.ProcessStep;
-import org.hive2hive.processframework.composites.SyncProcess;
-import org.hive2hive.processframework.decorators.AsyncComponent;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.hive2hive.processframework.interfaces.IProcessComponent;
@@ -22,8 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Takes the shared folder and iteratively changes the protection keys of all meta files. Appends further
- * steps to change the content protection key of all contained chunks.
+ * Takes the shared folder and changes the protection keys of all meta files. Appends further steps to change
+ * the content protection key of all contained chunks. The meta files and chunks of the whole folder are
+ * processed in batches, thus the requests to the DHT are pipelined.
  * 
  * @author Nico, Seppi
  */
@@ -66,33 +67,39 @@ public class InitializeMetaUpdateStep extends ProcessStep<Void> {
 
 	private void initForFolder(FolderIndex folderIndex) throws ProcessExecutionException, NoSessionException,
 			NoPeerConnectionException {
-		List<Index> indexList = Index.getIndexList(folderIndex);
-		for (Index index : indexList) {
+		List<FileIndex> fileIndexes = new ArrayList<FileIndex>();
+		for (Index index : Index.getIndexList(folderIndex)) {
 			if (index.isFile()) {
-				initForFile((FileIndex) index);
+				fileIndexes.add((FileIndex) index);
 			}
 		}
+		initForFiles(fileIndexes);
 	}
 
 	private void initForFile(FileIndex fileIndex) throws NoSessionException, NoPeerConnectionException {
-		logger.debug("Initialize to change the protection keys of meta document of index '{}'.", fileIndex.getName());
-		// create the process and wrap it to make it asynchronous
-		getParent().insertAfter(new AsyncComponent<>(buildProcess(fileIndex)), this);
+		initForFiles(Collections.singletonList(fileIndex));
 	}
 
-	private IProcessComponent<Void> buildProcess(FileIndex index) throws NoSessionException, NoPeerConnectionException {
-
-		// create a new sub-process
-		SyncProcess subProcess = new SyncProcess();
+	private void initForFiles(List<FileIndex> fileIndexes) throws NoSessionException, NoPeerConnectionException {
+		if (fileIndexes.isEmpty()) {
+			return;
+		}
 
+		logger.debug("Initialize to change the protection keys of {} meta document(s).", fileIndexes.size());
 		// each meta document gets own context
-		MetaDocumentPKUpdateContext metaContext = new MetaDocumentPKUpdateContext(context.consumeOldProtectionKeys(),
-				context.consumeNewProtectionKeys(), index.getFilePublicKey(), index);
-
-		subProcess.add(new GetMetaFileStep(metaContext, dataManager));
-		subProcess.add(new ChangeProtectionKeysStep(metaContext, dataManager));
-		subProcess.add(new InitializeChunkUpdateStep(metaContext, dataManager));
+		List<MetaDocumentPKUpdateContext> metaContexts = new ArrayList<MetaDocumentPKUpdateContext>(fileIndexes.size());
+		for (FileIndex index : fileIndexes) {
+			metaContexts.add(new MetaDocumentPKUpdateContext(context.consumeOldProtectionKeys(), context
+					.consumeNewProtectionKeys(), index.getFilePublicKey(), index));
+		}
 
-		return subProcess;
+		// get all meta documents, change their protection keys and the ones of their chunks, each with a single
+		// batch
+		IProcessComponent<Void> getStep = new GetMetaFilesStep(metaContexts, dataManager);
+		IProcessComponent<Void> changeStep = new ChangeProtectionKeysStep(metaContexts, dataManager);
+		IProcessComponent<Void> chunkStep = new InitializeChunkUpdateStep(metaContexts, dataManager);
+		getParent().insertAfter(getStep, this);
+		getParent().insertAfter(changeStep, getStep);
+		getParent().insertAfter(chunkStep, changeStep);
 	}
 }
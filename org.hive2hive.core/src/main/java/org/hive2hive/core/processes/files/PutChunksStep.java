@@ -0,0 +1,300 @@
+package org.hive2hive.core.processes.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.SecretKey;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.exceptions.PutFailedException;
+import org.hive2hive.core.file.ContentDefinedChunker.ChunkRange;
+import org.hive2hive.core.file.FileChunkReader;
+import org.hive2hive.core.model.EncryptedChunk;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.context.interfaces.IUploadContext;
+import org.hive2hive.core.security.ChunkEncryptionUtil;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Puts all chunks of a file. The chunks are read, encrypted and put concurrently. At most
+ * {@link IFileConfiguration#getChunkUploadWindow()} chunks are in flight at the same time, thus only few
+ * chunks are held in memory (large files should be no problem). Every chunk is read into a re-used buffer
+ * and encrypted from there directly into the {@link EncryptedChunk}, using the content key of the version.
+ * The {@link MetaChunk}s are added to the context ordered by their index.<br>
+ * Content-defined chunks are read at their offset. Chunks that are re-used from a previous version are not
+ * put again. Deduplicated chunks are encrypted with their derived key, they are not removed at the rollback
+ * because other files may reference them (see {@link ChunkReferenceCounter}).
+ */
+public class PutChunksStep extends ProcessStep<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(PutChunksStep.class);
+
+	private final IUploadContext context;
+	private final int numberOfChunks;
+	private final DataManager dataManager;
+
+	// only set for content-defined chunks
+	private final List<ChunkRange> ranges;
+	private final Map<Integer, MetaChunk> reusedChunks;
+	// only set for deduplicated chunks
+	private final SecretKey deduplicationSecret;
+
+	// the parameters of all successful puts, used for the rollback
+	private final List<IParameters> putParameters;
+
+	public PutChunksStep(IUploadContext context, int numberOfChunks, DataManager dataManager) {
+		this(context, numberOfChunks, null, Collections.<Integer, MetaChunk> emptyMap(), null, dataManager);
+	}
+
+	/**
+	 * Puts content-defined chunks
+	 * 
+	 * @param ranges all chunks of the file
+	 * @param reusedChunks the chunks that exist already, by their index
+	 */
+	public PutChunksStep(IUploadContext context, List<ChunkRange> ranges, Map<Integer, MetaChunk> reusedChunks,
+			DataManager dataManager) {
+		this(context, ranges.size(), ranges, reusedChunks, null, dataManager);
+	}
+
+	/**
+	 * Puts deduplicated chunks
+	 * 
+	 * @param ranges all chunks of the file
+	 * @param reusedChunks the chunks that exist already, by their index
+	 * @param deduplicationSecret the secret to derive the id and key of the chunks
+	 */
+	public PutChunksStep(IUploadContext context, List<ChunkRange> ranges, Map<Integer, MetaChunk> reusedChunks,
+			SecretKey deduplicationSecret, DataManager dataManager) {
+		this(context, ranges.size(), ranges, reusedChunks, deduplicationSecret, dataManager);
+	}
+
+	private PutChunksStep(IUploadContext context, int numberOfChunks, List<ChunkRange> ranges,
+			Map<Integer, MetaChunk> reusedChunks, SecretKey deduplicationSecret, DataManager dataManager) {
+		this.setName(getClass().getName());
+		this.context = context;
+		this.numberOfChunks = numberOfChunks;
+		this.ranges = ranges;
+		this.reusedChunks = reusedChunks;
+		this.deduplicationSecret = deduplicationSecret;
+		this.dataManager = dataManager;
+		this.putParameters = Collections.synchronizedList(new ArrayList<IParameters>());
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		File file = context.consumeFile();
+		IFileConfiguration config = context.consumeFileConfiguration();
+		if (context.consumeChunkContentKey() == null) {
+			throw new ProcessExecutionException(this, "No content key to encrypt the chunks.");
+		}
+
+		int toUpload = numberOfChunks - reusedChunks.size();
+		int window = Math.max(1, Math.min(config.getChunkUploadWindow(), toUpload));
+		logger.debug("Uploading {} chunks of file {} with a window of {}.", toUpload, file.getName(), window);
+
+		final MetaChunk[] metaChunks = new MetaChunk[numberOfChunks];
+		final Semaphore inFlight = new Semaphore(window);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		// at most one buffer per chunk in flight
+		final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numberOfChunks);
+		ExecutorService executor = Executors.newFixedThreadPool(window);
+
+		Exception cause = null;
+		FileChunkReader reader = context.consumeChunkReader();
+		try {
+			if (reader == null || !reader.isOpen()) {
+				reader = new FileChunkReader(file, config.getChunkSize());
+			}
+
+			final FileChunkReader chunkReader = reader;
+			for (int i = 0; i < numberOfChunks && !failed.get(); i++) {
+				if (reusedChunks.containsKey(i)) {
+					metaChunks[i] = reusedChunks.get(i);
+					continue;
+				}
+
+				// wait until a slot in the window is free before reading the next chunk
+				inFlight.acquire();
+
+				final int index = i;
+				futures.add(executor.submit(new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						ByteBuffer buffer = buffers.poll();
+						if (buffer == null) {
+							buffer = ByteBuffer.allocate(chunkReader.getChunkSize());
+						}
+
+						try {
+							metaChunks[index] = readEncryptAndPut(chunkReader, index, buffer);
+							return null;
+						} catch (Exception ex) {
+							// stop reading further chunks
+							failed.set(true);
+							throw ex;
+						} finally {
+							buffers.offer(buffer);
+							inFlight.release();
+						}
+					}
+				}));
+			}
+		} catch (IOException ex) {
+			cause = ex;
+		} catch (InterruptedException ex) {
+			cause = ex;
+		}
+
+		// wait for all chunks in flight
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException ex) {
+				if (cause == null) {
+					cause = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+				}
+			} catch (InterruptedException ex) {
+				if (cause == null) {
+					cause = ex;
+				}
+			}
+		}
+		executor.shutdown();
+		closeReader(reader);
+
+		if (cause != null) {
+			// remove the chunks that have been put already
+			removeChunks();
+			throw new ProcessExecutionException(this, cause, String.format(
+					"File '%s': Could not read, encrypt or put the chunks.", file.getAbsolutePath()));
+		}
+
+		// store the hashes in the index of the meta file, ordered by the chunk index
+		for (MetaChunk metaChunk : metaChunks) {
+			if (metaChunk != null) {
+				context.getMetaChunks().add(metaChunk);
+			}
+		}
+
+		setRequiresRollback(true);
+		return null;
+	}
+
+	private MetaChunk readEncryptAndPut(FileChunkReader reader, int index, ByteBuffer buffer) throws IOException,
+			GeneralSecurityException, PutFailedException {
+		ChunkRange range = ranges == null ? null : ranges.get(index);
+		if (range != null) {
+			reader.read(range.getOffset(), range.getLength(), buffer);
+		} else if (reader.read(index, buffer) < 0) {
+			// beyond the end of the file
+			return null;
+		}
+
+		// encrypt the chunk prior to put such that nobody can read it. Content-defined chunks can be at other
+		// positions in later versions.
+		String securityProvider = context.getEncryption().getSecurityProvider();
+		String chunkId;
+		byte[] chunkKey = null;
+		EncryptedChunk encryptedChunk;
+		if (deduplicationSecret == null) {
+			chunkId = UUID.randomUUID().toString();
+			int order = range == null ? index : EncryptedChunk.UNORDERED;
+			encryptedChunk = ChunkEncryptionUtil.encrypt(buffer, chunkId, order, context.consumeChunkContentKey(),
+					securityProvider);
+		} else {
+			// equal content results in the same chunk, whoever puts it
+			chunkId = ChunkEncryptionUtil.deriveChunkId(deduplicationSecret, range.getHash());
+			SecretKey key = ChunkEncryptionUtil.deriveChunkKey(deduplicationSecret, range.getHash());
+			byte[] nonce = ChunkEncryptionUtil.deriveNonce(deduplicationSecret, range.getHash());
+			encryptedChunk = ChunkEncryptionUtil.encrypt(buffer, chunkId, EncryptedChunk.UNORDERED, key, nonce,
+					securityProvider);
+			chunkKey = key.getEncoded();
+		}
+
+		logger.debug("Uploading chunk {} of file {}.", index, context.consumeFile().getName());
+		Parameters parameters = new Parameters().setLocationKey(chunkId).setContentKey(H2HConstants.FILE_CHUNK)
+				.setNetworkContent(encryptedChunk).setProtectionKeys(context.consumeChunkProtectionKeys())
+				.setTTL(encryptedChunk.getTimeToLive());
+
+		// data manager has to produce the hash, which gets used for signing
+		parameters.setHashFlag(true);
+
+		// put the encrypted chunk into the network
+		H2HPutStatus status = dataManager.put(parameters);
+		if (!status.equals(H2HPutStatus.OK)) {
+			throw new PutFailedException("Put failed with return status " + status);
+		}
+		if (chunkKey == null) {
+			putParameters.add(parameters);
+		}
+
+		if (range != null) {
+			return new MetaChunk(chunkId, parameters.getHash(), index, range.getOffset(), range.getLength(),
+					range.getHash(), chunkKey);
+		}
+		return new MetaChunk(chunkId, parameters.getHash(), index);
+	}
+
+	@Override
+	protected Void doRollback() throws InvalidProcessStateException {
+		removeChunks();
+		setRequiresRollback(false);
+		return null;
+	}
+
+	private void removeChunks() {
+		List<IParameters> toRemove;
+		synchronized (putParameters) {
+			toRemove = new ArrayList<IParameters>(putParameters);
+			putParameters.clear();
+		}
+
+		for (IParameters parameters : toRemove) {
+			boolean success = dataManager.removeVersion(parameters);
+			if (success) {
+				logger.debug("Rollback of put succeeded. '{}'", parameters.toString());
+			} else {
+				logger.warn("Rollback of put failed. Remove failed. '{}'", parameters.toString());
+			}
+		}
+	}
+
+	private void closeReader(FileChunkReader reader) {
+		context.provideChunkReader(null);
+		if (reader != null) {
+			try {
+				reader.close();
+			} catch (IOException e) {
+				logger.warn("Cannot close the file '{}'.", reader.getFile().getName(), e);
+			}
+		}
+	}
+}
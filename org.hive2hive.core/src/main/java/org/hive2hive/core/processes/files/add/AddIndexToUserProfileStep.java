@@ -12,6 +12,7 @@ import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.processes.common.base.BaseModifyUserProfileStep;
 import org.hive2hive.core.processes.context.AddFileProcessContext;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
@@ -30,6 +31,7 @@ public class AddIndexToUserProfileStep extends BaseModifyUserProfileStep {
 
 	// pre-calculated hash in case it's a file
 	private byte[] md5;
+	private HashAlgorithm hashAlgorithm;
 
 	public AddIndexToUserProfileStep(AddFileProcessContext context, UserProfileManager profileManager) {
 		super(profileManager);
@@ -40,10 +42,11 @@ public class AddIndexToUserProfileStep extends BaseModifyUserProfileStep {
 	protected void beforeModify() throws ProcessExecutionException {
 		File file = context.consumeFile();
 		if (file.isFile()) {
+			hashAlgorithm = context.consumeFileConfiguration().getHashAlgorithm();
 			try {
-				md5 = HashUtil.hash(file);
+				md5 = HashUtil.hash(file, hashAlgorithm);
 			} catch (IOException e) {
-				logger.error("Creating MD5 hash of file '{}' was not possible.", file.getName(), e);
+				logger.error("Creating {} hash of file '{}' was not possible.", hashAlgorithm.getName(), file.getName(), e);
 				throw new ProcessExecutionException(this, "Cannot calculate the hash of the file " + file.getName());
 			}
 		}
@@ -67,7 +70,8 @@ public class AddIndexToUserProfileStep extends BaseModifyUserProfileStep {
 			FolderIndex folderIndex = new FolderIndex(parentNode, context.consumeMetaFileEncryptionKeys(), file.getName());
 			context.provideIndex(folderIndex);
 		} else {
-			FileIndex fileIndex = new FileIndex(parentNode, context.consumeMetaFileEncryptionKeys(), file.getName(), md5);
+			FileIndex fileIndex = new FileIndex(parentNode, context.consumeMetaFileEncryptionKeys(), file.getName(), md5,
+					hashAlgorithm);
 			context.provideIndex(fileIndex);
 		}
 	}
@@ -39,7 +39,7 @@ public class CreateMetaFileStep extends ProcessStep<Void> {
 		} else {
 			// create new meta file with new version
 			FileVersion version = new FileVersion(0, FileUtil.getFileSize(file), System.currentTimeMillis(),
-					context.getMetaChunks());
+					context.getMetaChunks(), context.consumeEncryptedChunkContentKey());
 			List<FileVersion> versions = new ArrayList<FileVersion>(1);
 			versions.add(version);
 			metaFile = new MetaFileSmall(metaKeys.getPublic(), versions, context.consumeChunkEncryptionKeys());
@@ -1,21 +1,35 @@
 package org.hive2hive.core.processes.files.delete;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
 import org.hive2hive.core.processes.context.DeleteFileProcessContext;
+import org.hive2hive.core.processes.files.ChunkReferenceCounter;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
-import org.hive2hive.processframework.interfaces.IProcessComponent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Removes all chunks of the deleted file. The removals are pipelined with
+ * {@link DataManager#removeAll(java.util.Collection)}.
+ */
 public class DeleteChunksStep extends ProcessStep<Void> {
 
+	private static final Logger logger = LoggerFactory.getLogger(DeleteChunksStep.class);
+
 	private final DeleteFileProcessContext context;
 	private final DataManager dataManager;
 
@@ -41,23 +55,46 @@ public class DeleteChunksStep extends ProcessStep<Void> {
 		if (metaFile.isSmall()) {
 			MetaFileSmall metaSmall = (MetaFileSmall) metaFile;
 			// TODO rather delete file by file than all chunks mixed
+			Set<String> chunkIds = new HashSet<String>();
 			for (FileVersion version : metaSmall.getVersions()) {
-				metaChunks.addAll(version.getMetaChunks());
+				for (MetaChunk metaChunk : version.getMetaChunks()) {
+					// content-defined chunks can be referenced by multiple versions
+					if (chunkIds.add(metaChunk.getChunkId())) {
+						metaChunks.add(metaChunk);
+					}
+				}
 			}
 		}
 
-		// process composition
-		List<IProcessComponent<?>> parentComponents = new ArrayList<>(getParent().getComponents());
-		int index = parentComponents.indexOf(this) + 1;
-
+		// remove all chunks with a single batch, deduplicated chunks only if no other file references them
+		List<IParameters> parameters = new ArrayList<IParameters>(metaChunks.size());
+		List<String> deduplicatedChunks = new ArrayList<String>();
 		for (MetaChunk metaChunk : metaChunks) {
-			// TODO at a later stage, this steps could be async (parallelized)
-			
-			IProcessComponent<?> step = new DeleteSingleChunkStep(metaChunk.getChunkId(), context.consumeProtectionKeys(),
-					dataManager);
-			getParent().add(index++, step);
+			if (metaChunk.isDeduplicated()) {
+				deduplicatedChunks.add(metaChunk.getChunkId());
+			} else {
+				parameters.add(new Parameters().setLocationKey(metaChunk.getChunkId())
+						.setContentKey(H2HConstants.FILE_CHUNK).setProtectionKeys(context.consumeProtectionKeys()));
+			}
+		}
+
+		int failed = 0;
+		if (!deduplicatedChunks.isEmpty()) {
+			failed += new ChunkReferenceCounter(dataManager, context.consumeProtectionKeys(), metaFile.getId())
+					.release(deduplicatedChunks);
 		}
-		
+		for (Entry<IParameters, Boolean> result : dataManager.removeAll(parameters).entrySet()) {
+			if (!result.getValue()) {
+				logger.warn("Could not remove chunk. '{}'", result.getKey().toString());
+				failed++;
+			}
+		}
+
+		if (failed > 0) {
+			throw new ProcessExecutionException(this, String.format("Removal of %s of %s chunks failed.", failed,
+					metaChunks.size()));
+		}
+
 		return null;
 	}
 
@@ -9,14 +9,18 @@ import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
 import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.MetaFileLarge;
 import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.download.BaseDownloadTask;
 import org.hive2hive.core.processes.context.DownloadFileContext;
+import org.hive2hive.core.processes.files.download.dht.ChunkKeys;
 import org.hive2hive.core.processes.files.download.dht.DownloadTaskDHT;
 import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
+import org.hive2hive.core.processes.files.download.hybrid.DownloadTaskHybrid;
 import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
@@ -65,19 +69,20 @@ public class InitDownloadChunksStep extends ProcessStep<Void> {
 			MetaFileSmall metaFileSmall = (MetaFileSmall) metaFile;
 
 			// support to download a specific version
-			List<MetaChunk> metaChunks;
+			FileVersion version;
 			if (context.downloadNewestVersion()) {
-				metaChunks = metaFileSmall.getNewestVersion().getMetaChunks();
+				version = metaFileSmall.getNewestVersion();
 			} else {
-				metaChunks = metaFileSmall.getVersionByIndex(context.getVersionToDownload()).getMetaChunks();
+				version = metaFileSmall.getVersionByIndex(context.getVersionToDownload());
 			}
+			List<MetaChunk> metaChunks = version.getMetaChunks();
 
 			// verify destination before downloading
 			if (destination.exists()) {
 				// can be cast because only files are downloaded
 				FileIndex fileIndex = (FileIndex) context.consumeIndex();
 				try {
-					if (HashUtil.compare(destination, fileIndex.getMD5())) {
+					if (HashUtil.compare(destination, fileIndex.getMD5(), fileIndex.getHashAlgorithm())) {
 						throw new ProcessExecutionException(this,
 								"File already exists on disk. Content does match. No download needed.");
 					}
@@ -86,8 +91,18 @@ public class InitDownloadChunksStep extends ProcessStep<Void> {
 				}
 			}
 
-			DownloadTaskDHT task = new DownloadTaskDHT(metaChunks, destination, metaFileSmall.getChunkKey().getPrivate(),
-					networkManager.getEventBus(), session.getKeyManager());
+			BaseDownloadTask task;
+			if (session.getDownloadManager().getDownloadMode().isHybrid()) {
+				// download chunks from the DHT and from users
+				Set<String> users = context.consumeIndex().getCalculatedUserList();
+				ChunkKeys chunkKeys = new ChunkKeys(metaFileSmall.getChunkKey().getPrivate(), version.getContentKey());
+				task = new DownloadTaskHybrid(metaChunks, destination, metaFile.getId(), session.getUserId(),
+						networkManager.getConnection().getPeer().peerAddress(), users, chunkKeys,
+						networkManager.getEventBus(), session.getKeyManager());
+			} else {
+				task = new DownloadTaskDHT(metaChunks, destination, metaFileSmall.getChunkKey().getPrivate(),
+						version.getContentKey(), networkManager.getEventBus(), session.getKeyManager());
+			}
 
 			// start the download
 			try {
@@ -0,0 +1,97 @@
+package org.hive2hive.core.processes.files.download.dht;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.EncryptedChunk;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.security.ChunkEncryptionUtil;
+import org.hive2hive.core.security.IH2HEncryption;
+
+/**
+ * The keys to decrypt the chunks of a file version downloaded from the DHT
+ */
+public class ChunkKeys implements Serializable {
+
+	private static final long serialVersionUID = 2986001434539462917L;
+
+	private final PrivateKey decryptionKey;
+	private final HybridEncryptedContent encryptedContentKey;
+
+	// decrypted once for all chunks, never persisted
+	private transient SecretKey contentKey;
+
+	/**
+	 * @param decryptionKey the private chunk key of the file
+	 * @param encryptedContentKey the content key of the file version (see
+	 *            {@link org.hive2hive.core.model.FileVersion#getContentKey()}), can be <code>null</code> for
+	 *            versions with hybrid encrypted chunks.
+	 */
+	public ChunkKeys(PrivateKey decryptionKey, HybridEncryptedContent encryptedContentKey) {
+		this.decryptionKey = decryptionKey;
+		this.encryptedContentKey = encryptedContentKey;
+	}
+
+	public PrivateKey getDecryptionKey() {
+		return decryptionKey;
+	}
+
+	/**
+	 * Returns the content key of the chunks. The key is decrypted at the first call only, thus there is a
+	 * single asymmetric decryption per download.
+	 *
+	 * @param encryption the encryption suite
+	 * @return the content key
+	 * @throws GeneralSecurityException if the version has no content key or the key cannot be decrypted
+	 */
+	public synchronized SecretKey getContentKey(IH2HEncryption encryption) throws GeneralSecurityException,
+			IOException, ClassNotFoundException {
+		if (contentKey == null) {
+			if (encryptedContentKey == null) {
+				throw new GeneralSecurityException("The file version has no content key.");
+			}
+			contentKey = ChunkEncryptionUtil.unwrapContentKey(encryptedContentKey, decryptionKey, encryption);
+		}
+		return contentKey;
+	}
+
+	/**
+	 * Decrypts a chunk fetched from the DHT and verifies that it belongs to the given position of the file
+	 *
+	 * @param content the content stored at the chunk id
+	 * @param metaChunk the meta data of the chunk
+	 * @param encryption the encryption suite
+	 * @return the plain data of the chunk
+	 */
+	public byte[] decrypt(BaseNetworkContent content, MetaChunk metaChunk, IH2HEncryption encryption)
+			throws GeneralSecurityException, IOException, ClassNotFoundException {
+		if (content instanceof EncryptedChunk) {
+			EncryptedChunk encrypted = (EncryptedChunk) content;
+			int order = metaChunk.isContentDefined() ? EncryptedChunk.UNORDERED : metaChunk.getIndex();
+			if (encrypted.getOrder() != order || !metaChunk.getChunkId().equals(encrypted.getId())) {
+				throw new GeneralSecurityException("The chunk does not belong to this position of the file.");
+			}
+			// decrypted straight into the array that is written to the file. Deduplicated chunks have their own key.
+			SecretKey key = metaChunk.isDeduplicated() ? new SecretKeySpec(metaChunk.getChunkKey(), "AES")
+					: getContentKey(encryption);
+			byte[] data = ChunkEncryptionUtil.decrypt(encrypted, key, encryption.getSecurityProvider());
+			if (metaChunk.isContentDefined() && data.length != metaChunk.getLength()) {
+				throw new GeneralSecurityException("The chunk has not the expected length.");
+			}
+			return data;
+		} else if (content instanceof HybridEncryptedContent) {
+			// chunks uploaded by older versions
+			BaseNetworkContent decrypted = encryption.decryptHybrid((HybridEncryptedContent) content, decryptionKey);
+			return ((Chunk) decrypted).getData();
+		}
+		throw new IllegalArgumentException("Unknown chunk content " + content.getClass().getSimpleName());
+	}
+}
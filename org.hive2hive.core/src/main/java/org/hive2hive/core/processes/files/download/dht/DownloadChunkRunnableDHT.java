@@ -1,15 +1,11 @@
 package org.hive2hive.core.processes.files.download.dht;
 
-import java.io.File;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 
-import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.BaseNetworkContent;
-import org.hive2hive.core.model.Chunk;
 import org.hive2hive.core.model.MetaChunk;
-import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.network.data.parameters.IParameters;
 import org.hive2hive.core.network.data.parameters.Parameters;
@@ -18,7 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Downloads a chunk from the DHT and stores it into a temprary file
+ * Downloads a chunk from the DHT and writes it into the file of the download task
  * 
  * @author Nico
  * 
@@ -29,7 +25,6 @@ public class DownloadChunkRunnableDHT implements Runnable {
 
 	private final DownloadTaskDHT task;
 	private final MetaChunk metaChunk;
-	private final File tempDestination;
 	private final DataManager dataManager;
 	private final IH2HEncryption encryption;
 
@@ -38,9 +33,6 @@ public class DownloadChunkRunnableDHT implements Runnable {
 		this.metaChunk = chunk;
 		this.dataManager = dataManager;
 		this.encryption = encryption;
-
-		// create temporary file
-		this.tempDestination = new File(task.getTempDirectory(), task.getDestinationName() + "-" + chunk.getIndex());
 	}
 
 	@Override
@@ -62,27 +54,17 @@ public class DownloadChunkRunnableDHT implements Runnable {
 			return;
 		}
 
-		HybridEncryptedContent encrypted = (HybridEncryptedContent) content;
-		Chunk chunk;
-
+		byte[] data;
 		try {
-			BaseNetworkContent decrypted = encryption.decryptHybrid(encrypted, task.getDecryptionKey());
-			chunk = (Chunk) decrypted;
+			data = task.getChunkKeys().decrypt(content, metaChunk, encryption);
 		} catch (GeneralSecurityException | IllegalArgumentException | IOException | ClassNotFoundException e) {
 			task.abortDownload(String.format("Decryption of the chunk failed. reason = '%s'", e.getMessage()));
 			return;
 		}
 
-		try {
-			FileUtils.writeByteArrayToFile(tempDestination, chunk.getData());
-		} catch (IOException e) {
-			task.abortDownload("Cannot write the chunk data to temporary file");
-			return;
-		}
-
 		// TODO verify MD5 hash here
 
 		// notify the task that this file part has been downloaded successfully
-		task.markDownloaded(metaChunk.getIndex(), tempDestination);
+		task.markDownloaded(metaChunk.getIndex(), data);
 	}
 }
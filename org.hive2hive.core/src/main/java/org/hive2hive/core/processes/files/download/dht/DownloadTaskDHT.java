@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.hive2hive.core.events.EventBus;
 import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.network.data.download.BaseDownloadTask;
 
@@ -13,16 +14,29 @@ public class DownloadTaskDHT extends BaseDownloadTask {
 
 	private static final long serialVersionUID = -6933011357191806148L;
 
-	private final PrivateKey decryptionKey;
+	private final ChunkKeys chunkKeys;
 
 	public DownloadTaskDHT(List<MetaChunk> metaChunks, File destination, PrivateKey decryptionKey, EventBus eventBus,
 			PublicKeyManager keyManager) {
+		this(metaChunks, destination, decryptionKey, null, eventBus, keyManager);
+	}
+
+	/**
+	 * @param encryptedContentKey the content key of the file version (see
+	 *            {@link org.hive2hive.core.model.FileVersion#getContentKey()}), can be <code>null</code> for
+	 *            versions with hybrid encrypted chunks.
+	 */
+	public DownloadTaskDHT(List<MetaChunk> metaChunks, File destination, PrivateKey decryptionKey,
+			HybridEncryptedContent encryptedContentKey, EventBus eventBus, PublicKeyManager keyManager) {
 		super(metaChunks, destination, eventBus, keyManager);
-		this.decryptionKey = decryptionKey;
+		this.chunkKeys = new ChunkKeys(decryptionKey, encryptedContentKey);
 	}
 
-	public PrivateKey getDecryptionKey() {
-		return decryptionKey;
+	/**
+	 * @return the keys to decrypt the chunks
+	 */
+	public ChunkKeys getChunkKeys() {
+		return chunkKeys;
 	}
 
 	@Override
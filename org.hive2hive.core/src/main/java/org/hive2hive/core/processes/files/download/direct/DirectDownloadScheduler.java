@@ -0,0 +1,840 @@
+package org.hive2hive.core.processes.files.download.direct;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.network.messages.IMessageManager;
+import org.hive2hive.core.network.messages.PeerScoreBoard;
+import org.hive2hive.core.network.messages.direct.response.IResponseCallBackHandler;
+import org.hive2hive.core.network.messages.direct.response.ResponseMessage;
+import org.hive2hive.core.network.messages.request.DirectRequestMessage;
+import org.hive2hive.core.processes.files.download.dht.ChunkKeys;
+import org.hive2hive.core.processes.files.download.direct.process.ChunkMessageResponse;
+import org.hive2hive.core.processes.files.download.direct.process.RequestChunkMessage;
+import org.hive2hive.core.processes.files.download.direct.process.RequestChunkRangeMessage;
+import org.hive2hive.core.processes.files.download.direct.process.RequestChunkSliceMessage;
+import org.hive2hive.core.processes.files.download.hybrid.DownloadTaskHybrid;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.security.IH2HEncryption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads the chunks of a file from all clients found in the locations of the users having access to it.
+ * Every peer has several outstanding requests, thus the round trips overlap, and consecutive chunks are
+ * requested with a single {@link RequestChunkRangeMessage}. The peers are rated by the {@link PeerScoreBoard}
+ * (throughput, failures, busy answers and slow devices): better peers are served first and get larger
+ * ranges. When all chunks are requested, the requests of slower peers are duplicated to idle faster peers and
+ * the first response wins.<br>
+ * Peers not answering a range request (e.g. older versions) are asked chunk by chunk with the
+ * {@link RequestChunkMessage}.<br>
+ * A {@link DownloadTaskHybrid} fetches the chunks from the DHT first, pipelined in a window of
+ * {@link H2HConstants#DHT_BATCH_WINDOW}. Content-defined chunks missing in the DHT are requested from the
+ * peers with the {@link RequestChunkSliceMessage}, or retried at the DHT if no peer can serve them. In the
+ * {@link DownloadMode#HEDGED} mode, a request taking longer than {@link H2HConstants#DOWNLOAD_HEDGE_PERCENTILE}
+ * of the previous requests to the same source is repeated at the other source, the first verified chunk wins.
+ */
+public class DirectDownloadScheduler implements Runnable {
+
+	private static final Logger logger = LoggerFactory.getLogger(DirectDownloadScheduler.class);
+
+	// how long to wait for responses before scheduling again
+	private static final long SCHEDULE_INTERVAL_MS = 200;
+	// the range size of a peer whose throughput is not known yet
+	private static final int PROBE_RANGE = 2;
+	// peers below this ratio of the best score only get chunks if all better peers are busy
+	private static final double SECONDARY_SCORE_RATIO = 0.3;
+
+	private final DownloadTaskDirect task;
+	private final IMessageManager messageManager;
+	private final PeerScoreBoard scores;
+	private final int chunkSize;
+	private final Random random = new Random();
+
+	// only set for hybrid downloads
+	private final DataManager dataManager;
+	private final IH2HEncryption encryption;
+	private final ChunkKeys chunkKeys;
+	private final boolean hedged;
+
+	// all state below is guarded by the lock
+	private final Object lock = new Object();
+	private final Map<Integer, MetaChunk> metaChunks;
+	// the chunks that are not requested, ordered by their index
+	private final TreeSet<Integer> pending;
+	private final Set<Integer> completed;
+	private final Map<Integer, Integer> failures;
+	private final Map<PeerAddress, PeerState> peers;
+	private final Set<RangeRequest> inFlight;
+	// the chunks to get from the DHT, ordered by their index
+	private final TreeSet<Integer> dhtPending;
+	// the start time of the outstanding DHT gets by the chunk index
+	private final Map<Integer, Long> dhtInFlight;
+	// the chunks that are requested from both sources or available at a single source only
+	private final Set<Integer> notHedged;
+	private final Latencies dhtLatencies;
+	private final Latencies peerLatencies;
+	private String abortReason;
+
+	public DirectDownloadScheduler(DownloadTaskDirect task, IMessageManager messageManager, PeerScoreBoard scores,
+			IFileConfiguration config) {
+		this(task, messageManager, scores, config, null, null, null);
+	}
+
+	/**
+	 * Creates a scheduler that downloads the chunks from the DHT and the peers
+	 */
+	public DirectDownloadScheduler(DownloadTaskHybrid task, IMessageManager messageManager, PeerScoreBoard scores,
+			IFileConfiguration config, DataManager dataManager, IH2HEncryption encryption) {
+		this(task, messageManager, scores, config, dataManager, encryption, task.getChunkKeys());
+	}
+
+	private DirectDownloadScheduler(DownloadTaskDirect task, IMessageManager messageManager, PeerScoreBoard scores,
+			IFileConfiguration config, DataManager dataManager, IH2HEncryption encryption, ChunkKeys chunkKeys) {
+		this.task = task;
+		this.messageManager = messageManager;
+		this.scores = scores;
+		this.chunkSize = config.getChunkSize();
+		this.dataManager = dataManager;
+		this.encryption = encryption;
+		this.chunkKeys = chunkKeys;
+		this.hedged = dataManager != null && config.getDownloadMode() == DownloadMode.HEDGED;
+		this.metaChunks = new HashMap<Integer, MetaChunk>();
+		this.pending = new TreeSet<Integer>();
+		this.completed = new HashSet<Integer>();
+		this.failures = new HashMap<Integer, Integer>();
+		this.peers = new LinkedHashMap<PeerAddress, PeerState>();
+		this.inFlight = new HashSet<RangeRequest>();
+		this.dhtPending = new TreeSet<Integer>();
+		this.dhtInFlight = new HashMap<Integer, Long>();
+		this.notHedged = new HashSet<Integer>();
+		this.dhtLatencies = new Latencies();
+		this.peerLatencies = new Latencies();
+	}
+
+	private boolean isHybrid() {
+		return dataManager != null;
+	}
+
+	@Override
+	public void run() {
+		if (isHybrid()) {
+			// the locations are only needed for the chunks the DHT cannot deliver in time
+			logger.debug("Start downloading from the DHT, the peers are added as soon as the locations are available");
+		} else if (task.awaitLocations()) {
+			logger.debug("Locations are available and download can be started");
+		} else {
+			logger.warn("Locations are not available, abort download");
+			task.abortDownload("Locations are not available in reasonable time");
+			return;
+		}
+
+		synchronized (lock) {
+			for (MetaChunk metaChunk : task.getOpenChunks()) {
+				metaChunks.put(metaChunk.getIndex(), metaChunk);
+				if (isHybrid()) {
+					dhtPending.add(metaChunk.getIndex());
+				} else {
+					pending.add(metaChunk.getIndex());
+				}
+			}
+		}
+
+		long idleSince = System.currentTimeMillis();
+		int idleRounds = 0;
+		while (true) {
+			if (task.isAborted()) {
+				logger.warn("Abort scheduled download of file {}", task.getDestinationName());
+				return;
+			} else if (Thread.currentThread().isInterrupted()) {
+				logger.warn("Not terminate the download because thread is interrupted");
+				return;
+			}
+
+			// outside the lock because the public keys may need to be fetched
+			updatePeers();
+
+			List<Integer> toGet = Collections.emptyList();
+			synchronized (lock) {
+				if (abortReason != null) {
+					break;
+				} else if (completed.size() == metaChunks.size()) {
+					logger.debug("All chunks of file {} have been received", task.getDestinationName());
+					return;
+				}
+
+				expireRequests();
+				if (isHybrid()) {
+					retryAtDHT();
+					toGet = scheduleDHT();
+				}
+				schedule();
+
+				long now = System.currentTimeMillis();
+				if (!inFlight.isEmpty() || !dhtInFlight.isEmpty() || !toGet.isEmpty() || pending.isEmpty()) {
+					// only the chunks waiting for a peer can starve
+					idleSince = now;
+					idleRounds = 0;
+				} else if (now - idleSince > H2HConstants.DIRECT_DOWNLOAD_AWAIT_MS) {
+					// no peer available for a while
+					idleSince = now;
+					if (++idleRounds >= H2HConstants.MAX_RETRIES_DOWNLOAD_SAME_CHUNK) {
+						abortReason = "No online peer found that could be contacted";
+						break;
+					}
+					logger.warn("No online peer found that could be contacted to get the file {}",
+							task.getDestinationName());
+				}
+			}
+
+			// outside the lock because cached chunks complete immediately
+			for (Integer index : toGet) {
+				get(index);
+			}
+
+			synchronized (lock) {
+				try {
+					lock.wait(SCHEDULE_INTERVAL_MS);
+				} catch (InterruptedException e) {
+					logger.warn("Not terminate the download because thread is interrupted");
+					return;
+				}
+			}
+		}
+
+		task.abortDownload(abortReason);
+	}
+
+	/**
+	 * Adds the peers of the current locations and marks the ones that are not listed anymore
+	 */
+	private void updatePeers() {
+		Map<PeerAddress, String> available = new HashMap<PeerAddress, String>();
+		for (Locations locations : task.getLocations()) {
+			for (PeerAddress address : locations.getPeerAddresses()) {
+				if (!address.equals(task.getOwnAddress())) {
+					available.put(address, locations.getUserId());
+				}
+			}
+		}
+
+		List<Entry<PeerAddress, String>> added = new ArrayList<Entry<PeerAddress, String>>();
+		synchronized (lock) {
+			for (PeerState peer : peers.values()) {
+				peer.removed = !available.containsKey(peer.address);
+			}
+			for (Entry<PeerAddress, String> entry : available.entrySet()) {
+				if (!peers.containsKey(entry.getKey())) {
+					added.add(entry);
+				}
+			}
+		}
+
+		InetAddress ownInetAddress = task.getOwnAddress().inetAddress();
+		for (Entry<PeerAddress, String> entry : added) {
+			PublicKey publicKey;
+			try {
+				publicKey = task.getKeyManager().getPublicKey(entry.getValue());
+			} catch (GetFailedException e) {
+				logger.warn("Cannot get public key of user '{}'.", entry.getValue());
+				continue;
+			}
+
+			// prefer the clients of the own user with the same external IP (could be in the same subnet)
+			PeerAddress address = entry.getKey();
+			boolean preferred = task.getOwnUserName().equals(entry.getValue()) && ownInetAddress != null
+					&& ownInetAddress.equals(address.inetAddress());
+			synchronized (lock) {
+				peers.put(address, new PeerState(address, publicKey, preferred));
+			}
+		}
+	}
+
+	/**
+	 * Fails the requests that could not be sent or did not get a response in time
+	 */
+	private void expireRequests() {
+		long now = System.currentTimeMillis();
+		for (RangeRequest request : new ArrayList<RangeRequest>(inFlight)) {
+			if (request.isSendFailed()) {
+				logger.error("Cannot send message to {}", request.peer.address);
+				fail(request, true);
+			} else if (now - request.sentAt > (long) H2HConstants.DIRECT_DOWNLOAD_AWAIT_MS * request.indices.size()) {
+				if (request.indices.size() > 1) {
+					// the peer may not understand range requests, ask it for single chunks
+					logger.warn("Peer {} did not answer a range request in time", request.peer.address);
+					request.peer.rangesSupported = false;
+					requeue(request, false);
+				} else {
+					logger.error("Peer {} did not answer in time", request.peer.address);
+					fail(request, true);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the chunks to get from the DHT, as many as fit into the window of outstanding gets. When hedging,
+	 * slow gets of content-defined chunks are requested from the peers as well and slow peer requests are
+	 * repeated at the DHT.
+	 *
+	 * @return the indices of the chunks to get
+	 */
+	private List<Integer> scheduleDHT() {
+		List<Integer> toGet = new ArrayList<Integer>();
+		long now = System.currentTimeMillis();
+		while (!dhtPending.isEmpty() && dhtInFlight.size() < H2HConstants.DHT_BATCH_WINDOW) {
+			Integer index = dhtPending.pollFirst();
+			dhtInFlight.put(index, now);
+			toGet.add(index);
+		}
+
+		if (!hedged) {
+			return toGet;
+		}
+
+		long dhtDelay = dhtLatencies.getPercentile(H2HConstants.DOWNLOAD_HEDGE_PERCENTILE);
+		for (Entry<Integer, Long> get : dhtInFlight.entrySet()) {
+			Integer index = get.getKey();
+			if (now - get.getValue() > dhtDelay && metaChunks.get(index).isContentDefined() && notHedged.add(index)) {
+				logger.debug("Getting chunk {} from the DHT takes longer than {} ms, request it from the peers", index,
+						dhtDelay);
+				pending.add(index);
+			}
+		}
+
+		long peerDelay = peerLatencies.getPercentile(H2HConstants.DOWNLOAD_HEDGE_PERCENTILE);
+		for (RangeRequest request : inFlight) {
+			if (now - request.sentAt <= peerDelay) {
+				continue;
+			}
+			for (Integer index : request.indices) {
+				if (!completed.contains(index) && !dhtInFlight.containsKey(index) && notHedged.add(index)) {
+					logger.debug("Peer {} takes longer than {} ms for chunk {}, get it from the DHT",
+							request.peer.address, peerDelay, index);
+					dhtInFlight.put(index, now);
+					toGet.add(index);
+				}
+			}
+		}
+		return toGet;
+	}
+
+	/**
+	 * Gets a chunk from the DHT, decrypts and verifies it in the background
+	 */
+	private void get(final Integer index) {
+		final MetaChunk metaChunk;
+		synchronized (lock) {
+			metaChunk = metaChunks.get(index);
+		}
+
+		logger.debug("Downloading chunk {} of file {} from the DHT", index, task.getDestinationName());
+		IParameters parameters = new Parameters().setLocationKey(metaChunk.getChunkId()).setContentKey(
+				H2HConstants.FILE_CHUNK);
+		final long startedAt = System.currentTimeMillis();
+		dataManager.getAsync(parameters).addListener(new BaseFutureAdapter<FutureDone<BaseNetworkContent>>() {
+			@Override
+			public void operationComplete(FutureDone<BaseNetworkContent> future) throws Exception {
+				BaseNetworkContent content = future.isSuccess() ? future.object() : null;
+				byte[] data = null;
+				if (content == null) {
+					logger.warn("Chunk {} of file {} not found in the DHT", index, task.getDestinationName());
+				} else {
+					try {
+						data = chunkKeys.decrypt(content, metaChunk, encryption);
+					} catch (GeneralSecurityException | IllegalArgumentException | IOException
+							| ClassNotFoundException e) {
+						logger.warn("Decryption of chunk {} failed. reason = '{}'", index, e.getMessage());
+					}
+					// the hash of fixed chunks only covers the encrypted content
+					if (data != null && metaChunk.isContentDefined() && !isValid(metaChunk, data)) {
+						logger.warn("Chunk {} from the DHT does not match its content hash", index);
+						data = null;
+					}
+				}
+
+				if (handleDHTResult(index, data, System.currentTimeMillis() - startedAt)) {
+					task.markDownloaded(index, data);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Updates the state with the result of a DHT get. Content-defined chunks the DHT could not deliver are
+	 * requested from the peers if there are any, others are retried.
+	 *
+	 * @param data the verified chunk or <code>null</code> if the get failed
+	 * @return whether the chunk needs to be written
+	 */
+	private boolean handleDHTResult(Integer index, byte[] data, long durationMs) {
+		synchronized (lock) {
+			dhtInFlight.remove(index);
+			lock.notifyAll();
+			if (data != null) {
+				dhtLatencies.record(durationMs);
+				pending.remove(index);
+				return completed.add(index);
+			} else if (completed.contains(index)) {
+				return false;
+			}
+
+			if (metaChunks.get(index).isContentDefined() && hasAvailablePeer()) {
+				if (notHedged.add(index)) {
+					logger.debug("Request chunk {} from the peers", index);
+					pending.add(index);
+				}
+			} else {
+				countFailure(index);
+				dhtPending.add(index);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the chunks waiting for a peer to the DHT if no peer can serve them (anymore), e.g. because there
+	 * are no other clients or all of them failed. The retries are limited by
+	 * {@link H2HConstants#MAX_RETRIES_DOWNLOAD_SAME_CHUNK}.
+	 */
+	private void retryAtDHT() {
+		if (pending.isEmpty() || hasAvailablePeer()) {
+			return;
+		}
+
+		for (Integer index : pending) {
+			// can be requested from the peers again as soon as there are some
+			notHedged.remove(index);
+			if (!dhtInFlight.containsKey(index) && dhtPending.add(index)) {
+				logger.debug("No peer can serve chunk {}, get it from the DHT again", index);
+				countFailure(index);
+			}
+		}
+		pending.clear();
+	}
+
+	private boolean hasAvailablePeer() {
+		for (PeerState peer : peers.values()) {
+			if (!peer.removed) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Spreads the pending chunks over all peers with free request slots, the best scored peers first. Peers
+	 * scoring far below the best one (e.g. slow or unreliable peers) only get chunks when all others are busy.
+	 */
+	private void schedule() {
+		List<PeerState> candidates = new ArrayList<PeerState>();
+		long now = System.currentTimeMillis();
+		for (PeerState peer : peers.values()) {
+			if (!peer.removed && now >= peer.backoffUntil) {
+				candidates.add(peer);
+			}
+		}
+
+		// unknown peers are probed as if they were as fast as the best known one
+		double best = 0;
+		for (PeerState peer : candidates) {
+			if (scores.isKnown(peer.address)) {
+				best = Math.max(best, scores.getScore(peer.address, 0));
+			}
+		}
+		double optimistic = best > 0 ? best : 1;
+		for (PeerState peer : candidates) {
+			peer.measured = scores.isKnown(peer.address);
+			peer.score = scores.getScore(peer.address, optimistic);
+			peer.roundTrip = scores.getRoundTripTime(peer.address);
+			best = Math.max(best, peer.score);
+		}
+		Collections.sort(candidates);
+
+		// one request per peer and round, thus the chunks are interleaved among the peers
+		double secondary = best * SECONDARY_SCORE_RATIO;
+		boolean sent = true;
+		while (!pending.isEmpty() && sent) {
+			sent = false;
+			boolean primaryAvailable = false;
+			for (PeerState peer : candidates) {
+				primaryAvailable |= peer.score >= secondary && peer.hasFreeSlot();
+			}
+
+			for (PeerState peer : candidates) {
+				if (pending.isEmpty()) {
+					break;
+				} else if (peer.hasFreeSlot() && (peer.score >= secondary || !primaryAvailable)) {
+					send(peer, takeRange(peer.getRangeSize(best)));
+					sent = true;
+				}
+			}
+		}
+
+		if (pending.isEmpty()) {
+			// end game: idle peers take over the requests of slower peers
+			for (PeerState peer : candidates) {
+				if (peer.outstanding == 0) {
+					duplicateSlowest(peer, best);
+				}
+			}
+		}
+	}
+
+	private List<Integer> takeRange(int size) {
+		List<Integer> range = new ArrayList<Integer>(size);
+		int index = pending.first();
+		while (range.size() < size && pending.remove(index)) {
+			range.add(index++);
+		}
+		return range;
+	}
+
+	private void duplicateSlowest(PeerState idlePeer, double best) {
+		RangeRequest slowest = null;
+		for (RangeRequest request : inFlight) {
+			if (!request.duplicated && request.peer.score < idlePeer.score
+					&& (slowest == null || request.sentAt < slowest.sentAt)) {
+				slowest = request;
+			}
+		}
+
+		if (slowest != null) {
+			List<Integer> open = new ArrayList<Integer>();
+			for (Integer index : slowest.indices) {
+				if (!completed.contains(index)) {
+					open.add(index);
+				}
+			}
+
+			slowest.duplicated = true;
+			if (!open.isEmpty()) {
+				logger.debug("Request chunks {} from the faster peer {} as well", open, idlePeer.address);
+				send(idlePeer, open.subList(0, Math.min(open.size(), idlePeer.getRangeSize(best))));
+			}
+		}
+	}
+
+	private void send(PeerState peer, List<Integer> indices) {
+		RangeRequest request = new RangeRequest(peer, new ArrayList<Integer>(indices));
+		int first = indices.get(0);
+		DirectRequestMessage message;
+		if (metaChunks.get(first).isContentDefined()) {
+			// only the chunks of a hybrid download
+			List<MetaChunk> slices = new ArrayList<MetaChunk>(indices.size());
+			for (Integer index : indices) {
+				slices.add(metaChunks.get(index));
+			}
+			message = new RequestChunkSliceMessage(peer.address, task.getFileKey(), chunkSize, slices);
+		} else if (indices.size() == 1) {
+			message = new RequestChunkMessage(peer.address, task.getFileKey(), first, chunkSize, metaChunks.get(first)
+					.getChunkHash());
+		} else {
+			List<byte[]> hashes = new ArrayList<byte[]>(indices.size());
+			for (Integer index : indices) {
+				hashes.add(metaChunks.get(index).getChunkHash());
+			}
+			message = new RequestChunkRangeMessage(peer.address, task.getFileKey(), first, chunkSize, hashes);
+		}
+		message.setCallBackHandler(request);
+
+		logger.debug("Requesting chunks {} from peer {}", indices, peer.address);
+		peer.outstanding++;
+		inFlight.add(request);
+		request.sendResult = messageManager.sendDirectAsync(message, peer.publicKey);
+	}
+
+	private void finish(RangeRequest request) {
+		if (inFlight.remove(request)) {
+			request.peer.outstanding--;
+		}
+	}
+
+	/**
+	 * Puts the chunks of the request that have not been received back to the pending ones
+	 */
+	private void requeue(RangeRequest request, boolean countFailure) {
+		finish(request);
+		for (Integer index : request.indices) {
+			if (completed.contains(index)) {
+				continue;
+			}
+
+			pending.add(index);
+			if (countFailure) {
+				countFailure(index);
+			}
+		}
+		lock.notifyAll();
+	}
+
+	private void countFailure(Integer index) {
+		Integer count = failures.get(index);
+		count = count == null ? 1 : count + 1;
+		failures.put(index, count);
+		if (count >= H2HConstants.MAX_RETRIES_DOWNLOAD_SAME_CHUNK) {
+			logger.error("Downloading chunk with index {} was retried {} times. Will stop the download now", index,
+					count);
+			abortReason = "Retry count for chunk " + index + " exceeded the limit";
+		}
+	}
+
+	private void fail(RangeRequest request, boolean removePeer) {
+		requeue(request, true);
+		scores.recordFailure(request.peer.address);
+		if (removePeer) {
+			logger.debug("Removing peer address {} from the candidate list", request.peer.address);
+			request.peer.removed = true;
+			task.removeAddress(request.peer.address);
+		}
+	}
+
+	/**
+	 * Verifies the received chunks and updates the state
+	 *
+	 * @return the chunks that need to be written, by their index
+	 */
+	private Map<Integer, byte[]> handleResponse(RangeRequest request, ResponseMessage responseMessage) {
+		Map<Integer, byte[]> received = new HashMap<Integer, byte[]>();
+		synchronized (lock) {
+			// responses after the timeout still deliver valid chunks
+			boolean late = !inFlight.contains(request);
+			if (!(responseMessage.getContent() instanceof ChunkMessageResponse)) {
+				logger.error("Peer {} did not send the chunks {}", request.peer.address, request.indices);
+				if (!late) {
+					fail(request, true);
+				}
+				return received;
+			}
+
+			ChunkMessageResponse response = (ChunkMessageResponse) responseMessage.getContent();
+			switch (response.getAnswerType()) {
+				case OK:
+					verify(request, response.getChunks(), received, late);
+					break;
+				case ASK_LATER:
+					logger.warn("Peer {} is alive but cannot send chunks {} at the moment", request.peer.address,
+							request.indices);
+					scores.recordAskLater(request.peer.address);
+					request.peer.backoffUntil = System.currentTimeMillis()
+							+ random.nextInt(H2HConstants.DIRECT_DOWNLOAD_RETRY_MS);
+					if (!late) {
+						requeue(request, false);
+					}
+					break;
+				default:
+					logger.error("Peer {} declined to send chunks {}", request.peer.address, request.indices);
+					if (!late) {
+						fail(request, true);
+					}
+			}
+		}
+		return received;
+	}
+
+	private void verify(RangeRequest request, List<Chunk> chunks, Map<Integer, byte[]> received, boolean late) {
+		long bytes = 0;
+		boolean valid = !chunks.isEmpty();
+		for (Chunk chunk : chunks) {
+			MetaChunk metaChunk = metaChunks.get(chunk.getOrder());
+			if (metaChunk == null || !request.indices.contains(chunk.getOrder())
+					|| !isValid(metaChunk, chunk.getData())) {
+				logger.error("Peer {} sent an invalid content for chunk {}.", request.peer.address, chunk.getOrder());
+				valid = false;
+				break;
+			}
+
+			bytes += chunk.getData().length;
+			if (completed.add(chunk.getOrder())) {
+				pending.remove(chunk.getOrder());
+				received.put(chunk.getOrder(), chunk.getData());
+			}
+		}
+
+		if (!late) {
+			long duration = System.currentTimeMillis() - request.sentAt;
+			scores.recordTransfer(request.peer.address, bytes, duration);
+			if (valid) {
+				peerLatencies.record(duration);
+				// the responder may return fewer chunks than requested
+				requeue(request, false);
+			} else {
+				fail(request, true);
+			}
+		}
+		lock.notifyAll();
+	}
+
+	/**
+	 * Verifies content-defined chunks with their content hash, others with their MD5 hash
+	 */
+	private static boolean isValid(MetaChunk metaChunk, byte[] data) {
+		if (metaChunk.isContentDefined()) {
+			return data.length == metaChunk.getLength()
+					&& HashUtil.compare(HashUtil.hash(data, HashAlgorithm.SHA_256), metaChunk.getContentHash());
+		}
+		return HashUtil.compare(HashUtil.hash(data), metaChunk.getChunkHash());
+	}
+
+	/**
+	 * The state of a peer having the file
+	 */
+	private static class PeerState implements Comparable<PeerState> {
+
+		private final PeerAddress address;
+		private final PublicKey publicKey;
+		private final boolean preferred;
+
+		private int outstanding = 0;
+		private boolean rangesSupported = true;
+		private long backoffUntil = 0;
+		private boolean removed = false;
+
+		// taken from the score board when scheduling
+		private double score = 0;
+		private boolean measured = false;
+		private double roundTrip = -1;
+
+		public PeerState(PeerAddress address, PublicKey publicKey, boolean preferred) {
+			this.address = address;
+			this.publicKey = publicKey;
+			this.preferred = preferred;
+		}
+
+		public boolean hasFreeSlot() {
+			return outstanding < H2HConstants.DIRECT_DOWNLOAD_REQUESTS_PER_PEER;
+		}
+
+		/**
+		 * @param best the score of the best peer
+		 * @return the number of chunks to request at once, proportional to the score
+		 */
+		public int getRangeSize(double best) {
+			if (!rangesSupported) {
+				return 1;
+			} else if (!measured || best <= 0) {
+				return Math.min(PROBE_RANGE, H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE);
+			}
+			int size = (int) Math.round(H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE * score / best);
+			return Math.max(1, Math.min(H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE, size));
+		}
+
+		/**
+		 * Orders the peers of the own user in the same network first, then by the score and the round trip time
+		 */
+		@Override
+		public int compareTo(PeerState other) {
+			if (preferred != other.preferred) {
+				return preferred ? -1 : 1;
+			} else if (score != other.score) {
+				return Double.compare(other.score, score);
+			}
+			double rtt = roundTrip < 0 ? Double.MAX_VALUE : roundTrip;
+			double otherRtt = other.roundTrip < 0 ? Double.MAX_VALUE : other.roundTrip;
+			return Double.compare(rtt, otherRtt);
+		}
+	}
+
+	/**
+	 * An outstanding request of one or more consecutive chunks
+	 */
+	private class RangeRequest implements IResponseCallBackHandler {
+
+		private final PeerState peer;
+		private final List<Integer> indices;
+		private final long sentAt;
+		private Future<Boolean> sendResult;
+		private boolean duplicated = false;
+
+		public RangeRequest(PeerState peer, List<Integer> indices) {
+			this.peer = peer;
+			this.indices = indices;
+			this.sentAt = System.currentTimeMillis();
+		}
+
+		public boolean isSendFailed() {
+			if (sendResult == null || !sendResult.isDone()) {
+				return false;
+			}
+
+			try {
+				return !sendResult.get();
+			} catch (InterruptedException | ExecutionException e) {
+				return true;
+			}
+		}
+
+		@Override
+		public void handleResponseMessage(ResponseMessage responseMessage) {
+			// write the chunks outside the lock
+			for (Entry<Integer, byte[]> chunk : handleResponse(this, responseMessage).entrySet()) {
+				task.markDownloaded(chunk.getKey(), chunk.getValue());
+			}
+		}
+	}
+
+	/**
+	 * The durations of the latest successful requests to a source
+	 */
+	private static class Latencies {
+
+		private static final int SAMPLES = 64;
+		// the default delay is used until this number of requests is measured
+		private static final int MIN_SAMPLES = 8;
+
+		private final long[] samples = new long[SAMPLES];
+		private int size = 0;
+		private int next = 0;
+
+		public void record(long durationMs) {
+			samples[next] = durationMs;
+			next = (next + 1) % SAMPLES;
+			size = Math.min(SAMPLES, size + 1);
+		}
+
+		/**
+		 * @return the duration that the given fraction of the requests did not exceed
+		 */
+		public long getPercentile(double percentile) {
+			if (size < MIN_SAMPLES) {
+				return H2HConstants.DOWNLOAD_HEDGE_DEFAULT_DELAY_MS;
+			}
+			long[] sorted = Arrays.copyOf(samples, size);
+			Arrays.sort(sorted);
+			return sorted[Math.min(size - 1, (int) (percentile * size))];
+		}
+	}
+}
@@ -8,8 +8,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.peers.PeerAddress;
@@ -18,30 +16,26 @@ import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.events.EventBus;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.Locations;
-import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.network.data.PublicKeyManager;
 import org.hive2hive.core.network.data.download.BaseDownloadTask;
-import org.hive2hive.core.network.data.download.IDownloadListener;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class DownloadTaskDirect extends BaseDownloadTask {
 
 	private static final long serialVersionUID = 5219300641521251051L;
-	private static final Logger logger = LoggerFactory.getLogger(DownloadTaskDirect.class);
 
 	// the key of the file
 	private final PublicKey fileKey;
 	// the user name of the downloader
 	private final String ownUserName;
-	// the peer address of the downloader
-	private final PeerAddress ownAddress;
+	// the peer address of the downloader, changes with a restart
+	private transient PeerAddress ownAddress;
 	// users having access to this file
 	private final Set<String> users;
 
-	private final Set<Locations> locations;
+	// provided by the locations cache, not persisted
+	private transient Set<Locations> locations;
 	// is triggered as soon as the first locations are available
-	private final CountDownLatch locationsLatch;
+	private transient CountDownLatch locationsLatch;
 
 	public DownloadTaskDirect(List<MetaChunk> metaChunks, File destination, PublicKey fileKey, String ownUserName,
 			PeerAddress ownAddress, Set<String> users, EventBus eventBus, PublicKeyManager keyManager) {
@@ -59,6 +53,20 @@ public class DownloadTaskDirect extends BaseDownloadTask {
 		return true;
 	}
 
+	@Override
+	public synchronized void restore(EventBus eventBus, PublicKeyManager keyManager) {
+		super.restore(eventBus, keyManager);
+		this.locations = Collections.synchronizedSet(new HashSet<Locations>());
+		this.locationsLatch = new CountDownLatch(1);
+	}
+
+	/**
+	 * Sets the peer address of the downloader when resuming the download after a restart
+	 */
+	public void setOwnAddress(PeerAddress ownAddress) {
+		this.ownAddress = ownAddress;
+	}
+
 	public String getOwnUserName() {
 		return ownUserName;
 	}
@@ -75,31 +83,6 @@ public class DownloadTaskDirect extends BaseDownloadTask {
 		return users;
 	}
 
-	public void startFetchLocations(DataManager dataManager) {
-		final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
-		executor.scheduleAtFixedRate(new GetLocationsList(this, dataManager), 0, H2HConstants.DOWNLOAD_LOCATIONS_INTERVAL_S,
-				TimeUnit.SECONDS);
-		logger.debug("Started getting the locations for the downloads each {} seconds",
-				H2HConstants.DOWNLOAD_LOCATIONS_INTERVAL_S);
-		addListener(new IDownloadListener() {
-
-			@Override
-			public void downloadFinished(BaseDownloadTask task) {
-				stop();
-			}
-
-			@Override
-			public void downloadFailed(BaseDownloadTask task, String reason) {
-				stop();
-			}
-
-			private void stop() {
-				executor.shutdownNow();
-				logger.debug("Stopped getting the locations regularly");
-			}
-		});
-	}
-
 	/**
 	 * Returns a copy of the locations
 	 * 
@@ -125,10 +108,20 @@ public class DownloadTaskDirect extends BaseDownloadTask {
 		}
 	}
 
+	/**
+	 * Replaces the locations with the latest ones. The given locations may be shared with other downloads,
+	 * thus they are copied before peers are removed from them.
+	 */
 	public void provideLocations(Set<Locations> locations) {
-		synchronized (locations) {
+		synchronized (this.locations) {
 			this.locations.clear();
-			this.locations.addAll(locations);
+			for (Locations original : locations) {
+				Locations copy = new Locations(original.getUserId());
+				for (PeerAddress address : original.getPeerAddresses()) {
+					copy.addPeerAddress(address);
+				}
+				this.locations.add(copy);
+			}
 		}
 		locationsLatch.countDown();
 	}
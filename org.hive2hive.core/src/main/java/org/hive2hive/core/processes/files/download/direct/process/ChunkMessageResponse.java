@@ -1,11 +1,14 @@
 package org.hive2hive.core.processes.files.download.direct.process;
 
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
 
 import org.hive2hive.core.model.Chunk;
+import org.nustaq.serialization.annotations.Version;
 
 /**
- * The response from a client that was asked to deliver a certain chunk.
+ * The response from a client that was asked to deliver a certain chunk or a range of chunks.
  * 
  * @author Nico
  * 
@@ -14,7 +17,7 @@ public class ChunkMessageResponse implements Serializable {
 
 	private static final long serialVersionUID = -7732972005871878370L;
 
-	enum AnswerType {
+	public enum AnswerType {
 		OK,
 		DECLINED,
 		ASK_LATER
@@ -22,6 +25,9 @@ public class ChunkMessageResponse implements Serializable {
 
 	private final AnswerType answerType;
 	private final Chunk chunk;
+	// only set for the response to a range request
+	@Version(1)
+	private final List<Chunk> chunks;
 
 	/**
 	 * Everything is ok and the chunk can be returned
@@ -30,6 +36,18 @@ public class ChunkMessageResponse implements Serializable {
 	 */
 	public ChunkMessageResponse(Chunk chunk) {
 		this.chunk = chunk;
+		this.chunks = null;
+		this.answerType = AnswerType.OK;
+	}
+
+	/**
+	 * The chunks of a range can be returned (at least the first one)
+	 * 
+	 * @param chunks the consecutive chunks from the beginning of the requested range
+	 */
+	public ChunkMessageResponse(List<Chunk> chunks) {
+		this.chunk = null;
+		this.chunks = chunks;
 		this.answerType = AnswerType.OK;
 	}
 
@@ -40,6 +58,7 @@ public class ChunkMessageResponse implements Serializable {
 	 */
 	public ChunkMessageResponse(AnswerType answerType) {
 		this.chunk = null;
+		this.chunks = null;
 		this.answerType = answerType;
 	}
 
@@ -50,4 +69,14 @@ public class ChunkMessageResponse implements Serializable {
 	public Chunk getChunk() {
 		return chunk;
 	}
+
+	/**
+	 * @return all returned chunks, also of a response to a single chunk request
+	 */
+	public List<Chunk> getChunks() {
+		if (chunks != null) {
+			return chunks;
+		}
+		return chunk == null ? Collections.<Chunk> emptyList() : Collections.singletonList(chunk);
+	}
 }
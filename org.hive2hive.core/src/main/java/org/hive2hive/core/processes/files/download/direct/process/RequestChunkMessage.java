@@ -9,7 +9,6 @@ import net.tomp2p.peers.PeerAddress;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoSessionException;
-import org.hive2hive.core.file.FileChunkUtil;
 import org.hive2hive.core.model.Chunk;
 import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.versioned.UserProfile;
@@ -27,9 +26,9 @@ public class RequestChunkMessage extends DirectRequestMessage {
 
 	private final PublicKey fileKey;
 	// the index / order number of the chunk
-	private final int chunkNumber;
+	protected final int chunkNumber;
 	// how many bytes to read
-	private final int chunkLength;
+	protected final int chunkLength;
 	// the md5 hash of the file
 	private final byte[] chunkHash;
 
@@ -47,24 +46,83 @@ public class RequestChunkMessage extends DirectRequestMessage {
 		logger.debug("Received request for a chunk {} from peer {}", chunkNumber, senderAddress);
 
 		// check for free heap space before reading the file
+		if (!hasFreeMemory(chunkLength)) {
+			return;
+		}
+
+		H2HSession session = getSessionOrDecline();
+		if (session == null) {
+			return;
+		}
+
+		File file = findRequestedFile(session);
+		if (file == null) {
+			return;
+		}
+
+		Chunk chunk = null;
+		try {
+			// retrieve the requested file part (offset and length). The file is kept open for further requests
+			chunk = session.getChunkReaders().getChunk(file, chunkLength, chunkNumber, "chunk-" + chunkNumber);
+		} catch (IOException e) {
+			logger.error("Cannot read the chunk", e);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+			return;
+		}
+
+		if (chunk == null) {
+			logger.warn("Chunk {} is beyond the end of the file", chunkNumber);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+			return;
+		}
+
+		// verify the chunk hash
+		byte[] md5Hash = HashUtil.hash(chunk.getData());
+		if (HashUtil.compare(md5Hash, chunkHash)) {
+			logger.debug("MD5 hash of the chunk {} has been verified, returning the chunk", chunkNumber);
+
+			// return the content of the file part
+			sendDirectResponse(createResponse(new ChunkMessageResponse(chunk)));
+		} else {
+			logger.warn("MD5 hash of the read chunk {} and of the expected file does not match", chunkNumber);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+		}
+	}
+
+	/**
+	 * Checks whether enough memory is available to read the requested data. If not, the requester is asked to
+	 * try later.
+	 */
+	protected boolean hasFreeMemory(long bytes) {
 		long freeMemory = Runtime.getRuntime().freeMemory();
-		if (freeMemory < 1.5 * chunkLength) {
+		if (freeMemory < 1.5 * bytes) {
 			// not enough memory
 			logger.error("Cannot read the chunk because not enough memory available");
 			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.ASK_LATER)));
-			return;
+			return false;
 		}
+		return true;
+	}
 
-		// search user profile for this file
-		H2HSession session = null;
+	/**
+	 * @return the session or <code>null</code> if there is none (the request has been declined)
+	 */
+	protected H2HSession getSessionOrDecline() {
 		try {
-			session = networkManager.getSession();
+			return networkManager.getSession();
 		} catch (NoSessionException e) {
 			logger.error("Cannot answer because session is invalid");
 			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
-			return;
+			return null;
 		}
+	}
 
+	/**
+	 * Searches the requested file in the user profile and on the disk
+	 * 
+	 * @return the file or <code>null</code> if it cannot be provided (the request has been declined)
+	 */
+	protected File findRequestedFile(H2HSession session) {
 		UserProfile userProfile;
 		try {
 			UserProfileManager profileManager = session.getProfileManager();
@@ -72,7 +130,7 @@ public class RequestChunkMessage extends DirectRequestMessage {
 		} catch (GetFailedException e) {
 			logger.error("Cannot get the user profile", e);
 			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
-			return;
+			return null;
 		}
 
 		// find file in user profile
@@ -80,7 +138,7 @@ public class RequestChunkMessage extends DirectRequestMessage {
 		if (index == null || index.isFolder()) {
 			logger.info("File not found in the user profile, cannot return a chunk");
 			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
-			return;
+			return null;
 		}
 
 		// check if file is on disk
@@ -88,29 +146,8 @@ public class RequestChunkMessage extends DirectRequestMessage {
 		if (file == null || !file.exists()) {
 			logger.info("File not found on disk, cannot return a chunk");
 			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
-			return;
-		}
-
-		Chunk chunk = null;
-		try {
-			// retrieve the requested file part (offset and length)
-			chunk = FileChunkUtil.getChunk(file, chunkLength, chunkNumber, "chunk-" + chunkNumber);
-		} catch (IOException e) {
-			logger.error("Cannot read the chunk", e);
-			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
-			return;
-		}
-
-		// verify the chunk hash
-		byte[] md5Hash = HashUtil.hash(chunk.getData());
-		if (HashUtil.compare(md5Hash, chunkHash)) {
-			logger.debug("MD5 hash of the chunk {} has been verified, returning the chunk", chunkNumber);
-
-			// return the content of the file part
-			sendDirectResponse(createResponse(new ChunkMessageResponse(chunk)));
-		} else {
-			logger.warn("MD5 hash of the read chunk {} and of the expected file does not match", chunkNumber);
-			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+			return null;
 		}
+		return file;
 	}
 }
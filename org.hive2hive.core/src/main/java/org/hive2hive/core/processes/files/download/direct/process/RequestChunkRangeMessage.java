@@ -0,0 +1,116 @@
+package org.hive2hive.core.processes.files.download.direct.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.processes.files.download.direct.process.ChunkMessageResponse.AnswerType;
+import org.hive2hive.core.security.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests a range of consecutive chunks with a single message. The responder returns the chunks from the
+ * beginning of the range until the first one that cannot be read or verified.
+ */
+public class RequestChunkRangeMessage extends RequestChunkMessage {
+
+	private static final long serialVersionUID = -1956286325716823474L;
+	private static final Logger logger = LoggerFactory.getLogger(RequestChunkRangeMessage.class);
+
+	// the md5 hashes of all chunks of the range
+	private final List<byte[]> chunkHashes;
+
+	/**
+	 * @param firstChunk the index of the first chunk of the range
+	 * @param chunkLength the size of the chunks
+	 * @param chunkHashes the hashes of the chunks, one per chunk of the range
+	 */
+	public RequestChunkRangeMessage(PeerAddress targetPeerAddress, PublicKey fileKey, int firstChunk,
+			int chunkLength, List<byte[]> chunkHashes) {
+		super(targetPeerAddress, fileKey, firstChunk, chunkLength, chunkHashes.get(0));
+		this.chunkHashes = chunkHashes;
+	}
+
+	@Override
+	public void run() {
+		if (!isValidRequest()) {
+			logger.warn("Received a malformed request for a range of chunks from peer {}", senderAddress);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+			return;
+		}
+
+		int count = chunkHashes.size();
+		logger.debug("Received request for the chunks {} to {} from peer {}", chunkNumber, chunkNumber + count - 1,
+				senderAddress);
+
+		// check for free heap space before reading the file
+		if (!hasFreeMemory((long) chunkLength * count)) {
+			return;
+		}
+
+		H2HSession session = getSessionOrDecline();
+		if (session == null) {
+			return;
+		}
+
+		File file = findRequestedFile(session);
+		if (file == null) {
+			return;
+		}
+
+		List<Chunk> chunks = new ArrayList<Chunk>(count);
+		for (int i = 0; i < count; i++) {
+			int index = chunkNumber + i;
+			Chunk chunk;
+			try {
+				// the file is kept open for further requests
+				chunk = session.getChunkReaders().getChunk(file, chunkLength, index, "chunk-" + index);
+			} catch (IOException e) {
+				logger.error("Cannot read the chunk {}", index, e);
+				break;
+			}
+
+			if (chunk == null) {
+				logger.warn("Chunk {} is beyond the end of the file", index);
+				break;
+			} else if (!HashUtil.compare(HashUtil.hash(chunk.getData()), chunkHashes.get(i))) {
+				logger.warn("MD5 hash of the read chunk {} and of the expected file does not match", index);
+				break;
+			}
+			chunks.add(chunk);
+		}
+
+		if (chunks.isEmpty()) {
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+		} else {
+			logger.debug("Returning {} of {} requested chunks", chunks.size(), count);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(chunks)));
+		}
+	}
+
+	/**
+	 * Checks that the range has a positive chunk size and contains at most
+	 * {@link H2HConstants#DIRECT_DOWNLOAD_MAX_RANGE} chunks, each with a hash
+	 */
+	private boolean isValidRequest() {
+		if (chunkLength <= 0 || chunkNumber < 0 || chunkHashes == null || chunkHashes.isEmpty()
+				|| chunkHashes.size() > H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE) {
+			return false;
+		}
+
+		for (byte[] chunkHash : chunkHashes) {
+			if (chunkHash == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
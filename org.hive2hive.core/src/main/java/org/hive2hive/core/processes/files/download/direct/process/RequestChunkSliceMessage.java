@@ -0,0 +1,144 @@
+package org.hive2hive.core.processes.files.download.direct.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.file.ContentDefinedChunker;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.processes.files.download.direct.process.ChunkMessageResponse.AnswerType;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests content-defined chunks (see {@link MetaChunk#isContentDefined()}) of a file stored in the DHT
+ * from a client having the file. Each chunk is read at its offset and verified with its content hash. Like
+ * the {@link RequestChunkRangeMessage}, the responder returns the chunks from the beginning of the request
+ * until the first one that cannot be read or verified.
+ */
+public class RequestChunkSliceMessage extends RequestChunkMessage {
+
+	private static final long serialVersionUID = 6409238471502217347L;
+	private static final Logger logger = LoggerFactory.getLogger(RequestChunkSliceMessage.class);
+
+	private final List<Integer> indices;
+	private final List<Long> offsets;
+	private final List<Integer> lengths;
+	// the SHA-256 hashes of the plain chunks
+	private final List<byte[]> contentHashes;
+
+	/**
+	 * @param chunkSize the chunk size of the reader on the responder's side
+	 * @param metaChunks the content-defined chunks to request
+	 */
+	public RequestChunkSliceMessage(PeerAddress targetPeerAddress, PublicKey fileKey, int chunkSize,
+			List<MetaChunk> metaChunks) {
+		super(targetPeerAddress, fileKey, metaChunks.get(0).getIndex(), chunkSize, metaChunks.get(0).getContentHash());
+		this.indices = new ArrayList<Integer>(metaChunks.size());
+		this.offsets = new ArrayList<Long>(metaChunks.size());
+		this.lengths = new ArrayList<Integer>(metaChunks.size());
+		this.contentHashes = new ArrayList<byte[]>(metaChunks.size());
+		for (MetaChunk metaChunk : metaChunks) {
+			indices.add(metaChunk.getIndex());
+			offsets.add(metaChunk.getOffset());
+			lengths.add(metaChunk.getLength());
+			contentHashes.add(metaChunk.getContentHash());
+		}
+	}
+
+	@Override
+	public void run() {
+		logger.debug("Received request for the chunks {} from peer {}", indices, senderAddress);
+
+		if (!isValidRequest()) {
+			logger.warn("Received a malformed request for chunks from peer {}", senderAddress);
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+			return;
+		}
+
+		long totalLength = 0;
+		for (Integer length : lengths) {
+			totalLength += length;
+		}
+
+		// check for free heap space before reading the file
+		if (!hasFreeMemory(totalLength)) {
+			return;
+		}
+
+		H2HSession session = getSessionOrDecline();
+		if (session == null) {
+			return;
+		}
+
+		File file = findRequestedFile(session);
+		if (file == null) {
+			return;
+		}
+
+		List<Chunk> chunks = new ArrayList<Chunk>(indices.size());
+		for (int i = 0; i < indices.size(); i++) {
+			int index = indices.get(i);
+			byte[] data = new byte[lengths.get(i)];
+			try {
+				// the file is kept open for further requests
+				session.getChunkReaders().getReader(file, chunkLength).read(offsets.get(i), data.length,
+						ByteBuffer.wrap(data));
+			} catch (IOException e) {
+				logger.error("Cannot read the chunk {}", index, e);
+				break;
+			}
+
+			if (!HashUtil.compare(HashUtil.hash(data, HashAlgorithm.SHA_256), contentHashes.get(i))) {
+				logger.warn("Content hash of the read chunk {} and of the expected file does not match", index);
+				break;
+			}
+			chunks.add(new Chunk("chunk-" + index, data, index));
+		}
+
+		if (chunks.isEmpty()) {
+			sendDirectResponse(createResponse(new ChunkMessageResponse(AnswerType.DECLINED)));
+		} else {
+			logger.debug("Returning {} of {} requested chunks", chunks.size(), indices.size());
+			sendDirectResponse(createResponse(new ChunkMessageResponse(chunks)));
+		}
+	}
+
+	/**
+	 * Checks that every requested chunk has an index, a position and a hash and that no chunk is larger than
+	 * the chunk size, which is the maximum size of the content-defined chunker (see
+	 * {@link ContentDefinedChunker#getMaxSize()})
+	 */
+	private boolean isValidRequest() {
+		if (chunkLength <= 0 || indices == null || offsets == null || lengths == null || contentHashes == null
+				|| indices.isEmpty()) {
+			return false;
+		}
+
+		int count = indices.size();
+		if (count > H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE || offsets.size() != count || lengths.size() != count
+				|| contentHashes.size() != count) {
+			return false;
+		}
+
+		for (int i = 0; i < count; i++) {
+			Long offset = offsets.get(i);
+			Integer length = lengths.get(i);
+			if (indices.get(i) == null || offset == null || offset < 0 || length == null || length < 0
+					|| length > chunkLength || contentHashes.get(i) == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
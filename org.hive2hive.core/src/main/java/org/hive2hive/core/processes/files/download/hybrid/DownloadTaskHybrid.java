@@ -0,0 +1,40 @@
+package org.hive2hive.core.processes.files.download.hybrid;
+
+import java.io.File;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.Set;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.events.EventBus;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.network.data.PublicKeyManager;
+import org.hive2hive.core.processes.files.download.dht.ChunkKeys;
+import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
+
+/**
+ * Downloads a file stored in the DHT from the DHT and from the clients of the users having access to it (see
+ * {@link org.hive2hive.core.file.DownloadMode#HYBRID}). The chunks are fetched from the DHT first,
+ * content-defined chunks can be requested from the clients as well.
+ */
+public class DownloadTaskHybrid extends DownloadTaskDirect {
+
+	private static final long serialVersionUID = -3360218645290845961L;
+
+	private final ChunkKeys chunkKeys;
+
+	public DownloadTaskHybrid(List<MetaChunk> metaChunks, File destination, PublicKey fileKey, String ownUserName,
+			PeerAddress ownAddress, Set<String> users, ChunkKeys chunkKeys, EventBus eventBus,
+			PublicKeyManager keyManager) {
+		super(metaChunks, destination, fileKey, ownUserName, ownAddress, users, eventBus, keyManager);
+		this.chunkKeys = chunkKeys;
+	}
+
+	/**
+	 * @return the keys to decrypt the chunks from the DHT
+	 */
+	public ChunkKeys getChunkKeys() {
+		return chunkKeys;
+	}
+}
@@ -7,6 +7,7 @@ import java.util.Set;
 
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.HashAlgorithm;
 
 /**
  * Gives information about a file in the DHT. Links to child nodes and parent node (if existing)
@@ -23,13 +24,20 @@ public class FileNode {
 	private final String path;
 	private final File file;
 	private final byte[] md5;
+	private final HashAlgorithm hashAlgorithm;
 	private final Set<UserPermission> userPermissions;
 
 	public FileNode(FileNode parent, File file, String path, byte[] md5, Set<UserPermission> userPermissions) {
+		this(parent, file, path, md5, HashAlgorithm.MD5, userPermissions);
+	}
+
+	public FileNode(FileNode parent, File file, String path, byte[] hash, HashAlgorithm hashAlgorithm,
+			Set<UserPermission> userPermissions) {
 		this.parent = parent;
 		this.file = file;
 		this.path = path;
-		this.md5 = md5;
+		this.md5 = hash;
+		this.hashAlgorithm = hashAlgorithm;
 		this.userPermissions = userPermissions;
 		this.children = new ArrayList<FileNode>();
 	}
@@ -106,14 +114,24 @@ public class FileNode {
 	}
 
 	/**
-	 * The MD5 hash of the file. In case of a folder, this is null.
+	 * The hash of the file. In case of a folder, this is null. Despite the name, it's only MD5 if
+	 * {@link #getHashAlgorithm()} says so.
 	 * 
-	 * @return the MD5 hash of the newest file version
+	 * @return the hash of the newest file version
 	 */
 	public byte[] getMd5() {
 		return md5;
 	}
 
+	/**
+	 * The algorithm the hash of the file has been created with (see {@link #getMd5()})
+	 * 
+	 * @return the hash algorithm
+	 */
+	public HashAlgorithm getHashAlgorithm() {
+		return hashAlgorithm;
+	}
+
 	/**
 	 * A list of users that have permissions to this file (including the user itself)
 	 * 
@@ -135,7 +153,7 @@ public class FileNode {
 	@Override
 	public String toString() {
 		return String.format("%s: %s [%s] %s", isFile() ? "File" : "Folder", getPath(), getUserPermissions(),
-				isFile() ? String.format("(MD5: %s)", EncryptionUtil.byteToHex(getMd5())) : "");
+				isFile() ? String.format("(%s: %s)", hashAlgorithm.getName(), EncryptionUtil.byteToHex(getMd5())) : "");
 	}
 
 	/**
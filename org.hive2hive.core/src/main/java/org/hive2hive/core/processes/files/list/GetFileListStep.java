@@ -10,6 +10,7 @@ import org.hive2hive.core.model.Index;
 import org.hive2hive.core.model.UserPermission;
 import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
@@ -51,16 +52,18 @@ public class GetFileListStep extends ProcessStep<FileNode> {
 		File file = new File(rootFile, path);
 
 		byte[] hash = null;
+		HashAlgorithm hashAlgorithm = HashAlgorithm.MD5;
 		Set<UserPermission> userPermissions;
 		if (current.isFile()) {
 			FileIndex fileIndex = (FileIndex) current;
 			hash = fileIndex.getMD5();
+			hashAlgorithm = fileIndex.getHashAlgorithm();
 			userPermissions = fileIndex.getParent().getCalculatedUserPermissions();
 		} else {
 			userPermissions = ((FolderIndex) current).getCalculatedUserPermissions();
 		}
 
-		FileNode node = new FileNode(parent, file, path, hash, userPermissions);
+		FileNode node = new FileNode(parent, file, path, hash, hashAlgorithm, userPermissions);
 		if (parent != null) {
 			parent.getChildren().add(node);
 		}
@@ -1,24 +1,28 @@
 package org.hive2hive.core.processes.files.update;
 
 import java.security.KeyPair;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map.Entry;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.api.configs.FileConfiguration;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.processes.files.ChunkReferenceCounter;
 import org.hive2hive.core.processes.context.UpdateFileProcessContext;
-import org.hive2hive.core.processes.files.delete.DeleteSingleChunkStep;
 import org.hive2hive.processframework.ProcessStep;
-import org.hive2hive.processframework.decorators.AsyncComponent;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
-import org.hive2hive.processframework.interfaces.IProcessComponent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Initializes all {@link DeleteSingleChunkStep} to delete the chunks that are not used anymore. These are the
- * ones exceeding the limits at the {@link FileConfiguration}.
+ * Deletes the chunks that are not used anymore. These are the ones exceeding the limits at the
+ * {@link FileConfiguration}. The chunks are removed with a single batch. Deduplicated chunks are released and
+ * only removed if no other file references them.
  * 
  * @author Nico, Seppi
  */
@@ -41,16 +45,33 @@ public class CleanupChunksStep extends ProcessStep<Void> {
 		KeyPair protectionKeys = context.consumeChunkProtectionKeys();
 
 		logger.debug("Cleaning {} old file chunks.", chunksToDelete.size());
-		int counter = 0;
-		IProcessComponent<?> prev = this;
+		List<IParameters> parameters = new ArrayList<IParameters>(chunksToDelete.size());
+		List<String> deduplicatedChunks = new ArrayList<String>();
 		for (MetaChunk metaChunk : chunksToDelete) {
-			logger.debug("Delete chunk {} of {}.", counter++, chunksToDelete.size());
-			DeleteSingleChunkStep deleteStep = new DeleteSingleChunkStep(metaChunk.getChunkId(), protectionKeys, dataManager);
+			if (metaChunk.isDeduplicated()) {
+				// other files may still reference the chunk
+				deduplicatedChunks.add(metaChunk.getChunkId());
+			} else {
+				parameters.add(new Parameters().setLocationKey(metaChunk.getChunkId())
+						.setContentKey(H2HConstants.FILE_CHUNK).setProtectionKeys(protectionKeys));
+			}
+		}
+
+		int failed = 0;
+		if (!deduplicatedChunks.isEmpty()) {
+			failed += new ChunkReferenceCounter(dataManager, protectionKeys, context.consumeMetaFile().getId())
+					.release(deduplicatedChunks);
+		}
+		for (Entry<IParameters, Boolean> result : dataManager.removeAll(parameters).entrySet()) {
+			if (!result.getValue()) {
+				logger.warn("Could not remove chunk. '{}'", result.getKey().toString());
+				failed++;
+			}
+		}
 
-			// make async, insert it as next step
-			IProcessComponent<?> asyncDeletion = new AsyncComponent<>(deleteStep);
-			getParent().insertAfter(asyncDeletion, prev);
-			prev = asyncDeletion;
+		if (failed > 0) {
+			throw new ProcessExecutionException(this, String.format("Removal of %s of %s old chunks failed.", failed,
+					chunksToDelete.size()));
 		}
 		return null;
 	}
@@ -1,7 +1,9 @@
 package org.hive2hive.core.processes.files.update;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.file.FileUtil;
@@ -47,7 +49,7 @@ public class CreateNewVersionStep extends ProcessStep<Void> {
 		// create a new version and add it to the meta file
 		MetaFileSmall metaFileSmall = (MetaFileSmall) context.consumeMetaFile();
 		newVersion = new FileVersion(metaFileSmall.getVersions().size(), FileUtil.getFileSize(context.consumeFile()),
-				System.currentTimeMillis(), context.getMetaChunks());
+				System.currentTimeMillis(), context.getMetaChunks(), context.consumeEncryptedChunkContentKey());
 		metaFileSmall.getVersions().add(newVersion);
 
 		initiateCleanup();
@@ -75,9 +77,22 @@ public class CreateNewVersionStep extends ProcessStep<Void> {
 		}
 
 		logger.debug("Need to remove {} old versions.", deletedFileVersions.size());
+
+		// content-defined chunks can be referenced by multiple versions, keep the ones that are still in use
+		Set<String> referencedChunks = new HashSet<String>();
+		for (FileVersion fileVersion : metaFileSmall.getVersions()) {
+			for (MetaChunk metaChunk : fileVersion.getMetaChunks()) {
+				referencedChunks.add(metaChunk.getChunkId());
+			}
+		}
+
 		List<MetaChunk> chunksToDelete = new ArrayList<MetaChunk>();
 		for (FileVersion fileVersion : deletedFileVersions) {
-			chunksToDelete.addAll(fileVersion.getMetaChunks());
+			for (MetaChunk metaChunk : fileVersion.getMetaChunks()) {
+				if (referencedChunks.add(metaChunk.getChunkId())) {
+					chunksToDelete.add(metaChunk);
+				}
+			}
 		}
 		context.setChunksToDelete(chunksToDelete);
 	}
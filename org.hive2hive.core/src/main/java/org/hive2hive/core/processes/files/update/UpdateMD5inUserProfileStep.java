@@ -10,13 +10,14 @@ import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.processes.common.base.BaseModifyUserProfileStep;
 import org.hive2hive.core.processes.context.UpdateFileProcessContext;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A step updating the MD5 hash in the user profile
+ * A step updating the content hash in the user profile
  * 
  * @author Nico, Seppi
  */
@@ -28,8 +29,10 @@ public class UpdateMD5inUserProfileStep extends BaseModifyUserProfileStep {
 
 	// initialized before the user profile is modified
 	private byte[] newMD5;
+	private HashAlgorithm hashAlgorithm;
 	// set while the profile is modified, used for rollback reasons
 	private byte[] originalMD5;
+	private HashAlgorithm originalAlgorithm;
 
 	public UpdateMD5inUserProfileStep(UpdateFileProcessContext context, UserProfileManager profileManager) {
 		super(profileManager);
@@ -38,10 +41,11 @@ public class UpdateMD5inUserProfileStep extends BaseModifyUserProfileStep {
 
 	@Override
 	protected void beforeModify() throws ProcessExecutionException {
+		hashAlgorithm = context.consumeFileConfiguration().getHashAlgorithm();
 		try {
-			newMD5 = HashUtil.hash(context.consumeFile());
+			newMD5 = HashUtil.hash(context.consumeFile(), hashAlgorithm);
 		} catch (IOException e) {
-			throw new ProcessExecutionException(this, "The new MD5 hash for the user profile could not be generated.");
+			throw new ProcessExecutionException(this, "The new hash for the user profile could not be generated.");
 		}
 	}
 
@@ -55,14 +59,15 @@ public class UpdateMD5inUserProfileStep extends BaseModifyUserProfileStep {
 
 		// store for backup
 		originalMD5 = index.getMD5();
-		if (HashUtil.compare(originalMD5, newMD5)) {
+		originalAlgorithm = index.getHashAlgorithm();
+		if (isSameContent()) {
 			throw new AbortModifyException(AbortModificationCode.SAME_CONTENT,
 					"Try to create new version with same content.");
 		}
 
 		// make modifications
-		logger.debug("Updating the MD5 hash in the user profile.");
-		index.setMD5(newMD5);
+		logger.debug("Updating the {} hash in the user profile.", hashAlgorithm.getName());
+		index.setHash(newMD5, hashAlgorithm);
 
 		// store for notification
 		context.provideIndex(index);
@@ -72,6 +77,20 @@ public class UpdateMD5inUserProfileStep extends BaseModifyUserProfileStep {
 	protected void modifyRollback(UserProfile userProfile) {
 		BaseMetaFile metaFile = context.consumeMetaFile();
 		FileIndex fileNode = (FileIndex) userProfile.getFileById(metaFile.getId());
-		fileNode.setMD5(originalMD5);
+		fileNode.setHash(originalMD5, originalAlgorithm);
+	}
+
+	private boolean isSameContent() {
+		if (originalAlgorithm == hashAlgorithm) {
+			return HashUtil.compare(originalMD5, newMD5);
+		}
+
+		// the index has been hashed with another configuration, hash the file again to compare
+		try {
+			return HashUtil.compare(context.consumeFile(), originalMD5, originalAlgorithm);
+		} catch (IOException e) {
+			logger.warn("Cannot compare the file with the {} hash in the user profile.", originalAlgorithm.getName(), e);
+			return false;
+		}
 	}
 }
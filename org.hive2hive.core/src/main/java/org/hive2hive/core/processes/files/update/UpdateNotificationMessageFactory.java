@@ -33,7 +33,7 @@ public class UpdateNotificationMessageFactory extends BaseNotificationMessageFac
 
 	@Override
 	public UserProfileTask createUserProfileTask(String sender) {
-		return new UpdateUserProfileTask(sender, generateProtectionKeys(),
-				updatedFileIndex.getFilePublicKey(), updatedFileIndex.getMD5());
+		return new UpdateUserProfileTask(sender, generateProtectionKeys(), updatedFileIndex.getFilePublicKey(),
+				updatedFileIndex.getMD5(), updatedFileIndex.getHashAlgorithm());
 	}
 }
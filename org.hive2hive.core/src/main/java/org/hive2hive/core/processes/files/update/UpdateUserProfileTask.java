@@ -18,7 +18,9 @@ import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.data.IUserProfileModification;
 import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.network.userprofiletask.UserProfileTask;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.nustaq.serialization.annotations.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,14 +35,23 @@ public class UpdateUserProfileTask extends UserProfileTask implements IUserProfi
 
 	private final PublicKey fileKey;
 	private final byte[] newHash;
+	// null in tasks of older versions (MD5)
+	@Version(1)
+	private final HashAlgorithm hashAlgorithm;
 
 	// initialized during profile modification
 	private FileIndex updatedFile;
 
 	public UpdateUserProfileTask(String sender, KeyPair protectionKeys, PublicKey fileKey, byte[] newHash) {
+		this(sender, protectionKeys, fileKey, newHash, HashAlgorithm.MD5);
+	}
+
+	public UpdateUserProfileTask(String sender, KeyPair protectionKeys, PublicKey fileKey, byte[] newHash,
+			HashAlgorithm hashAlgorithm) {
 		super(sender, protectionKeys);
 		this.fileKey = fileKey;
 		this.newHash = newHash;
+		this.hashAlgorithm = hashAlgorithm;
 	}
 
 	@Override
@@ -103,7 +114,7 @@ public class UpdateUserProfileTask extends UserProfileTask implements IUserProfi
 		if (existing.isFile() && updatedFile.isFile()) {
 			logger.debug("File update in a shared folder received: '{}'.", updatedFile.getName());
 			FileIndex existingFile = (FileIndex) existing;
-			existingFile.setMD5(newHash);
+			existingFile.setHash(newHash, hashAlgorithm == null ? HashAlgorithm.MD5 : hashAlgorithm);
 		}
 	}
 }
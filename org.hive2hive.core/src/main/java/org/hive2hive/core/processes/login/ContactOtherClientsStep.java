@@ -2,12 +2,15 @@ package org.hive2hive.core.processes.login;
 
 import java.security.PublicKey;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import net.tomp2p.peers.PeerAddress;
@@ -96,10 +99,11 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 		return null;
 	}
 
-	private void sendBlocking(Set<PeerAddress> peerAddresses, final PublicKey ownPublicKey) {
+	private void sendBlocking(Set<PeerAddress> peerAddresses, PublicKey ownPublicKey) {
+		Map<PeerAddress, Future<Boolean>> sendings = new HashMap<PeerAddress, Future<Boolean>>();
 		waitForResponses = new CountDownLatch(peerAddresses.size());
 		boolean hasSlowPeers = false;
-		for (final PeerAddress address : peerAddresses) {
+		for (PeerAddress address : peerAddresses) {
 			// contact all other clients (exclude self)
 			if (!address.equals(networkManager.getConnection().getPeer().peerAddress())) {
 				logger.debug("Sending contact message to check for aliveness to {}", address);
@@ -107,18 +111,11 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 				evidences.put(address, evidence);
 				hasSlowPeers = hasSlowPeers || address.isSlow();
 
-				final ContactPeerMessage message = new ContactPeerMessage(address, evidence);
+				ContactPeerMessage message = new ContactPeerMessage(address, evidence);
 				message.setCallBackHandler(this);
 
 				// asynchronously send all messages (parallel)
-				new Thread(new Runnable() {
-					@Override
-					public void run() {
-						if (!messageManager.sendDirect(message, ownPublicKey)) {
-							responses.put(address, false);
-						}
-					}
-				}).start();
+				sendings.put(address, messageManager.sendDirectAsync(message, ownPublicKey));
 			}
 		}
 
@@ -131,9 +128,28 @@ public class ContactOtherClientsStep extends ProcessStep<Void> implements IRespo
 			logger.error("Could not wait the given time for the clients to respond.", e);
 		}
 
+		// clients which could not be contacted at all
+		for (Map.Entry<PeerAddress, Future<Boolean>> sending : sendings.entrySet()) {
+			if (isFailed(sending.getValue())) {
+				responses.put(sending.getKey(), false);
+			}
+		}
+
 		isUpdated = true;
 	}
 
+	private static boolean isFailed(Future<Boolean> sending) {
+		if (!sending.isDone()) {
+			return false;
+		}
+
+		try {
+			return !sending.get();
+		} catch (InterruptedException | ExecutionException e) {
+			return true;
+		}
+	}
+
 	@Override
 	public void handleResponseMessage(ResponseMessage responseMessage) {
 		if (isUpdated) {
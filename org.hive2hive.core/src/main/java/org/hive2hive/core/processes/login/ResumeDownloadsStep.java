@@ -0,0 +1,33 @@
+package org.hive2hive.core.processes.login;
+
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.processframework.ProcessStep;
+import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
+import org.hive2hive.processframework.exceptions.ProcessExecutionException;
+
+/**
+ * Resumes the downloads that were open when the user logged out or the client stopped.
+ */
+public class ResumeDownloadsStep extends ProcessStep<Void> {
+
+	private final NetworkManager networkManager;
+
+	public ResumeDownloadsStep(NetworkManager networkManager) {
+		this.setName(getClass().getName());
+		this.networkManager = networkManager;
+	}
+
+	@Override
+	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
+		try {
+			H2HSession session = networkManager.getSession();
+			session.getDownloadManager().startBackgroundProcess(session.getFileAgent());
+		} catch (NoSessionException | NoPeerConnectionException ex) {
+			throw new ProcessExecutionException(this, ex);
+		}
+		return null;
+	}
+}
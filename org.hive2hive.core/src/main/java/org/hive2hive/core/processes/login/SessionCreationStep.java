@@ -3,6 +3,7 @@ package org.hive2hive.core.processes.login;
 import java.security.PublicKey;
 import java.util.Map;
 
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HSession;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
@@ -15,6 +16,8 @@ import org.hive2hive.core.network.data.UserProfileManager;
 import org.hive2hive.core.network.data.download.DownloadManager;
 import org.hive2hive.core.network.data.vdht.LocationsManager;
 import org.hive2hive.core.processes.context.LoginProcessContext;
+import org.hive2hive.core.security.H2HDefaultEncryption;
+import org.hive2hive.core.security.RSAKeyPairPool;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
@@ -80,6 +83,14 @@ public class SessionCreationStep extends ProcessStep<Void> {
 		networkManager.setSession(session);
 		setRequiresRollback(true);
 
+		// a logged in user is likely to add files soon, prepare their keys in the background
+		if (networkManager.getEncryption() instanceof H2HDefaultEncryption) {
+			RSAKeyPairPool keyPairPool = ((H2HDefaultEncryption) networkManager.getEncryption()).getKeyPairPool();
+			if (keyPairPool != null) {
+				keyPairPool.prefill(H2HConstants.KEYLENGTH_META_FILE, H2HConstants.KEYLENGTH_CHUNK);
+			}
+		}
+
 		return null;
 	}
 
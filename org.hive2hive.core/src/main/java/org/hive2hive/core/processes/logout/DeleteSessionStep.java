@@ -28,6 +28,8 @@ public class DeleteSessionStep extends ProcessStep<Void> {
 		try {
 			session = networkManager.getSession();
 			networkManager.setSession(null);
+			// release all files opened to serve chunks, they are re-opened on demand
+			session.getChunkReaders().closeAll();
 			setRequiresRollback(true);
 		} catch (NoSessionException e) {
 			// session already deleted
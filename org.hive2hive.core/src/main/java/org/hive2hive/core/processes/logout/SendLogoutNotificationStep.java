@@ -1,8 +1,12 @@
 package org.hive2hive.core.processes.logout;
 
 import java.security.PublicKey;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.tomp2p.peers.PeerAddress;
 
@@ -34,24 +38,24 @@ public class SendLogoutNotificationStep extends ProcessStep<Void> {
 	@Override
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
 		try {
-			final PublicKey publicKey = networkManager.getSession().getKeyManager().getOwnPublicKey();
-			final MessageManager messageManager = networkManager.getMessageManager();
-			final CountDownLatch latch = new CountDownLatch(context.consumeNotificationRecipients().size());
-			for (final PeerAddress client : context.consumeNotificationRecipients()) {
-				// notify them all in multiple threads
-				new Thread(new Runnable() {
-					@Override
-					public void run() {
-						messageManager.sendDirect(new LogoutNotificationMessage(client), publicKey);
-						logger.trace("Sent the logout notification message to client {}", client);
-						latch.countDown();
-					}
-				}, "Logout notification " + client.peerId()).start();
+			PublicKey publicKey = networkManager.getSession().getKeyManager().getOwnPublicKey();
+			MessageManager messageManager = networkManager.getMessageManager();
+			List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+			for (PeerAddress client : context.consumeNotificationRecipients()) {
+				// notify them all in parallel
+				futures.add(messageManager.sendDirectAsync(new LogoutNotificationMessage(client), publicKey));
 			}
 
-			boolean success = latch.await(H2HConstants.CONTACT_PEERS_AWAIT_MS, TimeUnit.MILLISECONDS);
-			if (!success) {
-				logger.warn("Not all logout notification messages could be sent... Ignoring the rest");
+			long deadline = System.currentTimeMillis() + H2HConstants.CONTACT_PEERS_AWAIT_MS;
+			for (Future<Boolean> future : futures) {
+				try {
+					future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException e) {
+					logger.warn("Not all logout notification messages could be sent... Ignoring the rest");
+					break;
+				} catch (ExecutionException e) {
+					logger.warn("Cannot send a logout notification message", e.getCause());
+				}
 			}
 		} catch (NoPeerConnectionException | NoSessionException | InterruptedException e) {
 			logger.warn("Cannot send the logout notification message", e);
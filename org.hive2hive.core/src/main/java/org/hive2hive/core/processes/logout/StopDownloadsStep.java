@@ -1,6 +1,7 @@
 package org.hive2hive.core.processes.logout;
 
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.file.IFileAgent;
 import org.hive2hive.core.network.data.download.DownloadManager;
 import org.hive2hive.processframework.ProcessStep;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
@@ -10,9 +11,11 @@ import org.hive2hive.processframework.exceptions.ProcessRollbackException;
 public class StopDownloadsStep extends ProcessStep<Void> {
 
 	private final DownloadManager downloadManager;
+	private final IFileAgent fileAgent;
 
-	public StopDownloadsStep(DownloadManager downloadManager) {
+	public StopDownloadsStep(DownloadManager downloadManager, IFileAgent fileAgent) {
 		this.downloadManager = downloadManager;
+		this.fileAgent = fileAgent;
 		this.setName(getClass().getName());
 	}
 
@@ -26,7 +29,7 @@ public class StopDownloadsStep extends ProcessStep<Void> {
 	@Override
 	protected Void doRollback() throws ProcessRollbackException {
 		try {
-			downloadManager.startBackgroundProcess();
+			downloadManager.startBackgroundProcess(fileAgent);
 		} catch (NoPeerConnectionException e) {
 			throw new ProcessRollbackException(this, e);
 		}
@@ -1,5 +1,11 @@
 package org.hive2hive.core.processes.share.pkupdate;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.network.data.DataManager;
 import org.hive2hive.core.network.data.parameters.IParameters;
@@ -14,7 +20,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Changes the protection key for any data of type {@link BaseNetworkContent}. Use the
- * {@link BasePKUpdateContext} to hand over the required data.
+ * {@link BasePKUpdateContext} to hand over the required data. Multiple contexts are changed with a single
+ * batch.
  * 
  * @author Nico, Seppi
  */
@@ -22,55 +29,91 @@ public class ChangeProtectionKeysStep extends ProcessStep<Void> {
 
 	private static final Logger logger = LoggerFactory.getLogger(ChangeProtectionKeysStep.class);
 
-	private final BasePKUpdateContext context;
+	private final List<? extends BasePKUpdateContext> contexts;
 	private final DataManager dataManager;
-	private IParameters parameters;
+	// the parameters of all successful changes, used for the rollback
+	private final List<IParameters> changedParameters = new ArrayList<IParameters>();
 
 	public ChangeProtectionKeysStep(BasePKUpdateContext context, DataManager dataManager) {
+		this(Collections.singletonList(context), dataManager);
+	}
+
+	public ChangeProtectionKeysStep(List<? extends BasePKUpdateContext> contexts, DataManager dataManager) {
 		this.setName(getClass().getName());
-		this.context = context;
+		this.contexts = contexts;
 		this.dataManager = dataManager;
 	}
 
 	@Override
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		parameters = new Parameters().setLocationKey(context.getLocationKey()).setContentKey(context.getContentKey())
-				.setVersionKey(context.getVersionKey()).setProtectionKeys(context.consumeOldProtectionKeys())
-				.setNewProtectionKeys(context.consumeNewProtectionKeys()).setTTL(context.getTTL())
-				.setHash(context.getHash());
-
-		boolean success = dataManager.changeProtectionKey(parameters);
-		setRequiresRollback(success);
-		if (!success) {
+		List<IParameters> parameters = new ArrayList<IParameters>(contexts.size());
+		for (BasePKUpdateContext context : contexts) {
+			Parameters change = new Parameters().setLocationKey(context.getLocationKey())
+					.setContentKey(context.getContentKey()).setVersionKey(context.getVersionKey())
+					.setProtectionKeys(context.consumeOldProtectionKeys())
+					.setNewProtectionKeys(context.consumeNewProtectionKeys()).setTTL(context.getTTL())
+					.setHash(context.getHash());
+			if (context.getDomainKey() != null) {
+				change.setDomainKey(context.getDomainKey());
+			}
+			parameters.add(change);
+		}
+
+		IParameters failed = null;
+		for (Entry<IParameters, Boolean> result : dataManager.changeProtectionKeys(parameters).entrySet()) {
+			if (result.getValue()) {
+				changedParameters.add(result.getKey());
+			} else if (failed == null) {
+				failed = result.getKey();
+			}
+		}
+
+		setRequiresRollback(!changedParameters.isEmpty());
+		if (failed != null) {
 			throw new ProcessExecutionException(this, String.format(
-					"Could not change content protection keys. Parameters: %s.", parameters.toString()));
+					"Could not change content protection keys. Parameters: %s.", failed.toString()));
 		}
 
-		logger.debug("Successfully changed the protection keys for {}", parameters);
+		logger.debug("Successfully changed the protection keys for {} content(s)", changedParameters.size());
 		return null;
 	}
 
 	@Override
 	protected Void doRollback() throws InvalidProcessStateException, ProcessRollbackException {
+		logger.debug("Rollbacking change of content protection key of {} content(s).", changedParameters.size());
 
-		logger.debug("Rollbacking change of content protection key. '{}'", parameters.toString());
+		List<IParameters> rollbackParameters = new ArrayList<IParameters>(changedParameters.size());
+		for (IParameters parameters : changedParameters) {
+			Parameters rollback = new Parameters().setLocationKey(parameters.getLocationKey())
+					.setContentKey(parameters.getContentKey()).setVersionKey(parameters.getVersionKey())
+					.setTTL(parameters.getTTL()).setHash(parameters.getHash());
+			if (parameters.getDomainKey() != null) {
+				rollback.setDomainKey(parameters.getDomainKey());
+			}
+			// switch the content protection keys
+			rollback.setProtectionKeys(parameters.getNewProtectionKeys()).setNewProtectionKeys(
+					parameters.getProtectionKeys());
+			rollbackParameters.add(rollback);
+		}
 
-		Parameters rollbackParameters = new Parameters().setLocationKey(parameters.getLocationKey())
-				.setContentKey(parameters.getContentKey()).setVersionKey(parameters.getVersionKey())
-				.setTTL(parameters.getTTL()).setHash(parameters.getHash());
-		// switch the content protection keys
-		rollbackParameters.setProtectionKeys(parameters.getNewProtectionKeys()).setNewProtectionKeys(
-				parameters.getProtectionKeys());
+		Map<IParameters, Boolean> results = dataManager.changeProtectionKeys(rollbackParameters);
+		List<IParameters> notRolledBack = new ArrayList<IParameters>();
+		for (int i = 0; i < rollbackParameters.size(); i++) {
+			if (results.get(rollbackParameters.get(i))) {
+				logger.debug("Rollback of change protection key succeeded. '{}'", changedParameters.get(i).toString());
+			} else {
+				notRolledBack.add(changedParameters.get(i));
+			}
+		}
 
-		boolean success = dataManager.changeProtectionKey(rollbackParameters);
-		if (success) {
-			logger.debug("Rollback of change protection key succeeded. '{}'", parameters.toString());
-			setRequiresRollback(false);
-		} else {
+		changedParameters.retainAll(notRolledBack);
+		if (!notRolledBack.isEmpty()) {
 			throw new ProcessRollbackException(this, String.format(
-					"Rollback of change protection key failed. Remove failed. Parameters; '%s'", parameters.toString()));
+					"Rollback of change protection key failed. Remove failed. Parameters; '%s'", notRolledBack.get(0)
+							.toString()));
 		}
 
+		setRequiresRollback(false);
 		return null;
 	}
 }
@@ -1,21 +1,28 @@
 package org.hive2hive.core.processes.share.pkupdate;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.BaseMetaFile;
 import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.processes.context.BasePKUpdateContext;
 import org.hive2hive.core.processes.context.ChunkPKUpdateContext;
+import org.hive2hive.core.processes.context.ChunkReferencePKUpdateContext;
 import org.hive2hive.core.processes.context.MetaDocumentPKUpdateContext;
 import org.hive2hive.processframework.ProcessStep;
-import org.hive2hive.processframework.decorators.AsyncComponent;
 import org.hive2hive.processframework.exceptions.InvalidProcessStateException;
 import org.hive2hive.processframework.exceptions.ProcessExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Takes the meta file and iteratively changes the protection keys of all chunks.
+ * Takes the meta files and changes the protection keys of all their chunks. The references of deduplicated
+ * chunks (see {@link ChunkReferencePKUpdateContext}) get the new protection keys as well.
  * 
  * @author Nico, Seppi
  */
@@ -23,44 +30,57 @@ public class InitializeChunkUpdateStep extends ProcessStep<Void> {
 
 	private static final Logger logger = LoggerFactory.getLogger(InitializeChunkUpdateStep.class);
 
-	private final MetaDocumentPKUpdateContext context;
+	private final List<MetaDocumentPKUpdateContext> contexts;
 	private final DataManager dataManager;
 
-	public InitializeChunkUpdateStep(MetaDocumentPKUpdateContext context, DataManager dataManager) {
+	public InitializeChunkUpdateStep(List<MetaDocumentPKUpdateContext> contexts, DataManager dataManager) {
 		this.setName(getClass().getName());
-		this.context = context;
+		this.contexts = contexts;
 		this.dataManager = dataManager;
 	}
 
 	@Override
 	protected Void doExecute() throws InvalidProcessStateException, ProcessExecutionException {
-		
-		BaseMetaFile metaFile = context.consumeMetaFile();
-		if (metaFile == null) {
-			throw new ProcessExecutionException(this, "Meta File not found.");
-		} else if (!(metaFile.isSmall())) {
-			logger.debug("No need to update any chunks for a large meta file");
-			return null;
-		}
-
-		MetaFileSmall metaFileSmall = (MetaFileSmall) metaFile;
-		logger.debug("Initialize updating all chunks for file '{}' in a shared folder.", context.getFileName());
-		int counter = 0;
-		for (FileVersion version : metaFileSmall.getVersions()) {
-			for (MetaChunk metaChunk : version.getMetaChunks()) {
-				// each chunk gets an own context
-				ChunkPKUpdateContext chunkContext = new ChunkPKUpdateContext(context.consumeOldProtectionKeys(),
-						context.consumeNewProtectionKeys(), metaChunk);
+		List<BasePKUpdateContext> chunkContexts = new ArrayList<BasePKUpdateContext>();
+		// deduplicated chunks may be referenced by multiple files, update them only once
+		Set<String> chunkIds = new HashSet<String>();
+		for (MetaDocumentPKUpdateContext context : contexts) {
+			BaseMetaFile metaFile = context.consumeMetaFile();
+			if (metaFile == null) {
+				throw new ProcessExecutionException(this, "Meta File not found.");
+			} else if (!(metaFile.isSmall())) {
+				logger.debug("No need to update any chunks for the large meta file of '{}'", context.getFileName());
+				continue;
+			}
 
-				// create the step and wrap it to run asynchronous, attach it to the parent process
-				ChangeProtectionKeysStep changeStep = new ChangeProtectionKeysStep(chunkContext, dataManager);
-				getParent().add(new AsyncComponent<>(changeStep));
-				counter++;
+			MetaFileSmall metaFileSmall = (MetaFileSmall) metaFile;
+			logger.debug("Initialize updating all chunks for file '{}' in a shared folder.", context.getFileName());
+			Set<String> referencedIds = new HashSet<String>();
+			for (FileVersion version : metaFileSmall.getVersions()) {
+				for (MetaChunk metaChunk : version.getMetaChunks()) {
+					if (metaChunk.isDeduplicated() && referencedIds.add(metaChunk.getChunkId())) {
+						// the file references the chunk once, for all its versions
+						chunkContexts.add(new ChunkReferencePKUpdateContext(context.consumeOldProtectionKeys(),
+								context.consumeNewProtectionKeys(), metaChunk.getChunkId(), context.getFileKey()));
+					}
+					if (!chunkIds.add(metaChunk.getChunkId())) {
+						// content-defined chunk of multiple versions, update it only once
+						continue;
+					}
+					// each chunk gets an own context
+					chunkContexts.add(new ChunkPKUpdateContext(context.consumeOldProtectionKeys(), context
+							.consumeNewProtectionKeys(), metaChunk));
+				}
 			}
 		}
 
-		logger.debug("{} chunks of file '{}' need to update their protection keys.", counter, context.getFileName());
-		
+		if (!chunkContexts.isEmpty()) {
+			logger.debug("{} chunks of {} file(s) need to update their protection keys.", chunkContexts.size(),
+					contexts.size());
+			// change the protection keys of all chunks with a single batch
+			getParent().insertAfter(new ChangeProtectionKeysStep(chunkContexts, dataManager), this);
+		}
+
 		return null;
 	}
 }
@@ -1,9 +1,13 @@
 package org.hive2hive.core.security;
 
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPrivateKey;
+import org.bouncycastle.jcajce.provider.asymmetric.ec.BCECPublicKey;
 import org.bouncycastle.jcajce.provider.asymmetric.rsa.BCRSAPrivateCrtKey;
 import org.bouncycastle.jcajce.provider.asymmetric.rsa.BCRSAPrivateKey;
 import org.bouncycastle.jcajce.provider.asymmetric.rsa.BCRSAPublicKey;
@@ -31,4 +35,14 @@ public class BCSecurityClassProvider implements ISecurityClassProvider {
 	public Class<? extends RSAPrivateCrtKey> getRSAPrivateCrtKeyClass() {
 		return BCRSAPrivateCrtKey.class;
 	}
+
+	@Override
+	public Class<? extends ECPublicKey> getECPublicKeyClass() {
+		return BCECPublicKey.class;
+	}
+
+	@Override
+	public Class<? extends ECPrivateKey> getECPrivateKeyClass() {
+		return BCECPrivateKey.class;
+	}
 }
@@ -0,0 +1,202 @@
+package org.hive2hive.core.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.model.EncryptedChunk;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+
+/**
+ * Encrypts and decrypts file chunks with AES in Galois/Counter Mode. The data is encrypted straight from the
+ * buffer it has been read into, without serializing a {@link org.hive2hive.core.model.Chunk} first.<br>
+ * All chunks of a file version share a symmetric content key. Only this key is encrypted asymmetrically
+ * (once per version) with the chunk key pair of the file, thus uploading or downloading a chunk does not
+ * involve any RSA operation.<br>
+ * Deduplicated chunks are encrypted convergently: the id, key and nonce of such a chunk are derived from its
+ * content hash with a secret of the deduplication scope. Equal content within a scope results in the same
+ * encrypted chunk, while other scopes cannot find out which content is stored.
+ */
+public final class ChunkEncryptionUtil {
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+	private static final byte[] DEDUPLICATION_LABEL = "H2H-chunk-deduplication".getBytes(StandardCharsets.UTF_8);
+	private static final byte PURPOSE_ID = 1;
+	private static final byte PURPOSE_KEY = 2;
+	private static final byte PURPOSE_NONCE = 3;
+
+	private ChunkEncryptionUtil() {
+		// only static methods
+	}
+
+	/**
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return a new content key for the chunks of a file version
+	 */
+	public static SecretKey generateContentKey(String securityProvider) {
+		return EncryptionUtil.generateAESKey(H2HConstants.KEYLENGTH_CHUNK_AES, securityProvider);
+	}
+
+	/**
+	 * Encrypts the content key with the chunk key pair of the file such that it can be stored in the meta
+	 * file.
+	 * 
+	 * @param contentKey the content key of the file version
+	 * @param chunkKey the public chunk key of the file
+	 * @param encryption the encryption suite
+	 * @return the encrypted content key
+	 * @throws GeneralSecurityException if the encryption fails
+	 */
+	public static HybridEncryptedContent wrapContentKey(SecretKey contentKey, PublicKey chunkKey,
+			IH2HEncryption encryption) throws GeneralSecurityException {
+		return encryption.encryptHybrid(contentKey.getEncoded(), chunkKey);
+	}
+
+	/**
+	 * Decrypts the content key of a file version.
+	 * 
+	 * @param encryptedKey the encrypted content key (see {@link #wrapContentKey(SecretKey, PublicKey, IH2HEncryption)})
+	 * @param chunkKey the private chunk key of the file
+	 * @param encryption the encryption suite
+	 * @return the content key of the file version
+	 * @throws GeneralSecurityException if the decryption fails
+	 * @throws IOException if the decryption fails
+	 * @throws ClassNotFoundException if the decryption fails
+	 */
+	public static SecretKey unwrapContentKey(HybridEncryptedContent encryptedKey, PrivateKey chunkKey,
+			IH2HEncryption encryption) throws GeneralSecurityException, IOException, ClassNotFoundException {
+		byte[] encodedKey = encryption.decryptHybridRaw(encryptedKey, chunkKey);
+		if (encodedKey == null || encodedKey.length == 0) {
+			throw new GeneralSecurityException("Invalid content key.");
+		}
+		return new SecretKeySpec(encodedKey, "AES");
+	}
+
+	/**
+	 * Encrypts the remaining bytes of the buffer.
+	 * 
+	 * @param data the chunk data. The position is advanced to the limit.
+	 * @param chunkId the id of the chunk
+	 * @param order the index of the chunk within the file
+	 * @param contentKey the content key of the file version
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return the encrypted chunk
+	 * @throws GeneralSecurityException if the encryption fails
+	 */
+	public static EncryptedChunk encrypt(ByteBuffer data, String chunkId, int order, SecretKey contentKey,
+			String securityProvider) throws GeneralSecurityException {
+		// a random nonce per chunk, the content key is used for many chunks
+		return encrypt(data, chunkId, order, contentKey, EncryptionUtil.generateGCMNonce(), securityProvider);
+	}
+
+	/**
+	 * Encrypts the remaining bytes of the buffer with the given nonce.
+	 * 
+	 * @param data the chunk data. The position is advanced to the limit.
+	 * @param chunkId the id of the chunk
+	 * @param order the index of the chunk within the file or {@link EncryptedChunk#UNORDERED}
+	 * @param key the key to encrypt the chunk with
+	 * @param nonce the nonce, which must never be used twice with the same key for different data
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return the encrypted chunk
+	 * @throws GeneralSecurityException if the encryption fails
+	 */
+	public static EncryptedChunk encrypt(ByteBuffer data, String chunkId, int order, SecretKey key, byte[] nonce,
+			String securityProvider) throws GeneralSecurityException {
+		// the only allocation in the size of the chunk
+		byte[] encryptedData = new byte[EncryptionUtil.getAESGCMOutputSize(data.remaining())];
+		EncryptionUtil.encryptAESGCM(data, ByteBuffer.wrap(encryptedData), key, nonce,
+				EncryptedChunk.createAssociatedData(chunkId, order), securityProvider);
+		return new EncryptedChunk(chunkId, order, nonce, encryptedData);
+	}
+
+	/**
+	 * Decrypts the chunk and verifies that it has not been modified.
+	 * 
+	 * @param chunk the encrypted chunk
+	 * @param contentKey the content key of the file version or the key of a deduplicated chunk
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return the plain chunk data
+	 * @throws GeneralSecurityException if the decryption fails or the chunk has been modified
+	 */
+	public static byte[] decrypt(EncryptedChunk chunk, SecretKey contentKey, String securityProvider)
+			throws GeneralSecurityException {
+		byte[] encryptedData = chunk.getEncryptedData();
+		int tagLength = EncryptionUtil.getAESGCMOutputSize(0);
+		if (encryptedData == null || encryptedData.length < tagLength || chunk.getNonce() == null) {
+			throw new GeneralSecurityException("The encrypted chunk is incomplete.");
+		}
+
+		byte[] data = new byte[encryptedData.length - tagLength];
+		EncryptionUtil.decryptAESGCM(ByteBuffer.wrap(encryptedData), ByteBuffer.wrap(data), contentKey,
+				chunk.getNonce(), chunk.getAssociatedData(), securityProvider);
+		return data;
+	}
+
+	/**
+	 * Derives the secret of a deduplication scope. The scope is defined by the chunk protection keys: all
+	 * users allowed to put chunks there (the own files or a shared folder) know the private key.
+	 * 
+	 * @param protectionKeys the chunk protection keys of the file
+	 * @return the secret to derive the id, key and nonce of deduplicated chunks
+	 * @throws GeneralSecurityException if the secret cannot be derived
+	 */
+	public static SecretKey createDeduplicationSecret(KeyPair protectionKeys) throws GeneralSecurityException {
+		MessageDigest digest = HashAlgorithm.SHA_256.createDigest();
+		digest.update(DEDUPLICATION_LABEL);
+		digest.update(protectionKeys.getPrivate().getEncoded());
+		return new SecretKeySpec(digest.digest(), HMAC_ALGORITHM);
+	}
+
+	/**
+	 * @param secret the secret of the deduplication scope
+	 * @param contentHash the hash of the plain chunk content
+	 * @return the id (location) of the deduplicated chunk
+	 * @throws GeneralSecurityException if the id cannot be derived
+	 */
+	public static String deriveChunkId(SecretKey secret, byte[] contentHash) throws GeneralSecurityException {
+		return EncryptionUtil.byteToHex(derive(secret, PURPOSE_ID, contentHash));
+	}
+
+	/**
+	 * @param secret the secret of the deduplication scope
+	 * @param contentHash the hash of the plain chunk content
+	 * @return the key to encrypt the deduplicated chunk with
+	 * @throws GeneralSecurityException if the key cannot be derived
+	 */
+	public static SecretKey deriveChunkKey(SecretKey secret, byte[] contentHash) throws GeneralSecurityException {
+		byte[] key = derive(secret, PURPOSE_KEY, contentHash);
+		return new SecretKeySpec(Arrays.copyOf(key, H2HConstants.KEYLENGTH_CHUNK_AES.value() / 8), "AES");
+	}
+
+	/**
+	 * The derived key is only used for chunks with the same content, thus a derived nonce is never re-used
+	 * for different data.
+	 * 
+	 * @param secret the secret of the deduplication scope
+	 * @param contentHash the hash of the plain chunk content
+	 * @return the nonce to encrypt the deduplicated chunk with
+	 * @throws GeneralSecurityException if the nonce cannot be derived
+	 */
+	public static byte[] deriveNonce(SecretKey secret, byte[] contentHash) throws GeneralSecurityException {
+		return Arrays.copyOf(derive(secret, PURPOSE_NONCE, contentHash), EncryptionUtil.GCM_NONCE_LENGTH);
+	}
+
+	private static byte[] derive(SecretKey secret, byte purpose, byte[] contentHash) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+		mac.init(secret);
+		mac.update(purpose);
+		return mac.doFinal(contentHash);
+	}
+}
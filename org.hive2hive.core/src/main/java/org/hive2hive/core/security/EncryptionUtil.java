@@ -1,11 +1,15 @@
 package org.hive2hive.core.security;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
@@ -13,15 +17,24 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
 import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.KeyAgreement;
 import javax.crypto.KeyGenerator;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
@@ -46,9 +59,21 @@ public final class EncryptionUtil {
 	// public static String SECURITY_PROVIDER = "BC";
 
 	private static final String SINGATURE_ALGORITHM = "SHA1withRSA";
+	private static final String EC_SIGNATURE_ALGORITHM = "SHA256withECDSA";
 	// Fermat F4, largest known fermat prime
 	private static final BigInteger RSA_PUBLIC_EXP = new BigInteger("10001", 16);
 	private static final int IV_LENGTH = 16;
+	static final int GCM_NONCE_LENGTH = 12;
+	private static final int GCM_TAG_LENGTH = 128;
+	private static final SecureRandom NONCE_RANDOM = new SecureRandom();
+
+	// creating a cipher is expensive, thus every thread keeps its instances (per transformation and provider)
+	private static final ThreadLocal<Map<String, Cipher>> CIPHERS = new ThreadLocal<Map<String, Cipher>>() {
+		@Override
+		protected Map<String, Cipher> initialValue() {
+			return new HashMap<String, Cipher>();
+		}
+	};
 
 	public enum AES_KEYLENGTH {
 		BIT_128(128),
@@ -101,6 +126,18 @@ public final class EncryptionUtil {
 		return iv;
 	}
 
+	/**
+	 * Randomly generates a nonce which can be used for AES in Galois/Counter Mode. A nonce must never be
+	 * re-used with the same key.
+	 * 
+	 * @return Returns a randomly generated nonce.
+	 */
+	public static byte[] generateGCMNonce() {
+		byte[] nonce = new byte[GCM_NONCE_LENGTH];
+		NONCE_RANDOM.nextBytes(nonce);
+		return nonce;
+	}
+
 	/**
 	 * Generates a symmetric AES key of the specified key length.
 	 * 
@@ -139,6 +176,23 @@ public final class EncryptionUtil {
 		return null;
 	}
 
+	/**
+	 * Generates an asymmetric elliptic curve key pair on the given named curve.
+	 * 
+	 * @param curveName The name of the curve (e.g. "secp256r1").
+	 * @return An asymmetric EC key pair or <code>null</code> if the curve is not supported.
+	 */
+	public static KeyPair generateECKeyPair(String curveName, String securityProvider) {
+		try {
+			KeyPairGenerator gen = KeyPairGenerator.getInstance("EC", securityProvider);
+			gen.initialize(new ECGenParameterSpec(curveName), new SecureRandom());
+			return gen.generateKeyPair();
+		} catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException | NoSuchProviderException e) {
+			logger.error("Exception while generation of EC key pair on curve {}:", curveName, e);
+		}
+		return null;
+	}
+
 	/**
 	 * Symmetrically encrypts the provided data by means of the AES algorithm.
 	 * 
@@ -182,6 +236,91 @@ public final class EncryptionUtil {
 		}
 	}
 
+	/**
+	 * Symmetrically encrypts and authenticates the provided data by means of AES in Galois/Counter Mode.
+	 * 
+	 * @param data The data to be encrypted.
+	 * @param secretKey The symmetric key with which the data shall be encrypted.
+	 * @param nonce The nonce (see {@link #generateGCMNonce()}), which must be unique for this key.
+	 * @param associatedData Data which is not encrypted but authenticated together with the encrypted data.
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return Returns the encrypted data including the authentication tag.
+	 * @throws GeneralSecurityException in case something goes wrong
+	 */
+	public static byte[] encryptAESGCM(byte[] data, SecretKey secretKey, byte[] nonce, byte[] associatedData,
+			String securityProvider) throws GeneralSecurityException {
+		return processAESGCMCiphering(true, data, secretKey, nonce, associatedData, securityProvider);
+	}
+
+	/**
+	 * Symmetrically decrypts the provided data by means of AES in Galois/Counter Mode and verifies that it
+	 * has not been modified.
+	 * 
+	 * @param data The data to be decrypted, including the authentication tag.
+	 * @param secretKey The symmetric key with which the data shall be decrypted.
+	 * @param nonce The nonce the data has been encrypted with.
+	 * @param associatedData The associated data the data has been encrypted with.
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return Returns the decrypted data.
+	 * @throws GeneralSecurityException in case something goes wrong or the data has been modified
+	 */
+	public static byte[] decryptAESGCM(byte[] data, SecretKey secretKey, byte[] nonce, byte[] associatedData,
+			String securityProvider) throws GeneralSecurityException {
+		return processAESGCMCiphering(false, data, secretKey, nonce, associatedData, securityProvider);
+	}
+
+	/**
+	 * Symmetrically encrypts and authenticates the remaining bytes of the input buffer by means of AES in
+	 * Galois/Counter Mode. The data is encrypted directly into the output buffer, which needs at least
+	 * {@link #getAESGCMOutputSize(int)} remaining bytes. No intermediate copy of the data is made.
+	 * 
+	 * @param input The data to be encrypted. The position is advanced to the limit.
+	 * @param output The buffer to write the encrypted data and the authentication tag to.
+	 * @param secretKey The symmetric key with which the data shall be encrypted.
+	 * @param nonce The nonce (see {@link #generateGCMNonce()}), which must be unique for this key.
+	 * @param associatedData Data which is not encrypted but authenticated together with the encrypted data.
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return Returns the number of bytes written to the output buffer.
+	 * @throws GeneralSecurityException in case something goes wrong
+	 */
+	public static int encryptAESGCM(ByteBuffer input, ByteBuffer output, SecretKey secretKey, byte[] nonce,
+			byte[] associatedData, String securityProvider) throws GeneralSecurityException {
+		return processAESGCMCiphering(true, input, output, secretKey, nonce, associatedData, securityProvider);
+	}
+
+	/**
+	 * Symmetrically decrypts the remaining bytes of the input buffer by means of AES in Galois/Counter Mode
+	 * and verifies that they have not been modified. The data is decrypted directly into the output buffer.
+	 * 
+	 * @param input The data to be decrypted, including the authentication tag.
+	 * @param output The buffer to write the decrypted data to.
+	 * @param secretKey The symmetric key with which the data shall be decrypted.
+	 * @param nonce The nonce the data has been encrypted with.
+	 * @param associatedData The associated data the data has been encrypted with.
+	 * @param securityProvider the security provider (e.g. "BC" for bouncy castle)
+	 * @return Returns the number of bytes written to the output buffer.
+	 * @throws GeneralSecurityException in case something goes wrong or the data has been modified
+	 */
+	public static int decryptAESGCM(ByteBuffer input, ByteBuffer output, SecretKey secretKey, byte[] nonce,
+			byte[] associatedData, String securityProvider) throws GeneralSecurityException {
+		return processAESGCMCiphering(false, input, output, secretKey, nonce, associatedData, securityProvider);
+	}
+
+	/**
+	 * @param dataLength the length of the plain data
+	 * @return the length of the data encrypted with AES in Galois/Counter Mode (including the tag)
+	 */
+	public static int getAESGCMOutputSize(int dataLength) {
+		return dataLength + GCM_TAG_LENGTH / 8;
+	}
+
+	/**
+	 * @return the length of the nonce for AES in Galois/Counter Mode
+	 */
+	public static int getGCMNonceLength() {
+		return GCM_NONCE_LENGTH;
+	}
+
 	/**
 	 * Asymmetrically encrypts the provided data by means of the RSA algorithm. In order to encrypt the
 	 * content, a public RSA key has to be provided.
@@ -246,6 +385,9 @@ public final class EncryptionUtil {
 	 */
 	public static HybridEncryptedContent encryptHybrid(byte[] data, PublicKey publicKey, AES_KEYLENGTH aesKeyLength,
 			String securityProvider, IStrongAESEncryption strongAES) throws GeneralSecurityException {
+		if (publicKey instanceof ECPublicKey) {
+			return encryptHybridEC(data, (ECPublicKey) publicKey, aesKeyLength, securityProvider, strongAES);
+		}
 
 		// generate AES key
 		SecretKey aesKey = generateAESKey(aesKeyLength, securityProvider);
@@ -282,6 +424,9 @@ public final class EncryptionUtil {
 	 */
 	public static byte[] decryptHybrid(HybridEncryptedContent data, PrivateKey privateKey, String securityProvider,
 			IStrongAESEncryption strongAES) throws GeneralSecurityException {
+		if (privateKey instanceof ECPrivateKey) {
+			return decryptHybridEC(data, privateKey, securityProvider, strongAES);
+		}
 
 		// decrypt parameters asymmetrically
 		byte[] params = decryptRSA(data.getEncryptedParameters(), privateKey, securityProvider);
@@ -308,7 +453,7 @@ public final class EncryptionUtil {
 	public static byte[] sign(byte[] data, PrivateKey privateKey, String securityProvider) throws InvalidKeyException,
 			SignatureException {
 		try {
-			Signature signEngine = Signature.getInstance(SINGATURE_ALGORITHM, securityProvider);
+			Signature signEngine = Signature.getInstance(getSignatureAlgorithm(privateKey), securityProvider);
 			signEngine.initSign(privateKey);
 			signEngine.update(data);
 			return signEngine.sign();
@@ -333,7 +478,7 @@ public final class EncryptionUtil {
 	public static boolean verify(byte[] data, byte[] signature, PublicKey publicKey, String securityProvider)
 			throws InvalidKeyException, SignatureException {
 		try {
-			Signature signEngine = Signature.getInstance(SINGATURE_ALGORITHM, securityProvider);
+			Signature signEngine = Signature.getInstance(getSignatureAlgorithm(publicKey), securityProvider);
 			signEngine.initVerify(publicKey);
 			signEngine.update(data);
 			return signEngine.verify(signature);
@@ -344,6 +489,77 @@ public final class EncryptionUtil {
 		return false;
 	}
 
+	/**
+	 * Hybrid encryption for elliptic curve keys (ECIES): An ephemeral key pair on the curve of the receiver
+	 * is generated. The AES key is derived from the Diffie-Hellman agreement of the ephemeral private key and
+	 * the public key of the receiver. The encrypted parameters contain the AES key length, the IV and the
+	 * ephemeral public key.
+	 */
+	private static HybridEncryptedContent encryptHybridEC(byte[] data, ECPublicKey publicKey,
+			AES_KEYLENGTH aesKeyLength, String securityProvider, IStrongAESEncryption strongAES)
+			throws GeneralSecurityException {
+		KeyPairGenerator gen = KeyPairGenerator.getInstance("EC", securityProvider);
+		gen.initialize(publicKey.getParams(), new SecureRandom());
+		KeyPair ephemeral = gen.generateKeyPair();
+
+		byte[] ephemeralPublic = ephemeral.getPublic().getEncoded();
+		SecretKey aesKey = deriveECKey(ephemeral.getPrivate(), publicKey, ephemeralPublic, aesKeyLength.value() / 8,
+				securityProvider);
+		byte[] initVector = generateIV();
+
+		byte[] params = new byte[1 + initVector.length + ephemeralPublic.length];
+		params[0] = (byte) (aesKeyLength.value() / 8);
+		System.arraycopy(initVector, 0, params, 1, initVector.length);
+		System.arraycopy(ephemeralPublic, 0, params, 1 + initVector.length, ephemeralPublic.length);
+
+		byte[] aesEncryptedData = encryptAES(data, aesKey, initVector, securityProvider, strongAES);
+		return new HybridEncryptedContent(params, aesEncryptedData);
+	}
+
+	private static byte[] decryptHybridEC(HybridEncryptedContent data, PrivateKey privateKey,
+			String securityProvider, IStrongAESEncryption strongAES) throws GeneralSecurityException {
+		byte[] params = data.getEncryptedParameters();
+		if (params.length <= 1 + IV_LENGTH) {
+			throw new GeneralSecurityException("Invalid parameters of the EC hybrid encryption.");
+		}
+
+		int keyLength = params[0];
+		byte[] initVector = Arrays.copyOfRange(params, 1, 1 + IV_LENGTH);
+		byte[] ephemeralPublic = Arrays.copyOfRange(params, 1 + IV_LENGTH, params.length);
+		PublicKey ephemeral = KeyFactory.getInstance("EC", securityProvider).generatePublic(
+				new X509EncodedKeySpec(ephemeralPublic));
+
+		SecretKey aesKey = deriveECKey(privateKey, ephemeral, ephemeralPublic, keyLength, securityProvider);
+		return decryptAES(data.getEncryptedData(), aesKey, initVector, securityProvider, strongAES);
+	}
+
+	/**
+	 * Derives an AES key from an ECDH agreement. The shared secret and the ephemeral public key are hashed with
+	 * SHA-256, which is truncated to the key length.
+	 */
+	private static SecretKey deriveECKey(PrivateKey privateKey, PublicKey publicKey, byte[] ephemeralPublic,
+			int keyLength, String securityProvider) throws GeneralSecurityException {
+		if (keyLength <= 0 || keyLength > 32) {
+			throw new GeneralSecurityException("Unsupported AES key length for the EC hybrid encryption.");
+		}
+
+		KeyAgreement agreement = KeyAgreement.getInstance("ECDH", securityProvider);
+		agreement.init(privateKey);
+		agreement.doPhase(publicKey, true);
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-256");
+		digest.update(agreement.generateSecret());
+		digest.update(ephemeralPublic);
+		return new SecretKeySpec(digest.digest(), 0, keyLength, "AES");
+	}
+
+	/**
+	 * @return the signature algorithm matching the type of the key
+	 */
+	private static String getSignatureAlgorithm(Key key) {
+		return key instanceof ECKey ? EC_SIGNATURE_ALGORITHM : SINGATURE_ALGORITHM;
+	}
+
 	/**
 	 * Encrypts or decrypts using AES. Note that this method uses the native method and has an upper limit for
 	 * the key size. If the size is too large, use {@link IStrongAESEncryption} instead.
@@ -352,7 +568,7 @@ public final class EncryptionUtil {
 			String securityProvider) throws GeneralSecurityException {
 		IvParameterSpec ivSpec = new IvParameterSpec(initVector);
 		SecretKeySpec keySpec = new SecretKeySpec(key.getEncoded(), "AES");
-		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS7Padding", securityProvider);
+		Cipher cipher = getCipher("AES/CBC/PKCS7Padding", securityProvider);
 		int encryptMode = forEncrypting ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
 		cipher.init(encryptMode, keySpec, ivSpec);
 
@@ -362,10 +578,53 @@ public final class EncryptionUtil {
 		int bytesProcessed1 = cipher.update(data, 0, data.length, output, 0);
 		int bytesProcessed2 = cipher.doFinal(output, bytesProcessed1);
 
-		byte[] result = new byte[bytesProcessed1 + bytesProcessed2];
-		System.arraycopy(output, 0, result, 0, result.length);
-		return result;
+		int length = bytesProcessed1 + bytesProcessed2;
+		if (length == output.length) {
+			// always the case when encrypting
+			return output;
+		}
+		return Arrays.copyOf(output, length);
+	}
 
+	private static byte[] processAESGCMCiphering(boolean forEncrypting, byte[] data, SecretKey key, byte[] nonce,
+			byte[] associatedData, String securityProvider) throws GeneralSecurityException {
+		Cipher cipher = initAESGCM(forEncrypting, key, nonce, associatedData, securityProvider);
+		return cipher.doFinal(data);
+	}
+
+	private static int processAESGCMCiphering(boolean forEncrypting, ByteBuffer input, ByteBuffer output,
+			SecretKey key, byte[] nonce, byte[] associatedData, String securityProvider)
+			throws GeneralSecurityException {
+		Cipher cipher = initAESGCM(forEncrypting, key, nonce, associatedData, securityProvider);
+		return cipher.doFinal(input, output);
+	}
+
+	private static Cipher initAESGCM(boolean forEncrypting, SecretKey key, byte[] nonce, byte[] associatedData,
+			String securityProvider) throws GeneralSecurityException {
+		Cipher cipher = getCipher("AES/GCM/NoPadding", securityProvider);
+		int encryptMode = forEncrypting ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE;
+		cipher.init(encryptMode, new SecretKeySpec(key.getEncoded(), "AES"), new GCMParameterSpec(GCM_TAG_LENGTH,
+				nonce));
+		if (associatedData != null) {
+			cipher.updateAAD(associatedData);
+		}
+		return cipher;
+	}
+
+	/**
+	 * Returns the cipher of the current thread. The cipher is re-initialized by the caller, thus it can be
+	 * re-used for any key.
+	 */
+	private static Cipher getCipher(String transformation, String securityProvider) throws NoSuchAlgorithmException,
+			NoSuchProviderException, NoSuchPaddingException {
+		Map<String, Cipher> ciphers = CIPHERS.get();
+		String cacheKey = transformation + "@" + securityProvider;
+		Cipher cipher = ciphers.get(cacheKey);
+		if (cipher == null) {
+			cipher = Cipher.getInstance(transformation, securityProvider);
+			ciphers.put(cacheKey, cipher);
+		}
+		return cipher;
 	}
 
 	/**
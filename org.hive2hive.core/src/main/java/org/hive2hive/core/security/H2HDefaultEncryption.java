@@ -9,6 +9,8 @@ import java.security.Security;
 
 import javax.crypto.SecretKey;
 
+import net.tomp2p.connection.SignatureFactory;
+
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.model.BaseNetworkContent;
@@ -22,6 +24,8 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 	private final IH2HSerialize serializer;
 	private final String securityProvider;
 	private final IStrongAESEncryption strongAES;
+	// pre-generated key pairs, may be null
+	private volatile RSAKeyPairPool keyPairPool;
 
 	/**
 	 * Create a default encryption using bouncy castle as the security provider
@@ -46,6 +50,8 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 		this.serializer = serializer;
 		this.securityProvider = securityProvider;
 		this.strongAES = strongAES;
+		this.keyPairPool = new RSAKeyPairPool(securityProvider, H2HConstants.KEY_PAIR_POOL_LOW_WATERMARK,
+				H2HConstants.KEY_PAIR_POOL_HIGH_WATERMARK, H2HConstants.KEY_PAIR_POOL_THREADS);
 	}
 
 	@Override
@@ -130,6 +136,36 @@ public class H2HDefaultEncryption implements IH2HEncryption {
 
 	@Override
 	public KeyPair generateRSAKeyPair(RSA_KEYLENGTH length) {
-		return EncryptionUtil.generateRSAKeyPair(length, securityProvider);
+		RSAKeyPairPool pool = keyPairPool;
+		if (pool == null) {
+			return EncryptionUtil.generateRSAKeyPair(length, securityProvider);
+		}
+		return pool.take(length);
+	}
+
+	@Override
+	public SignatureFactory createSignatureFactory() {
+		return new H2HSignatureFactory();
+	}
+
+	/**
+	 * @return the pool of pre-generated RSA key pairs (e.g. to read its metrics) or <code>null</code> if
+	 *         disabled
+	 */
+	public RSAKeyPairPool getKeyPairPool() {
+		return keyPairPool;
+	}
+
+	/**
+	 * Replaces the pool of pre-generated RSA key pairs. The previous pool is shut down.
+	 * 
+	 * @param keyPairPool the new pool or <code>null</code> to generate all key pairs on the calling thread
+	 */
+	public void setKeyPairPool(RSAKeyPairPool keyPairPool) {
+		RSAKeyPairPool previous = this.keyPairPool;
+		this.keyPairPool = keyPairPool;
+		if (previous != null && previous != keyPairPool) {
+			previous.shutdown();
+		}
 	}
 }
@@ -0,0 +1,63 @@
+package org.hive2hive.core.security;
+
+import java.security.KeyPair;
+
+import net.tomp2p.connection.SignatureFactory;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.serializer.IH2HSerialize;
+
+/**
+ * Encryption suite using elliptic curves instead of RSA. All asymmetric key pairs (user, meta file, chunk and
+ * protection keys) are generated on the curve {@link #CURVE}, which is much faster than the RSA key
+ * generation and results in smaller keys (e.g. in the user profile). Hybrid encryption is done with ECIES
+ * (ECDH with an ephemeral key and AES), signatures and the content protection with ECDSA.<br>
+ * The suite is selected when creating the node, e.g.
+ * <code>H2HNode.createNode(fileConfig, new H2HECEncryption(serializer), serializer)</code>. All nodes of a
+ * network must use the same suite.
+ */
+public class H2HECEncryption extends H2HDefaultEncryption {
+
+	// 128 bit security, comparable to RSA with 3072 bits
+	public static final String CURVE = "secp256r1";
+
+	/**
+	 * Create an elliptic curve encryption using bouncy castle as the security provider
+	 */
+	public H2HECEncryption(IH2HSerialize serializer) {
+		super(serializer);
+		// generating EC keys is cheap, no need to pre-generate them
+		setKeyPairPool(null);
+	}
+
+	/**
+	 * Create an elliptic curve encryption using any installed security provider identifier.
+	 *
+	 * @param serializer the serializer to encode / decode objects
+	 * @param securityProvider the security provider identifier. Note that the provider must be installed
+	 *            separately and support EC, ECDH and ECDSA.
+	 * @param strongAES the fallback if the AES encryption / decryption has a too long key
+	 */
+	public H2HECEncryption(IH2HSerialize serializer, String securityProvider, IStrongAESEncryption strongAES) {
+		super(serializer, securityProvider, strongAES);
+		setKeyPairPool(null);
+	}
+
+	/**
+	 * Generates an EC key pair. The requested length is ignored, all keys are on the same curve such that the
+	 * signatures of the content protection have a fixed size.
+	 */
+	@Override
+	public KeyPair generateRSAKeyPair(RSA_KEYLENGTH length) {
+		return EncryptionUtil.generateECKeyPair(CURVE, getSecurityProvider());
+	}
+
+	@Override
+	public SignatureFactory createSignatureFactory() {
+		if (!BouncyCastleProvider.PROVIDER_NAME.equals(getSecurityProvider())) {
+			throw new IllegalStateException("The EC content protection requires the BouncyCastle provider.");
+		}
+		return new H2HECSignatureFactory();
+	}
+}
@@ -0,0 +1,101 @@
+package org.hive2hive.core.security;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import net.tomp2p.message.SignatureCodec;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.ASN1Sequence;
+
+/**
+ * An ECDSA encoder and decoder for the signature. The DER encoded signature has a variable length, thus it is
+ * sent as the two fixed-size numbers r and s.
+ */
+public class H2HECSignatureCodec implements SignatureCodec {
+
+	// r and s of a signature on a 256 bit curve
+	public static final int NUMBER_SIZE = 32;
+	public static final int SIGNATURE_SIZE = 2 * NUMBER_SIZE;
+
+	private final byte[] r;
+	private final byte[] s;
+
+	/**
+	 * @param encodedData the DER encoded signature
+	 */
+	public H2HECSignatureCodec(byte[] encodedData) throws IOException {
+		ASN1Sequence sequence;
+		try {
+			sequence = ASN1Sequence.getInstance(ASN1Primitive.fromByteArray(encodedData));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Not a valid ECDSA signature.", e);
+		}
+		if (sequence.size() != 2) {
+			throw new IOException("Not a valid ECDSA signature.");
+		}
+		this.r = toFixedSize(ASN1Integer.getInstance(sequence.getObjectAt(0)).getValue());
+		this.s = toFixedSize(ASN1Integer.getInstance(sequence.getObjectAt(1)).getValue());
+	}
+
+	public H2HECSignatureCodec(ByteBuf buf) {
+		this.r = new byte[NUMBER_SIZE];
+		this.s = new byte[NUMBER_SIZE];
+		buf.readBytes(r);
+		buf.readBytes(s);
+	}
+
+	/**
+	 * @return the DER encoded signature
+	 */
+	@Override
+	public byte[] encode() {
+		byte[] encodedR = new BigInteger(1, r).toByteArray();
+		byte[] encodedS = new BigInteger(1, s).toByteArray();
+
+		// SEQUENCE { INTEGER r, INTEGER s }, all lengths are below 128
+		int length = 2 + encodedR.length + 2 + encodedS.length;
+		byte[] encoded = new byte[2 + length];
+		encoded[0] = 0x30;
+		encoded[1] = (byte) length;
+		encoded[2] = 0x02;
+		encoded[3] = (byte) encodedR.length;
+		System.arraycopy(encodedR, 0, encoded, 4, encodedR.length);
+		int offset = 4 + encodedR.length;
+		encoded[offset] = 0x02;
+		encoded[offset + 1] = (byte) encodedS.length;
+		System.arraycopy(encodedS, 0, encoded, offset + 2, encodedS.length);
+		return encoded;
+	}
+
+	@Override
+	public SignatureCodec write(ByteBuf buf) {
+		buf.writeBytes(r);
+		buf.writeBytes(s);
+		return this;
+	}
+
+	@Override
+	public int signatureSize() {
+		return SIGNATURE_SIZE;
+	}
+
+	private static byte[] toFixedSize(BigInteger number) throws IOException {
+		byte[] bytes = number.toByteArray();
+		if (bytes.length == NUMBER_SIZE) {
+			return bytes;
+		} else if (bytes.length == NUMBER_SIZE + 1 && bytes[0] == 0) {
+			// sign byte
+			return Arrays.copyOfRange(bytes, 1, bytes.length);
+		} else if (bytes.length < NUMBER_SIZE) {
+			byte[] fixed = new byte[NUMBER_SIZE];
+			System.arraycopy(bytes, 0, fixed, NUMBER_SIZE - bytes.length, bytes.length);
+			return fixed;
+		}
+		throw new IOException("The signature is too large for a 256 bit curve.");
+	}
+}
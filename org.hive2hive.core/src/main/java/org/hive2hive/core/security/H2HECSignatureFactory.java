@@ -0,0 +1,59 @@
+package org.hive2hive.core.security;
+
+import io.netty.buffer.ByteBuf;
+
+import java.io.IOException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.Signature;
+
+import net.tomp2p.message.SignatureCodec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The signature is done with SHA256withECDSA on the curve of {@link H2HECEncryption}. It is used for the
+ * content protection when the node uses the elliptic curve suite.
+ */
+public class H2HECSignatureFactory extends H2HSignatureFactory {
+
+	private static final long serialVersionUID = 3318390536216462027L;
+	private static final Logger logger = LoggerFactory.getLogger(H2HECSignatureFactory.class);
+
+	@Override
+	protected Signature signatureInstance() {
+		try {
+			return Signature.getInstance("SHA256withECDSA", BouncyCastleProvider.PROVIDER_NAME);
+		} catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+			logger.error("Could not find signature algorithm:", e);
+			return null;
+		}
+	}
+
+	@Override
+	protected KeyFactory keyFactoryInstance() throws NoSuchAlgorithmException {
+		try {
+			return KeyFactory.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+		} catch (NoSuchProviderException e) {
+			throw new NoSuchAlgorithmException(e);
+		}
+	}
+
+	@Override
+	protected SignatureCodec createSignatureCodec(byte[] signatureData) throws IOException {
+		return new H2HECSignatureCodec(signatureData);
+	}
+
+	@Override
+	public SignatureCodec signatureCodec(ByteBuf buf) {
+		return new H2HECSignatureCodec(buf);
+	}
+
+	@Override
+	public int signatureSize() {
+		return H2HECSignatureCodec.SIGNATURE_SIZE;
+	}
+}
@@ -35,7 +35,7 @@ public class H2HSignatureFactory implements SignatureFactory {
 	/**
 	 * @return The signature mechanism
 	 */
-	private Signature signatureInstance() {
+	protected Signature signatureInstance() {
 		try {
 			return Signature.getInstance("SHA1withRSA");
 		} catch (NoSuchAlgorithmException e) {
@@ -44,11 +44,25 @@ public class H2HSignatureFactory implements SignatureFactory {
 		}
 	}
 
+	/**
+	 * @return The factory to decode the public keys
+	 */
+	protected KeyFactory keyFactoryInstance() throws NoSuchAlgorithmException {
+		return KeyFactory.getInstance("RSA");
+	}
+
+	/**
+	 * @return The codec of a created signature
+	 */
+	protected SignatureCodec createSignatureCodec(byte[] signatureData) throws IOException {
+		return new H2HSignatureCodec(signatureData);
+	}
+
 	@Override
 	public PublicKey decodePublicKey(final byte[] me) {
 		X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(me);
 		try {
-			KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+			KeyFactory keyFactory = keyFactoryInstance();
 			return keyFactory.generatePublic(pubKeySpec);
 		} catch (NoSuchAlgorithmException e) {
 			logger.error("Could not find decoding algorithm:", e);
@@ -100,8 +114,7 @@ public class H2HSignatureFactory implements SignatureFactory {
 		}
 
 		byte[] signatureData = signature.sign();
-		SignatureCodec decodedSignature = new H2HSignatureCodec(signatureData);
-		return decodedSignature;
+		return createSignatureCodec(signatureData);
 	}
 
 	@Override
@@ -0,0 +1,53 @@
+package org.hive2hive.core.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The algorithms to hash the content of files. The algorithm is stored together with the hash (see
+ * {@link org.hive2hive.core.model.FileIndex#getHashAlgorithm()}), thus peers can compare hashes even if they
+ * are configured differently.
+ */
+public enum HashAlgorithm {
+
+	/**
+	 * Compatible with all versions of Hive2Hive
+	 */
+	MD5("MD5", true),
+	/**
+	 * Slower than MD5, but collision resistant
+	 */
+	SHA_256("SHA-256", true),
+	/**
+	 * xxHash (64 bit), several times faster than MD5 but not cryptographic. Use it only to detect changes of
+	 * files, never to verify data received from other peers.
+	 */
+	XXHASH64("XXH64", false);
+
+	private final String name;
+	private final boolean cryptographic;
+
+	private HashAlgorithm(String name, boolean cryptographic) {
+		this.name = name;
+		this.cryptographic = cryptographic;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isCryptographic() {
+		return cryptographic;
+	}
+
+	/**
+	 * @return a new digest of this algorithm
+	 * @throws NoSuchAlgorithmException if the algorithm is not supported by the installed providers
+	 */
+	public MessageDigest createDigest() throws NoSuchAlgorithmException {
+		if (this == XXHASH64) {
+			return new XXHash64Digest();
+		}
+		return MessageDigest.getInstance(name);
+	}
+}
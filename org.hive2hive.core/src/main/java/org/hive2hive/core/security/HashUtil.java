@@ -1,10 +1,10 @@
 package org.hive2hive.core.security;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -13,8 +13,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Util for hashing and comparing hashes.
- * TODO: this could be parameterized with the security provider for an optimal result
+ * Util for hashing and comparing hashes. By default, MD5 is used. Other algorithms (see
+ * {@link HashAlgorithm}) can be used for content hashes which are stored together with their algorithm.<br>
+ * The digests are re-used per thread and files are read through a large direct buffer.
  * 
  * @author Nico
  * @author Chris
@@ -23,7 +24,25 @@ import org.slf4j.LoggerFactory;
 public class HashUtil {
 
 	private static final Logger logger = LoggerFactory.getLogger(HashUtil.class);
-	private static final String HASH_ALGORITHM = "MD5";
+	// used by all methods without an explicit algorithm, compatible with older versions
+	public static final HashAlgorithm DEFAULT_ALGORITHM = HashAlgorithm.MD5;
+	private static final int FILE_BUFFER_SIZE = 1024 * 1024;
+
+	// one digest per algorithm and thread
+	private static final ThreadLocal<MessageDigest[]> DIGESTS = new ThreadLocal<MessageDigest[]>() {
+		@Override
+		protected MessageDigest[] initialValue() {
+			return new MessageDigest[HashAlgorithm.values().length];
+		}
+	};
+
+	// the buffer to read files, allocated at the first use per thread
+	private static final ThreadLocal<ByteBuffer> FILE_BUFFERS = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+		}
+	};
 
 	private HashUtil() {
 		// only static methods
@@ -36,24 +55,76 @@ public class HashUtil {
 	 * @return the md5 hash
 	 */
 	public static byte[] hash(byte[] data) {
-		try {
-			MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
-			digest.update(data, 0, data.length);
-			return digest.digest();
-		} catch (NoSuchAlgorithmException e) {
-			logger.error("Invalid hash algorithm {}", HASH_ALGORITHM, e);
+		return hash(data, DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Generates a hash of a given data
+	 *
+	 * @param data to calculate the hash over it
+	 * @param algorithm the hash algorithm
+	 * @return the hash
+	 */
+	public static byte[] hash(byte[] data, HashAlgorithm algorithm) {
+		MessageDigest digest = getDigest(algorithm);
+		if (digest == null) {
 			return new byte[0];
 		}
+
+		digest.update(data, 0, data.length);
+		return digest.digest();
 	}
 
 	/**
-	 * Generates a MD5 hash of an input stream (can take a while)
+	 * Generates a MD5 hash of the remaining bytes of the given buffer. The buffer can be a direct or mapped
+	 * buffer, the data is not copied to the heap. After hashing, the position of the buffer is at its limit.
+	 *
+	 * @param data the buffer to calculate the MD5 hash over it
+	 * @return the md5 hash
+	 */
+	public static byte[] hash(ByteBuffer data) {
+		return hash(data, DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Generates a hash of the remaining bytes of the given buffer. After hashing, the position of the buffer
+	 * is at its limit.
+	 *
+	 * @param data the buffer to calculate the hash over it
+	 * @param algorithm the hash algorithm
+	 * @return the hash
+	 */
+	public static byte[] hash(ByteBuffer data, HashAlgorithm algorithm) {
+		MessageDigest digest = getDigest(algorithm);
+		if (digest == null) {
+			return new byte[0];
+		}
+
+		digest.update(data);
+		return digest.digest();
+	}
+
+	/**
+	 * Generates a MD5 hash of a file (can take a while)
 	 *
 	 * @param file
 	 * @return the hash of the file
 	 * @throws IOException
 	 */
 	public static byte[] hash(File file) throws IOException {
+		return hash(file, DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Generates a hash of a file (can take a while). The file is read in large blocks into a direct buffer
+	 * which is re-used by the calling thread.
+	 *
+	 * @param file
+	 * @param algorithm the hash algorithm
+	 * @return the hash of the file
+	 * @throws IOException
+	 */
+	public static byte[] hash(File file, HashAlgorithm algorithm) throws IOException {
 		if (file == null) {
 			return new byte[0];
 		} else if (file.isDirectory()) {
@@ -62,38 +133,23 @@ public class HashUtil {
 			return new byte[0];
 		}
 
-		MessageDigest digest;
-		try {
-			digest = MessageDigest.getInstance(HASH_ALGORITHM);
-		} catch (NoSuchAlgorithmException e) {
-			logger.error("Invalid hash algorithm {}", HASH_ALGORITHM, e);
+		MessageDigest digest = getDigest(algorithm);
+		if (digest == null) {
 			return new byte[0];
 		}
 
-		FileInputStream fis;
-		try {
-			// open the stream
-			fis = new FileInputStream(file);
-		} catch (FileNotFoundException e) {
-			logger.error("File {} not found to generate the hash", file, e);
-			return new byte[0];
-		}
-
-		DigestInputStream dis = new DigestInputStream(fis, digest);
-		try {
-			byte[] buffer = new byte[1024];
-			int numRead;
-			do {
-				numRead = dis.read(buffer);
-			} while (numRead != -1);
-		} finally {
-			if (dis != null) {
-				dis.close();
-			}
-
-			if (fis != null) {
-				fis.close();
+		ByteBuffer buffer = FILE_BUFFERS.get();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			buffer.clear();
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
 			}
+		} catch (IOException e) {
+			// do not leave a half-updated digest for the next caller
+			digest.reset();
+			throw e;
 		}
 
 		return digest.digest();
@@ -108,7 +164,20 @@ public class HashUtil {
 	 * @throws IOException
 	 */
 	public static boolean compare(File file, byte[] expectedMD5) throws IOException {
-		if (!file.exists() && (expectedMD5 == null || expectedMD5.length == 0)) {
+		return compare(file, expectedMD5, DEFAULT_ALGORITHM);
+	}
+
+	/**
+	 * Compares if the hash of the file matches the given hash
+	 *
+	 * @param file
+	 * @param expectedHash
+	 * @param algorithm the algorithm of the expected hash
+	 * @return <code>true</code> if the file has the expected hash
+	 * @throws IOException
+	 */
+	public static boolean compare(File file, byte[] expectedHash, HashAlgorithm algorithm) throws IOException {
+		if (!file.exists() && (expectedHash == null || expectedHash.length == 0)) {
 			// both do not exist
 			return true;
 		} else if (file.isDirectory()) {
@@ -116,8 +185,7 @@ public class HashUtil {
 			return true;
 		}
 
-		byte[] md5Hash = HashUtil.hash(file);
-		return compare(md5Hash, expectedMD5);
+		return compare(hash(file, algorithm), expectedHash);
 	}
 
 	/**
@@ -131,4 +199,23 @@ public class HashUtil {
 	public static boolean compare(byte[] md5, byte[] expectedMD5) {
 		return Arrays.equals(md5, expectedMD5);
 	}
+
+	/**
+	 * Returns the digest of the calling thread. The digest is reset by {@link MessageDigest#digest()} after
+	 * every use.
+	 */
+	private static MessageDigest getDigest(HashAlgorithm algorithm) {
+		MessageDigest[] digests = DIGESTS.get();
+		MessageDigest digest = digests[algorithm.ordinal()];
+		if (digest == null) {
+			try {
+				digest = algorithm.createDigest();
+			} catch (NoSuchAlgorithmException e) {
+				logger.error("Invalid hash algorithm {}", algorithm.getName(), e);
+				return null;
+			}
+			digests[algorithm.ordinal()] = digest;
+		}
+		return digest;
+	}
 }
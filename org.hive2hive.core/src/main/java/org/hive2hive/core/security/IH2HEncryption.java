@@ -8,6 +8,8 @@ import java.security.PublicKey;
 
 import javax.crypto.SecretKey;
 
+import net.tomp2p.connection.SignatureFactory;
+
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
 import org.hive2hive.core.model.versioned.HybridEncryptedContent;
@@ -106,4 +108,12 @@ public interface IH2HEncryption {
 	 * @return an RSA keypair
 	 */
 	KeyPair generateRSAKeyPair(RSA_KEYLENGTH length);
+
+	/**
+	 * Creates the factory which signs and verifies the protected content in the DHT. It must match the keys
+	 * generated with {@link #generateRSAKeyPair(RSA_KEYLENGTH)}.
+	 * 
+	 * @return the signature factory used by the peer
+	 */
+	SignatureFactory createSignatureFactory();
 }
\ No newline at end of file
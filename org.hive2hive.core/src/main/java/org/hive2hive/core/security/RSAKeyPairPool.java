@@ -0,0 +1,212 @@
+package org.hive2hive.core.security;
+
+import java.security.KeyPair;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pre-generates RSA key pairs on background threads, such that processes (e.g. adding a file) do not need to
+ * wait for the expensive generation. There is a separate pool for every key length. A pool is only filled
+ * after the first key pair of its length has been requested. If a pool falls below the low watermark, it is
+ * refilled up to the high watermark. If a pool is empty, the key pair is generated on the calling thread.
+ * Every key pair is handed out only once.
+ */
+public class RSAKeyPairPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(RSAKeyPairPool.class);
+
+	private final String securityProvider;
+	private final int lowWatermark;
+	private final int highWatermark;
+
+	private final ConcurrentMap<RSA_KEYLENGTH, BlockingQueue<KeyPair>> pools;
+	private final ConcurrentMap<RSA_KEYLENGTH, AtomicBoolean> refilling;
+	private final ThreadPoolExecutor generator;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong generated = new AtomicLong();
+	private final AtomicLong generationNanos = new AtomicLong();
+
+	/**
+	 * @param securityProvider the security provider to generate the key pairs with
+	 * @param lowWatermark a pool is refilled when it holds less key pairs
+	 * @param highWatermark a pool is refilled up to this number of key pairs
+	 * @param threads the number of background threads generating key pairs
+	 */
+	public RSAKeyPairPool(String securityProvider, int lowWatermark, int highWatermark, int threads) {
+		if (lowWatermark < 0 || highWatermark < lowWatermark || threads < 1) {
+			throw new IllegalArgumentException("Invalid watermarks or number of threads.");
+		}
+		this.securityProvider = securityProvider;
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+		this.pools = new ConcurrentHashMap<RSA_KEYLENGTH, BlockingQueue<KeyPair>>();
+		this.refilling = new ConcurrentHashMap<RSA_KEYLENGTH, AtomicBoolean>();
+		this.generator = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+					private final AtomicInteger counter = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "H2H key pair generator " + counter.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		this.generator.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Takes a key pair from the pool. Never blocks on the background generation; if the pool is empty, the key
+	 * pair is generated on the calling thread.
+	 *
+	 * @param length the length of the key pair
+	 * @return a key pair which has not been handed out before
+	 */
+	public KeyPair take(RSA_KEYLENGTH length) {
+		BlockingQueue<KeyPair> pool = getPool(length);
+		KeyPair keyPair = pool.poll();
+		if (keyPair == null) {
+			misses.incrementAndGet();
+			keyPair = EncryptionUtil.generateRSAKeyPair(length, securityProvider);
+		} else {
+			hits.incrementAndGet();
+		}
+
+		if (pool.size() < lowWatermark) {
+			refill(length);
+		}
+		return keyPair;
+	}
+
+	/**
+	 * Starts filling the pools of the given key lengths in the background, e.g. when a user logged in and is
+	 * likely to add files soon.
+	 */
+	public void prefill(RSA_KEYLENGTH... lengths) {
+		for (RSA_KEYLENGTH length : lengths) {
+			getPool(length);
+			refill(length);
+		}
+	}
+
+	/**
+	 * @return the number of key pairs currently available for the given length
+	 */
+	public int getAvailable(RSA_KEYLENGTH length) {
+		BlockingQueue<KeyPair> pool = pools.get(length);
+		return pool == null ? 0 : pool.size();
+	}
+
+	/**
+	 * @return the number of key pairs served from the pool
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of key pairs that had to be generated on the calling thread
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the number of key pairs generated in the background
+	 */
+	public long getGeneratedCount() {
+		return generated.get();
+	}
+
+	/**
+	 * @return the number of key pairs a background thread generates per second
+	 */
+	public double getRefillRate() {
+		long nanos = generationNanos.get();
+		if (nanos == 0) {
+			return 0;
+		}
+		return generated.get() / (nanos / 1000000000.0);
+	}
+
+	/**
+	 * Stops the background generation and drops all pre-generated key pairs
+	 */
+	public void shutdown() {
+		generator.shutdownNow();
+		pools.clear();
+	}
+
+	private BlockingQueue<KeyPair> getPool(RSA_KEYLENGTH length) {
+		BlockingQueue<KeyPair> pool = pools.get(length);
+		if (pool == null) {
+			refilling.putIfAbsent(length, new AtomicBoolean(false));
+			pools.putIfAbsent(length, new LinkedBlockingQueue<KeyPair>());
+			pool = pools.get(length);
+		}
+		return pool;
+	}
+
+	private void refill(RSA_KEYLENGTH length) {
+		if (highWatermark == 0 || generator.isShutdown()) {
+			return;
+		}
+
+		AtomicBoolean running = refilling.get(length);
+		if (running.compareAndSet(false, true)) {
+			try {
+				generator.execute(new Refill(length, running));
+			} catch (RejectedExecutionException e) {
+				running.set(false);
+			}
+		}
+	}
+
+	private class Refill implements Runnable {
+
+		private final RSA_KEYLENGTH length;
+		private final AtomicBoolean running;
+
+		public Refill(RSA_KEYLENGTH length, AtomicBoolean running) {
+			this.length = length;
+			this.running = running;
+		}
+
+		@Override
+		public void run() {
+			try {
+				BlockingQueue<KeyPair> pool = getPool(length);
+				while (pool.size() < highWatermark && !Thread.currentThread().isInterrupted()) {
+					long start = System.nanoTime();
+					KeyPair keyPair = EncryptionUtil.generateRSAKeyPair(length, securityProvider);
+					if (keyPair == null) {
+						logger.warn("Cannot pre-generate RSA key pairs of length {}.", length);
+						return;
+					}
+					generationNanos.addAndGet(System.nanoTime() - start);
+					generated.incrementAndGet();
+					pool.offer(keyPair);
+				}
+			} finally {
+				running.set(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package org.hive2hive.core.security;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * The xxHash64 algorithm (seed 0) as a {@link MessageDigest}. The digest is the 64 bit hash in big endian
+ * order. Direct and mapped buffers are consumed without copying them to the heap.
+ */
+public final class XXHash64Digest extends MessageDigest {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE_LENGTH = 32;
+	private static final int DIGEST_LENGTH = 8;
+
+	// the bytes which do not fill a whole stripe yet
+	private final byte[] buffer = new byte[STRIPE_LENGTH];
+	private int buffered;
+	private long totalLength;
+
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	public XXHash64Digest() {
+		super(HashAlgorithm.XXHASH64.getName());
+		engineReset();
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return DIGEST_LENGTH;
+	}
+
+	@Override
+	protected void engineReset() {
+		v1 = PRIME1 + PRIME2;
+		v2 = PRIME2;
+		v3 = 0;
+		v4 = -PRIME1;
+		buffered = 0;
+		totalLength = 0;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		totalLength++;
+		buffer[buffered++] = input;
+		if (buffered == STRIPE_LENGTH) {
+			processStripe(buffer, 0);
+			buffered = 0;
+		}
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int length) {
+		totalLength += length;
+		if (buffered > 0) {
+			int fill = Math.min(STRIPE_LENGTH - buffered, length);
+			System.arraycopy(input, offset, buffer, buffered, fill);
+			buffered += fill;
+			offset += fill;
+			length -= fill;
+			if (buffered < STRIPE_LENGTH) {
+				return;
+			}
+			processStripe(buffer, 0);
+			buffered = 0;
+		}
+
+		while (length >= STRIPE_LENGTH) {
+			processStripe(input, offset);
+			offset += STRIPE_LENGTH;
+			length -= STRIPE_LENGTH;
+		}
+
+		if (length > 0) {
+			System.arraycopy(input, offset, buffer, 0, length);
+			buffered = length;
+		}
+	}
+
+	@Override
+	protected void engineUpdate(ByteBuffer input) {
+		if (input.hasArray()) {
+			engineUpdate(input.array(), input.arrayOffset() + input.position(), input.remaining());
+			input.position(input.limit());
+			return;
+		}
+
+		totalLength += input.remaining();
+		if (buffered > 0) {
+			int fill = Math.min(STRIPE_LENGTH - buffered, input.remaining());
+			input.get(buffer, buffered, fill);
+			buffered += fill;
+			if (buffered < STRIPE_LENGTH) {
+				return;
+			}
+			processStripe(buffer, 0);
+			buffered = 0;
+		}
+
+		// read the stripes directly from the buffer
+		ByteOrder order = input.order();
+		input.order(ByteOrder.LITTLE_ENDIAN);
+		while (input.remaining() >= STRIPE_LENGTH) {
+			v1 = round(v1, input.getLong());
+			v2 = round(v2, input.getLong());
+			v3 = round(v3, input.getLong());
+			v4 = round(v4, input.getLong());
+		}
+		input.order(order);
+
+		buffered = input.remaining();
+		input.get(buffer, 0, buffered);
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		long hash;
+		if (totalLength >= STRIPE_LENGTH) {
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+					+ Long.rotateLeft(v4, 18);
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		} else {
+			// seed + PRIME5
+			hash = PRIME5;
+		}
+		hash += totalLength;
+
+		int i = 0;
+		for (; i + 8 <= buffered; i += 8) {
+			hash ^= round(0, getLong(buffer, i));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if (i + 4 <= buffered) {
+			hash ^= (getInt(buffer, i) & 0xFFFFFFFFL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			i += 4;
+		}
+		for (; i < buffered; i++) {
+			hash ^= (buffer[i] & 0xFF) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+
+		engineReset();
+		return ByteBuffer.allocate(DIGEST_LENGTH).putLong(hash).array();
+	}
+
+	private void processStripe(byte[] input, int offset) {
+		v1 = round(v1, getLong(input, offset));
+		v2 = round(v2, getLong(input, offset + 8));
+		v3 = round(v3, getLong(input, offset + 16));
+		v4 = round(v4, getLong(input, offset + 24));
+	}
+
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		return accumulator * PRIME1;
+	}
+
+	private static long mergeRound(long accumulator, long value) {
+		accumulator ^= round(0, value);
+		return accumulator * PRIME1 + PRIME4;
+	}
+
+	private static long getLong(byte[] data, int offset) {
+		return (data[offset] & 0xFFL) | (data[offset + 1] & 0xFFL) << 8 | (data[offset + 2] & 0xFFL) << 16
+				| (data[offset + 3] & 0xFFL) << 24 | (data[offset + 4] & 0xFFL) << 32 | (data[offset + 5] & 0xFFL) << 40
+				| (data[offset + 6] & 0xFFL) << 48 | (data[offset + 7] & 0xFFL) << 56;
+	}
+
+	private static int getInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16
+				| (data[offset + 3] & 0xFF) << 24;
+	}
+}
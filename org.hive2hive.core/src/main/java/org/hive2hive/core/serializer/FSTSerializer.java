@@ -8,6 +8,8 @@ import net.tomp2p.peers.PeerAddress;
 import net.tomp2p.peers.PeerSocketAddress;
 
 import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.model.ChunkReference;
+import org.hive2hive.core.model.EncryptedChunk;
 import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.FileVersion;
 import org.hive2hive.core.model.FolderIndex;
@@ -85,6 +87,15 @@ public final class FSTSerializer implements IH2HSerialize {
 
 		// register the acceptance reply enum
 		fst.registerClass(AcceptanceReply.class);
+
+		// keys of the elliptic curve suite (registered last to keep the indexes above compatible)
+		fst.registerClass(securityProvider.getECPublicKeyClass(), securityProvider.getECPrivateKeyClass());
+
+		// chunks encrypted with AES-GCM
+		fst.registerClass(EncryptedChunk.class);
+
+		// references of deduplicated chunks
+		fst.registerClass(ChunkReference.class);
 	}
 
 	@Override
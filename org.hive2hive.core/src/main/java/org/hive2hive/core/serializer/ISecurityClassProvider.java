@@ -1,5 +1,7 @@
 package org.hive2hive.core.serializer;
 
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
@@ -26,4 +28,8 @@ public interface ISecurityClassProvider {
 	Class<? extends RSAPrivateKey> getRSAPrivateKeyClass();
 
 	Class<? extends RSAPrivateCrtKey> getRSAPrivateCrtKeyClass();
+
+	Class<? extends ECPublicKey> getECPublicKeyClass();
+
+	Class<? extends ECPrivateKey> getECPrivateKeyClass();
 }
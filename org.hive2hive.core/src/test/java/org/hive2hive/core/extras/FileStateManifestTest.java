@@ -0,0 +1,173 @@
+package org.hive2hive.core.extras;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.FileChunkWriter;
+import org.hive2hive.core.file.FileUtil;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.helper.TestFileAgent;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FileStateManifestTest extends H2HJUnitTest {
+
+	private File rootFile;
+	private File file1;
+	private File file2;
+	private File folder;
+	private File file3;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = FileStateManifestTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Before
+	public void createFiles() throws IOException {
+		rootFile = FileTestUtil.getTempDirectory();
+		file1 = new File(rootFile, "file1");
+		file2 = new File(rootFile, "file2");
+		folder = new File(rootFile, "folder");
+		file3 = new File(folder, "file3");
+		folder.mkdirs();
+
+		// the timestamps of files written just before the scan are not trusted
+		long past = System.currentTimeMillis() - 60000;
+		for (File file : new File[] { file1, file2, file3 }) {
+			FileUtils.writeStringToFile(file, randomString());
+			file.setLastModified(past);
+		}
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(rootFile);
+	}
+
+	@Test
+	public void testSameAsVisitFiles() throws IOException {
+		for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+			FileStateManifest manifest = new FileStateManifest(algorithm).scan(rootFile, algorithm, 2);
+			Map<String, byte[]> expected = FileSynchronizer.visitFiles(rootFile, algorithm);
+			Map<String, byte[]> hashes = manifest.getHashes();
+
+			assertEquals(expected.keySet(), hashes.keySet());
+			for (String path : expected.keySet()) {
+				assertArrayEquals(expected.get(path), hashes.get(path));
+			}
+			assertEquals(3, manifest.getHashedCount());
+		}
+	}
+
+	@Test
+	public void testPartialFilesSkipped() throws IOException {
+		File partial = FileChunkWriter.getPartialFile(new File(folder, "download"));
+		FileUtils.writeStringToFile(partial, randomString());
+		String path = FileUtil.relativize(rootFile, partial).toString();
+
+		FileStateManifest manifest = new FileStateManifest(HashAlgorithm.MD5).scan(rootFile, HashAlgorithm.MD5, 2);
+		assertFalse(manifest.getHashes().containsKey(path));
+		assertEquals(3, manifest.getHashedCount());
+		assertFalse(FileSynchronizer.visitFiles(rootFile).containsKey(path));
+	}
+
+	@Test
+	public void testRehashOnlyModified() throws IOException {
+		FileStateManifest before = new FileStateManifest(HashAlgorithm.MD5).scan(rootFile, HashAlgorithm.MD5, 2);
+		FileStateManifest unchanged = before.scan(rootFile, HashAlgorithm.MD5, 2);
+		assertEquals(0, unchanged.getHashedCount());
+		assertEquals(3, unchanged.getReusedCount());
+
+		// modify a file with a different length
+		FileUtils.writeStringToFile(file2, randomString() + randomString());
+		FileStateManifest now = unchanged.scan(rootFile, HashAlgorithm.MD5, 2);
+		assertEquals(1, now.getHashedCount());
+		assertEquals(2, now.getReusedCount());
+		assertArrayEquals(HashUtil.hash(file2), now.getState("file2").getHash());
+
+		// another algorithm hashes everything again
+		FileStateManifest other = now.scan(rootFile, HashAlgorithm.XXHASH64, 2);
+		assertEquals(3, other.getHashedCount());
+		assertEquals(HashAlgorithm.XXHASH64, other.getHashAlgorithm());
+	}
+
+	@Test
+	public void testRecentlyModifiedIsRehashed() throws IOException {
+		// modified right before the scan
+		FileUtils.writeStringToFile(file1, randomString());
+		long lastModified = file1.lastModified();
+		FileStateManifest before = new FileStateManifest(HashAlgorithm.MD5).scan(rootFile, HashAlgorithm.MD5, 2);
+
+		// modified again with the same length and timestamp
+		FileUtils.writeStringToFile(file1, randomString());
+		file1.setLastModified(lastModified);
+		FileStateManifest now = before.scan(rootFile, HashAlgorithm.MD5, 2);
+		assertEquals(before.getState("file1").getLastModified(), now.getState("file1").getLastModified());
+		assertEquals(1, now.getHashedCount());
+		assertArrayEquals(HashUtil.hash(file1), now.getState("file1").getHash());
+	}
+
+	@Test
+	public void testPersist() throws IOException {
+		TestFileAgent fileAgent = new TestFileAgent();
+		FSTSerializer serializer = new FSTSerializer();
+
+		// not written yet
+		FileStateManifest empty = FileStateManifest.read(fileAgent, serializer);
+		assertNotNull(empty);
+		assertTrue(empty.getHashes().isEmpty());
+
+		FileStateManifest manifest = empty.scan(rootFile, HashAlgorithm.MD5, 2);
+		manifest.write(fileAgent, serializer);
+
+		FileStateManifest read = FileStateManifest.read(fileAgent, serializer);
+		assertEquals(manifest.getHashes().keySet(), read.getHashes().keySet());
+		assertEquals(3, read.scan(rootFile, HashAlgorithm.MD5, 2).getReusedCount());
+	}
+
+	@Test
+	public void testSynchronizeWithManifests() throws IOException {
+		KeyPair keys = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		UserProfile userProfile = new UserProfile("test-user", keys, keys);
+		FileIndex index1 = new FileIndex(userProfile.getRoot(), keys, "file1", HashUtil.hash(file1));
+		new FileIndex(userProfile.getRoot(), keys, "file2", HashUtil.hash(file2));
+
+		FileStateManifest before = new FileStateManifest(HashAlgorithm.MD5).scan(rootFile, HashAlgorithm.MD5, 2);
+		FileUtils.writeStringToFile(file1, randomString() + randomString());
+		FileStateManifest now = before.scan(rootFile, HashAlgorithm.MD5, 2);
+
+		FileSynchronizer synchronizer = new FileSynchronizer(rootFile, userProfile, before, now);
+		List<File> updatedLocally = synchronizer.getUpdatedLocally();
+		assertEquals(1, updatedLocally.size());
+		assertTrue(updatedLocally.contains(file1));
+		assertFalse(synchronizer.getUpdatedRemotely().contains(index1));
+		assertTrue(synchronizer.getAddedLocally().contains(folder));
+	}
+}
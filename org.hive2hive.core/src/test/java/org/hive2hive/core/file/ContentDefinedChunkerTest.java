@@ -0,0 +1,165 @@
+package org.hive2hive.core.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.ContentDefinedChunker.ChunkRange;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the content-defined boundaries of the chunks.
+ */
+public class ContentDefinedChunkerTest extends H2HJUnitTest {
+
+	private static final int MAX_SIZE = 64 * 1024;
+	private static File parent;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		parent = FileTestUtil.getTempDirectory();
+		testClass = ContentDefinedChunkerTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() throws IOException {
+		FileUtils.deleteDirectory(parent);
+		afterClass();
+	}
+
+	@Test
+	public void testRangesCoverFile() throws IOException {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(MAX_SIZE);
+		byte[] content = randomBytes(3 * 1024 * 1024 + 123);
+		List<ChunkRange> ranges = split(chunker, content);
+
+		long offset = 0;
+		for (int i = 0; i < ranges.size(); i++) {
+			ChunkRange range = ranges.get(i);
+			assertEquals(offset, range.getOffset());
+			assertTrue(range.getLength() <= chunker.getMaxSize());
+			if (i < ranges.size() - 1) {
+				assertTrue(range.getLength() >= chunker.getMinSize());
+			}
+
+			byte[] data = new byte[range.getLength()];
+			System.arraycopy(content, (int) offset, data, 0, data.length);
+			assertArrayEquals(HashUtil.hash(data, HashAlgorithm.SHA_256), range.getHash());
+			offset += range.getLength();
+		}
+		assertEquals(content.length, offset);
+
+		// the average size is approximately met
+		long average = content.length / ranges.size();
+		logger.info("{} chunks with an average size of {} bytes.", ranges.size(), average);
+		assertTrue(average > chunker.getAverageSize() / 2 && average < chunker.getAverageSize() * 2);
+	}
+
+	@Test
+	public void testInsertChangesFewChunks() throws IOException {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(MAX_SIZE);
+		byte[] content = randomBytes(2 * 1024 * 1024);
+		List<ChunkRange> original = split(chunker, content);
+
+		// insert a single byte in the middle
+		int position = content.length / 2;
+		byte[] modified = new byte[content.length + 1];
+		System.arraycopy(content, 0, modified, 0, position);
+		modified[position] = 42;
+		System.arraycopy(content, position, modified, position + 1, content.length - position);
+		List<ChunkRange> changed = split(chunker, modified);
+
+		Set<ByteBuffer> originalHashes = new HashSet<ByteBuffer>();
+		for (ChunkRange range : original) {
+			originalHashes.add(ByteBuffer.wrap(range.getHash()));
+		}
+
+		long newBytes = 0;
+		for (ChunkRange range : changed) {
+			if (!originalHashes.contains(ByteBuffer.wrap(range.getHash()))) {
+				newBytes += range.getLength();
+			}
+		}
+
+		// only the chunk(s) around the insertion differ
+		logger.info("{} of {} bytes need to be uploaded after inserting a byte.", newBytes, modified.length);
+		assertTrue(newBytes > 0);
+		assertTrue(newBytes <= 3 * MAX_SIZE);
+	}
+
+	@Test
+	public void testDeterministic() throws IOException {
+		byte[] content = randomBytes(512 * 1024);
+		List<ChunkRange> first = split(new ContentDefinedChunker(MAX_SIZE), content);
+		List<ChunkRange> second = split(new ContentDefinedChunker(MAX_SIZE), content);
+
+		assertEquals(first.size(), second.size());
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals(first.get(i).getOffset(), second.get(i).getOffset());
+			assertArrayEquals(first.get(i).getHash(), second.get(i).getHash());
+		}
+	}
+
+	@Test
+	public void testSmallAndEmptyFile() throws IOException {
+		ContentDefinedChunker chunker = new ContentDefinedChunker(MAX_SIZE);
+
+		List<ChunkRange> empty = split(chunker, new byte[0]);
+		assertEquals(1, empty.size());
+		assertEquals(0, empty.get(0).getLength());
+
+		List<ChunkRange> small = split(chunker, randomBytes(10));
+		assertEquals(1, small.size());
+		assertEquals(10, small.get(0).getLength());
+	}
+
+	@Test
+	public void testReadRange() throws IOException {
+		byte[] content = randomBytes(1000);
+		File file = new File(parent, randomString());
+		FileUtils.writeByteArrayToFile(file, content);
+
+		FileChunkReader reader = new FileChunkReader(file, 100);
+		ByteBuffer buffer = ByteBuffer.allocate(100);
+		assertEquals(50, reader.read(120, 50, buffer));
+		byte[] expected = new byte[50];
+		System.arraycopy(content, 120, expected, 0, 50);
+		byte[] actual = new byte[buffer.remaining()];
+		buffer.get(actual);
+		assertArrayEquals(expected, actual);
+		reader.close();
+	}
+
+	private static List<ChunkRange> split(ContentDefinedChunker chunker, byte[] content) throws IOException {
+		File file = new File(parent, randomString());
+		FileUtils.writeByteArrayToFile(file, content);
+		FileChunkReader reader = new FileChunkReader(file, chunker.getMaxSize());
+		try {
+			return chunker.split(reader);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] data = new byte[length];
+		new Random().nextBytes(data);
+		return data;
+	}
+}
@@ -0,0 +1,79 @@
+package org.hive2hive.core.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.TestFileConfiguration;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test that hashing the chunks concurrently results in the same (ordered) hashes as hashing them one by one.
+ */
+public class FileChunkHasherTest extends H2HJUnitTest {
+
+	private static File parent;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		parent = FileTestUtil.getTempDirectory();
+		testClass = FileChunkHasherTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testSameHashesParallel() throws IOException, InterruptedException {
+		File file = FileTestUtil.createFileRandomContent(37, parent);
+		int chunkSize = TestFileConfiguration.CHUNK_SIZE;
+
+		FileChunkReader reader = new FileChunkReader(file, chunkSize);
+		try {
+			byte[][] expected = new byte[reader.getNumberOfChunks()][];
+			for (int i = 0; i < expected.length; i++) {
+				expected[i] = HashUtil.hash(FileChunkUtil.getChunk(file, chunkSize, i, "id").getData());
+			}
+
+			for (int parallelism : new int[] { 1, 2, 3, 8, 100 }) {
+				byte[][] hashes = FileChunkHasher.hashChunks(reader, parallelism);
+				assertEquals(expected.length, hashes.length);
+				for (int i = 0; i < expected.length; i++) {
+					assertArrayEquals(expected[i], hashes[i]);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		file.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException, InterruptedException {
+		File file = new File(parent, randomString());
+		FileUtils.write(file, "");
+
+		FileChunkReader reader = new FileChunkReader(file, TestFileConfiguration.CHUNK_SIZE);
+		try {
+			byte[][] hashes = FileChunkHasher.hashChunks(reader, 4);
+			assertEquals(1, hashes.length);
+			assertArrayEquals(HashUtil.hash(new byte[0]), hashes[0]);
+		} finally {
+			reader.close();
+		}
+
+		file.deleteOnExit(); // cleanup
+	}
+}
@@ -0,0 +1,157 @@
+package org.hive2hive.core.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.TestFileConfiguration;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the chunk reader which keeps a file open over multiple chunks.
+ */
+public class FileChunkReaderTest extends H2HJUnitTest {
+
+	private static File parent;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		parent = FileTestUtil.getTempDirectory();
+		testClass = FileChunkReaderTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testGetChunkSameAsUtil() throws IOException {
+		Random rnd = new Random();
+		int genNOC = rnd.nextInt(100) + 2;
+		File randomFile = FileTestUtil.createFileRandomContent(genNOC, parent);
+
+		FileChunkReader reader = new FileChunkReader(randomFile, TestFileConfiguration.CHUNK_SIZE);
+		try {
+			assertEquals(FileChunkUtil.getNumberOfChunks(randomFile, TestFileConfiguration.CHUNK_SIZE),
+					reader.getNumberOfChunks());
+
+			for (int i = 0; i < genNOC; i++) {
+				Chunk expected = FileChunkUtil.getChunk(randomFile, TestFileConfiguration.CHUNK_SIZE, i, "id");
+				Chunk actual = reader.getChunk(i, "id");
+				assertEquals(i, actual.getOrder());
+				assertArrayEquals(expected.getData(), actual.getData());
+			}
+
+			assertNull(reader.getChunk(genNOC, "id"));
+		} finally {
+			reader.close();
+		}
+
+		assertFalse(reader.isOpen());
+		randomFile.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testReadIntoBuffer() throws IOException {
+		File randomFile = FileTestUtil.createFileRandomContent(5, parent);
+		byte[] content = FileUtils.readFileToByteArray(randomFile);
+
+		FileChunkReader reader = new FileChunkReader(randomFile, TestFileConfiguration.CHUNK_SIZE);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(TestFileConfiguration.CHUNK_SIZE);
+		try {
+			int total = 0;
+			for (int i = 0; i < reader.getNumberOfChunks(); i++) {
+				int read = reader.read(i, buffer);
+				assertEquals(read, buffer.remaining());
+
+				byte[] data = new byte[read];
+				buffer.get(data);
+				for (int j = 0; j < read; j++) {
+					assertEquals(content[total + j], data[j]);
+				}
+				total += read;
+			}
+			assertEquals(content.length, total);
+			assertEquals(-1, reader.read(reader.getNumberOfChunks(), buffer));
+		} finally {
+			reader.close();
+		}
+
+		randomFile.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testMapHashEqual() throws IOException {
+		File randomFile = FileTestUtil.createFileRandomContent(3, parent);
+
+		FileChunkReader reader = new FileChunkReader(randomFile, TestFileConfiguration.CHUNK_SIZE);
+		try {
+			for (int i = 0; i < reader.getNumberOfChunks(); i++) {
+				byte[] expected = HashUtil.hash(reader.getChunk(i, "id").getData());
+				assertArrayEquals(expected, HashUtil.hash(reader.map(i)));
+			}
+		} finally {
+			reader.close();
+		}
+
+		randomFile.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = new File(parent, randomString());
+		FileUtils.write(file, "");
+
+		FileChunkReader reader = new FileChunkReader(file, TestFileConfiguration.CHUNK_SIZE);
+		try {
+			assertEquals(1, reader.getNumberOfChunks());
+			assertEquals(0, reader.getChunk(0, "id").getSize());
+			assertNull(reader.getChunk(1, "id"));
+		} finally {
+			reader.close();
+		}
+
+		file.deleteOnExit(); // cleanup
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotExisting() throws IOException {
+		new FileChunkReader(new File(parent, randomString()), TestFileConfiguration.CHUNK_SIZE);
+	}
+
+	@Test
+	public void testCacheReopensModified() throws IOException {
+		File file = new File(parent, randomString());
+		FileUtils.write(file, "test");
+
+		FileChunkReaderCache cache = new FileChunkReaderCache(2);
+		FileChunkReader reader = cache.getReader(file, TestFileConfiguration.CHUNK_SIZE);
+		assertTrue(reader == cache.getReader(file, TestFileConfiguration.CHUNK_SIZE));
+
+		// modify the file, the reader must be replaced
+		FileUtils.write(file, "modified content", true);
+		FileChunkReader newReader = cache.getReader(file, TestFileConfiguration.CHUNK_SIZE);
+		assertFalse(reader.isOpen());
+		assertTrue(newReader.isOpen());
+
+		cache.closeAll();
+		assertFalse(newReader.isOpen());
+		file.deleteOnExit(); // cleanup
+	}
+}
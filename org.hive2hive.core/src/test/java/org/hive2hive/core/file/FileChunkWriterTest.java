@@ -0,0 +1,110 @@
+package org.hive2hive.core.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.Chunk;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.TestFileConfiguration;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test the chunk writer which writes chunks at their position into a partial file.
+ */
+public class FileChunkWriterTest extends H2HJUnitTest {
+
+	private static File parent;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		parent = FileTestUtil.getTempDirectory();
+		testClass = FileChunkWriterTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testWriteShuffled() throws IOException {
+		Random rnd = new Random();
+		int genNOC = rnd.nextInt(50) + 2;
+		File original = FileTestUtil.createFileRandomContent(genNOC, parent);
+		File destination = new File(parent, randomString());
+
+		List<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < FileChunkUtil.getNumberOfChunks(original, TestFileConfiguration.CHUNK_SIZE); i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order);
+
+		FileChunkWriter writer = new FileChunkWriter(destination);
+		for (Integer index : order) {
+			Chunk chunk = FileChunkUtil.getChunk(original, TestFileConfiguration.CHUNK_SIZE, index, "id");
+			writer.write(index * (long) TestFileConfiguration.CHUNK_SIZE, chunk.getData());
+		}
+
+		// not visible before commit
+		assertFalse(destination.exists());
+		assertTrue(writer.getPartialFile().exists());
+
+		writer.commit();
+		assertFalse(writer.isOpen());
+		assertFalse(writer.getPartialFile().exists());
+		assertArrayEquals(FileUtils.readFileToByteArray(original), FileUtils.readFileToByteArray(destination));
+
+		original.deleteOnExit(); // cleanup
+		destination.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testOverwrite() throws IOException {
+		File destination = new File(parent, randomString());
+		FileUtils.write(destination, "some existing longer content");
+
+		FileChunkWriter writer = new FileChunkWriter(destination);
+		writer.write(0, "new".getBytes());
+		writer.commit();
+
+		assertEquals("new", FileUtils.readFileToString(destination));
+		destination.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testAbort() throws IOException {
+		File destination = new File(parent, randomString());
+		FileUtils.write(destination, "existing");
+
+		FileChunkWriter writer = new FileChunkWriter(destination);
+		writer.write(0, "new".getBytes());
+		writer.abort();
+
+		assertFalse(writer.isOpen());
+		assertFalse(writer.getPartialFile().exists());
+		assertEquals("existing", FileUtils.readFileToString(destination));
+		destination.deleteOnExit(); // cleanup
+	}
+
+	@Test
+	public void testIsPartialFile() {
+		File destination = new File(parent, randomString());
+		assertFalse(FileChunkWriter.isPartialFile(destination));
+		assertTrue(FileChunkWriter.isPartialFile(FileChunkWriter.getPartialFile(destination)));
+		assertFalse(FileChunkWriter.isPartialFile(null));
+	}
+}
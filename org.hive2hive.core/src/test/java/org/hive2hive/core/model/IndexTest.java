@@ -158,6 +158,60 @@ public class IndexTest extends H2HJUnitTest {
 		Assert.assertEquals(null, root.getChildByName(""));
 	}
 
+	@Test
+	public void testGetChildByNameAfterModification() {
+		// case insensitive
+		Assert.assertEquals(child1, root.getChildByName("1F1"));
+		Assert.assertEquals(dir1, root.getChildByName("1d" + FileUtil.getFileSep()));
+
+		// rename
+		child1.setName("renamed");
+		Assert.assertEquals(null, root.getChildByName("1f1"));
+		Assert.assertEquals(child1, root.getChildByName("Renamed"));
+
+		// remove
+		root.removeChild(child2);
+		Assert.assertEquals(null, root.getChildByName("1f2"));
+
+		// move (as done by the move process)
+		dir1.removeChild(child3);
+		dir2.addChild(child3);
+		child3.setParent(dir2);
+		Assert.assertEquals(null, dir1.getChildByName("2f"));
+		Assert.assertEquals(child3, dir2.getChildByName("2f"));
+	}
+
+	@Test
+	public void testGetIndexByKey() {
+		KeyPair fileKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		KeyPair folderKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+
+		// all other indexes share the same keys
+		Assert.assertEquals(root, root.getIndexByKey(root.getFilePublicKey()));
+		Assert.assertNull(root.getIndexByKey(fileKeys.getPublic()));
+
+		// add after the lookup table has been built
+		FolderIndex folder = new FolderIndex(dir4, folderKeys, "5d");
+		FileIndex file = new FileIndex(folder, fileKeys, "6f", null);
+		Assert.assertEquals(folder, root.getIndexByKey(folderKeys.getPublic()));
+		Assert.assertEquals(file, root.getIndexByKey(fileKeys.getPublic()));
+		Assert.assertEquals(file, dir3.getIndexByKey(fileKeys.getPublic()));
+		Assert.assertNull(dir2.getIndexByKey(fileKeys.getPublic()));
+
+		// move the subtree
+		dir4.removeChild(folder);
+		dir2.addChild(folder);
+		folder.setParent(dir2);
+		Assert.assertEquals(file, root.getIndexByKey(fileKeys.getPublic()));
+		Assert.assertEquals(file, dir2.getIndexByKey(fileKeys.getPublic()));
+		Assert.assertNull(dir3.getIndexByKey(fileKeys.getPublic()));
+
+		// remove the subtree
+		dir2.removeChild(folder);
+		Assert.assertNull(root.getIndexByKey(folderKeys.getPublic()));
+		Assert.assertNull(root.getIndexByKey(fileKeys.getPublic()));
+	}
+
 	@Test
 	public void testPermissions() {
 		Assert.assertTrue(root.getCalculatedUserList().contains(userId));
@@ -55,6 +55,24 @@ public class UserProfileTest extends H2HJUnitTest {
 		Assert.assertNotNull(userProfile.getFileById(child3Key.getPublic()));
 	}
 
+	@Test
+	public void testGetFileByIdAfterAdding() {
+		FolderIndex root = userProfile.getRoot();
+		KeyPair folderKey = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		Assert.assertNull(userProfile.getFileById(folderKey.getPublic()));
+
+		// the lookup table has been built, the new indexes are registered while adding them
+		FolderIndex folder = new FolderIndex(root, folderKey, randomString());
+		KeyPair fileKey = generateRSAKeyPair(RSA_KEYLENGTH.BIT_512);
+		new FileIndex(folder, fileKey, randomString(), "bla".getBytes());
+		Assert.assertEquals(folder, userProfile.getFileById(folderKey.getPublic()));
+		Assert.assertNotNull(userProfile.getFileById(fileKey.getPublic()));
+
+		root.removeChild(folder);
+		Assert.assertNull(userProfile.getFileById(folderKey.getPublic()));
+		Assert.assertNull(userProfile.getFileById(fileKey.getPublic()));
+	}
+
 	@Test
 	public void getFileByPath() {
 		FolderIndex root = userProfile.getRoot();
@@ -4,8 +4,11 @@ import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.List;
 
+import net.tomp2p.futures.BaseFutureAdapter;
+import net.tomp2p.futures.FutureDone;
 import net.tomp2p.peers.Number160;
 import net.tomp2p.storage.Data;
 
@@ -13,6 +16,7 @@ import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.H2HTestData;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
 import org.hive2hive.core.network.data.parameters.Parameters;
@@ -103,6 +107,91 @@ public class DataManagerTest extends H2HJUnitTest {
 		Assert.assertNull(NetworkTestUtil.getRandomNode(network).getDataManager().get(parameters3));
 	}
 
+	@Test
+	public void testAsyncChain() throws Exception {
+		final String data = randomString();
+		final Parameters parameters = new Parameters().setLocationKey(randomString()).setContentKey(randomString())
+				.setNetworkContent(new H2HTestData(data));
+		final DataManager dataManager = NetworkTestUtil.getRandomNode(network).getDataManager();
+
+		// put, get, remove and get again, each started from the listener of the previous operation. The result
+		// is the reason of the failure or null if all operations succeeded
+		final FutureDone<String> result = new FutureDone<String>();
+		dataManager.putAsync(parameters).addListener(new BaseFutureAdapter<FutureDone<H2HPutStatus>>() {
+			@Override
+			public void operationComplete(FutureDone<H2HPutStatus> future) throws Exception {
+				if (future.object() != H2HPutStatus.OK) {
+					result.done("Put failed");
+					return;
+				}
+				dataManager.getAsync(parameters).addListener(new BaseFutureAdapter<FutureDone<BaseNetworkContent>>() {
+					@Override
+					public void operationComplete(FutureDone<BaseNetworkContent> future) throws Exception {
+						final BaseNetworkContent content = future.object();
+						if (content == null) {
+							result.done("Get failed");
+							return;
+						}
+						dataManager.removeAsync(parameters).addListener(new BaseFutureAdapter<FutureDone<Boolean>>() {
+							@Override
+							public void operationComplete(FutureDone<Boolean> future) throws Exception {
+								if (!Boolean.TRUE.equals(future.object())) {
+									result.done("Remove failed");
+									return;
+								}
+								dataManager.getAsync(parameters).addListener(
+										new BaseFutureAdapter<FutureDone<BaseNetworkContent>>() {
+											@Override
+											public void operationComplete(FutureDone<BaseNetworkContent> future)
+													throws Exception {
+												if (future.object() != null) {
+													result.done("Content still exists after removal");
+												} else if (!data.equals(((H2HTestData) content).getTestString())) {
+													result.done("Got wrong content");
+												} else {
+													result.done(null);
+												}
+											}
+										});
+							}
+						});
+					}
+				});
+			}
+		});
+
+		Assert.assertNull(result.awaitUninterruptibly().object());
+	}
+
+	@Test
+	public void testAsyncOperationsInParallel() throws Exception {
+		DataManager dataManager = NetworkTestUtil.getRandomNode(network).getDataManager();
+		String locationKey = randomString();
+
+		// start all puts before waiting for any of them
+		List<Parameters> parametersList = new ArrayList<Parameters>();
+		List<FutureDone<H2HPutStatus>> puts = new ArrayList<FutureDone<H2HPutStatus>>();
+		for (int i = 0; i < 5; i++) {
+			Parameters parameters = new Parameters().setLocationKey(locationKey).setContentKey(randomString())
+					.setNetworkContent(new H2HTestData(randomString()));
+			parametersList.add(parameters);
+			puts.add(dataManager.putAsync(parameters));
+		}
+		for (FutureDone<H2HPutStatus> put : puts) {
+			Assert.assertEquals(H2HPutStatus.OK, put.awaitUninterruptibly().object());
+		}
+
+		List<FutureDone<BaseNetworkContent>> gets = new ArrayList<FutureDone<BaseNetworkContent>>();
+		for (Parameters parameters : parametersList) {
+			gets.add(dataManager.getAsync(parameters));
+		}
+		for (int i = 0; i < gets.size(); i++) {
+			H2HTestData expected = (H2HTestData) parametersList.get(i).getNetworkContent();
+			H2HTestData content = (H2HTestData) gets.get(i).awaitUninterruptibly().object();
+			Assert.assertEquals(expected.getTestString(), content.getTestString());
+		}
+	}
+
 	@Test
 	public void testChangeProtectionKeySingleVersionKey() throws NoPeerConnectionException, IOException,
 			InvalidKeyException, SignatureException {
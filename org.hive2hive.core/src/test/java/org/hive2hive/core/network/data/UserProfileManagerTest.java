@@ -1,13 +1,24 @@
 package org.hive2hive.core.network.data;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
@@ -248,6 +259,106 @@ public class UserProfileManagerTest extends H2HJUnitTest {
 		}
 	}
 
+	@Test
+	public void testCoalescedModifications() throws InterruptedException, ExecutionException, GetFailedException {
+		final UserProfileManager profileManager = new UserProfileManager(client.getDataManager(), userCredentials);
+		int numModifications = 20;
+
+		final Set<String> folderNames = Collections.synchronizedSet(new HashSet<String>());
+		ExecutorService executor = Executors.newFixedThreadPool(numModifications);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numModifications);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < numModifications; i++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					final String folderName = randomString();
+					profileManager.modifyUserProfile(UUID.randomUUID().toString(), new IUserProfileModification() {
+						@Override
+						public void modifyUserProfile(UserProfile userProfile) {
+							new FolderIndex(userProfile.getRoot(), null, folderName);
+						}
+					});
+					folderNames.add(folderName);
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		long duration = Math.max(1, System.currentTimeMillis() - start);
+		executor.shutdown();
+		logger.info("{} concurrent modifications took {} ms ({} modifications / s)", numModifications, duration,
+				numModifications * 1000 / duration);
+
+		// all modifications must be contained in the latest version
+		Set<String> children = new HashSet<String>();
+		for (Index child : profileManager.readUserProfile().getRoot().getChildren()) {
+			children.add(child.getName());
+		}
+		assertTrue(children.containsAll(folderNames));
+		assertEquals(numModifications, folderNames.size());
+		profileManager.stopQueueWorker();
+	}
+
+	@Test
+	public void testCoalescedModificationsAborted() throws InterruptedException, ExecutionException,
+			GetFailedException {
+		final UserProfileManager profileManager = new UserProfileManager(client.getDataManager(), userCredentials);
+		int numModifications = 20;
+
+		final Set<String> keptNames = Collections.synchronizedSet(new HashSet<String>());
+		final Set<String> abortedNames = Collections.synchronizedSet(new HashSet<String>());
+		ExecutorService executor = Executors.newFixedThreadPool(numModifications);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(numModifications);
+
+		for (int i = 0; i < numModifications; i++) {
+			final boolean abort = i % 2 == 0;
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					final String folderName = randomString();
+					try {
+						profileManager.modifyUserProfile(UUID.randomUUID().toString(), new IUserProfileModification() {
+							@Override
+							public void modifyUserProfile(UserProfile userProfile) throws AbortModifyException {
+								// modify first, then abort
+								new FolderIndex(userProfile.getRoot(), null, folderName);
+								if (abort) {
+									throw new AbortModifyException("Test abort");
+								}
+							}
+						});
+						keptNames.add(folderName);
+					} catch (AbortModifyException e) {
+						abortedNames.add(folderName);
+					}
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+
+		// the aborted modifications must not be contained in the latest version
+		Set<String> children = new HashSet<String>();
+		for (Index child : profileManager.readUserProfile().getRoot().getChildren()) {
+			children.add(child.getName());
+		}
+		assertEquals(numModifications / 2, abortedNames.size());
+		assertTrue(children.containsAll(keptNames));
+		for (String abortedName : abortedNames) {
+			assertFalse(children.contains(abortedName));
+		}
+		profileManager.stopQueueWorker();
+	}
+
 	public static List<FolderIndex> getIndexList(Index node) {
 		List<FolderIndex> digest = new ArrayList<FolderIndex>();
 		if (node.isFolder()) {
@@ -0,0 +1,147 @@
+package org.hive2hive.core.network.data.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the eviction, persistence and the integration of the local content cache into the
+ * {@link DataManager}.
+ */
+public class ContentCacheTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+	private File directory;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ContentCacheTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+	}
+
+	@Before
+	public void createDirectory() {
+		directory = new File(FileTestUtil.getTempDirectory(), randomString());
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException {
+		ContentCache cache = new ContentCache(directory, 300);
+		cache.put("a", new byte[100]);
+		cache.put("b", new byte[100]);
+		cache.put("c", new byte[100]);
+
+		// 'a' is now more recently used than 'b'
+		assertArrayEquals(new byte[100], cache.get("a"));
+		cache.put("d", new byte[100]);
+
+		assertNull(cache.get("b"));
+		assertEquals(100, cache.get("a").length);
+		assertEquals(100, cache.get("c").length);
+		assertEquals(100, cache.get("d").length);
+
+		assertEquals(3, cache.getCount());
+		assertEquals(300, cache.getSize());
+		assertEquals(4, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+
+		// larger than the whole cache
+		cache.put("e", new byte[301]);
+		assertNull(cache.get("e"));
+		assertEquals(3, cache.getCount());
+	}
+
+	@Test
+	public void testReplaceAndRemove() throws IOException {
+		ContentCache cache = new ContentCache(directory, 1000);
+		cache.put("a", new byte[100]);
+		cache.put("a", new byte[] { 1, 2, 3 });
+		assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get("a"));
+		assertEquals(3, cache.getSize());
+
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getCount());
+	}
+
+	@Test
+	public void testPersistent() throws IOException {
+		ContentCache cache = new ContentCache(directory, 1000);
+		byte[] data = randomString().getBytes();
+		cache.put("a", data);
+		cache.put("b", new byte[500]);
+
+		// re-open the cache with a smaller size
+		ContentCache reopened = new ContentCache(directory, 600);
+		assertEquals(2, reopened.getCount());
+		assertArrayEquals(data, reopened.get("a"));
+
+		reopened = new ContentCache(directory, 500);
+		assertEquals(1, reopened.getCount());
+		assertEquals(1, reopened.getEvictions());
+	}
+
+	@Test
+	public void testDataManagerChunkCache() throws IOException {
+		DataManager dataManager = NetworkTestUtil.getRandomNode(network).getDataManager();
+		ContentCache cache = new ContentCache(directory, 1024 * 1024);
+
+		H2HTestData data = new H2HTestData(randomString());
+		Parameters parameters = new Parameters().setLocationKey(randomString()).setContentKey(H2HConstants.FILE_CHUNK)
+				.setNetworkContent(data);
+		assertEquals(H2HPutStatus.OK, dataManager.put(parameters));
+
+		dataManager.setContentCache(cache);
+		try {
+			// the first get is a miss, the second one a hit
+			for (int i = 0; i < 2; i++) {
+				H2HTestData result = (H2HTestData) dataManager.get(new Parameters().setLocationKey(
+						parameters.getLocationKey()).setContentKey(H2HConstants.FILE_CHUNK));
+				assertEquals(data.getTestString(), result.getTestString());
+			}
+			assertEquals(1, cache.getMisses());
+			assertEquals(1, cache.getHits());
+
+			// the removal drops the cached chunk
+			dataManager.remove(parameters);
+			assertNull(dataManager.get(parameters));
+			assertEquals(0, cache.getCount());
+		} finally {
+			dataManager.setContentCache(null);
+		}
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
@@ -0,0 +1,187 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.file.FileChunkWriter;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.processes.files.download.dht.DownloadTaskDHT;
+import org.hive2hive.core.security.H2HDefaultEncryption;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.helper.TestFileAgent;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests persisting and resuming downloads.
+ */
+public class DownloadJournalTest extends H2HJUnitTest {
+
+	private static final int CHUNK_SIZE = 64;
+
+	private static KeyPair userKeys;
+
+	private File root;
+	private File destination;
+	private TestFileAgent fileAgent;
+	private FSTSerializer serializer;
+	private H2HDefaultEncryption encryption;
+	private List<byte[]> chunks;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DownloadJournalTest.class;
+		beforeClass();
+		userKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS);
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Before
+	public void setup() {
+		root = FileTestUtil.getTempDirectory();
+		destination = new File(root, randomString());
+		fileAgent = new TestFileAgent(root);
+		serializer = new FSTSerializer();
+		encryption = new H2HDefaultEncryption(serializer);
+
+		// two full chunks and a smaller last one
+		Random random = new Random();
+		chunks = new ArrayList<byte[]>();
+		for (int size : new int[] { CHUNK_SIZE, CHUNK_SIZE, CHUNK_SIZE / 2 }) {
+			byte[] chunk = new byte[size];
+			random.nextBytes(chunk);
+			chunks.add(chunk);
+		}
+	}
+
+	@After
+	public void cleanup() throws IOException {
+		FileUtils.deleteDirectory(root);
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		DownloadTaskDHT task = createTask();
+		task.markDownloaded(0, chunks.get(0));
+		DownloadJournal.write(fileAgent, serializer, encryption, userKeys, Collections.<BaseDownloadTask> singleton(task));
+
+		// restart
+		List<BaseDownloadTask> persisted = DownloadJournal.read(fileAgent, serializer, encryption, userKeys);
+		assertEquals(1, persisted.size());
+		BaseDownloadTask resumed = persisted.get(0);
+		resumed.restore(null, null);
+		assertEquals(destination, resumed.getDestination());
+		assertEquals(2, resumed.getOpenChunks().size());
+		assertEquals(1, resumed.getOpenChunks().get(0).getIndex());
+
+		// the chunk written before the restart is kept
+		resumed.markDownloaded(2, chunks.get(2));
+		resumed.markDownloaded(1, chunks.get(1));
+		assertTrue(resumed.getOpenChunks().isEmpty());
+		assertTrue(destination.exists());
+		assertArrayEquals(concat(chunks), FileUtils.readFileToByteArray(destination));
+	}
+
+	@Test
+	public void testPartialFileDeleted() throws IOException {
+		DownloadTaskDHT task = createTask();
+		task.markDownloaded(0, chunks.get(0));
+		DownloadJournal.write(fileAgent, serializer, encryption, userKeys, Collections.<BaseDownloadTask> singleton(task));
+		assertTrue(FileChunkWriter.getPartialFile(destination).delete());
+
+		BaseDownloadTask resumed = DownloadJournal.read(fileAgent, serializer, encryption, userKeys).get(0);
+		resumed.restore(null, null);
+		assertEquals(chunks.size(), resumed.getOpenChunks().size());
+	}
+
+	@Test
+	public void testFinishedNotPersisted() throws IOException {
+		DownloadTaskDHT finished = createTask();
+		for (int i = 0; i < chunks.size(); i++) {
+			finished.markDownloaded(i, chunks.get(i));
+		}
+		DownloadTaskDHT aborted = createTask();
+		aborted.abortDownload("test");
+
+		DownloadJournal.write(fileAgent, serializer, encryption, userKeys,
+				Arrays.<BaseDownloadTask> asList(finished, aborted));
+		assertTrue(DownloadJournal.read(fileAgent, serializer, encryption, userKeys).isEmpty());
+	}
+
+	@Test
+	public void testKeysEncrypted() throws IOException {
+		PrivateKey chunkKey = generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK).getPrivate();
+		DownloadJournal.write(fileAgent, serializer, encryption, userKeys,
+				Collections.<BaseDownloadTask> singleton(createTask(chunkKey)));
+
+		// the key to decrypt the chunks is not written in plain text
+		byte[] journal = FileUtils.readFileToByteArray(new File(root, H2HConstants.DOWNLOAD_JOURNAL_NAME));
+		assertFalse(contains(journal, chunkKey.getEncoded()));
+		assertEquals(1, DownloadJournal.read(fileAgent, serializer, encryption, userKeys).size());
+
+		// other users cannot read it
+		KeyPair otherKeys = generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS);
+		assertTrue(DownloadJournal.read(fileAgent, serializer, encryption, otherKeys).isEmpty());
+	}
+
+	@Test
+	public void testNoJournal() {
+		assertFalse(new File(root, H2HConstants.DOWNLOAD_JOURNAL_NAME).exists());
+		assertTrue(DownloadJournal.read(fileAgent, serializer, encryption, userKeys).isEmpty());
+	}
+
+	private DownloadTaskDHT createTask() {
+		return createTask(generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK).getPrivate());
+	}
+
+	private DownloadTaskDHT createTask(PrivateKey decryptionKey) {
+		List<MetaChunk> metaChunks = new ArrayList<MetaChunk>();
+		for (int i = 0; i < chunks.size(); i++) {
+			metaChunks.add(new MetaChunk(randomString(), HashUtil.hash(chunks.get(i)), i));
+		}
+		return new DownloadTaskDHT(metaChunks, destination, decryptionKey, null, null);
+	}
+
+	private static boolean contains(byte[] data, byte[] part) {
+		for (int i = 0; i + part.length <= data.length; i++) {
+			if (Arrays.equals(part, Arrays.copyOfRange(data, i, i + part.length))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static byte[] concat(List<byte[]> parts) {
+		byte[] result = new byte[0];
+		for (byte[] part : parts) {
+			int offset = result.length;
+			result = Arrays.copyOf(result, offset + part.length);
+			System.arraycopy(part, 0, result, offset, part.length);
+		}
+		return result;
+	}
+}
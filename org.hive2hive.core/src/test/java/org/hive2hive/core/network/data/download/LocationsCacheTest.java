@@ -0,0 +1,209 @@
+package org.hive2hive.core.network.data.download;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.Locations;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.processes.files.download.direct.DownloadTaskDirect;
+import org.hive2hive.core.utils.H2HWaiter;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests fetching, merging and refreshing the locations of the direct downloads.
+ */
+public class LocationsCacheTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+	private static String userA;
+	private static String userB;
+
+	private CountingLocationsCache cache;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = LocationsCacheTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+
+		// registering puts the locations of the users
+		userA = randomString();
+		UseCaseTestUtil.register(generateRandomCredentials(userA), network.get(0));
+		userB = randomString();
+		UseCaseTestUtil.register(generateRandomCredentials(userB), network.get(0));
+	}
+
+	@After
+	public void stopCache() {
+		if (cache != null) {
+			cache.stop();
+		}
+	}
+
+	@Test
+	public void testMergedFetches() {
+		cache = new CountingLocationsCache(60000);
+		cache.blocker = new CountDownLatch(1);
+
+		// the locations of both users are fetched with a single batch
+		DownloadTaskDirect both = createTask(userA, userB);
+		cache.subscribe(both);
+		// the user is already being fetched
+		DownloadTaskDirect single = createTask(userA);
+		cache.subscribe(single);
+
+		cache.blocker.countDown();
+		assertTrue(both.awaitLocations());
+		assertTrue(single.awaitLocations());
+		assertEquals(1, cache.fetches.get());
+		assertEquals(2, both.getLocations().size());
+		assertEquals(1, single.getLocations().size());
+
+		// cached locations are provided immediately without fetching
+		DownloadTaskDirect cached = createTask(userB);
+		cache.subscribe(cached);
+		assertTrue(cached.awaitLocations());
+		assertEquals(userB, cached.getLocations().get(0).getUserId());
+		assertEquals(1, cache.fetches.get());
+	}
+
+	@Test
+	public void testExpiredLocationsFetchedAgain() {
+		cache = new CountingLocationsCache(500);
+		DownloadTaskDirect first = createTask(userA);
+		cache.subscribe(first);
+		assertTrue(first.awaitLocations());
+
+		// still valid
+		cache.subscribe(createTask(userA));
+		assertEquals(1, cache.fetches.get());
+
+		sleep(600);
+		DownloadTaskDirect task = createTask(userA);
+		cache.subscribe(task);
+		waitForFetches(2);
+		assertTrue(task.awaitLocations());
+	}
+
+	@Test
+	public void testSubscribedLocationsRefreshed() {
+		cache = new CountingLocationsCache(2000);
+		DownloadTaskDirect task = createTask(userA);
+		cache.subscribe(task);
+		assertTrue(task.awaitLocations());
+
+		// refreshed ahead by the background thread, without a new subscription
+		waitForFetches(2);
+	}
+
+	@Test
+	public void testFailedFetchNotProvided() {
+		cache = new CountingLocationsCache(60000);
+		cache.failures = 1;
+		DownloadTaskDirect failed = createTask(userA);
+		cache.subscribe(failed);
+		waitForFetches(1);
+
+		// the failed fetch is not cached, a new subscription fetches again
+		DownloadTaskDirect task = createTask(userA);
+		cache.subscribe(task);
+		waitForFetches(2);
+		assertTrue(task.awaitLocations());
+		assertFalse(task.getLocations().isEmpty());
+		assertTrue(failed.awaitLocations());
+		assertFalse(failed.getLocations().isEmpty());
+	}
+
+	@Test
+	public void testFailedFetchRetried() {
+		cache = new CountingLocationsCache(60000);
+		cache.failures = 1;
+		DownloadTaskDirect task = createTask(userA);
+		cache.subscribe(task);
+
+		// retried by the background thread after the backoff
+		waitForFetches(2);
+		assertTrue(task.awaitLocations());
+		assertEquals(userA, task.getLocations().get(0).getUserId());
+	}
+
+	private void waitForFetches(int expected) {
+		H2HWaiter waiter = new H2HWaiter(20);
+		while (cache.fetches.get() < expected) {
+			waiter.tickASecond();
+		}
+	}
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			// ignore
+		}
+	}
+
+	private static DownloadTaskDirect createTask(String... users) {
+		return new DownloadTaskDirect(new ArrayList<MetaChunk>(), new File(randomString()), null, randomString(), null,
+				new HashSet<String>(Arrays.asList(users)), null, null);
+	}
+
+	@AfterClass
+	public static void endTest() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+
+	/**
+	 * Counts the fetches, can block them and let them fail
+	 */
+	private static class CountingLocationsCache extends LocationsCache {
+
+		private final AtomicInteger fetches = new AtomicInteger();
+		private volatile CountDownLatch blocker;
+		private volatile int failures = 0;
+
+		public CountingLocationsCache(long timeToLiveMs) {
+			super(network.get(1), timeToLiveMs);
+		}
+
+		@Override
+		protected Map<String, Locations> getLocations(List<String> userIds) throws NoPeerConnectionException {
+			if (blocker != null) {
+				try {
+					blocker.await();
+				} catch (InterruptedException e) {
+					// continue
+				}
+			}
+
+			try {
+				if (failures > 0) {
+					failures--;
+					return Collections.emptyMap();
+				}
+				return super.getLocations(userIds);
+			} finally {
+				fetches.incrementAndGet();
+			}
+		}
+	}
+}
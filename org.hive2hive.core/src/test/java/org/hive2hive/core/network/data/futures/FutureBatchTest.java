@@ -0,0 +1,171 @@
+package org.hive2hive.core.network.data.futures;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tomp2p.futures.FutureDone;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.DataManager.H2HPutStatus;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the pipelining of batched network operations.
+ */
+public class FutureBatchTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = FutureBatchTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+	}
+
+	@Test
+	public void testWindowAndOrder() throws InterruptedException {
+		List<IParameters> parameters = new ArrayList<IParameters>();
+		for (int i = 0; i < 100; i++) {
+			parameters.add(new Parameters().setLocationKey(Integer.toString(i)).setContentKey(randomString()));
+		}
+
+		final int window = 7;
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+		FutureDone<Map<IParameters, String>> future = new FutureBatch<String>(parameters, window) {
+			@Override
+			protected FutureDone<String> start(final IParameters single) {
+				final FutureDone<String> result = new FutureDone<String>();
+				int current = inFlight.incrementAndGet();
+				synchronized (maxInFlight) {
+					maxInFlight.set(Math.max(maxInFlight.get(), current));
+				}
+
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						inFlight.decrementAndGet();
+						result.done(single.getLocationKey());
+					}
+				});
+				return result;
+			}
+		}.start();
+
+		assertTrue(future.await(10000));
+		executor.shutdown();
+
+		assertTrue(maxInFlight.get() <= window);
+		Map<IParameters, String> results = future.object();
+		assertEquals(parameters.size(), results.size());
+		Iterator<IParameters> keys = results.keySet().iterator();
+		for (IParameters single : parameters) {
+			// ordered like the given parameters
+			assertTrue(single == keys.next());
+			assertEquals(single.getLocationKey(), results.get(single));
+		}
+	}
+
+	@Test
+	public void testImmediateCompletionAndFailure() {
+		List<IParameters> parameters = new ArrayList<IParameters>();
+		for (int i = 0; i < 10000; i++) {
+			parameters.add(new Parameters().setLocationKey(Integer.toString(i)).setContentKey(randomString()));
+		}
+
+		// completed futures must not grow the stack
+		FutureDone<Map<IParameters, Boolean>> future = new FutureBatch<Boolean>(parameters, 3) {
+			@Override
+			protected FutureDone<Boolean> start(IParameters single) {
+				if (Integer.parseInt(single.getLocationKey()) % 2 == 0) {
+					throw new IllegalStateException("Failure of a single operation");
+				}
+				return new FutureDone<Boolean>().done(true);
+			}
+		}.start();
+
+		assertTrue(future.isCompleted());
+		for (int i = 0; i < parameters.size(); i++) {
+			Boolean result = future.object().get(parameters.get(i));
+			if (i % 2 == 0) {
+				assertNull(result);
+			} else {
+				assertTrue(result);
+			}
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		FutureDone<Map<IParameters, Boolean>> future = new FutureBatch<Boolean>(new ArrayList<IParameters>(), 3) {
+			@Override
+			protected FutureDone<Boolean> start(IParameters single) {
+				throw new IllegalStateException("No operation expected");
+			}
+		}.start();
+
+		assertTrue(future.isCompleted());
+		assertTrue(future.object().isEmpty());
+	}
+
+	@Test
+	public void testPutAndGetAll() throws NoPeerConnectionException {
+		NetworkManager nodeA = NetworkTestUtil.getRandomNode(network);
+		NetworkManager nodeB = NetworkTestUtil.getRandomNode(network);
+
+		List<IParameters> parameters = new ArrayList<IParameters>();
+		for (int i = 0; i < 20; i++) {
+			parameters.add(new Parameters().setLocationKey(randomString()).setContentKey(randomString())
+					.setNetworkContent(new H2HTestData(randomString())));
+		}
+
+		for (H2HPutStatus status : nodeA.getDataManager().putAll(parameters).values()) {
+			assertEquals(H2HPutStatus.OK, status);
+		}
+
+		// one key without data
+		parameters.add(new Parameters().setLocationKey(randomString()).setContentKey(randomString()));
+
+		Map<IParameters, BaseNetworkContent> results = nodeB.getDataManager().getAll(parameters);
+		for (int i = 0; i < parameters.size() - 1; i++) {
+			H2HTestData expected = (H2HTestData) parameters.get(i).getNetworkContent();
+			assertEquals(expected.getTestString(), ((H2HTestData) results.get(parameters.get(i))).getTestString());
+		}
+		assertNull(results.get(parameters.get(parameters.size() - 1)));
+
+		// remove all and verify that they are gone
+		for (Boolean success : nodeA.getDataManager().removeAll(parameters.subList(0, 20)).values()) {
+			assertTrue(success);
+		}
+		for (BaseNetworkContent content : nodeB.getDataManager().getAll(parameters).values()) {
+			assertNull(content);
+		}
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
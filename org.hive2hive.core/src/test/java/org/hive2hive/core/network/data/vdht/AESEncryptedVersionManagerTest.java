@@ -19,7 +19,9 @@ import org.hive2hive.core.H2HTestData;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.PutFailedException;
 import org.hive2hive.core.exceptions.VersionForkAfterPutException;
+import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
+import org.hive2hive.core.model.versioned.VersionDelta;
 import org.hive2hive.core.network.H2HStorageMemory;
 import org.hive2hive.core.network.H2HStorageMemory.StorageMemoryGetMode;
 import org.hive2hive.core.network.NetworkManager;
@@ -118,6 +120,89 @@ public class AESEncryptedVersionManagerTest extends H2HJUnitTest {
 		}
 	}
 
+	@Test
+	public void testCompactMoreThanHistory() throws Exception {
+		NetworkManager node = NetworkTestUtil.getRandomNode(network);
+
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		AESEncryptedVersionManager<H2HTestData> versionManager = new AESEncryptedVersionManager<H2HTestData>(
+				node.getDataManager(), encryptionKey, locationKey, contentKey);
+
+		// large versions which differ completely, thus every put puts a new snapshot
+		H2HTestData version = new H2HTestData(largeRandomString());
+		for (int i = 0; i < 3 * H2HConstants.MAX_VERSIONS_HISTORY; i++) {
+			versionManager.put(version, protectionKeys);
+
+			// a new version manager has nothing cached and needs the latest snapshot from the network
+			AESEncryptedVersionManager<H2HTestData> reader = new AESEncryptedVersionManager<H2HTestData>(
+					NetworkTestUtil.getRandomNode(network).getDataManager(), encryptionKey, locationKey, contentKey);
+			Assert.assertEquals(version.getTestString(), reader.get().getTestString());
+
+			version.setTestString(largeRandomString());
+		}
+	}
+
+	@Test
+	public void testReplacedSnapshotRemovedAfterRestart() throws Exception {
+		NetworkManager node = NetworkTestUtil.getRandomNode(network);
+
+		String locationKey = randomString();
+		String contentKey = randomString();
+
+		AESEncryptedVersionManager<H2HTestData> versionManager = new AESEncryptedVersionManager<H2HTestData>(
+				node.getDataManager(), encryptionKey, locationKey, contentKey);
+
+		H2HTestData version = new H2HTestData(largeRandomString());
+		versionManager.put(version, protectionKeys);
+		Number160 replacedSnapshot = getDelta(node, locationKey, contentKey, version).getSnapshotKey();
+		Assert.assertEquals(VersionDelta.FORMAT_VERSION,
+				getDelta(node, locationKey, contentKey, version).getFormatVersion());
+
+		// differs completely, thus a new snapshot replaces the first one
+		version.setTestString(largeRandomString());
+		versionManager.put(version, protectionKeys);
+		Assert.assertNotNull(getSnapshot(node, locationKey, contentKey, replacedSnapshot));
+
+		// a restarted client learns the replaced snapshot from the current one
+		AESEncryptedVersionManager<H2HTestData> restarted = new AESEncryptedVersionManager<H2HTestData>(
+				node.getDataManager(), encryptionKey, locationKey, contentKey);
+		H2HTestData latest = restarted.get();
+		for (int i = 0; i <= H2HConstants.MAX_VERSIONS_HISTORY; i++) {
+			// small modifications are put as deltas to the current snapshot
+			latest.setTestString(latest.getTestString() + i);
+			restarted.put(latest, protectionKeys);
+		}
+
+		// no stored version refers to the replaced snapshot anymore
+		Assert.assertNull(getSnapshot(node, locationKey, contentKey, replacedSnapshot));
+		Assert.assertEquals(latest.getTestString(), restarted.get().getTestString());
+	}
+
+	private static VersionDelta getDelta(NetworkManager node, String locationKey, String contentKey,
+			H2HTestData version) throws Exception {
+		EncryptedNetworkContent encrypted = (EncryptedNetworkContent) node.getDataManager().getVersion(
+				new Parameters().setLocationKey(locationKey).setContentKey(contentKey)
+						.setVersionKey(version.getVersionKey()));
+		return (VersionDelta) node.getDataManager().getEncryption().decryptAES(encrypted, encryptionKey);
+	}
+
+	private static BaseNetworkContent getSnapshot(NetworkManager node, String locationKey, String contentKey,
+			Number160 snapshotKey) throws Exception {
+		return node.getDataManager().getVersion(
+				new Parameters().setLocationKey(locationKey).setContentKey(contentKey + "_SNAPSHOT")
+						.setVersionKey(snapshotKey));
+	}
+
+	private static String largeRandomString() {
+		StringBuilder builder = new StringBuilder();
+		while (builder.length() < 128 * 1024) {
+			builder.append(randomString(10000));
+		}
+		return builder.toString();
+	}
+
 	@Test(expected = VersionForkAfterPutException.class)
 	public void testPutVersionFork() throws Exception {
 		NetworkManager node = NetworkTestUtil.getRandomNode(network);
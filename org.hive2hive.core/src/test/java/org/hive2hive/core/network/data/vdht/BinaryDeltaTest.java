@@ -0,0 +1,88 @@
+package org.hive2hive.core.network.data.vdht;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the binary deltas used to put only the difference of a large version.
+ */
+public class BinaryDeltaTest extends H2HJUnitTest {
+
+	private static final Random random = new Random();
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = BinaryDeltaTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testInsert() throws IOException {
+		byte[] base = randomBytes(100000);
+		byte[] inserted = randomBytes(100);
+		int position = random.nextInt(base.length);
+
+		byte[] target = new byte[base.length + inserted.length];
+		System.arraycopy(base, 0, target, 0, position);
+		System.arraycopy(inserted, 0, target, position, inserted.length);
+		System.arraycopy(base, position, target, position + inserted.length, base.length - position);
+
+		byte[] delta = BinaryDelta.create(base, target);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+		// much smaller than the whole target
+		assertTrue(delta.length < 1000);
+	}
+
+	@Test
+	public void testRemoveAndModify() throws IOException {
+		byte[] base = randomBytes(50000);
+		int position = random.nextInt(base.length - 500);
+
+		byte[] target = new byte[base.length - 500];
+		System.arraycopy(base, 0, target, 0, position);
+		System.arraycopy(base, position + 500, target, position, base.length - position - 500);
+		target[random.nextInt(target.length)]++;
+
+		byte[] delta = BinaryDelta.create(base, target);
+		assertArrayEquals(target, BinaryDelta.apply(base, delta));
+		assertTrue(delta.length < 1000);
+	}
+
+	@Test
+	public void testUnrelatedAndEmpty() throws IOException {
+		byte[] base = randomBytes(3000);
+		byte[] target = randomBytes(2000);
+		assertArrayEquals(target, BinaryDelta.apply(base, BinaryDelta.create(base, target)));
+		assertArrayEquals(target, BinaryDelta.apply(new byte[0], BinaryDelta.create(new byte[0], target)));
+		assertArrayEquals(new byte[0], BinaryDelta.apply(base, BinaryDelta.create(base, new byte[0])));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongBase() throws IOException {
+		byte[] base = randomBytes(10000);
+		byte[] target = base.clone();
+		target[0]++;
+
+		byte[] delta = BinaryDelta.create(base, target);
+		BinaryDelta.apply(new byte[100], delta);
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,105 @@
+package org.hive2hive.core.network.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the bounded handling of received messages.
+ */
+public class MessageExecutorTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = MessageExecutorTest.class;
+		beforeClass();
+	}
+
+	@Test
+	public void testSaturation() throws InterruptedException {
+		MessageExecutor executor = new MessageExecutor(2, 3);
+		final CountDownLatch block = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(2);
+		final CountDownLatch finished = new CountDownLatch(6);
+
+		Runnable blocking = new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					block.await();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+				finished.countDown();
+			}
+		};
+
+		// two are handled, three are queued
+		for (int i = 0; i < 5; i++) {
+			assertTrue(executor.execute(String.class, blocking));
+		}
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		assertEquals(3, executor.getQueueDepth(String.class));
+		assertEquals(2, executor.getActiveCount());
+
+		// saturated
+		assertFalse(executor.execute(String.class, blocking));
+		assertEquals(1, executor.getRejectedCount());
+
+		// other message types are not affected
+		assertTrue(executor.execute(Integer.class, blocking));
+		assertEquals(0, executor.getQueueDepth(Integer.class));
+
+		block.countDown();
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+		// the counter is increased after the task finished
+		long deadline = System.currentTimeMillis() + 10000;
+		while (executor.getHandledCount() < 6 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(6, executor.getHandledCount());
+		assertEquals(0, executor.getQueueDepth());
+		assertTrue(executor.getMaxLatencyMs() >= executor.getAverageLatencyMs());
+
+		executor.shutdown();
+	}
+
+	@Test
+	public void testFailingTask() throws InterruptedException {
+		MessageExecutor executor = new MessageExecutor(1, 1);
+		final CountDownLatch finished = new CountDownLatch(1);
+
+		assertTrue(executor.execute(String.class, new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException("test");
+			}
+		}));
+
+		// the thread survives the exception
+		assertTrue(executor.execute(String.class, new Runnable() {
+			@Override
+			public void run() {
+				finished.countDown();
+			}
+		}));
+		assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+		executor.shutdown();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
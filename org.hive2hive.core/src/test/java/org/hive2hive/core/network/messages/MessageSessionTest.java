@@ -0,0 +1,220 @@
+package org.hive2hive.core.network.messages;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PublicKey;
+import java.util.List;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.network.messages.direct.testmessages.TestDirectMessage;
+import org.hive2hive.core.security.EncryptionUtil;
+import org.hive2hive.core.security.EncryptionUtil.AES_KEYLENGTH;
+import org.hive2hive.core.utils.H2HWaiter;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the symmetric session keys of direct messages.
+ */
+public class MessageSessionTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+	private static NetworkManager sender;
+	private static NetworkManager receiver;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = MessageSessionTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(2);
+		NetworkTestUtil.setSameSession(network);
+		sender = network.get(0);
+		receiver = network.get(1);
+	}
+
+	@After
+	public void clearSessions() throws NoPeerConnectionException {
+		sender.getMessageManager().setSessionKeysEnabled(true);
+		sender.getMessageManager().getSessionKeyStore().clear();
+		receiver.getMessageManager().getSessionKeyStore().clear();
+	}
+
+	@Test
+	public void testSessionEstablished() throws NoPeerConnectionException, NoSessionException {
+		SessionKeyStore store = sender.getMessageManager().getSessionKeyStore();
+		assertNull(getSession(store));
+
+		// the first message offers the key, the following ones use it
+		sendAndVerify();
+		SessionKeyStore.OutgoingSession session = getSession(store);
+		assertNotNull(session);
+
+		sendAndVerify();
+		assertEquals(session, getSession(store));
+	}
+
+	@Test
+	public void testFallbackWhenReceiverLostSession() throws NoPeerConnectionException, NoSessionException {
+		SessionKeyStore store = sender.getMessageManager().getSessionKeyStore();
+
+		sendAndVerify();
+		SessionKeyStore.OutgoingSession session = getSession(store);
+		assertNotNull(session);
+
+		// e.g. the receiver restarted; the message is re-sent hybrid encrypted with a new offer
+		receiver.getMessageManager().getSessionKeyStore().clear();
+		sendAndVerify();
+
+		SessionKeyStore.OutgoingSession renewed = getSession(store);
+		assertNotNull(renewed);
+		assertNotEquals(session.getId(), renewed.getId());
+		sendAndVerify();
+	}
+
+	@Test
+	public void testSessionBoundToSender() throws NoPeerConnectionException, NoSessionException {
+		SessionKeyStore store = sender.getMessageManager().getSessionKeyStore();
+		PublicKey receiverKey = getPublicKey(receiver);
+
+		sendAndVerify();
+		assertNotNull(getSession(store));
+
+		// e.g. another user logged in at the sender
+		PublicKey otherSenderKey = generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS).getPublic();
+		assertNull(store.getSession(receiver.getConnection().getPeer().peerAddress(), receiverKey, otherSenderKey));
+	}
+
+	@Test
+	public void testPendingOfferReattached() throws NoPeerConnectionException, NoSessionException {
+		SessionKeyStore store = sender.getMessageManager().getSessionKeyStore();
+		PeerAddress target = receiver.getConnection().getPeer().peerAddress();
+		PublicKey receiverKey = getPublicKey(receiver);
+		PublicKey senderKey = getPublicKey(sender);
+		String securityProvider = sender.getEncryption().getSecurityProvider();
+
+		// e.g. the message containing the offer was not accepted (yet), the next message offers it again
+		SessionKeyStore.Offer offer = store.createOffer(target, receiverKey, senderKey, securityProvider);
+		assertNotNull(offer);
+		SessionKeyStore.Offer again = store.createOffer(target, receiverKey, senderKey, securityProvider);
+		assertEquals(offer.getSessionId(), again.getSessionId());
+
+		// a pending offer of another sender is replaced
+		PublicKey otherSenderKey = generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS).getPublic();
+		SessionKeyStore.Offer other = store.createOffer(target, receiverKey, otherSenderKey, securityProvider);
+		assertNotEquals(offer.getSessionId(), other.getSessionId());
+
+		// the pending offer gets confirmed with the next message
+		store.clear();
+		store.createOffer(target, receiverKey, senderKey, securityProvider);
+		sendAndVerify();
+		assertNotNull(store.getSession(target, receiverKey, senderKey));
+	}
+
+	@Test
+	public void testSessionIdOfOtherSender() throws NoPeerConnectionException, NoSessionException {
+		SessionKeyStore store = receiver.getMessageManager().getSessionKeyStore();
+		PublicKey receiverKey = getPublicKey(receiver);
+		String securityProvider = receiver.getEncryption().getSecurityProvider();
+		String sessionId = randomString();
+		byte[] key = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128, securityProvider).getEncoded();
+		assertTrue(store.register(new SessionKeyStore.Offer(sessionId, key), "alice", receiverKey));
+
+		// another sender cannot take over the session
+		byte[] otherKey = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128, securityProvider).getEncoded();
+		assertFalse(store.register(new SessionKeyStore.Offer(sessionId, otherKey), "mallory", receiverKey));
+		SessionKeyStore.IncomingSession session = store.getIncoming(sessionId, receiverKey);
+		assertEquals("alice", session.getSenderId());
+		assertArrayEquals(key, session.getKey().getEncoded());
+
+		// the sender itself can renew it
+		assertTrue(store.register(new SessionKeyStore.Offer(sessionId, otherKey), "alice", receiverKey));
+		assertArrayEquals(otherKey, store.getIncoming(sessionId, receiverKey).getKey().getEncoded());
+	}
+
+	@Test
+	public void testDisabled() throws NoPeerConnectionException, NoSessionException {
+		sender.getMessageManager().setSessionKeysEnabled(false);
+		sendAndVerify();
+		assertNull(getSession(sender.getMessageManager().getSessionKeyStore()));
+	}
+
+	@Test
+	public void testThroughput() throws NoPeerConnectionException, NoSessionException {
+		int messages = 50;
+		PublicKey receiverKey = getPublicKey(receiver);
+
+		sender.getMessageManager().setSessionKeysEnabled(false);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < messages; i++) {
+			TestDirectMessage message = createMessage(randomString(), new H2HTestData(randomString()));
+			assertTrue(sender.getMessageManager().sendDirect(message, receiverKey));
+		}
+		long withoutSession = System.currentTimeMillis() - start;
+
+		sender.getMessageManager().setSessionKeysEnabled(true);
+		start = System.currentTimeMillis();
+		for (int i = 0; i < messages; i++) {
+			TestDirectMessage message = createMessage(randomString(), new H2HTestData(randomString()));
+			assertTrue(sender.getMessageManager().sendDirect(message, receiverKey));
+		}
+		long withSession = System.currentTimeMillis() - start;
+
+		logger.info("Sent {} direct messages in {} ms without and in {} ms with session keys.", messages,
+				withoutSession, withSession);
+	}
+
+	private void sendAndVerify() throws NoPeerConnectionException, NoSessionException {
+		String data = randomString();
+		String contentKey = randomString();
+		TestDirectMessage message = createMessage(contentKey, new H2HTestData(data));
+		assertTrue(sender.getMessageManager().sendDirect(message, getPublicKey(receiver)));
+
+		// wait till the message gets handled
+		H2HWaiter waiter = new H2HWaiter(10);
+		BaseNetworkContent content = null;
+		do {
+			waiter.tickASecond();
+			content = receiver.getDataManager().get(
+					new Parameters().setLocationKey(receiver.getNodeId()).setContentKey(contentKey));
+		} while (content == null);
+		assertEquals(data, ((H2HTestData) content).getTestString());
+	}
+
+	private TestDirectMessage createMessage(String contentKey, H2HTestData data) {
+		return new TestDirectMessage(receiver.getNodeId(), receiver.getConnection().getPeer().peerAddress(),
+				contentKey, data, false);
+	}
+
+	private SessionKeyStore.OutgoingSession getSession(SessionKeyStore store) throws NoSessionException {
+		return store.getSession(receiver.getConnection().getPeer().peerAddress(), getPublicKey(receiver),
+				getPublicKey(sender));
+	}
+
+	private PublicKey getPublicKey(NetworkManager networkManager) throws NoSessionException {
+		return networkManager.getSession().getKeyPair().getPublic();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		NetworkTestUtil.shutdownNetwork(network);
+		afterClass();
+	}
+}
@@ -0,0 +1,98 @@
+package org.hive2hive.core.network.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import net.tomp2p.peers.Number160;
+import net.tomp2p.peers.PeerAddress;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the rating of peers used to select the download sources.
+ */
+public class PeerScoreBoardTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = PeerScoreBoardTest.class;
+		beforeClass();
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+
+	@Test
+	public void testThroughput() {
+		PeerScoreBoard scores = new PeerScoreBoard();
+		PeerAddress fast = createAddress();
+		PeerAddress slow = createAddress();
+		assertFalse(scores.isKnown(fast));
+		assertEquals(42, scores.getScore(fast, 42), 0.001);
+
+		scores.recordTransfer(fast, 1000 * 1000, 100);
+		scores.recordTransfer(slow, 1000 * 1000, 1000);
+		assertTrue(scores.isKnown(fast));
+		assertTrue(scores.getScore(fast, 0) > scores.getScore(slow, 0));
+	}
+
+	@Test
+	public void testFailures() {
+		PeerScoreBoard scores = new PeerScoreBoard();
+		PeerAddress reliable = createAddress();
+		PeerAddress failing = createAddress();
+		scores.recordTransfer(reliable, 1000, 10);
+		scores.recordTransfer(failing, 1000, 10);
+
+		scores.recordFailure(failing);
+		assertTrue(scores.getScore(reliable, 0) > scores.getScore(failing, 0));
+		assertFalse(scores.isUnreliable(failing));
+
+		scores.recordFailure(failing);
+		scores.recordFailure(failing);
+		assertTrue(scores.isUnreliable(failing));
+		assertFalse(scores.isUnreliable(reliable));
+	}
+
+	@Test
+	public void testSlowPeer() {
+		PeerScoreBoard scores = new PeerScoreBoard();
+		PeerAddress desktop = createAddress();
+		PeerAddress mobile = createAddress().changeSlow(true);
+		scores.recordTransfer(desktop, 1000, 10);
+		scores.recordTransfer(mobile, 1000, 10);
+
+		assertEquals(scores.getScore(desktop, 0) * H2HConstants.SLOW_PEER_SCORE_FACTOR, scores.getScore(mobile, 0),
+				0.001);
+	}
+
+	@Test
+	public void testAskLaterDelay() {
+		PeerScoreBoard scores = new PeerScoreBoard();
+		PeerAddress busy = createAddress();
+		assertEquals(100, scores.getAskLaterDelay(busy, 100));
+
+		for (int i = 0; i < 4; i++) {
+			scores.recordAskLater(busy);
+		}
+		long delay = scores.getAskLaterDelay(busy, 100);
+		assertTrue(delay > 100);
+
+		for (int i = 0; i < 100; i++) {
+			scores.recordAskLater(busy);
+		}
+		assertTrue(scores.getAskLaterDelay(busy, 100) > delay);
+		assertTrue(scores.getAskLaterDelay(busy, 100) <= 800);
+	}
+
+	private static PeerAddress createAddress() {
+		return new PeerAddress(Number160.createHash(randomString()));
+	}
+}
@@ -0,0 +1,135 @@
+package org.hive2hive.core.processes.files.download;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import net.tomp2p.peers.PeerAddress;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.exceptions.GetFailedException;
+import org.hive2hive.core.exceptions.NoPeerConnectionException;
+import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.messages.PeerScoreBoard;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests downloading large files from multiple clients of the user. Each test downloads at a separate client,
+ * thus the peer scores of one test do not influence the other.
+ */
+public class DownloadFromPeersTest extends H2HJUnitTest {
+
+	// enough chunks that every client gets requests in the first round
+	private static final int NUM_CHUNKS = 20;
+
+	private static List<NetworkManager> network;
+	private static NetworkManager uploader;
+	private static NetworkManager holder;
+	private static NetworkManager corruptHolder;
+	private static UserCredentials userCredentials;
+	private static File uploaderRoot;
+	private static File holderRoot;
+	private static File corruptHolderRoot;
+	private static File downloaderRoot1;
+	private static File downloaderRoot2;
+
+	private static File file;
+	private static File fileWithCorruptCopy;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DownloadFromPeersTest.class;
+		beforeClass();
+		// the uploader, two clients having the files and two downloaders
+		network = NetworkTestUtil.createNetwork(5);
+		uploader = network.get(0);
+		holder = network.get(1);
+		corruptHolder = network.get(2);
+
+		userCredentials = generateRandomCredentials();
+		uploaderRoot = FileTestUtil.getTempDirectory();
+		UseCaseTestUtil.registerAndLogin(userCredentials, uploader, uploaderRoot);
+
+		file = FileTestUtil.createFileRandomContent(NUM_CHUNKS, uploaderRoot);
+		UseCaseTestUtil.uploadNewFile(uploader, file);
+		fileWithCorruptCopy = FileTestUtil.createFileRandomContent(NUM_CHUNKS, uploaderRoot);
+		UseCaseTestUtil.uploadNewFile(uploader, fileWithCorruptCopy);
+
+		// the other clients have the files already
+		holderRoot = FileTestUtil.getTempDirectory();
+		FileUtils.copyFileToDirectory(file, holderRoot);
+		FileUtils.copyFileToDirectory(fileWithCorruptCopy, holderRoot);
+		UseCaseTestUtil.login(userCredentials, holder, holderRoot);
+
+		// same size, but none of the chunks matches its hash
+		corruptHolderRoot = FileTestUtil.getTempDirectory();
+		FileUtils.copyFileToDirectory(file, corruptHolderRoot);
+		FileTestUtil.createFileRandomContent(fileWithCorruptCopy.getName(), NUM_CHUNKS, corruptHolderRoot);
+		UseCaseTestUtil.login(userCredentials, corruptHolder, corruptHolderRoot);
+
+		downloaderRoot1 = FileTestUtil.getTempDirectory();
+		UseCaseTestUtil.login(userCredentials, network.get(3), downloaderRoot1);
+		downloaderRoot2 = FileTestUtil.getTempDirectory();
+		UseCaseTestUtil.login(userCredentials, network.get(4), downloaderRoot2);
+	}
+
+	@Test
+	public void testDownloadFromMultiplePeers() throws IOException, NoSessionException, GetFailedException,
+			NoPeerConnectionException {
+		NetworkManager downloader = network.get(3);
+		File downloaded = download(downloader, file);
+		Assert.assertArrayEquals(FileUtils.readFileToByteArray(file), FileUtils.readFileToByteArray(downloaded));
+
+		// the chunks have been received from all clients having the file
+		PeerScoreBoard scores = downloader.getMessageManager().getPeerScoreBoard();
+		Assert.assertTrue(scores.isKnown(getAddress(uploader)));
+		Assert.assertTrue(scores.isKnown(getAddress(holder)));
+		Assert.assertTrue(scores.isKnown(getAddress(corruptHolder)));
+	}
+
+	@Test
+	public void testDownloadWithCorruptPeer() throws IOException, NoSessionException, GetFailedException,
+			NoPeerConnectionException {
+		NetworkManager downloader = network.get(4);
+		File downloaded = download(downloader, fileWithCorruptCopy);
+		Assert.assertArrayEquals(FileUtils.readFileToByteArray(fileWithCorruptCopy),
+				FileUtils.readFileToByteArray(downloaded));
+
+		// the client with the corrupt copy did not deliver any chunk and has been rated down
+		PeerScoreBoard scores = downloader.getMessageManager().getPeerScoreBoard();
+		Assert.assertFalse(scores.isKnown(getAddress(corruptHolder)));
+		Assert.assertTrue(scores.getScore(getAddress(corruptHolder), 1) < 1);
+		Assert.assertTrue(scores.isKnown(getAddress(uploader)) || scores.isKnown(getAddress(holder)));
+	}
+
+	private static File download(NetworkManager downloader, File original) throws GetFailedException,
+			NoPeerConnectionException, NoSessionException {
+		Index index = UseCaseTestUtil.getUserProfile(uploader, userCredentials).getFileByPath(original, uploaderRoot);
+		return UseCaseTestUtil.downloadFile(downloader, index.getFilePublicKey());
+	}
+
+	private static PeerAddress getAddress(NetworkManager networkManager) {
+		return networkManager.getConnection().getPeer().peerAddress();
+	}
+
+	@AfterClass
+	public static void endTest() throws IOException {
+		NetworkTestUtil.shutdownNetwork(network);
+		FileUtils.deleteDirectory(uploaderRoot);
+		FileUtils.deleteDirectory(holderRoot);
+		FileUtils.deleteDirectory(corruptHolderRoot);
+		FileUtils.deleteDirectory(downloaderRoot1);
+		FileUtils.deleteDirectory(downloaderRoot2);
+		afterClass();
+	}
+}
@@ -0,0 +1,134 @@
+package org.hive2hive.core.processes.files.download.direct;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.tomp2p.futures.FutureDone;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.api.configs.FileConfiguration;
+import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.model.BaseNetworkContent;
+import org.hive2hive.core.model.FileVersion;
+import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.DataManager;
+import org.hive2hive.core.network.data.parameters.IParameters;
+import org.hive2hive.core.processes.files.download.dht.ChunkKeys;
+import org.hive2hive.core.processes.files.download.hybrid.DownloadTaskHybrid;
+import org.hive2hive.core.security.HashAlgorithm;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the hybrid downloads of content-defined chunks when no other client has the file.
+ */
+public class DirectDownloadSchedulerTest extends H2HJUnitTest {
+
+	private static List<NetworkManager> network;
+	private static NetworkManager node;
+	private static UserCredentials userCredentials;
+	private static IFileConfiguration config;
+	private static File root;
+	private static File downloadRoot;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = DirectDownloadSchedulerTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+		node = network.get(0);
+
+		userCredentials = generateRandomCredentials();
+		root = FileTestUtil.getTempDirectory();
+		downloadRoot = FileTestUtil.getTempDirectory();
+		UseCaseTestUtil.registerAndLogin(userCredentials, node, root);
+		config = FileConfiguration.createCustom(BigInteger.valueOf(Long.MAX_VALUE), 10,
+				BigInteger.valueOf(Long.MAX_VALUE), 1024, 1, 4, HashAlgorithm.MD5, ChunkingMode.CONTENT_DEFINED,
+				DownloadMode.HYBRID);
+	}
+
+	@Test
+	public void testFailedGetRetriedWithoutPeers() throws Exception {
+		File file = new File(root, randomString());
+		byte[] content = new byte[8 * 1024];
+		new Random().nextBytes(content);
+		FileUtils.writeByteArrayToFile(file, content);
+		UseCaseTestUtil.uploadNewFile(node, file, config);
+
+		Index index = UseCaseTestUtil.getUserProfile(node, userCredentials).getFileByPath(file, root);
+		MetaFileSmall metaFile = (MetaFileSmall) UseCaseTestUtil.getMetaFile(node, index.getFileKeys());
+		FileVersion version = metaFile.getNewestVersion();
+		List<MetaChunk> metaChunks = version.getMetaChunks();
+
+		// nobody else has access to the file, thus there are no peers to ask
+		H2HSession session = node.getSession();
+		File destination = new File(downloadRoot, file.getName());
+		DownloadTaskHybrid task = new DownloadTaskHybrid(metaChunks, destination, metaFile.getId(),
+				session.getUserId(), node.getConnection().getPeer().peerAddress(), new HashSet<String>(),
+				new ChunkKeys(metaFile.getChunkKey().getPrivate(), version.getContentKey()), node.getEventBus(),
+				session.getKeyManager());
+
+		FailingDataManager dataManager = new FailingDataManager();
+		new DirectDownloadScheduler(task, node.getMessageManager(), node.getMessageManager().getPeerScoreBoard(),
+				config, dataManager, dataManager.getEncryption()).run();
+
+		// every chunk has been got once more after the failure
+		assertFalse(task.isAborted());
+		assertEquals(2 * metaChunks.size(), dataManager.gets.get());
+		assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+	}
+
+	@AfterClass
+	public static void endTest() throws IOException {
+		NetworkTestUtil.shutdownNetwork(network);
+		FileUtils.deleteDirectory(root);
+		FileUtils.deleteDirectory(downloadRoot);
+		afterClass();
+	}
+
+	/**
+	 * Lets the first get of every chunk fail
+	 */
+	private static class FailingDataManager extends DataManager {
+
+		private final Set<String> failed = new HashSet<String>();
+		private final AtomicInteger gets = new AtomicInteger();
+
+		public FailingDataManager() throws Exception {
+			super(node.getConnection(), node.getDataManager().getSerializer(), node.getDataManager().getEncryption());
+		}
+
+		@Override
+		public FutureDone<BaseNetworkContent> getAsync(IParameters parameters) {
+			gets.incrementAndGet();
+			synchronized (failed) {
+				if (failed.add(parameters.getLocationKey())) {
+					return new FutureDone<BaseNetworkContent>().done(null);
+				}
+			}
+			return super.getAsync(parameters);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package org.hive2hive.core.processes.files.download.direct.process;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.messages.direct.response.IResponseCallBackHandler;
+import org.hive2hive.core.network.messages.direct.response.ResponseMessage;
+import org.hive2hive.core.processes.files.download.direct.process.ChunkMessageResponse.AnswerType;
+import org.hive2hive.core.security.HashUtil;
+import org.hive2hive.core.security.UserCredentials;
+import org.hive2hive.core.utils.FileTestUtil;
+import org.hive2hive.core.utils.NetworkTestUtil;
+import org.hive2hive.core.utils.TestFileConfiguration;
+import org.hive2hive.core.utils.UseCaseTestUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that a client having a file only answers well-formed range requests.
+ */
+public class RequestChunkRangeMessageTest extends H2HJUnitTest {
+
+	private static final int NUM_CHUNKS = H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE + 4;
+
+	private static List<NetworkManager> network;
+	private static NetworkManager holder;
+	private static NetworkManager requester;
+	private static File root;
+	private static PublicKey fileKey;
+	private static List<byte[]> chunkHashes;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = RequestChunkRangeMessageTest.class;
+		beforeClass();
+		network = NetworkTestUtil.createNetwork(DEFAULT_NETWORK_SIZE);
+		holder = network.get(0);
+		requester = network.get(1);
+
+		UserCredentials userCredentials = generateRandomCredentials();
+		root = FileTestUtil.getTempDirectory();
+		UseCaseTestUtil.registerAndLogin(userCredentials, holder, root);
+		File file = FileTestUtil.createFileRandomContent(NUM_CHUNKS, root);
+		UseCaseTestUtil.uploadNewFile(holder, file);
+		fileKey = UseCaseTestUtil.getUserProfile(holder, userCredentials).getFileByPath(file, root)
+				.getFilePublicKey();
+		UseCaseTestUtil.login(userCredentials, requester, FileTestUtil.getTempDirectory());
+
+		byte[] content = FileUtils.readFileToByteArray(file);
+		chunkHashes = new ArrayList<byte[]>();
+		for (int offset = 0; offset < content.length; offset += TestFileConfiguration.CHUNK_SIZE) {
+			int end = Math.min(content.length, offset + TestFileConfiguration.CHUNK_SIZE);
+			chunkHashes.add(HashUtil.hash(Arrays.copyOfRange(content, offset, end)));
+		}
+	}
+
+	@Test
+	public void testValidRange() throws Exception {
+		ChunkMessageResponse response = request(TestFileConfiguration.CHUNK_SIZE, chunkHashes.subList(0, 4));
+		assertEquals(AnswerType.OK, response.getAnswerType());
+		assertEquals(4, response.getChunks().size());
+	}
+
+	@Test
+	public void testTooManyChunks() throws Exception {
+		List<byte[]> hashes = chunkHashes.subList(0, H2HConstants.DIRECT_DOWNLOAD_MAX_RANGE + 1);
+		assertEquals(AnswerType.DECLINED, request(TestFileConfiguration.CHUNK_SIZE, hashes).getAnswerType());
+	}
+
+	@Test
+	public void testInvalidChunkLength() throws Exception {
+		assertEquals(AnswerType.DECLINED, request(0, chunkHashes.subList(0, 2)).getAnswerType());
+		assertEquals(AnswerType.DECLINED, request(-1, chunkHashes.subList(0, 2)).getAnswerType());
+	}
+
+	@Test
+	public void testMissingHashes() throws Exception {
+		// the hashes are emptied after the message has been created
+		List<byte[]> hashes = new ArrayList<byte[]>(chunkHashes.subList(0, 2));
+		RequestChunkRangeMessage message = createMessage(TestFileConfiguration.CHUNK_SIZE, hashes);
+		hashes.clear();
+		assertEquals(AnswerType.DECLINED, send(message).getAnswerType());
+
+		hashes = new ArrayList<byte[]>(chunkHashes.subList(0, 2));
+		hashes.set(1, null);
+		assertEquals(AnswerType.DECLINED, request(TestFileConfiguration.CHUNK_SIZE, hashes).getAnswerType());
+	}
+
+	private static ChunkMessageResponse request(int chunkLength, List<byte[]> hashes) throws Exception {
+		return send(createMessage(chunkLength, new ArrayList<byte[]>(hashes)));
+	}
+
+	private static RequestChunkRangeMessage createMessage(int chunkLength, List<byte[]> hashes) {
+		return new RequestChunkRangeMessage(holder.getConnection().getPeer().peerAddress(), fileKey, 0, chunkLength,
+				hashes);
+	}
+
+	private static ChunkMessageResponse send(RequestChunkRangeMessage message) throws Exception {
+		ResponseCollector collector = new ResponseCollector();
+		message.setCallBackHandler(collector);
+		assertTrue(requester.getMessageManager().sendDirect(message,
+				holder.getSession().getKeyPair().getPublic()));
+		assertTrue(collector.received.await(H2HConstants.DIRECT_DOWNLOAD_AWAIT_MS, TimeUnit.MILLISECONDS));
+		assertNotNull(collector.response);
+		return collector.response;
+	}
+
+	@AfterClass
+	public static void endTest() throws IOException {
+		NetworkTestUtil.shutdownNetwork(network);
+		FileUtils.deleteDirectory(root);
+		afterClass();
+	}
+
+	private static class ResponseCollector implements IResponseCallBackHandler {
+
+		private final CountDownLatch received = new CountDownLatch(1);
+		private volatile ChunkMessageResponse response;
+
+		@Override
+		public void handleResponseMessage(ResponseMessage responseMessage) {
+			if (responseMessage.getContent() instanceof ChunkMessageResponse) {
+				response = (ChunkMessageResponse) responseMessage.getContent();
+			}
+			received.countDown();
+		}
+	}
+}
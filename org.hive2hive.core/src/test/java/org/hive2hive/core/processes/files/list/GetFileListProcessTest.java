@@ -67,7 +67,8 @@ public class GetFileListProcessTest extends H2HJUnitTest {
 		assertEquals(1, fileList.getChildren().size());
 
 		assertEquals(child1, fileList.getChildren().get(0).getFile());
-		assertTrue(HashUtil.compare(HashUtil.hash(child1), fileList.getChildren().get(0).getMd5()));
+		FileNode child1Node = fileList.getChildren().get(0);
+		assertTrue(HashUtil.compare(child1, child1Node.getMd5(), child1Node.getHashAlgorithm()));
 
 		// add dir1 to the network
 		File dir1 = new File(root, randomString());
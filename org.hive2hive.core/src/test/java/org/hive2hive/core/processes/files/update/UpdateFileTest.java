@@ -3,22 +3,30 @@ package org.hive2hive.core.processes.files.update;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import org.apache.commons.io.FileUtils;
 import org.hive2hive.core.H2HJUnitTest;
 import org.hive2hive.core.H2HSession;
+import org.hive2hive.core.api.configs.FileConfiguration;
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
 import org.hive2hive.core.model.FileIndex;
 import org.hive2hive.core.model.Index;
+import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.model.versioned.UserProfile;
 import org.hive2hive.core.network.NetworkManager;
 import org.hive2hive.core.processes.ProcessFactory;
 import org.hive2hive.core.processes.login.SessionParameters;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.core.security.HashUtil;
 import org.hive2hive.core.security.UserCredentials;
 import org.hive2hive.core.utils.FileTestUtil;
@@ -151,6 +159,31 @@ public class UpdateFileTest extends H2HJUnitTest {
 			public int getChunkSize() {
 				return TestFileConfiguration.CHUNK_SIZE;
 			}
+
+			@Override
+			public int getHashingParallelism() {
+				return 1;
+			}
+
+			@Override
+			public int getChunkUploadWindow() {
+				return 1;
+			}
+
+			@Override
+			public HashAlgorithm getHashAlgorithm() {
+				return HashAlgorithm.MD5;
+			}
+
+			@Override
+			public ChunkingMode getChunkingMode() {
+				return ChunkingMode.FIXED;
+			}
+
+			@Override
+			public DownloadMode getDownloadMode() {
+				return DownloadMode.DHT;
+			}
 		};
 
 		H2HSession session = uploader.getSession();
@@ -199,6 +232,31 @@ public class UpdateFileTest extends H2HJUnitTest {
 			public int getChunkSize() {
 				return TestFileConfiguration.CHUNK_SIZE;
 			}
+
+			@Override
+			public int getHashingParallelism() {
+				return 1;
+			}
+
+			@Override
+			public int getChunkUploadWindow() {
+				return 1;
+			}
+
+			@Override
+			public HashAlgorithm getHashAlgorithm() {
+				return HashAlgorithm.MD5;
+			}
+
+			@Override
+			public ChunkingMode getChunkingMode() {
+				return ChunkingMode.FIXED;
+			}
+
+			@Override
+			public DownloadMode getDownloadMode() {
+				return DownloadMode.DHT;
+			}
 		};
 
 		H2HSession session = uploader.getSession();
@@ -222,6 +280,93 @@ public class UpdateFileTest extends H2HJUnitTest {
 		Assert.assertEquals(1, metaFileSmall.getVersions().size());
 	}
 
+	@Test
+	public void testContentDefinedChunks() throws IOException, GetFailedException, NoSessionException,
+			NoPeerConnectionException {
+		IFileConfiguration config = FileConfiguration.createCustom(BigInteger.valueOf(Long.MAX_VALUE), 10,
+				BigInteger.valueOf(Long.MAX_VALUE), 1024, 1, 4, HashAlgorithm.MD5, ChunkingMode.CONTENT_DEFINED,
+				DownloadMode.DHT);
+		File cdcFile = new File(uploaderRoot, randomString());
+		byte[] content = new byte[8 * 1024];
+		new Random().nextBytes(content);
+		FileUtils.writeByteArrayToFile(cdcFile, content);
+		UseCaseTestUtil.uploadNewFile(uploader, cdcFile, config);
+
+		// insert some bytes in the middle of the file
+		byte[] modified = new byte[content.length + 10];
+		System.arraycopy(content, 0, modified, 0, 4000);
+		System.arraycopy(content, 4000, modified, 4010, content.length - 4000);
+		FileUtils.writeByteArrayToFile(cdcFile, modified);
+		UseCaseTestUtil.uploadNewVersion(uploader, cdcFile, config);
+
+		UserProfile userProfile = UseCaseTestUtil.getUserProfile(downloader, userCredentials);
+		Index index = userProfile.getFileByPath(cdcFile, uploaderRoot);
+		MetaFileSmall metaFileSmall = (MetaFileSmall) UseCaseTestUtil.getMetaFile(downloader, index.getFileKeys());
+		Assert.assertEquals(2, metaFileSmall.getVersions().size());
+
+		// most chunks of the new version are the ones of the first version
+		Set<String> firstVersionChunks = new HashSet<String>();
+		for (MetaChunk metaChunk : metaFileSmall.getVersions().get(0).getMetaChunks()) {
+			firstVersionChunks.add(metaChunk.getChunkId());
+		}
+		List<MetaChunk> newVersionChunks = metaFileSmall.getVersions().get(1).getMetaChunks();
+		int reused = 0;
+		for (MetaChunk metaChunk : newVersionChunks) {
+			Assert.assertTrue(metaChunk.isContentDefined());
+			if (firstVersionChunks.contains(metaChunk.getChunkId())) {
+				reused++;
+			}
+		}
+		Assert.assertTrue(reused < newVersionChunks.size());
+		Assert.assertTrue(reused >= newVersionChunks.size() / 2);
+
+		// the new version is assembled from chunks of both versions
+		File downloaded = UseCaseTestUtil.downloadFile(downloader, index.getFilePublicKey());
+		Assert.assertArrayEquals(modified, FileUtils.readFileToByteArray(downloaded));
+	}
+
+	@Test
+	public void testDeduplicatedChunks() throws IOException, GetFailedException, NoSessionException,
+			NoPeerConnectionException {
+		// keep only the latest version
+		IFileConfiguration config = FileConfiguration.createCustom(BigInteger.valueOf(Long.MAX_VALUE), 1,
+				BigInteger.valueOf(Long.MAX_VALUE), 1024, 1, 4, HashAlgorithm.MD5, ChunkingMode.DEDUPLICATED,
+				DownloadMode.DHT);
+		byte[] content = new byte[8 * 1024];
+		new Random().nextBytes(content);
+		File file1 = new File(uploaderRoot, randomString());
+		File file2 = new File(uploaderRoot, randomString());
+		FileUtils.writeByteArrayToFile(file1, content);
+		FileUtils.writeByteArrayToFile(file2, content);
+		UseCaseTestUtil.uploadNewFile(uploader, file1, config);
+		UseCaseTestUtil.uploadNewFile(uploader, file2, config);
+
+		// both files reference the same chunks
+		UserProfile userProfile = UseCaseTestUtil.getUserProfile(downloader, userCredentials);
+		Index index1 = userProfile.getFileByPath(file1, uploaderRoot);
+		Index index2 = userProfile.getFileByPath(file2, uploaderRoot);
+		List<MetaChunk> chunks1 = ((MetaFileSmall) UseCaseTestUtil.getMetaFile(downloader, index1.getFileKeys()))
+				.getNewestVersion().getMetaChunks();
+		List<MetaChunk> chunks2 = ((MetaFileSmall) UseCaseTestUtil.getMetaFile(downloader, index2.getFileKeys()))
+				.getNewestVersion().getMetaChunks();
+		Assert.assertEquals(chunks1.size(), chunks2.size());
+		for (int i = 0; i < chunks1.size(); i++) {
+			Assert.assertTrue(chunks2.get(i).isDeduplicated());
+			Assert.assertEquals(chunks1.get(i).getChunkId(), chunks2.get(i).getChunkId());
+		}
+
+		// replacing the content of the first file releases its chunks, but the second file still references them
+		byte[] otherContent = new byte[4 * 1024];
+		new Random().nextBytes(otherContent);
+		FileUtils.writeByteArrayToFile(file1, otherContent);
+		UseCaseTestUtil.uploadNewVersion(uploader, file1, config);
+
+		File downloaded1 = UseCaseTestUtil.downloadFile(downloader, index1.getFilePublicKey());
+		Assert.assertArrayEquals(otherContent, FileUtils.readFileToByteArray(downloaded1));
+		File downloaded2 = UseCaseTestUtil.downloadFile(downloader, index2.getFilePublicKey());
+		Assert.assertArrayEquals(content, FileUtils.readFileToByteArray(downloaded2));
+	}
+
 	@AfterClass
 	public static void endTest() throws IOException {
 		NetworkTestUtil.shutdownNetwork(network);
@@ -2,18 +2,31 @@ package org.hive2hive.core.processes.share;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.security.KeyPair;
 import java.util.List;
 import java.util.Random;
 
+import net.tomp2p.dht.FutureGet;
+
 import org.apache.commons.io.FileUtils;
+import org.hive2hive.core.H2HConstants;
 import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.api.configs.FileConfiguration;
+import org.hive2hive.core.api.interfaces.IFileConfiguration;
 import org.hive2hive.core.events.framework.interfaces.file.IFileAddEvent;
 import org.hive2hive.core.events.framework.interfaces.file.IFileShareEvent;
 import org.hive2hive.core.exceptions.GetFailedException;
 import org.hive2hive.core.exceptions.NoPeerConnectionException;
 import org.hive2hive.core.exceptions.NoSessionException;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.model.MetaChunk;
 import org.hive2hive.core.model.PermissionType;
+import org.hive2hive.core.model.versioned.MetaFileSmall;
 import org.hive2hive.core.network.NetworkManager;
+import org.hive2hive.core.network.data.parameters.Parameters;
+import org.hive2hive.core.security.HashAlgorithm;
 import org.hive2hive.core.security.UserCredentials;
 import org.hive2hive.core.utils.FileTestUtil;
 import org.hive2hive.core.utils.H2HWaiter;
@@ -171,6 +184,48 @@ public class ShareFolderTest extends H2HJUnitTest {
 		Assert.assertEquals(3, sharedC.getUserPermissions().size());
 	}
 
+	@Test
+	public void shareDeduplicatedFilesAndDelete() throws IOException, IllegalArgumentException, NoSessionException,
+			GetFailedException, NoPeerConnectionException {
+		IFileConfiguration config = FileConfiguration.createCustom(BigInteger.valueOf(Long.MAX_VALUE), 1,
+				BigInteger.valueOf(Long.MAX_VALUE), 1024, 1, 4, HashAlgorithm.MD5, ChunkingMode.DEDUPLICATED,
+				DownloadMode.DHT);
+		File sharedFolderAtA = new File(rootA, randomString());
+		sharedFolderAtA.mkdirs();
+		UseCaseTestUtil.uploadNewFile(network.get(0), sharedFolderAtA);
+
+		// two files referencing the same chunks
+		byte[] content = new byte[8 * 1024];
+		new Random().nextBytes(content);
+		File file1 = new File(sharedFolderAtA, randomString());
+		File file2 = new File(sharedFolderAtA, randomString());
+		FileUtils.writeByteArrayToFile(file1, content);
+		FileUtils.writeByteArrayToFile(file2, content);
+		UseCaseTestUtil.uploadNewFile(network.get(0), file1, config);
+		UseCaseTestUtil.uploadNewFile(network.get(0), file2, config);
+
+		KeyPair fileKeys = UseCaseTestUtil.getUserProfile(network.get(0), userA).getFileByPath(file1, rootA)
+				.getFileKeys();
+		List<MetaChunk> metaChunks = ((MetaFileSmall) UseCaseTestUtil.getMetaFile(network.get(0), fileKeys))
+				.getNewestVersion().getMetaChunks();
+		Assert.assertTrue(metaChunks.get(0).isDeduplicated());
+
+		// sharing changes the protection keys of the chunks and their references
+		UseCaseTestUtil.shareFolder(network.get(0), sharedFolderAtA, userB.getUserId(), PermissionType.WRITE);
+		waitTillShared(eventB, new File(rootB, sharedFolderAtA.getName()));
+
+		// the references can be released with the new protection keys, the last one removes the chunks
+		UseCaseTestUtil.deleteFile(network.get(0), file1);
+		UseCaseTestUtil.deleteFile(network.get(0), file2);
+		for (MetaChunk metaChunk : metaChunks) {
+			FutureGet get = network.get(0).getDataManager().getUnblocked(
+					new Parameters().setLocationKey(metaChunk.getChunkId()).setContentKey(H2HConstants.FILE_CHUNK));
+			get.awaitUninterruptibly();
+			get.futureRequests().awaitUninterruptibly();
+			Assert.assertNull(get.data());
+		}
+	}
+
 	private static IFileShareEvent waitTillShared(TestFileEventListener events, File sharedFolder) {
 		H2HWaiter waiter = new H2HWaiter(30);
 		do {
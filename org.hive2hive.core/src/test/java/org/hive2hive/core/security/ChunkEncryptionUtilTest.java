@@ -0,0 +1,250 @@
+package org.hive2hive.core.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.EncryptedChunk;
+import org.hive2hive.core.model.FileVersion;
+import org.hive2hive.core.model.MetaChunk;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the AES-GCM encryption of the file chunks and the content key per file version.
+ */
+public class ChunkEncryptionUtilTest extends H2HJUnitTest {
+
+	private static IH2HSerialize serializer;
+	private static H2HDefaultEncryption encryption;
+	private static KeyPair chunkKeys;
+	private static SecretKey contentKey;
+	private static String provider;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = ChunkEncryptionUtilTest.class;
+		beforeClass();
+		serializer = new FSTSerializer();
+		encryption = new H2HDefaultEncryption(serializer);
+		encryption.setKeyPairPool(null);
+		chunkKeys = encryption.generateRSAKeyPair(RSA_KEYLENGTH.BIT_1024);
+		provider = encryption.getSecurityProvider();
+		contentKey = ChunkEncryptionUtil.generateContentKey(provider);
+	}
+
+	@Test
+	public void testEncryptDecrypt() throws GeneralSecurityException {
+		byte[] data = randomBytes(100000);
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(data), "chunk", 3, contentKey,
+				provider);
+
+		assertEquals("chunk", encrypted.getId());
+		assertEquals(3, encrypted.getOrder());
+		assertEquals(EncryptionUtil.getAESGCMOutputSize(data.length), encrypted.getEncryptedData().length);
+		assertFalse(ByteBuffer.wrap(data).equals(ByteBuffer.wrap(encrypted.getEncryptedData(), 0, data.length)));
+
+		assertArrayEquals(data, ChunkEncryptionUtil.decrypt(encrypted, contentKey, provider));
+	}
+
+	@Test
+	public void testEncryptPartOfBuffer() throws GeneralSecurityException {
+		// the buffers are re-used for chunks of different length (e.g. the last one of a file)
+		byte[] data = randomBytes(1000);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+		buffer.put(data).flip();
+
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(buffer, "chunk", 0, contentKey, provider);
+		assertFalse(buffer.hasRemaining());
+		assertArrayEquals(data, ChunkEncryptionUtil.decrypt(encrypted, contentKey, provider));
+	}
+
+	@Test
+	public void testEmptyChunk() throws GeneralSecurityException {
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.allocate(0), "chunk", 0, contentKey,
+				provider);
+		assertEquals(0, ChunkEncryptionUtil.decrypt(encrypted, contentKey, provider).length);
+	}
+
+	@Test(expected = GeneralSecurityException.class)
+	public void testModifiedData() throws GeneralSecurityException {
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(randomBytes(1000)), "chunk", 0,
+				contentKey, provider);
+		encrypted.getEncryptedData()[10]++;
+		ChunkEncryptionUtil.decrypt(encrypted, contentKey, provider);
+	}
+
+	@Test(expected = GeneralSecurityException.class)
+	public void testSwappedOrder() throws GeneralSecurityException {
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(randomBytes(1000)), "chunk", 0,
+				contentKey, provider);
+
+		// the index is authenticated
+		EncryptedChunk swapped = new EncryptedChunk(encrypted.getId(), 1, encrypted.getNonce(),
+				encrypted.getEncryptedData());
+		ChunkEncryptionUtil.decrypt(swapped, contentKey, provider);
+	}
+
+	@Test
+	public void testWrapContentKey() throws GeneralSecurityException, IOException, ClassNotFoundException {
+		HybridEncryptedContent wrapped = ChunkEncryptionUtil.wrapContentKey(contentKey, chunkKeys.getPublic(),
+				encryption);
+		SecretKey unwrapped = ChunkEncryptionUtil.unwrapContentKey(wrapped, chunkKeys.getPrivate(), encryption);
+		assertArrayEquals(contentKey.getEncoded(), unwrapped.getEncoded());
+
+		// chunks encrypted with the original key can be decrypted with the unwrapped one
+		byte[] data = randomBytes(1000);
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(data), "chunk", 0, contentKey,
+				provider);
+		assertArrayEquals(data, ChunkEncryptionUtil.decrypt(encrypted, unwrapped, provider));
+	}
+
+	@Test
+	public void testDifferentNonces() throws GeneralSecurityException {
+		// the same content key is used for all chunks of a version, thus the nonce must differ
+		ByteBuffer data = ByteBuffer.wrap(randomBytes(100));
+		EncryptedChunk first = ChunkEncryptionUtil.encrypt(data, "chunk", 0, contentKey, provider);
+		data.rewind();
+		EncryptedChunk second = ChunkEncryptionUtil.encrypt(data, "chunk", 0, contentKey, provider);
+		assertFalse(Arrays.equals(first.getNonce(), second.getNonce()));
+		assertFalse(Arrays.equals(first.getEncryptedData(), second.getEncryptedData()));
+	}
+
+	@Test
+	public void testSerialization() throws GeneralSecurityException, IOException, ClassNotFoundException {
+		byte[] data = randomBytes(10000);
+		EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(data), "chunk", 5, contentKey,
+				provider);
+
+		EncryptedChunk deserialized = (EncryptedChunk) serializer.deserialize(serializer.serialize(encrypted));
+		assertArrayEquals(data, ChunkEncryptionUtil.decrypt(deserialized, contentKey, provider));
+	}
+
+	@Test
+	public void testSerializeFileVersion() throws GeneralSecurityException, IOException, ClassNotFoundException {
+		HybridEncryptedContent wrapped = ChunkEncryptionUtil.wrapContentKey(contentKey, chunkKeys.getPublic(),
+				encryption);
+		FileVersion version = new FileVersion(0, 123, System.currentTimeMillis(), new ArrayList<MetaChunk>(),
+				wrapped);
+		FileVersion deserialized = (FileVersion) serializer.deserialize(serializer.serialize(version));
+		SecretKey unwrapped = ChunkEncryptionUtil.unwrapContentKey(deserialized.getContentKey(),
+				chunkKeys.getPrivate(), encryption);
+		assertArrayEquals(contentKey.getEncoded(), unwrapped.getEncoded());
+
+		// versions without a content key
+		FileVersion oldVersion = new FileVersion(1, 123, System.currentTimeMillis(), new ArrayList<MetaChunk>());
+		assertNull(((FileVersion) serializer.deserialize(serializer.serialize(oldVersion))).getContentKey());
+	}
+
+	@Test
+	public void testDeduplicatedChunks() throws GeneralSecurityException {
+		byte[] data = randomBytes(10000);
+		byte[] contentHash = HashUtil.hash(data, HashAlgorithm.SHA_256);
+		SecretKey secret = ChunkEncryptionUtil.createDeduplicationSecret(chunkKeys);
+
+		// the same content results in the same chunk within a scope
+		EncryptedChunk first = encryptDeduplicated(data, secret, contentHash);
+		EncryptedChunk second = encryptDeduplicated(data, ChunkEncryptionUtil.createDeduplicationSecret(chunkKeys),
+				contentHash);
+		assertEquals(first.getId(), second.getId());
+		assertArrayEquals(first.getEncryptedData(), second.getEncryptedData());
+		SecretKey chunkKey = ChunkEncryptionUtil.deriveChunkKey(secret, contentHash);
+		assertArrayEquals(data, ChunkEncryptionUtil.decrypt(first, chunkKey, provider));
+
+		// another scope cannot find the chunk
+		KeyPair otherKeys = encryption.generateRSAKeyPair(RSA_KEYLENGTH.BIT_1024);
+		SecretKey otherSecret = ChunkEncryptionUtil.createDeduplicationSecret(otherKeys);
+		assertFalse(first.getId().equals(ChunkEncryptionUtil.deriveChunkId(otherSecret, contentHash)));
+		assertFalse(Arrays.equals(chunkKey.getEncoded(), ChunkEncryptionUtil.deriveChunkKey(otherSecret, contentHash)
+				.getEncoded()));
+
+		// other content has another id and key
+		byte[] otherHash = HashUtil.hash(randomBytes(10000), HashAlgorithm.SHA_256);
+		assertFalse(first.getId().equals(ChunkEncryptionUtil.deriveChunkId(secret, otherHash)));
+		assertFalse(Arrays.equals(chunkKey.getEncoded(), ChunkEncryptionUtil.deriveChunkKey(secret, otherHash)
+				.getEncoded()));
+	}
+
+	@Test
+	public void testSerializeDeduplicatedMetaChunk() throws GeneralSecurityException, IOException,
+			ClassNotFoundException {
+		byte[] contentHash = HashUtil.hash(randomBytes(100), HashAlgorithm.SHA_256);
+		SecretKey secret = ChunkEncryptionUtil.createDeduplicationSecret(chunkKeys);
+		byte[] chunkKey = ChunkEncryptionUtil.deriveChunkKey(secret, contentHash).getEncoded();
+		MetaChunk metaChunk = new MetaChunk(ChunkEncryptionUtil.deriveChunkId(secret, contentHash), null, 2, 300,
+				100, contentHash, chunkKey);
+
+		MetaChunk deserialized = (MetaChunk) serializer.deserialize(serializer.serialize(metaChunk));
+		assertTrue(deserialized.isDeduplicated());
+		assertArrayEquals(chunkKey, deserialized.getChunkKey());
+		assertTrue(deserialized.reuse(5, 1000).isDeduplicated());
+		assertFalse(new MetaChunk("chunk", null, 0, 0, 100, contentHash).isDeduplicated());
+	}
+
+	private static EncryptedChunk encryptDeduplicated(byte[] data, SecretKey secret, byte[] contentHash)
+			throws GeneralSecurityException {
+		return ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(data), ChunkEncryptionUtil.deriveChunkId(secret,
+				contentHash), EncryptedChunk.UNORDERED, ChunkEncryptionUtil.deriveChunkKey(secret, contentHash),
+				ChunkEncryptionUtil.deriveNonce(secret, contentHash), provider);
+	}
+
+	@Test
+	public void testConcurrentEncryption() throws Exception {
+		// every thread uses its own cipher instances
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < 20; i++) {
+			final int order = i;
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					byte[] data = randomBytes(10000);
+					EncryptedChunk encrypted = ChunkEncryptionUtil.encrypt(ByteBuffer.wrap(data), "chunk", order,
+							contentKey, provider);
+					assertArrayEquals(data, ChunkEncryptionUtil.decrypt(encrypted, contentKey, provider));
+					return null;
+				}
+			}));
+		}
+
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+	}
+
+	private static byte[] randomBytes(int length) {
+		byte[] data = new byte[length];
+		new Random().nextBytes(data);
+		return data;
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
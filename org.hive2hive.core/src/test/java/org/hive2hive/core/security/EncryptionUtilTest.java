@@ -1,5 +1,6 @@
 package org.hive2hive.core.security;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
@@ -7,6 +8,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -310,6 +312,37 @@ public class EncryptionUtilTest extends H2HJUnitTest {
 		}
 	}
 
+	@Test
+	public void encryptionAESGCMBufferTest() throws GeneralSecurityException {
+		byte[] associatedData = { 1, 2, 3 };
+		byte[] data = new byte[10000];
+		new Random().nextBytes(data);
+
+		// the cipher of the thread is re-used with different keys
+		for (int i = 0; i < 3; i++) {
+			SecretKey aesKey = EncryptionUtil.generateAESKey(AES_KEYLENGTH.BIT_128, SECURITY_PROVIDER);
+			byte[] nonce = EncryptionUtil.generateGCMNonce();
+
+			ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+			input.put(data).flip();
+			ByteBuffer encrypted = ByteBuffer.allocate(EncryptionUtil.getAESGCMOutputSize(data.length));
+			int written = EncryptionUtil.encryptAESGCM(input, encrypted, aesKey, nonce, associatedData,
+					SECURITY_PROVIDER);
+			assertEquals(encrypted.capacity(), written);
+
+			// compatible with the array based method
+			byte[] decrypted = EncryptionUtil.decryptAESGCM(encrypted.array(), aesKey, nonce, associatedData,
+					SECURITY_PROVIDER);
+			assertTrue(Arrays.equals(data, decrypted));
+
+			encrypted.flip();
+			ByteBuffer output = ByteBuffer.allocate(data.length);
+			assertEquals(data.length,
+					EncryptionUtil.decryptAESGCM(encrypted, output, aesKey, nonce, associatedData, SECURITY_PROVIDER));
+			assertTrue(Arrays.equals(data, output.array()));
+		}
+	}
+
 	@Test
 	public void testIVGeneration() {
 		for (int i = 0; i < 100000; i++)
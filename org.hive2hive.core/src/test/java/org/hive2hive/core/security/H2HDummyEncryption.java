@@ -8,6 +8,8 @@ import java.security.Security;
 
 import javax.crypto.SecretKey;
 
+import net.tomp2p.connection.SignatureFactory;
+
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.hive2hive.core.model.BaseNetworkContent;
 import org.hive2hive.core.model.versioned.EncryptedNetworkContent;
@@ -79,4 +81,9 @@ public class H2HDummyEncryption implements IH2HEncryption {
 	public KeyPair generateRSAKeyPair(RSA_KEYLENGTH length) {
 		return EncryptionUtil.generateRSAKeyPair(length, SECURITY_PROVIDER);
 	}
+
+	@Override
+	public SignatureFactory createSignatureFactory() {
+		return new H2HSignatureFactory();
+	}
 }
@@ -0,0 +1,185 @@
+package org.hive2hive.core.security;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+
+import net.tomp2p.connection.SignatureFactory;
+import net.tomp2p.message.SignatureCodec;
+
+import org.hive2hive.core.H2HConstants;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.H2HTestData;
+import org.hive2hive.core.model.FileIndex;
+import org.hive2hive.core.model.FolderIndex;
+import org.hive2hive.core.model.versioned.HybridEncryptedContent;
+import org.hive2hive.core.model.versioned.UserProfile;
+import org.hive2hive.core.serializer.FSTSerializer;
+import org.hive2hive.core.serializer.IH2HSerialize;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the elliptic curve suite and compares it with the default RSA suite.
+ */
+public class H2HECEncryptionTest extends H2HJUnitTest {
+
+	private static IH2HSerialize serializer;
+	private static H2HECEncryption ecEncryption;
+	private static H2HDefaultEncryption rsaEncryption;
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = H2HECEncryptionTest.class;
+		beforeClass();
+		serializer = new FSTSerializer();
+		ecEncryption = new H2HECEncryption(serializer);
+		rsaEncryption = new H2HDefaultEncryption(serializer);
+		rsaEncryption.setKeyPairPool(null);
+	}
+
+	@Test
+	public void testGenerateKeys() {
+		KeyPair keyPair = ecEncryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		assertTrue(keyPair.getPublic() instanceof ECPublicKey);
+		assertEquals(256, ((ECPublicKey) keyPair.getPublic()).getParams().getCurve().getField().getFieldSize());
+	}
+
+	@Test
+	public void testHybridEncryption() throws IOException, GeneralSecurityException, ClassNotFoundException {
+		KeyPair keyPair = ecEncryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS);
+		H2HTestData data = new H2HTestData(randomString(1000));
+
+		HybridEncryptedContent encrypted = ecEncryption.encryptHybrid(data, keyPair.getPublic());
+		H2HTestData decrypted = (H2HTestData) ecEncryption.decryptHybrid(encrypted, keyPair.getPrivate());
+		assertEquals(data.getTestString(), decrypted.getTestString());
+	}
+
+	@Test
+	public void testSignAndVerify() throws GeneralSecurityException {
+		KeyPair keyPair = ecEncryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		byte[] data = randomString(1000).getBytes();
+
+		String provider = ecEncryption.getSecurityProvider();
+		byte[] signature = EncryptionUtil.sign(data, keyPair.getPrivate(), provider);
+		assertTrue(EncryptionUtil.verify(data, signature, keyPair.getPublic(), provider));
+
+		data[0]++;
+		assertFalse(EncryptionUtil.verify(data, signature, keyPair.getPublic(), provider));
+	}
+
+	@Test
+	public void testSignatureFactory() throws GeneralSecurityException, IOException {
+		SignatureFactory factory = ecEncryption.createSignatureFactory();
+		KeyPair keyPair = ecEncryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION);
+		byte[] data = randomString(1000).getBytes();
+
+		// the signature has a fixed size on the wire
+		SignatureCodec signature = factory.sign(keyPair.getPrivate(), new ByteBuffer[] { ByteBuffer.wrap(data) });
+		ByteBuf buffer = Unpooled.buffer();
+		signature.write(buffer);
+		assertEquals(factory.signatureSize(), buffer.readableBytes());
+
+		SignatureCodec decoded = factory.signatureCodec(buffer);
+		assertArrayEquals(signature.encode(), decoded.encode());
+		assertTrue(factory.verify(keyPair.getPublic(), new ByteBuffer[] { ByteBuffer.wrap(data) }, decoded));
+
+		// the public key survives the encoding
+		ByteBuf keyBuffer = Unpooled.buffer();
+		factory.encodePublicKey(keyPair.getPublic(), keyBuffer);
+		assertEquals(keyPair.getPublic(), factory.decodePublicKey(keyBuffer));
+	}
+
+	@Test
+	public void testSerializeKeys() throws IOException, ClassNotFoundException {
+		KeyPair keyPair = ecEncryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE);
+		KeyPair deserialized = (KeyPair) serializer.deserialize(serializer.serialize(keyPair));
+		assertEquals(keyPair.getPublic(), deserialized.getPublic());
+		assertEquals(keyPair.getPrivate(), deserialized.getPrivate());
+	}
+
+	/**
+	 * Compares the duration of the asymmetric operations and the size of a user profile. The results are
+	 * logged.
+	 */
+	@Test
+	public void testCompareWithRSA() throws IOException, GeneralSecurityException {
+		compare("RSA", rsaEncryption, 5);
+		compare("EC", ecEncryption, 5);
+	}
+
+	private void compare(String name, H2HDefaultEncryption encryption, int rounds) throws IOException,
+			GeneralSecurityException {
+		String provider = encryption.getSecurityProvider();
+		byte[] data = randomString(1000).getBytes();
+
+		long start = System.nanoTime();
+		KeyPair keyPair = null;
+		for (int i = 0; i < rounds; i++) {
+			keyPair = encryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_CHUNK);
+		}
+		long keyGeneration = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		byte[] signature = null;
+		for (int i = 0; i < rounds; i++) {
+			signature = EncryptionUtil.sign(data, keyPair.getPrivate(), provider);
+		}
+		long signing = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			assertTrue(EncryptionUtil.verify(data, signature, keyPair.getPublic(), provider));
+		}
+		long verifying = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		HybridEncryptedContent encrypted = null;
+		for (int i = 0; i < rounds; i++) {
+			encrypted = encryption.encryptHybrid(data, keyPair.getPublic());
+		}
+		long wrapping = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			assertNotNull(encryption.decryptHybridRaw(encrypted, keyPair.getPrivate()));
+		}
+		long unwrapping = System.nanoTime() - start;
+
+		// a user profile with some files
+		UserProfile profile = new UserProfile(randomString(),
+				encryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_USER_KEYS),
+				encryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_PROTECTION));
+		FolderIndex folder = new FolderIndex(profile.getRoot(),
+				encryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE), randomString());
+		for (int i = 0; i < 20; i++) {
+			new FileIndex(folder, encryption.generateRSAKeyPair(H2HConstants.KEYLENGTH_META_FILE), randomString(),
+					new byte[16]);
+		}
+		int profileSize = serializer.serialize(profile).length;
+
+		logger.info("{}: keygen {} ms, sign {} ms, verify {} ms, wrap {} ms, unwrap {} ms, profile {} bytes", name,
+				toMillis(keyGeneration, rounds), toMillis(signing, rounds), toMillis(verifying, rounds),
+				toMillis(wrapping, rounds), toMillis(unwrapping, rounds), profileSize);
+	}
+
+	private static double toMillis(long nanos, int rounds) {
+		return nanos / (double) rounds / 1000000.0;
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -1,15 +1,22 @@
 package org.hive2hive.core.security;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
 
 import org.apache.commons.io.FileUtils;
 import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
 import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.model.FileIndex;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -80,6 +87,86 @@ public class HashUtilTest extends H2HJUnitTest {
 		assertEquals(expected, result);
 	}
 
+	@Test
+	public void xxHash64ExampleDataTest() {
+		assertEquals("ef46db3751d8e999", Hex.toHexString(HashUtil.hash(new byte[0], HashAlgorithm.XXHASH64)));
+		assertEquals("d24ec4f1a98c6e5b", Hex.toHexString(HashUtil.hash("a".getBytes(), HashAlgorithm.XXHASH64)));
+		assertEquals("44bc2cf5ad770999", Hex.toHexString(HashUtil.hash("abc".getBytes(), HashAlgorithm.XXHASH64)));
+	}
+
+	@Test
+	public void sha256ExampleDataTest() {
+		assertEquals("b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9",
+				Hex.toHexString(HashUtil.hash("hello world".getBytes(), HashAlgorithm.SHA_256)));
+	}
+
+	@Test
+	public void algorithmsConsistentTest() throws IOException {
+		// larger than the file buffer and not a multiple of the xxHash stripe
+		byte[] data = new byte[3 * 1024 * 1024 + 17];
+		new Random().nextBytes(data);
+		File file = new File(FileUtils.getTempDirectory(), randomString());
+		FileUtils.writeByteArrayToFile(file, data);
+
+		for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+			byte[] expected = HashUtil.hash(data, algorithm);
+			assertArrayEquals(expected, HashUtil.hash(file, algorithm));
+			assertArrayEquals(expected, HashUtil.hash(ByteBuffer.wrap(data), algorithm));
+
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+			direct.put(data).flip();
+			assertArrayEquals(expected, HashUtil.hash(direct, algorithm));
+
+			assertTrue(HashUtil.compare(file, expected, algorithm));
+		}
+
+		// the default is still MD5
+		assertArrayEquals(HashUtil.hash(data, HashAlgorithm.MD5), HashUtil.hash(file));
+		assertFalse(HashUtil.compare(file, HashUtil.hash(data, HashAlgorithm.XXHASH64)));
+		file.delete();
+	}
+
+	@Test
+	public void fileIndexAlgorithmTest() {
+		FileIndex md5Index = new FileIndex(null, null, randomString(), HashUtil.hash(new byte[10]));
+		assertEquals(HashAlgorithm.MD5, md5Index.getHashAlgorithm());
+
+		byte[] xxHash = HashUtil.hash(new byte[10], HashAlgorithm.XXHASH64);
+		FileIndex xxIndex = new FileIndex(null, null, randomString(), xxHash, HashAlgorithm.XXHASH64);
+		assertEquals(HashAlgorithm.XXHASH64, xxIndex.getHashAlgorithm());
+		assertEquals(HashAlgorithm.XXHASH64, new FileIndex(xxIndex).getHashAlgorithm());
+
+		xxIndex.setMD5(HashUtil.hash(new byte[10]));
+		assertEquals(HashAlgorithm.MD5, xxIndex.getHashAlgorithm());
+	}
+
+	/**
+	 * Compares the throughput of the hash algorithms. The results are logged.
+	 */
+	@Test
+	public void compareThroughputTest() throws IOException {
+		byte[] data = new byte[32 * 1024 * 1024];
+		new Random().nextBytes(data);
+		File file = new File(FileUtils.getTempDirectory(), randomString());
+		FileUtils.writeByteArrayToFile(file, data);
+
+		for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+			// warm up
+			HashUtil.hash(file, algorithm);
+
+			long start = System.nanoTime();
+			int rounds = 5;
+			for (int i = 0; i < rounds; i++) {
+				assertNotNull(HashUtil.hash(file, algorithm));
+			}
+			double seconds = (System.nanoTime() - start) / 1000000000.0;
+			double throughput = rounds * (double) data.length / seconds / (1024 * 1024 * 1024);
+			logger.info("{} hashes {} GB/s (cryptographic: {}).", algorithm.getName(), throughput,
+					algorithm.isCryptographic());
+		}
+		file.delete();
+	}
+
 	@AfterClass
 	public static void endTest() throws Exception {
 		afterClass();
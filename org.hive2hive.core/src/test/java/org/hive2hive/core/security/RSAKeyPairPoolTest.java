@@ -0,0 +1,99 @@
+package org.hive2hive.core.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.security.PublicKey;
+import java.security.Security;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.hive2hive.core.H2HJUnitTest;
+import org.hive2hive.core.security.EncryptionUtil.RSA_KEYLENGTH;
+import org.hive2hive.core.utils.H2HWaiter;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the background generation of RSA key pairs.
+ */
+public class RSAKeyPairPoolTest extends H2HJUnitTest {
+
+	@BeforeClass
+	public static void initTest() throws Exception {
+		testClass = RSAKeyPairPoolTest.class;
+		beforeClass();
+		Security.addProvider(new BouncyCastleProvider());
+	}
+
+	@Test
+	public void testFallbackWhenEmpty() {
+		RSAKeyPairPool pool = new RSAKeyPairPool(BouncyCastleProvider.PROVIDER_NAME, 0, 0, 1);
+		assertNotNull(pool.take(RSA_KEYLENGTH.BIT_512));
+		assertNotNull(pool.take(RSA_KEYLENGTH.BIT_512));
+
+		assertEquals(0, pool.getHits());
+		assertEquals(2, pool.getMisses());
+		assertEquals(0, pool.getGeneratedCount());
+		pool.shutdown();
+	}
+
+	@Test
+	public void testRefill() {
+		RSAKeyPairPool pool = new RSAKeyPairPool(BouncyCastleProvider.PROVIDER_NAME, 2, 4, 1);
+		pool.prefill(RSA_KEYLENGTH.BIT_512);
+		waitForPool(pool, RSA_KEYLENGTH.BIT_512, 4);
+
+		// other key lengths are not filled
+		assertEquals(0, pool.getAvailable(RSA_KEYLENGTH.BIT_1024));
+
+		Set<PublicKey> keys = new HashSet<PublicKey>();
+		for (int i = 0; i < 3; i++) {
+			keys.add(pool.take(RSA_KEYLENGTH.BIT_512).getPublic());
+		}
+		assertEquals(3, pool.getHits());
+		assertEquals(0, pool.getMisses());
+
+		// every key pair is handed out only once
+		assertEquals(3, keys.size());
+
+		// falling below the low watermark triggers the refill
+		waitForPool(pool, RSA_KEYLENGTH.BIT_512, 4);
+		assertTrue(pool.getGeneratedCount() >= 7);
+		assertTrue(pool.getRefillRate() > 0);
+
+		logger.info("Pool generates {} key pairs of 512 bits per second.", pool.getRefillRate());
+		pool.shutdown();
+	}
+
+	@Test
+	public void testDefaultEncryption() {
+		H2HDefaultEncryption encryption = new H2HDefaultEncryption(null);
+		RSAKeyPairPool pool = encryption.getKeyPairPool();
+		assertNotNull(pool);
+
+		assertNotNull(encryption.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512));
+		assertEquals(1, pool.getMisses());
+
+		// disabled pool
+		encryption.setKeyPairPool(null);
+		assertNotNull(encryption.generateRSAKeyPair(RSA_KEYLENGTH.BIT_512));
+		assertEquals(1, pool.getMisses());
+		assertEquals(0, pool.getAvailable(RSA_KEYLENGTH.BIT_512));
+	}
+
+	private static void waitForPool(RSAKeyPairPool pool, RSA_KEYLENGTH length, int available) {
+		H2HWaiter waiter = new H2HWaiter(30);
+		while (pool.getAvailable(length) < available) {
+			waiter.tickASecond();
+		}
+	}
+
+	@AfterClass
+	public static void cleanAfterClass() {
+		afterClass();
+	}
+}
@@ -3,6 +3,9 @@ package org.hive2hive.core.utils;
 import java.math.BigInteger;
 
 import org.hive2hive.core.api.interfaces.IFileConfiguration;
+import org.hive2hive.core.file.ChunkingMode;
+import org.hive2hive.core.file.DownloadMode;
+import org.hive2hive.core.security.HashAlgorithm;
 
 /**
  * File configuration for fast test execution
@@ -35,4 +38,29 @@ public class TestFileConfiguration implements IFileConfiguration {
 		return CHUNK_SIZE;
 	}
 
+	@Override
+	public int getHashingParallelism() {
+		return 2;
+	}
+
+	@Override
+	public int getChunkUploadWindow() {
+		return 3;
+	}
+
+	@Override
+	public HashAlgorithm getHashAlgorithm() {
+		return HashAlgorithm.MD5;
+	}
+
+	@Override
+	public ChunkingMode getChunkingMode() {
+		return ChunkingMode.FIXED;
+	}
+
+	@Override
+	public DownloadMode getDownloadMode() {
+		return DownloadMode.DHT;
+	}
+
 }